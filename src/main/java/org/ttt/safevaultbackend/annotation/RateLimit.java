@@ -1,5 +1,7 @@
 package org.ttt.safevaultbackend.annotation;
 
+import org.ttt.safevaultbackend.enums.RateLimitDimension;
+
 import java.lang.annotation.*;
 
 /**
@@ -9,6 +11,9 @@ import java.lang.annotation.*;
  * 使用示例：
  * @RateLimit(requests = 5, per = "minute")
  * public ResponseEntity<?> login(...) { ... }
+ *
+ * 同时按 IP 和邮箱限制：
+ * @RateLimit(requests = 5, per = "minute", by = {RateLimitDimension.IP, RateLimitDimension.EMAIL})
  */
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
@@ -29,4 +34,10 @@ public @interface RateLimit {
      * 速率限制的键前缀（可选，默认使用类名+方法名）
      */
     String key() default "";
+
+    /**
+     * 限制维度（默认按 IP）
+     * 指定多个维度时每个维度各自拥有 requests/per 的配额，原子地同时扣减
+     */
+    RateLimitDimension[] by() default {RateLimitDimension.IP};
 }
@@ -1,17 +1,29 @@
 package org.ttt.safevaultbackend.aspect;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.BeanWrapperImpl;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.ttt.safevaultbackend.annotation.RateLimit;
+import org.ttt.safevaultbackend.enums.RateLimitDimension;
 import org.ttt.safevaultbackend.exception.RateLimitExceededException;
+import org.ttt.safevaultbackend.service.RateLimiterService;
+import org.ttt.safevaultbackend.util.CryptoPrimitives;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
 
 /**
  * 速率限制切面
@@ -21,100 +33,152 @@ import java.time.Duration;
  * - 登录API: 5次/分钟
  * - 注册API: 3次/分钟
  * - 邮箱验证: 10次/小时
+ *
+ * 每个端点按 {@link RateLimit#by()} 指定的维度（IP、邮箱、用户ID）分别限流，
+ * 所有维度在 {@link RateLimiterService} 中一次原子检查。
+ *
+ * 指标：rate.limit.decisions 按端点和决策（allowed/blocked/error）计数。
  */
 @Slf4j
 @Aspect
 @Component
 public class RateLimitAspect {
 
+    private static final String KEY_PREFIX = "rate_limit:";
+
     @Autowired
-    private StringRedisTemplate redisTemplate;
+    private RateLimiterService rateLimiterService;
 
     @Autowired
     private HttpServletRequest request;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     /**
      * 速率限制拦截
      */
     @Around("@annotation(rateLimit)")
     public Object rateLimit(ProceedingJoinPoint joinPoint, RateLimit rateLimit) throws Throwable {
-        // 获取客户端标识（IP地址）
-        String clientIp = getClientIp(request);
-
-        // 生成速率限制键
-        String key = generateKey(rateLimit.key(), joinPoint, clientIp);
+        // 生成各维度的速率限制键
+        String endpoint = generateEndpointKey(rateLimit.key(), joinPoint);
+        List<String> keys = generateKeys(endpoint, rateLimit, joinPoint);
 
         // 获取限制参数
         int maxRequests = rateLimit.requests();
         Duration duration = parseDuration(rateLimit.per());
 
+        RateLimiterService.Decision decision;
         try {
-            // 尝试增加计数
-            Long currentCount = redisTemplate.opsForValue().increment(key);
+            decision = rateLimiterService.tryAcquire(keys, maxRequests, duration);
+        } catch (Exception e) {
+            log.error("速率限制检查失败", e);
+            recordDecision(endpoint, "error");
+            // 出错时允许请求通过（降级策略）
+            return joinPoint.proceed();
+        }
 
-            if (currentCount == null) {
-                // 如果键不存在，设置初始值
-                redisTemplate.opsForValue().set(key, "1", duration);
-                return joinPoint.proceed();
-            }
+        recordDecision(endpoint, decision.allowed() ? "allowed" : "blocked");
+        if (!decision.allowed()) {
+            // 超过限制
+            log.warn("速率限制触发: key={}, max={}, window={}, retryAfterMs={}",
+                decision.blockedKey(), maxRequests, rateLimit.per(), decision.retryAfterMs());
+
+            throw new RateLimitExceededException(
+                String.format("请求过于频繁，请在%s后重试", formatWindow(rateLimit.per())),
+                decision.blockedKey(), maxRequests, rateLimit.per(),
+                Math.max(1, (decision.retryAfterMs() + 999) / 1000)
+            );
+        }
+
+        // 允许请求
+        return joinPoint.proceed();
+    }
 
-            if (currentCount == 1) {
-                // 第一次访问，设置过期时间
-                redisTemplate.opsForValue().set(key, String.valueOf(currentCount), duration);
+    /**
+     * 生成各维度的速率限制键
+     * 格式：rate_limit:{端点}:{维度}:{标识}；无法取得标识的维度（如匿名请求的用户ID）被跳过
+     */
+    private List<String> generateKeys(String endpoint, RateLimit rateLimit, ProceedingJoinPoint joinPoint) {
+        List<String> keys = new ArrayList<>(rateLimit.by().length);
+        for (RateLimitDimension dimension : rateLimit.by()) {
+            String identity = switch (dimension) {
+                case IP -> getClientIp(request);
+                case EMAIL -> getEmail(joinPoint.getArgs());
+                case USER_ID -> getUserId();
+            };
+            if (identity != null) {
+                keys.add(KEY_PREFIX + endpoint + ":" + dimension.name().toLowerCase(Locale.ROOT) + ":" + identity);
             }
+        }
+        return keys;
+    }
 
-            if (currentCount > maxRequests) {
-                // 超过限制
-                log.warn("速率限制触发: key={}, current={}, max={}, window={}",
-                    key, currentCount, maxRequests, rateLimit.per());
+    /**
+     * 记录限流决策；端点键来自注解或方法名，取值有限
+     */
+    private void recordDecision(String endpoint, String decision) {
+        Counter.builder("rate.limit.decisions")
+                .tag("endpoint", endpoint)
+                .tag("decision", decision)
+                .register(meterRegistry)
+                .increment();
+    }
 
-                throw new RateLimitExceededException(
-                    String.format("请求过于频繁，请在%s后重试", formatWindow(rateLimit.per())),
-                    key, maxRequests, rateLimit.per()
-                );
+    /**
+     * 从请求参数中提取邮箱，以哈希形式作为键，避免在 Redis 中保存明文邮箱
+     */
+    private String getEmail(Object[] args) {
+        for (Object arg : args) {
+            if (arg == null || arg instanceof String || arg instanceof HttpServletRequest) {
+                continue;
             }
+            BeanWrapperImpl wrapper = new BeanWrapperImpl(arg);
+            if (wrapper.isReadableProperty("email")
+                    && wrapper.getPropertyValue("email") instanceof String email && !email.isBlank()) {
+                byte[] hash = CryptoPrimitives.sha256(
+                        email.trim().toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8));
+                return Base64.getUrlEncoder().withoutPadding().encodeToString(hash).substring(0, 22);
+            }
+        }
+        return null;
+    }
 
-            // 允许请求
-            return joinPoint.proceed();
-
-        } catch (RateLimitExceededException e) {
-            throw e;
-        } catch (Exception e) {
-            log.error("速率限制检查失败", e);
-            // 出错时允许请求通过（降级策略）
-            return joinPoint.proceed();
+    /**
+     * 获取已认证用户的用户ID
+     */
+    private String getUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || !(authentication.getPrincipal() instanceof String userId)
+                || "anonymousUser".equals(userId)) {
+            return null;
         }
+        return userId;
     }
 
     /**
      * 获取客户端IP地址
+     * X-Forwarded-For 由 Tomcat RemoteIpValve 解析（server.forward-headers-strategy=native）：
+     * 仅当直连方属于 server.tomcat.remoteip.internal-proxies 时，才从右向左跳过可信代理取第一个不可信地址，
+     * 客户端自行伪造的头部无法改变限流键
      */
     private String getClientIp(HttpServletRequest request) {
-        String ip = request.getHeader("X-Forwarded-For");
-        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-            ip = request.getHeader("X-Real-IP");
-        }
-        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-            ip = request.getRemoteAddr();
-        }
-        // 处理多个IP的情况（X-Forwarded-For可能包含多个IP）
-        if (ip != null && ip.contains(",")) {
-            ip = ip.split(",")[0].trim();
-        }
+        String ip = request.getRemoteAddr();
         return ip != null ? ip : "unknown";
     }
 
     /**
-     * 生成速率限制键
+     * 生成端点键
      */
-    private String generateKey(String customKey, ProceedingJoinPoint joinPoint, String clientIp) {
+    private String generateEndpointKey(String customKey, ProceedingJoinPoint joinPoint) {
         if (customKey != null && !customKey.isEmpty()) {
-            return "rate_limit:" + customKey + ":" + clientIp;
+            return customKey;
         }
 
         String className = joinPoint.getTarget().getClass().getSimpleName();
         String methodName = joinPoint.getSignature().getName();
-        return "rate_limit:" + className + ":" + methodName + ":" + clientIp;
+        return className + ":" + methodName;
     }
 
     /**
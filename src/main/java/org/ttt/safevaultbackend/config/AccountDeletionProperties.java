@@ -0,0 +1,42 @@
+package org.ttt.safevaultbackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 账户删除配置属性
+ * 从 application.yml 读取配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "account.deletion")
+public class AccountDeletionProperties {
+
+    /**
+     * 单批处理的分享记录数
+     * 每批在独立事务中执行，控制单个事务的持锁时间
+     */
+    private int chunkSize = 500;
+
+    /**
+     * 删除请求中同步执行的最大批次数
+     * 小账户可在请求内直接完成，超出部分交给后台任务继续
+     */
+    private int inlineSteps = 10;
+
+    /**
+     * 后台任务执行间隔（毫秒）
+     */
+    private long workerIntervalMs = 10000L;
+
+    /**
+     * 后台任务每轮处理的最大任务数
+     */
+    private int workerBatchSize = 10;
+
+    /**
+     * 单个任务连续失败的最大次数，超过后标记为 FAILED
+     */
+    private int maxAttempts = 5;
+}
@@ -0,0 +1,26 @@
+package org.ttt.safevaultbackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 管理端点访问配置属性
+ * 从 application.yml 读取配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "actuator-security")
+public class ActuatorSecurityProperties {
+
+    /**
+     * 运维账号用户名（HTTP Basic）
+     */
+    private String username = "ops";
+
+    /**
+     * 运维账号密码，带编码前缀，如 {bcrypt}$2a$10$...
+     * 为空时除 health 和 prometheus 外的管理端点一律拒绝访问
+     */
+    private String password = "";
+}
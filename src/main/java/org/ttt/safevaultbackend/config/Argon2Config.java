@@ -13,6 +13,8 @@ import org.springframework.context.annotation.Configuration;
  * - parallelism: 并行度
  * - output-length: 输出长度（字节）
  * - salt-length: 盐值长度（字节）
+ * - max-concurrent: 同时进行的哈希计算上限
+ * - queue-capacity: 等待计算的请求数上限
  */
 @Data
 @Configuration
@@ -46,4 +48,16 @@ public class Argon2Config {
      * 盐值长度（字节）
      */
     private int saltLength = 16;
+
+    /**
+     * 同时进行的哈希/验证计算上限，0 表示使用 CPU 核数
+     * 每次计算占用 memory-cost 大小的本地内存，计算在同样数量的平台线程上执行；
+     * 启用虚拟线程后请求线程数不再受 Tomcat 线程池限制，由此限制并发，避免内存耗尽和 JNA 本地调用占住载体线程
+     */
+    private int maxConcurrent = 0;
+
+    /**
+     * 等待哈希线程的请求数上限，超出时拒绝请求而不是无限排队
+     */
+    private int queueCapacity = 1000;
 }
@@ -0,0 +1,127 @@
+package org.ttt.safevaultbackend.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.AsyncConfigurer;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 异步执行配置
+ * 启用 @Async，并提供有界、具名的线程池：
+ * - taskExecutor：@Async 默认线程池，队列满时由调用线程执行（背压，不丢任务）；
+ * - auditExecutor：审计写入专用线程池，队列满时丢弃（审计缓冲区会在下一次定时刷新时补上）；
+ * - maintenanceExecutor：维护任务专用线程池，批次间的暂停和长时间运行不占用调度线程。
+ *
+ * 启用虚拟线程（spring.threads.virtual.enabled=true 且运行在 JDK 21+，见 virtual-threads profile）时，
+ * taskExecutor 改为每个任务一个虚拟线程，并发数由 async.virtual-concurrency-limit 限制，
+ * 避免瞬时大量任务耗尽数据库连接池；auditExecutor 仍使用平台线程，保持其丢弃语义。
+ */
+@Slf4j
+@Configuration
+@EnableAsync
+@RequiredArgsConstructor
+public class AsyncConfig implements AsyncConfigurer {
+
+    @Value("${async.core-pool-size:4}")
+    private int corePoolSize;
+
+    @Value("${async.max-pool-size:8}")
+    private int maxPoolSize;
+
+    @Value("${async.queue-capacity:500}")
+    private int queueCapacity;
+
+    @Value("${async.virtual-concurrency-limit:64}")
+    private int virtualConcurrencyLimit;
+
+    private final AuditProperties auditProperties;
+
+    private final MaintenanceProperties maintenanceProperties;
+
+    /**
+     * @Async 默认线程池
+     * 同时注册为 applicationTaskExecutor，供 Spring MVC 异步请求等使用
+     */
+    @Bean(name = {"taskExecutor", "applicationTaskExecutor"})
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public ThreadPoolTaskExecutor taskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("async-");
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * @Async 默认执行器（虚拟线程）
+     * 超出并发上限时提交线程阻塞等待（虚拟线程阻塞不占用载体线程），与平台线程池的 CallerRuns 背压对应
+     */
+    @Bean(name = {"taskExecutor", "applicationTaskExecutor"})
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public SimpleAsyncTaskExecutor virtualTaskExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("async-vt-");
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(virtualConcurrencyLimit);
+        executor.setTaskTerminationTimeout(30000L);
+        log.info("@Async 使用虚拟线程执行: concurrencyLimit={}", virtualConcurrencyLimit);
+        return executor;
+    }
+
+    /**
+     * 审计写入线程池
+     * 刷新任务可合并，队列只需容纳少量待执行的刷新
+     */
+    @Bean(name = "auditExecutor")
+    public ThreadPoolTaskExecutor auditExecutor() {
+        int auditThreads = auditProperties.getFlushThreads();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("audit-");
+        executor.setCorePoolSize(auditThreads);
+        executor.setMaxPoolSize(auditThreads);
+        executor.setQueueCapacity(auditThreads * 2);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 维护任务线程池
+     * 同一任务同时只提交一次（见 MaintenanceJobRunner#submit），队列满时丢弃，由下一次调度补上
+     */
+    @Bean(name = "maintenanceExecutor")
+    public ThreadPoolTaskExecutor maintenanceExecutor() {
+        int threads = maintenanceProperties.getExecutorThreads();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("maintenance-");
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(16);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
+    @Override
+    public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
+        return (ex, method, params) ->
+                log.error("异步任务执行失败: method={}", method.getName(), ex);
+    }
+}
@@ -0,0 +1,106 @@
+package org.ttt.safevaultbackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 审计写入配置属性
+ * 从 application.yml 读取配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "audit")
+public class AuditProperties {
+
+    /**
+     * 溢出策略
+     */
+    public enum OverflowPolicy {
+        /**
+         * 丢弃新记录并计数（请求线程永不阻塞）
+         */
+        DROP,
+
+        /**
+         * 由请求线程直接同步写入（不丢记录，但写入延迟回到请求路径上）
+         */
+        CALLER_RUNS
+    }
+
+    /**
+     * 过期分区的处理方式
+     */
+    public enum RetentionMode {
+        /**
+         * 直接删除分区表
+         */
+        DROP,
+
+        /**
+         * 从父表分离，保留为独立表供归档后手动删除
+         */
+        DETACH
+    }
+
+    /**
+     * 每类记录的缓冲区容量
+     */
+    private int bufferCapacity = 10000;
+
+    /**
+     * 每次 JDBC 批量写入的记录数；缓冲区积累到该数量时立即触发刷新
+     */
+    private int batchSize = 200;
+
+    /**
+     * 定时刷新间隔（毫秒）
+     */
+    private long flushIntervalMs = 500;
+
+    /**
+     * 刷新线程数
+     */
+    private int flushThreads = 2;
+
+    /**
+     * 缓冲区满时的处理策略
+     */
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+
+    /**
+     * 提前创建的未来月份分区数
+     */
+    private int partitionMonthsAhead = 6;
+
+    /**
+     * 验证事件保留天数；整月都早于该期限的分区被清理
+     */
+    private int eventRetentionDays = 90;
+
+    /**
+     * 验证历史保留天数；整月都早于该期限的分区被清理
+     */
+    private int historyRetentionDays = 60;
+
+    /**
+     * 过期分区的处理方式
+     */
+    private RetentionMode retentionMode = RetentionMode.DROP;
+
+    /**
+     * 是否启用 Redis 滑动窗口计数器
+     * 关闭时频率限制检查直接查询审计表
+     */
+    private boolean counterEnabled = true;
+
+    /**
+     * 计数器时间桶长度（秒），窗口起点所在的桶整体计入，统计结果最多偏多一个桶
+     */
+    private long counterBucketSeconds = 60;
+
+    /**
+     * 计数器保留的最长窗口（小时）；查询更长的窗口时回退到审计表
+     */
+    private long counterMaxWindowHours = 24;
+}
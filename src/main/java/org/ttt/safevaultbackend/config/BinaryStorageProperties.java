@@ -0,0 +1,34 @@
+package org.ttt.safevaultbackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 加密数据二进制存储配置属性
+ * 从 application.yml 读取配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "binary-storage")
+public class BinaryStorageProperties {
+
+    /**
+     * 写入模式
+     * DUAL：同时写入 Base64 文本列和 bytea 列，切换期间可随时回退到旧版本；
+     * BINARY：只写入 bytea 列，文本列置空（无法按标准 Base64 解码的值仍保留文本）；
+     * AUTO：收缩迁移 V30_1 标记切换（binary_migration_targets.cutover_at）前按 DUAL，之后按 BINARY
+     */
+    private WriteMode writeMode = WriteMode.AUTO;
+
+    /**
+     * AUTO 模式下检查切换状态的间隔（毫秒）
+     */
+    private long cutoverCheckIntervalMs = 60000L;
+
+    public enum WriteMode {
+        DUAL,
+        BINARY,
+        AUTO
+    }
+}
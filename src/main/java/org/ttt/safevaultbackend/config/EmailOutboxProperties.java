@@ -0,0 +1,61 @@
+package org.ttt.safevaultbackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 邮件发件箱配置属性
+ * 从 application.yml 读取配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "email.outbox")
+public class EmailOutboxProperties {
+
+    /**
+     * 发送工作线程数，同时也是 SMTP 连接池上限
+     */
+    private int workerThreads = 4;
+
+    /**
+     * 每个工作线程一次领取并通过同一连接发送的邮件数
+     */
+    private int batchSize = 20;
+
+    /**
+     * 轮询发件箱的间隔（毫秒）
+     * 新邮件入队后会立即唤醒发送，轮询只负责重试和兜底
+     */
+    private long pollIntervalMs = 1000;
+
+    /**
+     * 最大发送次数，超过后标记为 FAILED
+     */
+    private int maxAttempts = 5;
+
+    /**
+     * 首次重试等待时间（秒），之后每次翻倍
+     */
+    private long initialBackoffSeconds = 30;
+
+    /**
+     * 最长重试等待时间（秒）
+     */
+    private long maxBackoffSeconds = 1800;
+
+    /**
+     * 领取租约时长（秒），超时未完成的邮件可被重新领取
+     */
+    private long lockTimeoutSeconds = 120;
+
+    /**
+     * SMTP 连接空闲多久后关闭（毫秒）
+     */
+    private long transportIdleTimeoutMs = 60000;
+
+    /**
+     * 已发送记录保留天数
+     */
+    private int retentionDays = 7;
+}
@@ -0,0 +1,50 @@
+package org.ttt.safevaultbackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * JFR 持续记录配置属性
+ * 从 application.yml 读取配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "jfr")
+public class FlightRecorderProperties {
+
+    /**
+     * 是否在启动时开始持续记录
+     */
+    private boolean enabled = false;
+
+    /**
+     * JDK 内置事件配置：default（约 1% 开销）或 profile（更多采样，开销更高）
+     */
+    private String settings = "default";
+
+    /**
+     * 记录保留时长（分钟），超出后丢弃最早的数据
+     */
+    private long maxAgeMinutes = 360L;
+
+    /**
+     * 记录保留大小（MB）
+     */
+    private long maxSizeMb = 256L;
+
+    /**
+     * 自定义事件的最短持续时间（毫秒），短于此值的事件不记录，0 表示全部记录
+     */
+    private long eventThresholdMs = 0L;
+
+    /**
+     * 导出记录的目录，默认系统临时目录
+     */
+    private String dumpDirectory;
+
+    /**
+     * 导出文件的保留时长（分钟），应足够完成下载，超出后由定时任务删除
+     */
+    private long dumpRetentionMinutes = 30L;
+}
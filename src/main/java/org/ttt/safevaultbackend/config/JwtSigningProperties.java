@@ -0,0 +1,63 @@
+package org.ttt.safevaultbackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * JWT 签名配置属性
+ * 从 application.yml 读取配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "jwt.signing")
+public class JwtSigningProperties {
+
+    /**
+     * 签名算法：RS256（默认，使用 jwt.rsa.* 密钥）、ES256、EdDSA
+     */
+    private String algorithm = "RS256";
+
+    /**
+     * 未启用轮换时 ES256/EdDSA 使用的静态私钥（Base64 PKCS8）
+     */
+    private String privateKey;
+
+    /**
+     * 未启用轮换时 ES256/EdDSA 使用的静态公钥（Base64 X.509）
+     */
+    private String publicKey;
+
+    /**
+     * 是否启用密钥自动轮换
+     * 启用后签名密钥保存在 jwt_signing_keys 表中，各节点共享
+     */
+    private boolean rotationEnabled = false;
+
+    /**
+     * 密钥轮换周期（小时），默认30天
+     */
+    private long rotationIntervalHours = 720;
+
+    /**
+     * 新密钥发布后延迟激活的时间（秒）
+     * 应大于密钥刷新间隔，确保所有节点在新密钥签发令牌前已加载其公钥；
+     * 小于两个刷新间隔时按两个刷新间隔处理，首个轮换密钥同样适用
+     */
+    private long activationDelaySeconds = 300;
+
+    /**
+     * 各节点从数据库刷新密钥的间隔（毫秒）
+     */
+    private long refreshIntervalMs = 60000;
+
+    /**
+     * 轮换检查间隔（毫秒）
+     */
+    private long rotationCheckIntervalMs = 300000;
+
+    /**
+     * 加密存储私钥的密钥加密密钥（Base64 编码的 256 位 AES 密钥），启用轮换时必填
+     */
+    private String keyEncryptionKey;
+}
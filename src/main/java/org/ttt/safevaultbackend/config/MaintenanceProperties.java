@@ -0,0 +1,76 @@
+package org.ttt.safevaultbackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 维护任务配置属性
+ * 从 application.yml 读取配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "maintenance")
+public class MaintenanceProperties {
+
+    /**
+     * 任务租约有效期（毫秒）
+     * 每个批次提交后续期；持有者崩溃后租约到期，其他实例可从检查点继续
+     */
+    private long leaseTtlMs = 60000L;
+
+    /**
+     * 默认批次大小
+     */
+    private int batchSize = 1000;
+
+    /**
+     * 默认批次间隔（毫秒），给在线请求让出数据库资源
+     */
+    private long pauseMs = 100L;
+
+    /**
+     * 单次运行的最长时间（毫秒），超出后剩余部分留给下一次调度从检查点继续
+     */
+    private long maxRunMs = 600000L;
+
+    /**
+     * 检查点保留时间（小时）
+     */
+    private long checkpointTtlHours = 168L;
+
+    /**
+     * 维护任务线程数，即同时运行的不同任务数上限
+     */
+    private int executorThreads = 2;
+
+    /**
+     * 按任务名覆盖的配置
+     */
+    private Map<String, Job> jobs = new HashMap<>();
+
+    /**
+     * 单个任务的配置，未设置的字段使用默认值
+     */
+    @Data
+    public static class Job {
+
+        /**
+         * 是否启用
+         */
+        private boolean enabled = true;
+
+        /**
+         * 批次大小
+         */
+        private Integer batchSize;
+
+        /**
+         * 批次间隔（毫秒）
+         */
+        private Long pauseMs;
+    }
+}
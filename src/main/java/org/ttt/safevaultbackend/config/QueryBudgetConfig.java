@@ -0,0 +1,42 @@
+package org.ttt.safevaultbackend.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.ttt.safevaultbackend.persistence.QueryBudgetInterceptor;
+import org.ttt.safevaultbackend.persistence.QueryStatisticsLoadListener;
+
+/**
+ * 请求查询预算配置
+ * 注册实体加载监听器和请求拦截器；语句计数由 hibernate.session.events.auto 注册的会话监听器完成
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "query-budget", name = "enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+public class QueryBudgetConfig implements WebMvcConfigurer {
+
+    private final QueryBudgetProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void registerLoadListener() {
+        entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class)
+                .appendListeners(EventType.POST_LOAD, new QueryStatisticsLoadListener());
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new QueryBudgetInterceptor(properties, meterRegistry));
+    }
+}
@@ -0,0 +1,60 @@
+package org.ttt.safevaultbackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 请求查询预算配置属性
+ * 从 application.yml 读取配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "query-budget")
+public class QueryBudgetProperties {
+
+    /**
+     * 是否按请求统计查询
+     */
+    private boolean enabled = true;
+
+    /**
+     * 超出预算时的处理方式
+     */
+    private Mode mode = Mode.WARN;
+
+    /**
+     * 默认每个请求允许的 SQL 语句数，0 表示不限
+     */
+    private int defaultMaxStatements = 20;
+
+    /**
+     * 按端点覆盖的预算，键为 控制器类名.方法名（如 FriendController.getFriendList）
+     */
+    private Map<String, Integer> endpoints = new HashMap<>();
+
+    /**
+     * 超出预算的处理方式
+     */
+    public enum Mode {
+        /**
+         * 记录警告日志和指标
+         */
+        WARN,
+
+        /**
+         * 在超出预算的语句执行前抛出异常（测试环境使用）
+         */
+        FAIL
+    }
+
+    /**
+     * 获取端点的预算
+     */
+    public int maxStatementsFor(String endpoint) {
+        return endpoints.getOrDefault(endpoint, defaultMaxStatements);
+    }
+}
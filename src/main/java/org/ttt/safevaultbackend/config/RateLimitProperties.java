@@ -0,0 +1,48 @@
+package org.ttt.safevaultbackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 速率限制配置属性
+ * 从 application.yml 读取配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+
+    /**
+     * 是否启用本地租约层
+     * false 时每次检查都访问 Redis（精确）
+     */
+    private boolean localEnabled = true;
+
+    /**
+     * 每次从 Redis 租用的令牌数占桶容量的比例
+     * 越大 Redis 往返越少，但租出未用的令牌在归还前对其他节点不可见，限流越偏严格；
+     * 租约不足 2 个令牌时退化为逐次访问 Redis，只保留本地拒绝
+     */
+    private double leaseFraction = 0.2;
+
+    /**
+     * 单次租约的最大令牌数
+     */
+    private int maxLeaseSize = 50;
+
+    /**
+     * 租约有效期（毫秒），不超过限流窗口；到期未用完的令牌异步归还 Redis
+     */
+    private long leaseTtlMs = 5000;
+
+    /**
+     * 本地桶最大数量
+     */
+    private long localMaxKeys = 100000;
+
+    /**
+     * 归还过期租约的间隔（毫秒）
+     */
+    private long syncIntervalMs = 5000;
+}
@@ -0,0 +1,115 @@
+package org.ttt.safevaultbackend.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+import org.ttt.safevaultbackend.persistence.ReadYourWritesTracker;
+import org.ttt.safevaultbackend.persistence.ReplicaLagMonitor;
+import org.ttt.safevaultbackend.persistence.ReplicaRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 只读副本数据源配置（replica.enabled=true 时生效）
+ * 主库连接池使用 spring.datasource / spring.datasource.hikari，每个副本使用 replica.nodes[n] 及其 hikari 配置，
+ * 对外提供的 DataSource 为 LazyConnectionDataSourceProxy(ReplicaRoutingDataSource)，JPA 和 Flyway 都通过它获取连接，
+ * 业务代码无需修改：@Transactional(readOnly = true) 即可读副本。
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "replica", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class ReplicaDataSourceConfig implements DisposableBean {
+
+    private final ReplicaRoutingProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Environment environment;
+
+    private final Map<String, HikariDataSource> replicaPools = new LinkedHashMap<>();
+
+    /**
+     * 主库连接池
+     */
+    @Bean
+    @ConfigurationProperties(prefix = "spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        HikariDataSource dataSource = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor() {
+        List<ReplicaRoutingProperties.Node> nodes = properties.getNodes();
+        for (int i = 0; i < nodes.size(); i++) {
+            ReplicaRoutingProperties.Node node = nodes.get(i);
+            String name = StringUtils.hasText(node.getName()) ? node.getName() : "replica-" + i;
+            replicaPools.put(name, createReplicaPool(i, name, node));
+        }
+        log.info("只读副本路由已启用: replicas={}, maxLagMs={}, stickyMs={}",
+                replicaPools.keySet(), properties.getMaxLagMs(), properties.getStickyMs());
+        return new ReplicaLagMonitor(new LinkedHashMap<>(replicaPools), properties, meterRegistry);
+    }
+
+    @Bean
+    public ReadYourWritesTracker readYourWritesTracker(StringRedisTemplate redisTemplate) {
+        return new ReadYourWritesTracker(redisTemplate, properties);
+    }
+
+    /**
+     * 对外数据源：延迟获取连接，在第一条语句执行时按事务只读标记路由
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource,
+                                 ReplicaLagMonitor replicaLagMonitor,
+                                 ReadYourWritesTracker readYourWritesTracker) {
+        ReplicaRoutingDataSource routing =
+                new ReplicaRoutingDataSource(replicaLagMonitor, readYourWritesTracker, meterRegistry);
+        Map<Object, Object> targets = new HashMap<>(replicaPools);
+        targets.put(ReplicaRoutingDataSource.PRIMARY, primaryDataSource);
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(primaryDataSource);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    @Override
+    public void destroy() {
+        replicaPools.values().forEach(HikariDataSource::close);
+    }
+
+    private HikariDataSource createReplicaPool(int index, String name, ReplicaRoutingProperties.Node node) {
+        HikariDataSource dataSource = new HikariDataSource();
+        // 连接池参数与 spring.datasource.hikari 相同，按副本单独配置
+        Binder.get(environment).bind("replica.nodes[" + index + "].hikari", Bindable.ofInstance(dataSource));
+        dataSource.setJdbcUrl(node.getUrl());
+        dataSource.setUsername(node.getUsername());
+        dataSource.setPassword(node.getPassword());
+        dataSource.setPoolName(name);
+        dataSource.setReadOnly(true);
+        dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return dataSource;
+    }
+}
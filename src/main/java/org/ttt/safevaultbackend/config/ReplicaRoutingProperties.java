@@ -0,0 +1,68 @@
+package org.ttt.safevaultbackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 只读副本路由配置属性
+ * 从 application.yml 读取配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "replica")
+public class ReplicaRoutingProperties {
+
+    /**
+     * 是否将只读事务路由到副本
+     */
+    private boolean enabled = false;
+
+    /**
+     * 允许的最大复制延迟（毫秒），超过的副本暂停接收读请求
+     */
+    private long maxLagMs = 1000L;
+
+    /**
+     * WAL 接收进程允许的最长静默时间（毫秒），超过时视为与主库失联并摘除副本
+     * 主库空闲时每隔 wal_sender_timeout 的一半发送心跳（默认 30 秒），该值应大于心跳间隔
+     */
+    private long maxReceiverSilenceMs = 35000L;
+
+    /**
+     * 复制延迟检查间隔（毫秒）
+     */
+    private long lagCheckIntervalMs = 5000L;
+
+    /**
+     * 读己之写窗口（毫秒）：用户的写事务提交后，该用户的只读事务在此时间内仍走主库
+     */
+    private long stickyMs = 3000L;
+
+    /**
+     * 副本列表
+     */
+    private List<Node> nodes = new ArrayList<>();
+
+    /**
+     * 单个副本
+     * 连接池参数在 replica.nodes[n].hikari 下配置，与 spring.datasource.hikari 相同
+     */
+    @Data
+    public static class Node {
+
+        /**
+         * 副本名，用于连接池名和指标标签
+         */
+        private String name;
+
+        private String url;
+
+        private String username;
+
+        private String password;
+    }
+}
@@ -6,15 +6,21 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.ttt.safevaultbackend.service.EmailVerificationHistoryService;
+import org.ttt.safevaultbackend.service.AccountService;
+import org.ttt.safevaultbackend.service.AuditPartitionService;
+import org.ttt.safevaultbackend.service.BinaryBackfillService;
+import org.ttt.safevaultbackend.service.ContactShareService;
+import org.ttt.safevaultbackend.service.MaintenanceJob;
+import org.ttt.safevaultbackend.service.MaintenanceJobRunner;
 import org.ttt.safevaultbackend.service.RegistrationCleanupService;
-import org.ttt.safevaultbackend.service.VerificationEventService;
-
-import java.time.LocalDateTime;
+import org.ttt.safevaultbackend.service.TokenRevokeService;
+import org.ttt.safevaultbackend.service.UserExistenceFilter;
 
 /**
  * 定时任务配置
  * 执行数据清理和维护任务
+ * 清理类任务通过 MaintenanceJobRunner 在专用线程池中执行：多副本部署时同一任务只有持有租约的实例运行，
+ * 并按批次提交、记录检查点；调度线程只负责提交，不被长时间运行的任务占用
  */
 @Component
 @RequiredArgsConstructor
@@ -22,43 +28,111 @@ import java.time.LocalDateTime;
 @Slf4j
 public class ScheduledTasks {
 
-    private final VerificationEventService verificationEventService;
-    private final EmailVerificationHistoryService historyService;
+    private final MaintenanceJobRunner maintenanceJobRunner;
+    private final AuditPartitionService auditPartitionService;
     private final RegistrationCleanupService registrationCleanupService;
+    private final TokenRevokeService tokenRevokeService;
+    private final ContactShareService contactShareService;
+    private final UserExistenceFilter userExistenceFilter;
+    private final AccountService accountService;
+    private final BinaryBackfillService binaryBackfillService;
 
     @Value("${registration.cleanup-scheduled-enabled:true}")
     private boolean cleanupEnabled;
 
     /**
-     * 清理90天前的验证事件
+     * 预建审计表未来月份的分区
+     * 每天凌晨1点执行
+     */
+    @Scheduled(cron = "0 0 1 * * ?")
+    public void ensureAuditPartitions() {
+        runJob("audit-partition-create",
+                (checkpoint, batchSize) -> MaintenanceJob.Chunk.done(auditPartitionService.ensurePartitions()));
+    }
+
+    /**
+     * 清理过期的验证事件（默认保留90天）
+     * 按月分区整体删除，不再逐行 DELETE
      * 每天凌晨2点执行
      */
     @Scheduled(cron = "0 0 2 * * ?")
     public void cleanupOldVerificationEvents() {
-        try {
-            LocalDateTime cutoffDate = LocalDateTime.now().minusDays(90);
-            int deleted = verificationEventService.cleanupExpiredEvents(cutoffDate);
-            log.info("定时任务: 清理了 {} 条过期验证事件记录", deleted);
-        } catch (Exception e) {
-            log.error("定时任务执行失败: 清理验证事件记录", e);
-        }
+        runJob("verification-event-retention",
+                (checkpoint, batchSize) -> MaintenanceJob.Chunk.done(auditPartitionService.dropExpiredEventPartitions()));
     }
 
     /**
-     * 清理60天前的已使用验证历史
+     * 清理过期的验证历史（默认保留60天）
+     * 按月分区整体删除，不再逐行 DELETE
      * 每天凌晨3点执行
      */
     @Scheduled(cron = "0 0 3 * * ?")
     public void cleanupOldVerificationHistory() {
+        runJob("verification-history-retention",
+                (checkpoint, batchSize) -> MaintenanceJob.Chunk.done(auditPartitionService.dropExpiredHistoryPartitions()));
+    }
+
+    /**
+     * 分批清理过期的令牌撤销记录
+     * 每天凌晨2点30分执行
+     */
+    @Scheduled(cron = "0 30 2 * * ?")
+    public void cleanupExpiredRevokedTokens() {
+        runJob("revoked-token-cleanup", tokenRevokeService::cleanupExpiredTokens);
+    }
+
+    /**
+     * 分批将过期的联系人分享标记为 EXPIRED
+     * 每小时执行一次
+     */
+    @Scheduled(cron = "0 0 * * * ?")
+    public void updateExpiredShares() {
+        runJob("contact-share-expiry", contactShareService::updateExpiredShares);
+    }
+
+    /**
+     * 重建用户存在性过滤器，清除已删除用户留下的误判位
+     * 每天凌晨4点30分执行
+     */
+    @Scheduled(cron = "0 30 4 * * ?")
+    public void rebuildUserExistenceFilter() {
+        runJob("user-existence-filter-rebuild", userExistenceFilter::rebuild);
+    }
+
+    /**
+     * 过滤器不存在（首次部署、Redis 数据丢失或写入失败后失效）时立即重建
+     * 每5分钟检查一次
+     */
+    @Scheduled(initialDelay = 30000, fixedDelay = 300000)
+    public void ensureUserExistenceFilter() {
         try {
-            LocalDateTime cutoffDate = LocalDateTime.now().minusDays(60);
-            int deleted = historyService.cleanupUsedHistory(cutoffDate);
-            log.info("定时任务: 清理了 {} 条已使用验证历史记录", deleted);
+            if (!userExistenceFilter.isReady()) {
+                log.info("用户存在性过滤器未构建，开始重建");
+                rebuildUserExistenceFilter();
+            }
         } catch (Exception e) {
-            log.error("定时任务执行失败: 清理验证历史记录", e);
+            log.error("定时任务执行失败: 检查用户存在性过滤器", e);
         }
     }
 
+    /**
+     * 分批将 Base64 文本转换到 bytea 影子列并校验（见 V30 迁移），全部完成后每次只查询一次登记表
+     * 每10分钟执行一次
+     */
+    @Scheduled(cron = "0 5-59/10 * * * ?")
+    public void backfillBinaryColumns() {
+        runJob("binary-backfill", binaryBackfillService::backfill);
+    }
+
+    /**
+     * 切换到只写二进制列后，分批清空已转换行的文本列（见 V30_1 收缩迁移），全部完成后每次只查询一次登记表
+     * 每10分钟执行一次
+     */
+    @Scheduled(cron = "0 7-59/10 * * * ?")
+    public void clearConvertedTextColumns() {
+        runJob("binary-text-clear", binaryBackfillService::clearText);
+    }
+
     /**
      * 清理超时未完成注册的用户
      * 每5分钟执行一次（可配置）
@@ -69,14 +143,29 @@ public class ScheduledTasks {
             log.debug("注册清理任务已禁用，跳过执行");
             return;
         }
+        runJob("registration-timeout-cleanup", registrationCleanupService::cleanupTimeoutRegistrations);
+    }
 
+    /**
+     * 继续执行未完成的账户删除任务
+     * 每10秒执行一次（可配置）
+     */
+    @Scheduled(fixedDelayString = "${account.deletion.worker-interval-ms:10000}")
+    public void resumeAccountDeletions() {
         try {
-            int deleted = registrationCleanupService.cleanupTimeoutRegistrations();
-            if (deleted > 0) {
-                log.info("定时任务: 清理了 {} 个超时未完成注册的用户", deleted);
+            int processed = accountService.resumePendingDeletions();
+            if (processed > 0) {
+                log.info("定时任务: 继续处理了 {} 个账户删除任务", processed);
             }
         } catch (Exception e) {
-            log.error("定时任务执行失败: 清理超时注册用户", e);
+            log.error("定时任务执行失败: 继续账户删除任务", e);
         }
     }
+
+    /**
+     * 提交到维护任务线程池运行，同一时刻只有一个实例执行
+     */
+    private void runJob(String name, MaintenanceJob job) {
+        maintenanceJobRunner.submit(name, job);
+    }
 }
@@ -0,0 +1,37 @@
+package org.ttt.safevaultbackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 用户缓存配置属性
+ * 从 application.yml 读取配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "user-cache")
+public class UserCacheProperties {
+
+    /**
+     * 是否启用用户缓存
+     * false 时所有查询直接访问数据库
+     */
+    private boolean enabled = true;
+
+    /**
+     * 本地缓存最大条目数（按 userId 和 email 分别计算）
+     */
+    private long localMaxSize = 10000;
+
+    /**
+     * 本地缓存过期时间（秒）
+     * 失效消息丢失时的兜底时限
+     */
+    private long localTtlSeconds = 60;
+
+    /**
+     * Redis 缓存过期时间（秒）
+     */
+    private long redisTtlSeconds = 600;
+}
@@ -0,0 +1,32 @@
+package org.ttt.safevaultbackend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 用户存在性过滤器配置属性
+ * 从 application.yml 读取配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "user-existence-filter")
+public class UserExistenceFilterProperties {
+
+    /**
+     * 是否启用
+     * false 时所有存在性检查直接查询数据库
+     */
+    private boolean enabled = true;
+
+    /**
+     * 预期用户数，与误判率共同决定位图大小和哈希函数个数
+     * 用户数超过该值后误判率上升，需调大后重建
+     */
+    private long expectedInsertions = 1_000_000L;
+
+    /**
+     * 目标误判率
+     */
+    private double falsePositiveRate = 0.01;
+}
@@ -8,10 +8,15 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.ttt.safevaultbackend.dto.response.AccountDeletionProgressResponse;
 import org.ttt.safevaultbackend.dto.response.DeleteAccountResponse;
+import org.ttt.safevaultbackend.entity.AccountDeletionTask;
+import org.ttt.safevaultbackend.enums.AccountDeletionStatus;
 import org.ttt.safevaultbackend.service.AccountService;
 import org.ttt.safevaultbackend.security.JwtTokenProvider;
 
@@ -24,7 +29,7 @@ import org.ttt.safevaultbackend.security.JwtTokenProvider;
 @RequiredArgsConstructor
 @Tag(name = "账户管理", description = "账户级操作，如删除账户")
 @SecurityRequirement(name = "bearerAuth")
-public class AccountController {
+public class AccountController extends BaseController {
 
     private final AccountService accountService;
     private final JwtTokenProvider tokenProvider;
@@ -32,12 +37,13 @@ public class AccountController {
     /**
      * 删除账户
      * 删除当前登录用户及其所有相关数据
+     * 请求内即完成删除时返回 200；数据量较大需后台继续时返回 202 和任务ID
      *
      * @param authorizationHeader JWT Token (Authorization: Bearer <token>)
      * @return 删除结果
      */
     @DeleteMapping
-    @Operation(summary = "删除账户", description = "永久删除当前用户账户及所有相关数据（密码库、分享记录等）")
+    @Operation(summary = "删除账户", description = "永久删除当前用户账户及所有相关数据（密码库、分享记录等），大账户转为后台分批删除")
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<DeleteAccountResponse> deleteAccount(
             @RequestHeader("Authorization") String authorizationHeader) {
@@ -58,12 +64,16 @@ public class AccountController {
             }
 
             // 执行账户删除
-            accountService.deleteAccount(userId);
+            AccountDeletionTask task = accountService.requestDeletion(userId);
+            boolean completed = task.getStatus() == AccountDeletionStatus.COMPLETED;
 
             return ResponseEntity
-                    .ok(DeleteAccountResponse.builder()
+                    .status(completed ? HttpStatus.OK : HttpStatus.ACCEPTED)
+                    .body(DeleteAccountResponse.builder()
                             .success(true)
-                            .message("账户已删除")
+                            .message(completed ? "账户已删除" : "账户删除处理中")
+                            .taskId(task.getTaskId())
+                            .status(task.getStatus().name())
                             .build());
 
         } catch (Exception e) {
@@ -75,4 +85,19 @@ public class AccountController {
                             .build());
         }
     }
+
+    /**
+     * 查询账户删除进度
+     * 需要认证，只能查询当前用户自己的删除任务。
+     * 删除开始时用户令牌即已撤销，JwtAuthenticationFilter 仅对本端点仍接受这些令牌
+     *
+     * @param taskId 删除任务ID
+     * @return 删除进度
+     */
+    @GetMapping("/deletion/{taskId}")
+    @Operation(summary = "查询账户删除进度", description = "根据删除任务ID查询当前用户分批删除的进度")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<AccountDeletionProgressResponse> getDeletionProgress(@PathVariable String taskId) {
+        return ResponseEntity.ok(accountService.getDeletionProgress(taskId, getCurrentUserId()));
+    }
 }
@@ -21,6 +21,7 @@ import org.ttt.safevaultbackend.dto.response.RemoveDeviceResponse;
 import org.ttt.safevaultbackend.dto.response.VerifyEmailResponse;
 import org.ttt.safevaultbackend.dto.response.VerificationStatusResponse;
 import org.ttt.safevaultbackend.dto.DeviceInfo;
+import org.ttt.safevaultbackend.enums.RateLimitDimension;
 import org.ttt.safevaultbackend.service.AuthService;
 
 /**
@@ -73,7 +74,7 @@ public class AuthController extends BaseController {
 
     @PostMapping("/register-email")
     @Operation(summary = "邮箱注册（第一步）", description = "使用邮箱和用户名发起注册，发送验证邮件")
-    @RateLimit(requests = 3, per = "minute")
+    @RateLimit(requests = 3, per = "minute", by = {RateLimitDimension.IP, RateLimitDimension.EMAIL})
     public ResponseEntity<EmailRegistrationResponse> registerWithEmail(
             @Valid @RequestBody EmailRegistrationRequest request) {
         EmailRegistrationResponse response = authService.registerWithEmail(request);
@@ -90,7 +91,7 @@ public class AuthController extends BaseController {
 
     @PostMapping("/resend-verification")
     @Operation(summary = "重新发送验证邮件", description = "重新发送邮箱验证邮件")
-    @RateLimit(requests = 10, per = "hour")
+    @RateLimit(requests = 10, per = "hour", by = {RateLimitDimension.IP, RateLimitDimension.EMAIL})
     public ResponseEntity<EmailRegistrationResponse> resendVerification(
             @Valid @RequestBody ResendVerificationRequest request) {
         EmailRegistrationResponse response = authService.resendVerificationEmail(request);
@@ -116,7 +117,7 @@ public class AuthController extends BaseController {
 
     @PostMapping("/login-by-email")
     @Operation(summary = "邮箱登录", description = "使用邮箱和派生密钥签名登录（Challenge-Response 机制）")
-    @RateLimit(requests = 5, per = "minute")
+    @RateLimit(requests = 5, per = "minute", by = {RateLimitDimension.IP, RateLimitDimension.EMAIL})
     public ResponseEntity<EmailLoginResponse> loginByEmail(
             @Valid @RequestBody LoginByEmailRequest request) {
         EmailLoginResponse response = authService.loginByEmail(request);
@@ -125,7 +126,7 @@ public class AuthController extends BaseController {
 
     @PostMapping("/login-precheck")
     @Operation(summary = "登录预检查", description = "获取服务器挑战码（nonce），用于 Challenge-Response 登录")
-    @RateLimit(requests = 10, per = "minute")
+    @RateLimit(requests = 10, per = "minute", by = {RateLimitDimension.IP, RateLimitDimension.EMAIL})
     public ResponseEntity<LoginPrecheckResponse> loginPrecheck(
             @Valid @RequestBody LoginPrecheckRequest request) {
         LoginPrecheckResponse response = authService.loginPrecheck(request);
@@ -151,9 +152,10 @@ public class AuthController extends BaseController {
 
     @GetMapping("/devices")
     @Operation(summary = "获取设备列表", description = "获取当前用户的所有设备列表")
-    public ResponseEntity<DeviceListResponse> getDevices() {
+    public ResponseEntity<DeviceListResponse> getDevices(
+            @RequestHeader(value = "X-Device-ID", required = false) String currentDeviceId) {
         String userId = getCurrentUserId();
-        java.util.List<DeviceInfo> devices = authService.getUserDevices(userId);
+        java.util.List<DeviceInfo> devices = authService.getUserDevices(userId, currentDeviceId);
         DeviceListResponse response = DeviceListResponse.builder()
                 .devices(devices)
                 .totalDevices(devices.size())
@@ -165,9 +167,10 @@ public class AuthController extends BaseController {
     @Operation(summary = "移除设备", description = "移除指定的设备")
     public ResponseEntity<RemoveDeviceResponse> removeDevice(
             @io.swagger.v3.oas.annotations.Parameter(description = "要移除的设备 ID")
-            @PathVariable String deviceId) {
+            @PathVariable String deviceId,
+            @RequestHeader(value = "X-Device-ID", required = false) String currentDeviceId) {
         String userId = getCurrentUserId();
-        boolean removed = authService.removeDevice(userId, deviceId);
+        boolean removed = authService.removeDevice(userId, deviceId, currentDeviceId);
         RemoveDeviceResponse response = RemoveDeviceResponse.builder()
                 .success(removed)
                 .message(removed ? "设备已成功移除" : "设备不存在或移除失败")
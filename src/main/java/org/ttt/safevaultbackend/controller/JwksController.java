@@ -0,0 +1,37 @@
+package org.ttt.safevaultbackend.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.ttt.safevaultbackend.security.JwtKeyService;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWKS 控制器
+ * 发布 JWT 验证公钥，供其他服务按 kid 验证令牌
+ */
+@RestController
+@RequiredArgsConstructor
+@Tag(name = "JWKS", description = "JWT 验证公钥")
+public class JwksController {
+
+    private final JwtKeyService keyService;
+
+    /**
+     * 获取 JWT 验证公钥集合
+     * 包含当前签名密钥、待激活密钥以及仍在验证期内的已退役密钥
+     */
+    @GetMapping("/.well-known/jwks.json")
+    @Operation(summary = "获取 JWKS", description = "返回所有可用于验证 JWT 的公钥")
+    public ResponseEntity<Map<String, Object>> getJwks() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(5, TimeUnit.MINUTES).cachePublic())
+                .body(Map.of("keys", keyService.publicJwks()));
+    }
+}
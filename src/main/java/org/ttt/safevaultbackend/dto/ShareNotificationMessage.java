@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 /**
  * 分享通知消息
  */
@@ -16,6 +18,10 @@ public class ShareNotificationMessage {
 
     private String type;
     private String shareId;
+    /**
+     * 批量通知时涉及的全部分享 ID（单条通知时为空）
+     */
+    private List<String> shareIds;
     private String fromUserId;
     private String fromDisplayName;
     private String message;
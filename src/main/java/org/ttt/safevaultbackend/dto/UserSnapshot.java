@@ -0,0 +1,50 @@
+package org.ttt.safevaultbackend.dto;
+
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
+import org.ttt.safevaultbackend.entity.User;
+import org.ttt.safevaultbackend.entity.UserKeyMaterial;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户只读快照
+ * 用户缓存中保存的不可变对象，不是 JPA 托管实体，修改用户数据仍需通过 UserRepository。
+ * 快照会写入共享的 Redis，不包含密码验证器等凭据，需要时由 UserKeyMaterialRepository 从数据库读取
+ */
+@Value
+@Builder
+@Jacksonized
+public class UserSnapshot {
+
+    String userId;
+    String email;
+    String username;
+    String displayName;
+    Boolean emailVerified;
+    String registrationStatus;
+    String publicKey;
+    Integer maxDevices;
+    LocalDateTime createdAt;
+
+    /**
+     * 从用户实体和密钥材料创建快照
+     *
+     * @param user        用户实体
+     * @param keyMaterial 密钥材料；尚未完成注册的用户没有密钥材料，可为 null
+     */
+    public static UserSnapshot from(User user, UserKeyMaterial keyMaterial) {
+        return UserSnapshot.builder()
+                .userId(user.getUserId())
+                .email(user.getEmail())
+                .username(user.getUsername())
+                .displayName(user.getDisplayName())
+                .emailVerified(user.getEmailVerified())
+                .registrationStatus(user.getRegistrationStatus())
+                .publicKey(keyMaterial != null ? keyMaterial.getPublicKey() : null)
+                .maxDevices(user.getMaxDevices())
+                .createdAt(user.getCreatedAt())
+                .build();
+    }
+}
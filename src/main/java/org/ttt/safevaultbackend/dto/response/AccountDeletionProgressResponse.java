@@ -0,0 +1,47 @@
+package org.ttt.safevaultbackend.dto.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 账户删除进度响应
+ */
+@Schema(description = "账户删除进度响应")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountDeletionProgressResponse {
+
+    @Schema(description = "删除任务ID")
+    private String taskId;
+
+    @Schema(description = "任务状态: PENDING, RUNNING, COMPLETED, FAILED")
+    private String status;
+
+    @Schema(description = "当前阶段")
+    private String phase;
+
+    @Schema(description = "已撤销的分享数")
+    private int revokedShares;
+
+    @Schema(description = "已删除的分享记录数")
+    private int deletedShares;
+
+    @Schema(description = "已删除的好友关系及请求数")
+    private int deletedFriendRecords;
+
+    @Schema(description = "已通知的接收方用户数")
+    private int notifiedUsers;
+
+    @Schema(description = "创建时间")
+    private LocalDateTime createdAt;
+
+    @Schema(description = "完成时间")
+    private LocalDateTime completedAt;
+}
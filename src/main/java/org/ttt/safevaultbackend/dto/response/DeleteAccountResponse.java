@@ -21,4 +21,10 @@ public class DeleteAccountResponse {
 
     @Schema(description = "响应消息")
     private String message;
+
+    @Schema(description = "删除任务ID，可用于查询删除进度")
+    private String taskId;
+
+    @Schema(description = "删除任务状态: PENDING, RUNNING, COMPLETED, FAILED")
+    private String status;
 }
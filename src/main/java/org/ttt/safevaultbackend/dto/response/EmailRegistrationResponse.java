@@ -16,6 +16,13 @@ public class EmailRegistrationResponse {
 
     private String message;
     private String email;
+    /**
+     * 邮件是否已实际发出；验证邮件改为经发件箱异步发送后，响应时尚未发出，始终为 false
+     */
     private boolean emailSent;
+    /**
+     * 邮件投递状态：QUEUED 表示已写入发件箱，等待异步发送
+     */
+    private String emailStatus;
     private long expiresInSeconds; // 令牌有效期（秒）
 }
@@ -0,0 +1,108 @@
+package org.ttt.safevaultbackend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.ttt.safevaultbackend.enums.AccountDeletionPhase;
+import org.ttt.safevaultbackend.enums.AccountDeletionStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * 账户删除任务实体
+ * 记录分批删除账户的进度，进程重启后可从当前阶段继续执行
+ */
+@Entity
+@Table(name = "account_deletion_tasks", indexes = {
+    @Index(name = "idx_account_deletion_tasks_user_id", columnList = "user_id"),
+    @Index(name = "idx_account_deletion_tasks_status", columnList = "status")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountDeletionTask {
+
+    @Id
+    @Column(name = "task_id", length = 36)
+    private String taskId;
+
+    /**
+     * 被删除的用户 ID
+     * 不设外键：用户记录会在最后阶段被删除，任务记录需要保留
+     */
+    @Column(name = "user_id", nullable = false, length = 36)
+    private String userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    @Builder.Default
+    private AccountDeletionStatus status = AccountDeletionStatus.PENDING;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "phase", nullable = false, length = 30)
+    @Builder.Default
+    private AccountDeletionPhase phase = AccountDeletionPhase.REVOKE_SHARES;
+
+    @Column(name = "revoked_shares", nullable = false)
+    @Builder.Default
+    private Integer revokedShares = 0;
+
+    @Column(name = "deleted_shares", nullable = false)
+    @Builder.Default
+    private Integer deletedShares = 0;
+
+    @Column(name = "deleted_friend_records", nullable = false)
+    @Builder.Default
+    private Integer deletedFriendRecords = 0;
+
+    @Column(name = "notified_users", nullable = false)
+    @Builder.Default
+    private Integer notifiedUsers = 0;
+
+    /**
+     * 连续失败次数，成功执行一批后清零
+     */
+    @Column(name = "attempts", nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    /**
+     * 乐观锁版本，防止多个实例同时推进同一任务
+     */
+    @Version
+    @Column(name = "lock_version", nullable = false)
+    private Long lockVersion;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    /**
+     * 任务是否已结束（成功或失败）
+     */
+    public boolean isFinished() {
+        return status == AccountDeletionStatus.COMPLETED || status == AccountDeletionStatus.FAILED;
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,36 @@
+package org.ttt.safevaultbackend.entity;
+
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.ttt.safevaultbackend.config.BinaryStorageProperties;
+import org.ttt.safevaultbackend.service.BinaryBackfillService;
+
+/**
+ * 二进制列同步监听器
+ * 写入前按 binary-storage.write-mode 将 Base64 文本解码到 bytea 列，BINARY 模式（及已切换的 AUTO 模式）下不再写入文本列
+ */
+@Component
+@RequiredArgsConstructor
+public class BinaryColumnSyncListener {
+
+    private final BinaryStorageProperties properties;
+    private final BinaryBackfillService backfillService;
+
+    @PrePersist
+    @PreUpdate
+    public void onWrite(Object entity) {
+        if (entity instanceof BinaryColumns columns) {
+            columns.syncBinaryColumns(keepText());
+        }
+    }
+
+    private boolean keepText() {
+        return switch (properties.getWriteMode()) {
+            case DUAL -> true;
+            case BINARY -> false;
+            case AUTO -> !backfillService.isCutOver();
+        };
+    }
+}
@@ -0,0 +1,16 @@
+package org.ttt.safevaultbackend.entity;
+
+/**
+ * 含 Base64 文本列和 bytea 影子列的实体（见 V30 迁移）
+ * 实体对外仍以 Base64 字符串读写，写入前由 BinaryColumnSyncListener 同步二进制列
+ */
+public interface BinaryColumns {
+
+    /**
+     * 同步二进制列
+     * 文本列有值而二进制列为空时解码；keepText 为 false 且已转换时清空文本列
+     *
+     * @param keepText 是否保留文本列（DUAL 写入模式）
+     */
+    void syncBinaryColumns(boolean keepText);
+}
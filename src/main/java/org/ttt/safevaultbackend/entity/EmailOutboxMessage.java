@@ -0,0 +1,79 @@
+package org.ttt.safevaultbackend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.ttt.safevaultbackend.enums.EmailOutboxStatus;
+import org.ttt.safevaultbackend.enums.EmailType;
+
+import java.time.LocalDateTime;
+
+/**
+ * 发件箱邮件实体
+ * 业务请求只写入发件箱，由后台工作线程异步发送
+ */
+@Entity
+@Table(name = "email_outbox")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmailOutboxMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "email_type", nullable = false, length = 30)
+    private EmailType emailType;
+
+    @Column(name = "recipient", nullable = false)
+    private String recipient;
+
+    /**
+     * 邮件中的链接（验证链接或重置链接）
+     */
+    @Column(name = "link_url", nullable = false, length = 1000)
+    private String linkUrl;
+
+    /**
+     * 关联的验证令牌，用于记录发送事件和更新验证历史
+     */
+    @Column(name = "verification_token")
+    private String verificationToken;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    @Builder.Default
+    private EmailOutboxStatus status = EmailOutboxStatus.PENDING;
+
+    @Column(name = "attempts", nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        if (nextAttemptAt == null) {
+            nextAttemptAt = createdAt;
+        }
+    }
+}
@@ -13,18 +13,13 @@ import java.time.LocalDateTime;
 /**
  * 邮箱验证历史记录实体
  * 用于追踪验证码/令牌的完整生命周期
+ * 表按 sent_at 月分区，数据库主键为 (id, sent_at)；id 由序列生成，仍全局唯一
  */
 @Entity
 @Table(name = "email_verification_history", indexes = {
-    @Index(name = "idx_email_verification_history_user_id", columnList = "user_id"),
-    @Index(name = "idx_email_verification_history_email", columnList = "email"),
-    @Index(name = "idx_email_verification_history_code", columnList = "verification_code"),
-    @Index(name = "idx_email_verification_history_token", columnList = "verification_token"),
-    @Index(name = "idx_email_verification_history_sent_at", columnList = "sent_at"),
-    @Index(name = "idx_email_verification_history_expires_at", columnList = "expires_at"),
-    @Index(name = "idx_email_verification_history_is_used", columnList = "is_used"),
     @Index(name = "idx_email_verification_history_user_sent", columnList = "user_id,sent_at"),
-    @Index(name = "idx_email_verification_history_email_expires", columnList = "email,expires_at")
+    @Index(name = "idx_email_verification_history_email_sent", columnList = "email,sent_at"),
+    @Index(name = "idx_email_verification_history_token", columnList = "verification_token")
 })
 @Data
 @Builder
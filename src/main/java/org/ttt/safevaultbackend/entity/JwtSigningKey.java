@@ -0,0 +1,64 @@
+package org.ttt.safevaultbackend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * JWT 签名密钥实体
+ * 启用密钥轮换时，各节点从此表加载签名密钥和验证公钥
+ */
+@Entity
+@Table(name = "jwt_signing_keys")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class JwtSigningKey {
+
+    /**
+     * 密钥 ID，写入 JWT 头部的 kid
+     */
+    @Id
+    @Column(name = "kid", length = 64)
+    private String kid;
+
+    /**
+     * 签名算法：RS256, ES256, EdDSA
+     */
+    @Column(name = "algorithm", nullable = false, length = 10)
+    private String algorithm;
+
+    /**
+     * Base64 编码的 X.509 公钥
+     */
+    @Column(name = "public_key", nullable = false, columnDefinition = "TEXT")
+    private String publicKey;
+
+    /**
+     * Base64(IV + 密文)，使用 KEK 以 AES-GCM 加密的 PKCS8 私钥
+     */
+    @Column(name = "private_key_encrypted", nullable = false, columnDefinition = "TEXT")
+    private String privateKeyEncrypted;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "activates_at", nullable = false)
+    private LocalDateTime activatesAt;
+
+    @Column(name = "retires_at")
+    private LocalDateTime retiresAt;
+
+    @Column(name = "expires_at")
+    private LocalDateTime expiresAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -7,14 +7,16 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * 用户实体
+ * 只保存身份和资料字段，按显示名称、邮箱等查找用户时不加载大字段：
+ * 公钥、加密私钥和密码验证器见 UserKeyMaterial，登录设备见 UserDevice，
+ * 用户的分享通过 ContactShareRepository 查询。
  */
 @Entity
 @Table(name = "users")
+@EntityListeners(UserCacheInvalidationListener.class)
 @Data
 @Builder
 @NoArgsConstructor
@@ -66,29 +68,12 @@ public class User {
     @Column(name = "last_verification_email_sent_at")
     private LocalDateTime lastVerificationEmailSentAt;
 
-    // 多设备支持
-    @Column(name = "devices", columnDefinition = "TEXT")
-    private String devices; // JSON array of registered devices
-
     // 最大设备数限制（安全加固第三阶段）
     @Column(name = "max_devices", nullable = false)
     @Builder.Default
     private Integer maxDevices = 5; // 默认最多5台设备同时登录
 
-    // 分享用密钥对
-    @Column(name = "public_key", nullable = false, columnDefinition = "TEXT")
-    private String publicKey; // RSA 公钥
-
-    @Column(name = "private_key_encrypted", columnDefinition = "TEXT")
-    private String privateKeyEncrypted; // 加密的 RSA 私钥
-
-    @Column(name = "private_key_iv", length = 24)
-    private String privateKeyIv; // 私钥加密的 IV
-
-    // 密码验证相关字段（用于邮箱账户）
-    @Column(name = "password_verifier", columnDefinition = "TEXT")
-    private String passwordVerifier;
-
+    // 密码验证相关字段（用于邮箱账户），密码验证器见 UserKeyMaterial
     @Column(name = "password_salt", length = 64)
     private String passwordSalt;
 
@@ -104,14 +89,6 @@ public class User {
     @Column(name = "updated_at", nullable = false)
     private LocalDateTime updatedAt;
 
-    @OneToMany(mappedBy = "fromUser", cascade = CascadeType.ALL, orphanRemoval = true)
-    @Builder.Default
-    private List<ContactShare> createdShares = new ArrayList<>();
-
-    @OneToMany(mappedBy = "toUser", cascade = CascadeType.ALL, orphanRemoval = true)
-    @Builder.Default
-    private List<ContactShare> receivedShares = new ArrayList<>();
-
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -0,0 +1,28 @@
+package org.ttt.safevaultbackend.entity;
+
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.ttt.safevaultbackend.service.UserCacheService;
+
+/**
+ * 用户缓存失效监听器
+ * 用户实体更新或删除时使对应的用户缓存失效（JPQL 批量语句不会触发，调用方需自行 evict）
+ */
+@Component
+@RequiredArgsConstructor
+public class UserCacheInvalidationListener {
+
+    /**
+     * 延迟获取，避免 EntityManagerFactory 与 UserRepository 之间的循环依赖
+     */
+    private final ObjectProvider<UserCacheService> userCacheService;
+
+    @PostUpdate
+    @PostRemove
+    public void onUserChanged(User user) {
+        userCacheService.ifAvailable(cache -> cache.evict(user.getUserId()));
+    }
+}
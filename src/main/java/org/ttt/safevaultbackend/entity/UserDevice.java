@@ -0,0 +1,62 @@
+package org.ttt.safevaultbackend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户登录设备实体
+ */
+@Entity
+@Table(name = "user_devices",
+    uniqueConstraints = @UniqueConstraint(name = "uk_user_devices_user_device", columnNames = {"user_id", "device_id"}),
+    indexes = @Index(name = "idx_user_devices_user_last_active", columnList = "user_id, last_active_at"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserDevice {
+
+    @Id
+    @Column(name = "id", length = 36)
+    private String id;
+
+    @Column(name = "user_id", length = 36, nullable = false)
+    private String userId;
+
+    @Column(name = "device_id", nullable = false)
+    private String deviceId;
+
+    @Column(name = "device_name")
+    private String deviceName;
+
+    @Column(name = "device_type", length = 50)
+    private String deviceType;
+
+    @Column(name = "os_version", length = 100)
+    private String osVersion;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * 最后活跃时间
+     * 已注册设备的登录只记录到 DeviceActivityTracker，由其批量刷新到此列
+     */
+    @Column(name = "last_active_at", nullable = false)
+    private LocalDateTime lastActiveAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+        if (lastActiveAt == null) {
+            lastActiveAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.ttt.safevaultbackend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.ttt.safevaultbackend.util.Base64Bytes;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户密钥材料实体
+ * 从 users 表拆分出的大字段（公钥、加密私钥、密码验证器），与用户一对一，按需通过 UserKeyMaterialRepository 加载
+ */
+@Entity
+@Table(name = "user_key_material")
+@EntityListeners({UserKeyMaterialCacheInvalidationListener.class, BinaryColumnSyncListener.class})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserKeyMaterial implements BinaryColumns {
+
+    @Id
+    @Column(name = "user_id", length = 36)
+    private String userId;
+
+    // 分享用密钥对
+    @Column(name = "public_key", columnDefinition = "TEXT")
+    private String publicKey; // RSA 公钥
+
+    @Column(name = "private_key_encrypted", columnDefinition = "TEXT")
+    private String privateKeyEncrypted; // 加密的 RSA 私钥（旧文本列，切换到 bytea 期间保留）
+
+    @Column(name = "private_key_encrypted_bytes")
+    private byte[] privateKeyEncryptedBytes; // 同一数据的二进制形式（V30）
+
+    @Column(name = "private_key_iv", length = 24)
+    private String privateKeyIv; // 私钥加密的 IV
+
+    // 密码验证相关字段（用于邮箱账户）
+    @Column(name = "password_verifier", columnDefinition = "TEXT")
+    private String passwordVerifier;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    /**
+     * 加密的 RSA 私钥（Base64）
+     * 双读：优先由二进制列编码，未转换的行回退到文本列
+     */
+    public String getPrivateKeyEncrypted() {
+        return Base64Bytes.read(privateKeyEncryptedBytes, privateKeyEncrypted);
+    }
+
+    /**
+     * 设置加密的 RSA 私钥（Base64），二进制列在写入前由 BinaryColumnSyncListener 重新计算
+     */
+    public void setPrivateKeyEncrypted(String privateKeyEncrypted) {
+        this.privateKeyEncrypted = privateKeyEncrypted;
+        this.privateKeyEncryptedBytes = null;
+    }
+
+    @Override
+    public void syncBinaryColumns(boolean keepText) {
+        if (privateKeyEncrypted != null && privateKeyEncryptedBytes == null) {
+            privateKeyEncryptedBytes = Base64Bytes.decodeOrNull(privateKeyEncrypted);
+        }
+        if (!keepText && privateKeyEncryptedBytes != null) {
+            privateKeyEncrypted = null;
+        }
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
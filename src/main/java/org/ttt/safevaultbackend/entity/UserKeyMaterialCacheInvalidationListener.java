@@ -0,0 +1,31 @@
+package org.ttt.safevaultbackend.entity;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.ttt.safevaultbackend.service.UserCacheService;
+
+/**
+ * 用户密钥材料缓存失效监听器
+ * 用户快照包含公钥，本地缓存还单独保存密码验证器，密钥材料写入或删除时使对应的用户缓存失效。
+ * 密钥材料在用户完成注册时才创建，新增时也需要失效（JPQL 批量语句不会触发，调用方需自行 evict）
+ */
+@Component
+@RequiredArgsConstructor
+public class UserKeyMaterialCacheInvalidationListener {
+
+    /**
+     * 延迟获取，避免 EntityManagerFactory 与 UserRepository 之间的循环依赖
+     */
+    private final ObjectProvider<UserCacheService> userCacheService;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onKeyMaterialChanged(UserKeyMaterial keyMaterial) {
+        userCacheService.ifAvailable(cache -> cache.evict(keyMaterial.getUserId()));
+    }
+}
@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.ttt.safevaultbackend.util.Base64Bytes;
 
 import java.time.LocalDateTime;
 
@@ -14,18 +15,22 @@ import java.time.LocalDateTime;
  */
 @Entity
 @Table(name = "user_private_keys")
+@EntityListeners(BinaryColumnSyncListener.class)
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class UserPrivateKey {
+public class UserPrivateKey implements BinaryColumns {
 
     @Id
     @Column(name = "user_id", length = 36)
     private String userId;
 
-    @Column(name = "encrypted_private_key", nullable = false, columnDefinition = "TEXT")
-    private String encryptedPrivateKey;
+    @Column(name = "encrypted_private_key", columnDefinition = "TEXT")
+    private String encryptedPrivateKey; // 旧文本列，切换到 bytea 期间保留
+
+    @Column(name = "encrypted_private_key_bytes")
+    private byte[] encryptedPrivateKeyBytes; // 同一数据的二进制形式（V30）
 
     @Column(name = "iv", nullable = false, length = 255)
     private String iv;
@@ -46,6 +51,32 @@ public class UserPrivateKey {
     @Column(name = "updated_at", nullable = false)
     private LocalDateTime updatedAt;
 
+    /**
+     * 加密私钥（Base64）
+     * 双读：优先由二进制列编码，未转换的行回退到文本列
+     */
+    public String getEncryptedPrivateKey() {
+        return Base64Bytes.read(encryptedPrivateKeyBytes, encryptedPrivateKey);
+    }
+
+    /**
+     * 设置加密私钥（Base64），二进制列在写入前由 BinaryColumnSyncListener 重新计算
+     */
+    public void setEncryptedPrivateKey(String encryptedPrivateKey) {
+        this.encryptedPrivateKey = encryptedPrivateKey;
+        this.encryptedPrivateKeyBytes = null;
+    }
+
+    @Override
+    public void syncBinaryColumns(boolean keepText) {
+        if (encryptedPrivateKey != null && encryptedPrivateKeyBytes == null) {
+            encryptedPrivateKeyBytes = Base64Bytes.decodeOrNull(encryptedPrivateKey);
+        }
+        if (!keepText && encryptedPrivateKeyBytes != null) {
+            encryptedPrivateKey = null;
+        }
+    }
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -0,0 +1,41 @@
+package org.ttt.safevaultbackend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户令牌纪元实体
+ * 撤销用户全部令牌时提升纪元，签发时间不晚于纪元的令牌视为已撤销
+ */
+@Entity
+@Table(name = "user_token_epochs")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserTokenEpoch {
+
+    @Id
+    @Column(name = "user_id", length = 36)
+    private String userId;
+
+    /**
+     * 纪元时间（Unix 毫秒）
+     */
+    @Column(name = "epoch_ms", nullable = false)
+    private Long epochMs;
+
+    /**
+     * 撤销原因
+     */
+    @Column(name = "revoke_reason", length = 50)
+    private String revokeReason;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.ttt.safevaultbackend.util.Base64Bytes;
 
 import java.time.LocalDateTime;
 
@@ -14,11 +15,12 @@ import java.time.LocalDateTime;
  */
 @Entity
 @Table(name = "user_vaults")
+@EntityListeners(BinaryColumnSyncListener.class)
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class UserVault {
+public class UserVault implements BinaryColumns {
 
     @Id
     @Column(name = "vault_id", length = 36)
@@ -28,8 +30,11 @@ public class UserVault {
     private String userId;
 
     // 加密的密码库数据（客户端加密，服务器无法解密）
-    @Column(name = "encrypted_data", nullable = false, columnDefinition = "TEXT")
-    private String encryptedData; // Base64 编码的 AES-256-GCM 加密数据
+    @Column(name = "encrypted_data", columnDefinition = "TEXT")
+    private String encryptedData; // Base64 编码的 AES-256-GCM 加密数据（旧文本列，切换到 bytea 期间保留）
+
+    @Column(name = "encrypted_data_bytes")
+    private byte[] encryptedDataBytes; // 同一数据的二进制形式（V30）
 
     @Column(name = "data_iv", nullable = false, length = 24)
     private String dataIv; // Base64 编码的 IV（96 bits）
@@ -59,6 +64,32 @@ public class UserVault {
     @Column(name = "updated_at", nullable = false)
     private LocalDateTime updatedAt;
 
+    /**
+     * 加密的密码库数据（Base64）
+     * 双读：优先由二进制列编码，未转换的行回退到文本列
+     */
+    public String getEncryptedData() {
+        return Base64Bytes.read(encryptedDataBytes, encryptedData);
+    }
+
+    /**
+     * 设置加密的密码库数据（Base64），二进制列在写入前由 BinaryColumnSyncListener 重新计算
+     */
+    public void setEncryptedData(String encryptedData) {
+        this.encryptedData = encryptedData;
+        this.encryptedDataBytes = null;
+    }
+
+    @Override
+    public void syncBinaryColumns(boolean keepText) {
+        if (encryptedData != null && encryptedDataBytes == null) {
+            encryptedDataBytes = Base64Bytes.decodeOrNull(encryptedData);
+        }
+        if (!keepText && encryptedDataBytes != null) {
+            encryptedData = null;
+        }
+    }
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
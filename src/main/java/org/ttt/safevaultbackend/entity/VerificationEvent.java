@@ -12,17 +12,13 @@ import java.time.LocalDateTime;
 /**
  * 邮箱验证事件实体
  * 用于记录所有验证相关的操作事件，支持审计和问题排查
+ * 表按 event_timestamp 月分区，数据库主键为 (id, event_timestamp)；id 由序列生成，仍全局唯一
  */
 @Entity
 @Table(name = "verification_events", indexes = {
-    @Index(name = "idx_verification_events_user_id", columnList = "user_id"),
-    @Index(name = "idx_verification_events_email", columnList = "email"),
-    @Index(name = "idx_verification_events_type", columnList = "event_type"),
-    @Index(name = "idx_verification_events_timestamp", columnList = "event_timestamp"),
-    @Index(name = "idx_verification_events_token", columnList = "verification_token"),
-    @Index(name = "idx_verification_events_success", columnList = "success"),
-    @Index(name = "idx_verification_events_user_type", columnList = "user_id,event_type"),
-    @Index(name = "idx_verification_events_user_timestamp", columnList = "user_id,event_timestamp")
+    @Index(name = "idx_verification_events_user_timestamp", columnList = "user_id,event_timestamp"),
+    @Index(name = "idx_verification_events_email_type_timestamp", columnList = "email,event_type,event_timestamp"),
+    @Index(name = "idx_verification_events_token", columnList = "verification_token")
 })
 @Data
 @Builder
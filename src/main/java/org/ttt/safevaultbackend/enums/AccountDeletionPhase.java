@@ -0,0 +1,37 @@
+package org.ttt.safevaultbackend.enums;
+
+/**
+ * 账户删除任务阶段枚举
+ * 按声明顺序依次执行，每个阶段可分多批完成，任务中断后从当前阶段继续
+ */
+public enum AccountDeletionPhase {
+    /**
+     * 撤销用户创建的活动分享并通知接收方
+     */
+    REVOKE_SHARES,
+
+    /**
+     * 删除用户发送和接收的所有分享记录
+     */
+    DELETE_SHARES,
+
+    /**
+     * 删除好友关系和好友请求
+     */
+    DELETE_FRIENDSHIPS,
+
+    /**
+     * 删除密码库和云端私钥
+     */
+    DELETE_VAULT,
+
+    /**
+     * 删除用户记录
+     */
+    DELETE_USER,
+
+    /**
+     * 全部完成
+     */
+    DONE
+}
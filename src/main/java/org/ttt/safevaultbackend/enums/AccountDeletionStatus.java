@@ -0,0 +1,26 @@
+package org.ttt.safevaultbackend.enums;
+
+/**
+ * 账户删除任务状态枚举
+ */
+public enum AccountDeletionStatus {
+    /**
+     * 已受理，等待执行
+     */
+    PENDING,
+
+    /**
+     * 执行中（可能分多批完成）
+     */
+    RUNNING,
+
+    /**
+     * 已完成
+     */
+    COMPLETED,
+
+    /**
+     * 多次重试后仍失败，需要人工介入
+     */
+    FAILED
+}
@@ -0,0 +1,26 @@
+package org.ttt.safevaultbackend.enums;
+
+/**
+ * 发件箱邮件状态枚举
+ */
+public enum EmailOutboxStatus {
+    /**
+     * 等待发送（含等待重试）
+     */
+    PENDING,
+
+    /**
+     * 已被工作线程领取，正在发送
+     */
+    SENDING,
+
+    /**
+     * 已提交给 SMTP 服务器
+     */
+    SENT,
+
+    /**
+     * 重试次数耗尽，放弃发送
+     */
+    FAILED
+}
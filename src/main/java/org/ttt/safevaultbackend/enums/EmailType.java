@@ -0,0 +1,16 @@
+package org.ttt.safevaultbackend.enums;
+
+/**
+ * 邮件类型枚举
+ */
+public enum EmailType {
+    /**
+     * 邮箱验证邮件
+     */
+    VERIFICATION,
+
+    /**
+     * 密码重置邮件
+     */
+    PASSWORD_RESET
+}
@@ -0,0 +1,22 @@
+package org.ttt.safevaultbackend.enums;
+
+/**
+ * 速率限制维度枚举
+ * 每个维度在同一端点下使用独立的令牌桶，任一维度耗尽即拒绝请求
+ */
+public enum RateLimitDimension {
+    /**
+     * 客户端 IP 地址
+     */
+    IP,
+
+    /**
+     * 请求体中的邮箱（email 属性），适用于登录、注册等匿名端点
+     */
+    EMAIL,
+
+    /**
+     * 已认证用户的用户ID
+     */
+    USER_ID
+}
@@ -1,6 +1,7 @@
 package org.ttt.safevaultbackend.exception;
 
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -77,6 +78,11 @@ public class GlobalExceptionHandler {
                 .path(request.getRequestURI())
                 .build();
 
+        if (ex.getRetryAfterSeconds() > 0) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                    .body(error);
+        }
         return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(error);
     }
 
@@ -0,0 +1,26 @@
+package org.ttt.safevaultbackend.exception;
+
+/**
+ * 查询预算超限异常
+ * query-budget.mode=FAIL 时，单次请求执行的 SQL 语句数超过预算后在下一条语句执行前抛出，
+ * 堆栈即指向多出的查询（通常是 N+1 的懒加载位置）
+ */
+public class QueryBudgetExceededException extends RuntimeException {
+
+    private final String scope;
+    private final int maxStatements;
+
+    public QueryBudgetExceededException(String scope, int maxStatements) {
+        super(String.format("查询预算超限: %s 最多允许 %d 条 SQL 语句", scope, maxStatements));
+        this.scope = scope;
+        this.maxStatements = maxStatements;
+    }
+
+    public String getScope() {
+        return scope;
+    }
+
+    public int getMaxStatements() {
+        return maxStatements;
+    }
+}
@@ -9,19 +9,27 @@ public class RateLimitExceededException extends RuntimeException {
     private final String limitKey;
     private final int maxRequests;
     private final String window;
+    private final long retryAfterSeconds;
 
     public RateLimitExceededException(String message) {
         super(message);
         this.limitKey = null;
         this.maxRequests = 0;
         this.window = null;
+        this.retryAfterSeconds = 0;
     }
 
     public RateLimitExceededException(String message, String limitKey, int maxRequests, String window) {
+        this(message, limitKey, maxRequests, window, 0);
+    }
+
+    public RateLimitExceededException(String message, String limitKey, int maxRequests, String window,
+                                      long retryAfterSeconds) {
         super(message);
         this.limitKey = limitKey;
         this.maxRequests = maxRequests;
         this.window = window;
+        this.retryAfterSeconds = retryAfterSeconds;
     }
 
     public String getLimitKey() {
@@ -35,4 +43,11 @@ public class RateLimitExceededException extends RuntimeException {
     public String getWindow() {
         return window;
     }
+
+    /**
+     * 建议的重试等待秒数，0 表示未知
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
 }
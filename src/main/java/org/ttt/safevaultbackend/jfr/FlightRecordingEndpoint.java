@@ -0,0 +1,35 @@
+package org.ttt.safevaultbackend.jfr;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.ttt.safevaultbackend.service.FlightRecorderService;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * JFR 记录导出端点
+ * GET /actuator/jfr 返回持续记录的 .jfr 文件（在管理端口提供，仅限运维账号）；未启用 jfr.enabled 时返回 503
+ */
+@Component
+@WebEndpoint(id = "jfr")
+@RequiredArgsConstructor
+public class FlightRecordingEndpoint {
+
+    private final FlightRecorderService flightRecorderService;
+
+    @ReadOperation(produces = "application/octet-stream")
+    public WebEndpointResponse<Resource> dump() throws IOException {
+        Optional<Path> file = flightRecorderService.dump();
+        if (file.isEmpty()) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_SERVICE_UNAVAILABLE);
+        }
+        return new WebEndpointResponse<>(new FileSystemResource(file.get()), WebEndpointResponse.STATUS_OK);
+    }
+}
@@ -0,0 +1,29 @@
+package org.ttt.safevaultbackend.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JWT 验证事件
+ * 事件持续时间即签名与有效期校验耗时
+ */
+@Name("org.ttt.safevault.JwtVerify")
+@Label("JWT Verify")
+@Category({"SafeVault", "Auth"})
+@Description("JWT 签名与有效期校验")
+@StackTrace(false)
+public class JwtVerifyEvent extends Event {
+
+    @Label("Algorithm")
+    public String algorithm;
+
+    @Label("Key ID")
+    public String keyId;
+
+    @Label("Valid")
+    public boolean valid;
+}
@@ -0,0 +1,42 @@
+package org.ttt.safevaultbackend.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * 密码哈希事件
+ * 事件持续时间为 Argon2 计算耗时，不含在哈希线程池中排队的时间（单独记录在 permitWait）
+ */
+@Name("org.ttt.safevault.PasswordHash")
+@Label("Password Hash")
+@Category({"SafeVault", "Auth"})
+@Description("Argon2id 哈希或验证")
+@StackTrace(false)
+public class PasswordHashEvent extends Event {
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Memory Cost")
+    @DataAmount(DataAmount.BYTES)
+    public long memoryCost;
+
+    @Label("Time Cost")
+    public int timeCost;
+
+    @Label("Parallelism")
+    public int parallelism;
+
+    @Label("Permit Wait")
+    @Timespan(Timespan.NANOSECONDS)
+    public long permitWait;
+
+    @Label("Success")
+    public boolean success;
+}
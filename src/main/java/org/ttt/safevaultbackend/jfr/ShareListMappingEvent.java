@@ -0,0 +1,27 @@
+package org.ttt.safevaultbackend.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 分享列表映射事件
+ * 事件持续时间为实体列表解码并映射为响应的耗时
+ */
+@Name("org.ttt.safevault.ShareListMapping")
+@Label("Share List Mapping")
+@Category({"SafeVault", "Share"})
+@Description("联系人分享列表解码与映射")
+@StackTrace(false)
+public class ShareListMappingEvent extends Event {
+
+    @Label("Direction")
+    @Description("sent 或 received")
+    public String direction;
+
+    @Label("Rows")
+    public int rows;
+}
@@ -0,0 +1,32 @@
+package org.ttt.safevaultbackend.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 密码库更新事件
+ * 事件持续时间为更新实体并保存的耗时（不含事务提交）
+ */
+@Name("org.ttt.safevault.VaultUpdate")
+@Label("Vault Update")
+@Category({"SafeVault", "Vault"})
+@Description("密码库同步写入")
+@StackTrace(false)
+public class VaultUpdateEvent extends Event {
+
+    @Label("Blob Size")
+    @DataAmount(DataAmount.BYTES)
+    public long blobBytes;
+
+    @Label("Version Delta")
+    @Description("新版本号与客户端版本号之差，大于 1 表示强制覆盖了其他设备的更新")
+    public long versionDelta;
+
+    @Label("Forced")
+    public boolean forced;
+}
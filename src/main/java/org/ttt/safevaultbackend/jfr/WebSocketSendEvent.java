@@ -0,0 +1,28 @@
+package org.ttt.safevaultbackend.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * WebSocket 发送事件
+ * 事件持续时间为转换消息并投递到代理的耗时
+ */
+@Name("org.ttt.safevault.WebSocketSend")
+@Label("WebSocket Send")
+@Category({"SafeVault", "WebSocket"})
+@Description("服务端推送的 WebSocket 消息")
+@StackTrace(false)
+public class WebSocketSendEvent extends Event {
+
+    @Label("Destination")
+    public String destination;
+
+    @Label("Payload Size")
+    @DataAmount(DataAmount.BYTES)
+    public long bytes;
+}
@@ -0,0 +1,88 @@
+package org.ttt.safevaultbackend.persistence;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.ttt.safevaultbackend.config.QueryBudgetProperties;
+
+/**
+ * 请求查询预算拦截器
+ * 每个控制器请求打开一个统计范围，请求结束后按端点记录语句数、加载实体数和 JDBC 耗时，
+ * 超出预算时记录警告（WARN）或在超出的语句处抛出异常（FAIL）。
+ *
+ * 指标（endpoint 标签为 控制器类名.方法名）：
+ * db.request.statements、db.request.rows、db.request.jdbc、db.request.budget.exceeded，
+ * 以及 db.request.connection.hold（连接持有时长）、db.request.connections（取得连接次数）
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class QueryBudgetInterceptor implements HandlerInterceptor {
+
+    private static final String SCOPE_ATTRIBUTE = QueryBudgetInterceptor.class.getName() + ".scope";
+
+    private final QueryBudgetProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod handlerMethod) {
+            String endpoint = handlerMethod.getBeanType().getSimpleName() + "." + handlerMethod.getMethod().getName();
+            QueryStatistics.Scope scope = QueryStatistics.open(endpoint,
+                    properties.maxStatementsFor(endpoint),
+                    properties.getMode() == QueryBudgetProperties.Mode.FAIL);
+            request.setAttribute(SCOPE_ATTRIBUTE, scope);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        if (!(request.getAttribute(SCOPE_ATTRIBUTE) instanceof QueryStatistics.Scope scope)) {
+            return;
+        }
+        request.removeAttribute(SCOPE_ATTRIBUTE);
+        scope.close();
+
+        String endpoint = scope.getName();
+        DistributionSummary.builder("db.request.statements")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry)
+                .record(scope.getStatements());
+        DistributionSummary.builder("db.request.rows")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry)
+                .record(scope.getRows());
+        Timer.builder("db.request.jdbc")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry)
+                .record(scope.getJdbcTime());
+        if (scope.getConnections() > 0) {
+            Timer.builder("db.request.connection.hold")
+                    .tag("endpoint", endpoint)
+                    .register(meterRegistry)
+                    .record(scope.getConnectionHoldTime());
+        }
+        DistributionSummary.builder("db.request.connections")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry)
+                .record(scope.getConnections());
+
+        if (scope.isExceeded()) {
+            Counter.builder("db.request.budget.exceeded")
+                    .tag("endpoint", endpoint)
+                    .register(meterRegistry)
+                    .increment();
+            log.warn("请求查询数超出预算: {}, budget={}, uri={}", scope, scope.getMaxStatements(), request.getRequestURI());
+        } else if (log.isDebugEnabled() && scope.getStatements() > 0) {
+            log.debug("请求查询统计: {}", scope);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package org.ttt.safevaultbackend.persistence;
+
+import org.ttt.safevaultbackend.exception.QueryBudgetExceededException;
+
+import java.time.Duration;
+
+/**
+ * 线程内的查询统计
+ * 由 {@link QueryStatisticsListener}（每个 Hibernate 会话一个，统计语句和连接持有时长）和 {@link QueryStatisticsLoadListener} 上报，
+ * 累加到当前线程所有打开的统计范围：请求范围由 {@link QueryBudgetInterceptor} 打开，
+ * 测试中可在其内部再打开范围统计单次调用。
+ *
+ * 没有打开的范围时上报只是一次 ThreadLocal 读取。
+ */
+public final class QueryStatistics {
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private QueryStatistics() {
+    }
+
+    /**
+     * 打开不限预算的统计范围
+     */
+    public static Scope open(String name) {
+        return open(name, 0, false);
+    }
+
+    /**
+     * 打开统计范围，使用后必须关闭（try-with-resources）
+     *
+     * @param name          范围名称（端点名）
+     * @param maxStatements 语句数预算，0 表示不限
+     * @param failOnExceed  超出预算时是否抛出 {@link QueryBudgetExceededException}
+     */
+    public static Scope open(String name, int maxStatements, boolean failOnExceed) {
+        Scope scope = new Scope(CURRENT.get(), name, maxStatements, failOnExceed);
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * 当前线程最内层的统计范围
+     *
+     * @return 范围；没有打开的范围时为 null
+     */
+    public static Scope current() {
+        return CURRENT.get();
+    }
+
+    static void statementStarted() {
+        for (Scope scope = CURRENT.get(); scope != null; scope = scope.parent) {
+            scope.onStatement();
+        }
+    }
+
+    static void statementFinished(long nanos) {
+        for (Scope scope = CURRENT.get(); scope != null; scope = scope.parent) {
+            scope.jdbcNanos += nanos;
+        }
+    }
+
+    static void connectionReleased(long heldNanos) {
+        for (Scope scope = CURRENT.get(); scope != null; scope = scope.parent) {
+            scope.connections++;
+            scope.connectionNanos += heldNanos;
+        }
+    }
+
+    static void rowsLoaded(long rows) {
+        for (Scope scope = CURRENT.get(); scope != null; scope = scope.parent) {
+            scope.rows += rows;
+        }
+    }
+
+    /**
+     * 统计范围
+     * 只在打开它的线程内访问，无需同步
+     */
+    public static final class Scope implements AutoCloseable {
+
+        private final Scope parent;
+        private final String name;
+        private final int maxStatements;
+        private final boolean failOnExceed;
+
+        private long statements;
+        private long rows;
+        private long jdbcNanos;
+        private long connections;
+        private long connectionNanos;
+        private boolean exceeded;
+        private boolean closed;
+
+        private Scope(Scope parent, String name, int maxStatements, boolean failOnExceed) {
+            this.parent = parent;
+            this.name = name;
+            this.maxStatements = maxStatements;
+            this.failOnExceed = failOnExceed;
+        }
+
+        private void onStatement() {
+            statements++;
+            if (maxStatements > 0 && statements > maxStatements && !exceeded) {
+                exceeded = true;
+                if (failOnExceed) {
+                    throw new QueryBudgetExceededException(name, maxStatements);
+                }
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getMaxStatements() {
+            return maxStatements;
+        }
+
+        /**
+         * 执行的 SQL 语句数（JDBC 批量执行计为一条）
+         */
+        public long getStatements() {
+            return statements;
+        }
+
+        /**
+         * 加载的实体数（含关联实体；投影和原生查询的结果行不计入）
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * 语句执行耗时合计
+         */
+        public Duration getJdbcTime() {
+            return Duration.ofNanos(jdbcNanos);
+        }
+
+        /**
+         * 已归还的 JDBC 连接数（每个 Hibernate 会话一次）
+         */
+        public long getConnections() {
+            return connections;
+        }
+
+        /**
+         * 连接持有时长合计（从会话获取连接到释放连接，包括语句之间的应用代码耗时）
+         * 范围关闭时仍未释放的连接不计入
+         */
+        public Duration getConnectionHoldTime() {
+            return Duration.ofNanos(connectionNanos);
+        }
+
+        /**
+         * 是否超出预算
+         */
+        public boolean isExceeded() {
+            return exceeded;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (parent != null) {
+                CURRENT.set(parent);
+            } else {
+                CURRENT.remove();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: statements=%d, rows=%d, jdbcTime=%dms, connectionHold=%dms",
+                    name, statements, rows, getJdbcTime().toMillis(), getConnectionHoldTime().toMillis());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.ttt.safevaultbackend.persistence;
+
+import org.hibernate.SessionEventListener;
+
+/**
+ * Hibernate 会话事件监听器
+ * 通过 hibernate.session.events.auto 为每个会话创建一个实例，统计语句执行次数、耗时和连接持有时长
+ *
+ * 连接持有时长从 Hibernate 取得连接开始计算，到释放连接为止；启用读副本路由时取得的是
+ * LazyConnectionDataSourceProxy 的代理连接，统计的是会话持有连接的时长上限。
+ */
+public class QueryStatisticsListener implements SessionEventListener {
+
+    private long statementStart;
+    private long batchStart;
+    private long connectionAcquired;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        QueryStatistics.statementStarted();
+        statementStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        QueryStatistics.statementFinished(System.nanoTime() - statementStart);
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        QueryStatistics.statementStarted();
+        batchStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        QueryStatistics.statementFinished(System.nanoTime() - batchStart);
+    }
+
+    @Override
+    public void jdbcConnectionAcquisitionEnd() {
+        connectionAcquired = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcConnectionReleaseEnd() {
+        if (connectionAcquired != 0) {
+            QueryStatistics.connectionReleased(System.nanoTime() - connectionAcquired);
+            connectionAcquired = 0;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package org.ttt.safevaultbackend.persistence;
+
+import org.hibernate.event.spi.PostLoadEvent;
+import org.hibernate.event.spi.PostLoadEventListener;
+
+/**
+ * 实体加载监听器
+ * 每加载一个实体计一行，用于发现一次请求加载了过多的实体（例如懒加载集合逐个初始化）
+ */
+public class QueryStatisticsLoadListener implements PostLoadEventListener {
+
+    @Override
+    public void onPostLoad(PostLoadEvent event) {
+        QueryStatistics.rowsLoaded(1);
+    }
+}
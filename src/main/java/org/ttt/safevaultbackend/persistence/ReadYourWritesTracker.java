@@ -0,0 +1,68 @@
+package org.ttt.safevaultbackend.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.ttt.safevaultbackend.config.ReplicaRoutingProperties;
+
+import java.time.Duration;
+
+/**
+ * 读己之写跟踪
+ * 已认证用户的写事务提交后在 Redis 中记录一个短期标记（所有实例共享），
+ * 标记有效期内该用户的只读事务走主库，避免同步密码库或创建分享后立即读取时读到副本上的旧数据。
+ * 匿名请求无法关联标记，读取刚由其他匿名请求写入的数据的流程（如验证邮件后轮询验证状态）不应标记只读。
+ */
+@Slf4j
+public class ReadYourWritesTracker {
+
+    private static final String KEY_PREFIX = "replica:sticky:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ReplicaRoutingProperties properties;
+
+    public ReadYourWritesTracker(StringRedisTemplate redisTemplate, ReplicaRoutingProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.properties = properties;
+    }
+
+    /**
+     * 当前已认证用户ID
+     *
+     * @return 用户ID；匿名请求或非请求线程为 null
+     */
+    public String currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || !(authentication.getPrincipal() instanceof String userId)
+                || "anonymousUser".equals(userId)) {
+            return null;
+        }
+        return userId;
+    }
+
+    /**
+     * 记录用户刚提交了写事务
+     */
+    public void markWritten(String userId) {
+        try {
+            redisTemplate.opsForValue().set(KEY_PREFIX + userId, "1", Duration.ofMillis(properties.getStickyMs()));
+        } catch (Exception e) {
+            log.warn("记录读己之写标记失败: userId={}, error={}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * 用户的读请求是否需要走主库
+     * Redis 不可用时返回 true，宁可多读主库也不返回旧数据
+     */
+    public boolean isSticky(String userId) {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.hasKey(KEY_PREFIX + userId));
+        } catch (Exception e) {
+            log.warn("读取读己之写标记失败: userId={}, error={}", userId, e.getMessage());
+            return true;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.ttt.safevaultbackend.persistence;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.ttt.safevaultbackend.config.ReplicaRoutingProperties;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 副本复制延迟监控
+ * 定期查询每个副本的回放延迟，延迟超过 replica.max-lag-ms 或无法连接的副本从读路由中摘除，恢复后自动加回。
+ * 启动后首次检查完成前没有可用副本，所有读请求走主库。
+ *
+ * 只有 WAL 接收进程处于 streaming 状态、且距最后一次收到主库消息不超过 replica.max-receiver-silence-ms
+ * 的副本才参与路由：与主库断开的副本 receive_lsn 不再前进，会一直显示"已回放完毕"，单看 LSN 会误判为无延迟。
+ * 监控账号需要 pg_read_all_stats 角色，否则 pg_stat_wal_receiver 的状态列不可见，副本始终被视为不可用。
+ *
+ * 指标：db.replica.lag（毫秒，不可用时为 -1），按副本名打标签。
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    /**
+     * 回放延迟：接收进程未在 streaming 或静默超过参数指定的毫秒数时为 -1（不可用），
+     * 没有待回放的 WAL 时为 0，否则为距最后一次回放事务的时间
+     */
+    private static final String LAG_SQL =
+            "SELECT CASE " +
+            "WHEN r.status IS DISTINCT FROM 'streaming' THEN -1 " +
+            "WHEN r.last_msg_receipt_time IS NULL " +
+            "  OR EXTRACT(EPOCH FROM now() - r.last_msg_receipt_time) * 1000 > ? THEN -1 " +
+            "WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0) END " +
+            "FROM (SELECT 1) one LEFT JOIN pg_stat_wal_receiver r ON true";
+
+    private final Map<String, DataSource> replicas;
+    private final ReplicaRoutingProperties properties;
+    private final Map<String, AtomicLong> lags = new LinkedHashMap<>();
+    private final AtomicInteger cursor = new AtomicInteger();
+
+    private volatile List<String> healthy = List.of();
+
+    public ReplicaLagMonitor(Map<String, DataSource> replicas, ReplicaRoutingProperties properties,
+                             MeterRegistry meterRegistry) {
+        this.replicas = replicas;
+        this.properties = properties;
+        for (String name : replicas.keySet()) {
+            AtomicLong lag = new AtomicLong(-1);
+            lags.put(name, lag);
+            Gauge.builder("db.replica.lag", lag, AtomicLong::get)
+                    .tag("replica", name)
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * 检查所有副本的复制延迟并更新可用列表
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${replica.lag-check-interval-ms:5000}")
+    public void refresh() {
+        List<String> available = new ArrayList<>(replicas.size());
+        for (Map.Entry<String, DataSource> entry : replicas.entrySet()) {
+            String name = entry.getKey();
+            long lag = measureLag(name, entry.getValue());
+            lags.get(name).set(lag);
+            if (lag >= 0 && lag <= properties.getMaxLagMs()) {
+                available.add(name);
+            }
+        }
+        if (!available.equals(healthy)) {
+            log.info("可用只读副本变化: {} -> {}", healthy, available);
+        }
+        healthy = List.copyOf(available);
+    }
+
+    /**
+     * 轮询选择一个可用副本
+     *
+     * @return 副本名；没有可用副本时为 null
+     */
+    public String nextHealthyReplica() {
+        List<String> current = healthy;
+        if (current.isEmpty()) {
+            return null;
+        }
+        return current.get(Math.floorMod(cursor.getAndIncrement(), current.size()));
+    }
+
+    private long measureLag(String name, DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(LAG_SQL)) {
+            statement.setLong(1, properties.getMaxReceiverSilenceMs());
+            try (ResultSet rs = statement.executeQuery()) {
+                long lag = rs.next() ? Math.round(rs.getDouble(1)) : -1;
+                if (lag < 0 && lags.get(name).get() >= 0) {
+                    log.warn("副本 WAL 接收进程未在复制或与主库失联: replica={}", name);
+                }
+                return lag;
+            }
+        } catch (Exception e) {
+            log.warn("检查副本复制延迟失败: replica={}, error={}", name, e.getMessage());
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.ttt.safevaultbackend.persistence;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 主库/只读副本路由数据源
+ * 只读事务（@Transactional(readOnly = true)）路由到复制延迟在阈值内的副本，其余全部走主库：
+ * - 没有可用副本时回退到主库；
+ * - 用户在读己之写窗口内（刚提交过写事务）时走主库；
+ * - 已认证用户的写事务提交后登记读己之写标记。
+ *
+ * 路由在取得物理连接时决定，必须包在 LazyConnectionDataSourceProxy 中使用，
+ * 使连接推迟到事务的只读标记设置之后、第一条语句执行时才获取。
+ *
+ * 指标：db.routing 按目标（primary/replica）和原因计数。
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+
+    private final ReplicaLagMonitor lagMonitor;
+    private final ReadYourWritesTracker tracker;
+
+    private final Counter writeCounter;
+    private final Counter replicaCounter;
+    private final Counter stickyCounter;
+    private final Counter fallbackCounter;
+
+    public ReplicaRoutingDataSource(ReplicaLagMonitor lagMonitor, ReadYourWritesTracker tracker,
+                                    MeterRegistry meterRegistry) {
+        this.lagMonitor = lagMonitor;
+        this.tracker = tracker;
+        this.writeCounter = routingCounter(meterRegistry, PRIMARY, "write");
+        this.replicaCounter = routingCounter(meterRegistry, "replica", "read");
+        this.stickyCounter = routingCounter(meterRegistry, PRIMARY, "read_your_writes");
+        this.fallbackCounter = routingCounter(meterRegistry, PRIMARY, "no_healthy_replica");
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String userId = tracker.currentUserId();
+
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            writeCounter.increment();
+            if (userId != null && TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        tracker.markWritten(userId);
+                    }
+                });
+            }
+            return PRIMARY;
+        }
+
+        if (userId != null && tracker.isSticky(userId)) {
+            stickyCounter.increment();
+            return PRIMARY;
+        }
+
+        String replica = lagMonitor.nextHealthyReplica();
+        if (replica == null) {
+            fallbackCounter.increment();
+            return PRIMARY;
+        }
+        replicaCounter.increment();
+        return replica;
+    }
+
+    private static Counter routingCounter(MeterRegistry meterRegistry, String target, String reason) {
+        return Counter.builder("db.routing")
+                .tag("target", target)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,28 @@
+package org.ttt.safevaultbackend.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import org.ttt.safevaultbackend.entity.AccountDeletionTask;
+import org.ttt.safevaultbackend.enums.AccountDeletionStatus;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 账户删除任务 Repository
+ */
+@Repository
+public interface AccountDeletionTaskRepository extends JpaRepository<AccountDeletionTask, String> {
+
+    /**
+     * 查找用户未结束的删除任务（保证同一用户只有一个活动任务）
+     */
+    Optional<AccountDeletionTask> findFirstByUserIdAndStatusIn(String userId, Collection<AccountDeletionStatus> statuses);
+
+    /**
+     * 按创建时间查找待继续执行的任务（后台任务恢复使用）
+     */
+    List<AccountDeletionTask> findByStatusInOrderByCreatedAtAsc(Collection<AccountDeletionStatus> statuses, Pageable pageable);
+}
@@ -1,6 +1,8 @@
 package org.ttt.safevaultbackend.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -8,6 +10,7 @@ import org.ttt.safevaultbackend.entity.ContactShare;
 import org.ttt.safevaultbackend.entity.ContactShareStatus;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -27,6 +30,16 @@ public interface ContactShareRepository extends JpaRepository<ContactShare, Stri
      */
     List<ContactShare> findByToUser_UserIdOrderByCreatedAtDesc(String toUserId);
 
+    /**
+     * 统计用户发送的分享数
+     */
+    long countByFromUser_UserId(String fromUserId);
+
+    /**
+     * 统计用户接收的分享数
+     */
+    long countByToUser_UserId(String toUserId);
+
     /**
      * 查找特定状态的分享
      */
@@ -38,6 +51,39 @@ public interface ContactShareRepository extends JpaRepository<ContactShare, Stri
     @Query("SELECT cs FROM ContactShare cs WHERE cs.expiresAt < :now AND cs.status != :expiredStatus")
     List<ContactShare> findExpiredShares(@Param("now") LocalDateTime now, @Param("expiredStatus") ContactShareStatus expiredStatus);
 
+    /**
+     * 过期分享通知投影（分享 ID、接收方和发送方），不加载分享实体和接收方用户
+     */
+    interface ExpiredShare {
+        String getShareId();
+
+        String getToUserId();
+
+        String getFromUserId();
+
+        String getFromDisplayName();
+    }
+
+    /**
+     * 分批查找已过期但状态不是 EXPIRED 的分享
+     * 一条语句取回发送通知所需的字段，不逐条懒加载用户
+     */
+    @Query("SELECT cs.shareId AS shareId, cs.toUser.userId AS toUserId, " +
+           "f.userId AS fromUserId, f.displayName AS fromDisplayName " +
+           "FROM ContactShare cs JOIN cs.fromUser f " +
+           "WHERE cs.expiresAt < :now AND cs.status != :expiredStatus ORDER BY cs.expiresAt")
+    List<ExpiredShare> findExpiredShares(@Param("now") LocalDateTime now,
+                                         @Param("expiredStatus") ContactShareStatus expiredStatus,
+                                         Pageable pageable);
+
+    /**
+     * 批量标记分享为已过期
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE ContactShare cs SET cs.status = :expiredStatus WHERE cs.shareId IN :shareIds")
+    int markExpiredByShareIds(@Param("shareIds") Collection<String> shareIds,
+                              @Param("expiredStatus") ContactShareStatus expiredStatus);
+
     /**
      * 检查两个用户间是否存在特定状态的分享
      */
@@ -49,17 +95,67 @@ public interface ContactShareRepository extends JpaRepository<ContactShare, Stri
                                               @Param("passwordId") String passwordId,
                                               @Param("statuses") List<ContactShareStatus> statuses);
 
+    /**
+     * 按 ID 查找分享，同时加载双方用户
+     * 校验权限和发送通知都要读取双方用户，一条语句取回，不依赖懒加载
+     */
+    @Query("SELECT cs FROM ContactShare cs JOIN FETCH cs.fromUser JOIN FETCH cs.toUser WHERE cs.shareId = :shareId")
+    Optional<ContactShare> findWithUsersByShareId(@Param("shareId") String shareId);
+
     /**
      * 查找用户发送的所有活跃分享
+     * 同时加载接收方用户，映射响应时不再逐条懒加载
      */
-    @Query("SELECT cs FROM ContactShare cs WHERE cs.fromUser.userId = :userId AND cs.status IN :statuses")
+    @Query("SELECT cs FROM ContactShare cs JOIN FETCH cs.toUser WHERE cs.fromUser.userId = :userId AND cs.status IN :statuses")
     List<ContactShare> findActiveSharesByFromUser(@Param("userId") String userId,
                                                     @Param("statuses") List<ContactShareStatus> statuses);
 
     /**
      * 查找用户接收的所有活跃分享
+     * 同时加载发送方用户，映射响应时不再逐条懒加载
      */
-    @Query("SELECT cs FROM ContactShare cs WHERE cs.toUser.userId = :userId AND cs.status IN :statuses")
+    @Query("SELECT cs FROM ContactShare cs JOIN FETCH cs.fromUser WHERE cs.toUser.userId = :userId AND cs.status IN :statuses")
     List<ContactShare> findActiveSharesByToUser(@Param("userId") String userId,
                                                   @Param("statuses") List<ContactShareStatus> statuses);
+
+    /**
+     * 分享 ID 与接收方 ID 投影（撤销通知使用，避免加载完整分享实体）
+     */
+    interface ShareRecipient {
+        String getShareId();
+
+        String getToUserId();
+    }
+
+    /**
+     * 分页查找用户创建的可撤销活跃分享的接收方
+     */
+    @Query("SELECT cs.shareId AS shareId, cs.toUser.userId AS toUserId FROM ContactShare cs " +
+           "WHERE cs.fromUser.userId = :userId AND cs.status IN :statuses AND cs.isRevocable = true " +
+           "ORDER BY cs.shareId")
+    List<ShareRecipient> findRevocableShareRecipients(@Param("userId") String userId,
+                                                       @Param("statuses") List<ContactShareStatus> statuses,
+                                                       Pageable pageable);
+
+    /**
+     * 批量撤销分享
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE ContactShare cs SET cs.status = :revokedStatus, cs.revokedAt = :revokedAt WHERE cs.shareId IN :shareIds")
+    int revokeByShareIds(@Param("shareIds") Collection<String> shareIds,
+                         @Param("revokedStatus") ContactShareStatus revokedStatus,
+                         @Param("revokedAt") LocalDateTime revokedAt);
+
+    /**
+     * 分批删除用户发送或接收的分享记录
+     *
+     * @param userId 用户ID
+     * @param limit  单批最大删除条数
+     * @return 本批删除条数，为 0 表示已全部删除
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "DELETE FROM contact_shares WHERE share_id IN (" +
+                   "SELECT share_id FROM contact_shares WHERE from_user_id = :userId OR to_user_id = :userId LIMIT :limit)",
+           nativeQuery = true)
+    int deleteBatchByUserId(@Param("userId") String userId, @Param("limit") int limit);
 }
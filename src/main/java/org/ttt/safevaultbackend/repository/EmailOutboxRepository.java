@@ -0,0 +1,76 @@
+package org.ttt.safevaultbackend.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.ttt.safevaultbackend.entity.EmailOutboxMessage;
+import org.ttt.safevaultbackend.enums.EmailOutboxStatus;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 发件箱 Repository
+ */
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutboxMessage, Long> {
+
+    /**
+     * 锁定一批可发送的邮件
+     * 包括到期的待发送邮件和租约已过期的发送中邮件（领取它们的进程已崩溃）；
+     * SKIP LOCKED 使多个节点可以并发领取互不重叠的批次
+     */
+    @Query(value = "SELECT * FROM email_outbox " +
+                   "WHERE (status = 'PENDING' AND next_attempt_at <= :now) " +
+                   "OR (status = 'SENDING' AND locked_until < :now) " +
+                   "ORDER BY next_attempt_at " +
+                   "LIMIT :limit " +
+                   "FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<EmailOutboxMessage> lockDueMessages(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    /**
+     * 批量标记为已发送
+     */
+    @Modifying
+    @Query("UPDATE EmailOutboxMessage m SET m.status = :status, m.sentAt = :sentAt, " +
+           "m.lockedUntil = null, m.lastError = null " +
+           "WHERE m.id IN :ids")
+    int markSent(
+        @Param("ids") Collection<Long> ids,
+        @Param("status") EmailOutboxStatus status,
+        @Param("sentAt") LocalDateTime sentAt
+    );
+
+    /**
+     * 记录发送失败
+     *
+     * @param status        PENDING（等待重试）或 FAILED（放弃）
+     * @param nextAttemptAt 下次重试时间
+     */
+    @Modifying
+    @Query("UPDATE EmailOutboxMessage m SET m.status = :status, m.nextAttemptAt = :nextAttemptAt, " +
+           "m.lockedUntil = null, m.lastError = :error " +
+           "WHERE m.id = :id")
+    int markFailed(
+        @Param("id") Long id,
+        @Param("status") EmailOutboxStatus status,
+        @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+        @Param("error") String error
+    );
+
+    /**
+     * 统计指定状态的邮件数
+     */
+    long countByStatus(EmailOutboxStatus status);
+
+    /**
+     * 删除指定时间前已发送的邮件
+     */
+    @Modifying
+    @Query("DELETE FROM EmailOutboxMessage m WHERE m.status = :status AND m.sentAt < :before")
+    int deleteSentBefore(@Param("status") EmailOutboxStatus status, @Param("before") LocalDateTime before);
+}
@@ -113,6 +113,18 @@ public interface EmailVerificationHistoryRepository extends JpaRepository<EmailV
         @Param("status") DeliveryStatus status
     );
 
+    /**
+     * 按验证令牌更新邮件投递状态（发件箱异步发送结果回写）
+     */
+    @Modifying
+    @Query("UPDATE EmailVerificationHistory h SET " +
+           "h.deliveryStatus = :status " +
+           "WHERE h.verificationToken = :token")
+    int updateDeliveryStatusByToken(
+        @Param("token") String token,
+        @Param("status") DeliveryStatus status
+    );
+
     /**
      * 删除过期的验证历史记录
      */
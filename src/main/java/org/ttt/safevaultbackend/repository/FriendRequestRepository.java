@@ -1,6 +1,7 @@
 package org.ttt.safevaultbackend.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -72,4 +73,13 @@ public interface FriendRequestRepository extends JpaRepository<FriendRequest, St
      */
     @Query("SELECT fr FROM FriendRequest fr WHERE fr.fromUserId = :userId OR fr.toUserId = :userId")
     List<FriendRequest> findAllByUserId(@Param("userId") String userId);
+
+    /**
+     * 分批删除用户发送或接收的请求（用于账户删除），每次最多删除 limit 条
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "DELETE FROM friend_requests WHERE id IN (" +
+                   "SELECT id FROM friend_requests WHERE from_user_id = :userId OR to_user_id = :userId LIMIT :limit)",
+           nativeQuery = true)
+    int deleteBatchByUserId(@Param("userId") String userId, @Param("limit") int limit);
 }
@@ -1,6 +1,9 @@
 package org.ttt.safevaultbackend.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.ttt.safevaultbackend.entity.Friendship;
 
@@ -47,4 +50,17 @@ public interface FriendshipRepository extends JpaRepository<Friendship, String>
      * @param userIdB 第二个用户ID
      */
     void deleteByUserIdAAndUserIdB(String userIdA, String userIdB);
+
+    /**
+     * 分批删除用户的好友关系（用于账户删除），每次最多删除 limit 条
+     *
+     * @param userId 用户ID
+     * @param limit  本批最多删除条数
+     * @return 删除条数
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "DELETE FROM friendships WHERE id IN (" +
+                   "SELECT id FROM friendships WHERE user_id_a = :userId OR user_id_b = :userId LIMIT :limit)",
+           nativeQuery = true)
+    int deleteBatchByUserId(@Param("userId") String userId, @Param("limit") int limit);
 }
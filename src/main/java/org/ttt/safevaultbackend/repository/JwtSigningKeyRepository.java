@@ -0,0 +1,31 @@
+package org.ttt.safevaultbackend.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.ttt.safevaultbackend.entity.JwtSigningKey;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * JWT 签名密钥 Repository
+ */
+@Repository
+public interface JwtSigningKeyRepository extends JpaRepository<JwtSigningKey, String> {
+
+    /**
+     * 查找仍可用于验证的密钥（按激活时间排序）
+     */
+    @Query("SELECT k FROM JwtSigningKey k WHERE k.expiresAt IS NULL OR k.expiresAt > :now ORDER BY k.activatesAt ASC")
+    List<JwtSigningKey> findUsableKeys(@Param("now") LocalDateTime now);
+
+    /**
+     * 删除已过验证期的密钥
+     */
+    @Modifying
+    @Query("DELETE FROM JwtSigningKey k WHERE k.expiresAt IS NOT NULL AND k.expiresAt <= :now")
+    int deleteExpiredKeys(@Param("now") LocalDateTime now);
+}
@@ -1,5 +1,6 @@
 package org.ttt.safevaultbackend.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.ListCrudRepository;
@@ -8,6 +9,8 @@ import org.springframework.stereotype.Repository;
 import org.ttt.safevaultbackend.entity.RevokedToken;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -44,6 +47,22 @@ public interface RevokedTokenRepository extends ListCrudRepository<RevokedToken,
     @Query("DELETE FROM RevokedToken r WHERE r.expiresAt < :date")
     int deleteExpiredTokens(@Param("date") LocalDateTime date);
 
+    /**
+     * 按过期时间顺序查询一批过期记录（分批清理使用）
+     * 从上一批次的最大过期时间开始扫描，跳过已删除行在索引中留下的死元组
+     */
+    @Query("SELECT r FROM RevokedToken r WHERE r.expiresAt < :date AND r.expiresAt >= :after ORDER BY r.expiresAt")
+    List<RevokedToken> findExpiredTokens(@Param("date") LocalDateTime date,
+                                         @Param("after") LocalDateTime after,
+                                         Pageable pageable);
+
+    /**
+     * 按 ID 批量删除撤销记录
+     */
+    @Modifying
+    @Query("DELETE FROM RevokedToken r WHERE r.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
     /**
      * 撤销用户所有设备的令牌（用于密码修改或账户删除）
      */
@@ -0,0 +1,47 @@
+package org.ttt.safevaultbackend.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.ttt.safevaultbackend.entity.UserDevice;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 用户设备 Repository
+ */
+@Repository
+public interface UserDeviceRepository extends JpaRepository<UserDevice, String> {
+
+    /**
+     * 查找用户的所有设备
+     */
+    List<UserDevice> findByUserIdOrderByCreatedAtAsc(String userId);
+
+    /**
+     * 检查设备是否已注册
+     */
+    boolean existsByUserIdAndDeviceId(String userId, String deviceId);
+
+    /**
+     * 统计用户已注册设备数
+     */
+    long countByUserId(String userId);
+
+    /**
+     * 查找最久未活跃的设备（设备数量上限淘汰使用，走 (user_id, last_active_at) 索引）
+     */
+    Optional<UserDevice> findFirstByUserIdOrderByLastActiveAtAsc(String userId);
+
+    /**
+     * 删除用户的指定设备
+     *
+     * @return 删除条数
+     */
+    @Modifying
+    @Query("DELETE FROM UserDevice d WHERE d.userId = :userId AND d.deviceId = :deviceId")
+    int deleteByUserIdAndDeviceId(@Param("userId") String userId, @Param("deviceId") String deviceId);
+}
@@ -0,0 +1,47 @@
+package org.ttt.safevaultbackend.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.ttt.safevaultbackend.entity.UserKeyMaterial;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 用户密钥材料 Repository
+ */
+@Repository
+public interface UserKeyMaterialRepository extends JpaRepository<UserKeyMaterial, String> {
+
+    /**
+     * 用户 ID 与公钥投影（用户列表使用，避免加载私钥和密码验证器）
+     */
+    interface PublicKeyView {
+        String getUserId();
+
+        String getPublicKey();
+    }
+
+    /**
+     * 批量查找用户公钥
+     */
+    @Query("SELECT k.userId AS userId, k.publicKey AS publicKey FROM UserKeyMaterial k WHERE k.userId IN :userIds")
+    List<PublicKeyView> findPublicKeys(@Param("userIds") Collection<String> userIds);
+
+    /**
+     * 查询用户的密码验证器（登录验证使用，不进入用户缓存）
+     */
+    @Query("SELECT k.passwordVerifier FROM UserKeyMaterial k WHERE k.userId = :userId")
+    Optional<String> findPasswordVerifier(@Param("userId") String userId);
+
+    /**
+     * 以单条语句删除用户的密钥材料（用于账户删除）
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM UserKeyMaterial k WHERE k.userId = :userId")
+    int bulkDeleteByUserId(@Param("userId") String userId);
+}
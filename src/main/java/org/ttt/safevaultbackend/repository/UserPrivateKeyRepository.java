@@ -1,6 +1,9 @@
 package org.ttt.safevaultbackend.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.ttt.safevaultbackend.entity.UserPrivateKey;
 
@@ -21,4 +24,11 @@ public interface UserPrivateKeyRepository extends JpaRepository<UserPrivateKey,
      * 检查用户是否存在私钥记录
      */
     boolean existsByUserId(String userId);
+
+    /**
+     * 以单条语句删除用户的私钥记录（用于账户删除）
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM UserPrivateKey k WHERE k.userId = :userId")
+    int bulkDeleteByUserId(@Param("userId") String userId);
 }
@@ -1,13 +1,16 @@
 package org.ttt.safevaultbackend.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.ttt.safevaultbackend.entity.User;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -65,6 +68,12 @@ public interface UserRepository extends JpaRepository<User, String> {
      */
     Optional<User> findByEmail(String email);
 
+    /**
+     * 根据邮箱查询用户ID（用户缓存未命中时使用，快照按用户ID加载）
+     */
+    @Query("SELECT u.userId FROM User u WHERE u.email = :email")
+    Optional<String> findUserIdByEmail(@Param("email") String email);
+
     /**
      * 检查邮箱是否存在
      */
@@ -92,10 +101,44 @@ public interface UserRepository extends JpaRepository<User, String> {
     @Query("SELECT u FROM User u WHERE u.registrationStatus = 'EMAIL_VERIFIED' AND u.verifiedAt < :cutoffTime")
     List<User> findTimeoutRegistrations(@Param("cutoffTime") LocalDateTime cutoffTime);
 
+    /**
+     * 按用户ID顺序分批读取邮箱和用户名（重建存在性过滤器使用）
+     * 每行为 [userId, email, username]
+     * 以读写事务执行使其走主库：副本延迟会漏掉刚提交的用户，使重建后的过滤器漏判
+     */
+    @Transactional
+    @Query("SELECT u.userId, u.email, u.username FROM User u WHERE u.userId > :afterUserId ORDER BY u.userId")
+    List<Object[]> findIdentitiesAfter(@Param("afterUserId") String afterUserId, Pageable pageable);
+
     /**
      * 删除超时未完成注册的用户
      */
     @Modifying
     @Query("DELETE FROM User u WHERE u.registrationStatus = 'EMAIL_VERIFIED' AND u.verifiedAt < :cutoffTime")
     int deleteTimeoutRegistrations(@Param("cutoffTime") LocalDateTime cutoffTime);
+
+    /**
+     * 分批查找超时未完成注册的用户
+     */
+    @Query("SELECT u FROM User u WHERE u.registrationStatus = 'EMAIL_VERIFIED' AND u.verifiedAt < :cutoffTime " +
+           "ORDER BY u.verifiedAt")
+    List<User> findTimeoutRegistrations(@Param("cutoffTime") LocalDateTime cutoffTime, Pageable pageable);
+
+    /**
+     * 删除指定的超时未完成注册用户
+     * 重复检查状态和验证时间，避免删除查询之后已完成注册的用户
+     */
+    @Modifying
+    @Query("DELETE FROM User u WHERE u.userId IN :userIds " +
+           "AND u.registrationStatus = 'EMAIL_VERIFIED' AND u.verifiedAt < :cutoffTime")
+    int deleteTimeoutRegistrations(@Param("userIds") Collection<String> userIds,
+                                   @Param("cutoffTime") LocalDateTime cutoffTime);
+
+    /**
+     * 以单条语句删除用户（用于账户删除）
+     * 不加载实体；关联表由外键 ON DELETE CASCADE 或调用方在此之前清理
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM User u WHERE u.userId = :userId")
+    int deleteByUserIdDirect(@Param("userId") String userId);
 }
@@ -0,0 +1,40 @@
+package org.ttt.safevaultbackend.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.ttt.safevaultbackend.entity.UserTokenEpoch;
+
+import java.util.Optional;
+
+/**
+ * 用户令牌纪元 Repository
+ */
+@Repository
+public interface UserTokenEpochRepository extends JpaRepository<UserTokenEpoch, String> {
+
+    /**
+     * 从主库查询用户令牌纪元
+     * 在独立的读写事务中执行：调用方处于只读事务时也不会路由到副本，
+     * 避免复制延迟使刚提升的纪元读成“无纪元”并被缓存
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query("SELECT e FROM UserTokenEpoch e WHERE e.userId = :userId")
+    Optional<UserTokenEpoch> findOnPrimary(@Param("userId") String userId);
+
+    /**
+     * 提升用户令牌纪元（单条语句插入或更新，纪元只增不减）
+     */
+    @Modifying
+    @Query(value = "INSERT INTO user_token_epochs (user_id, epoch_ms, revoke_reason, updated_at) " +
+                   "VALUES (:userId, :epochMs, :reason, CURRENT_TIMESTAMP) " +
+                   "ON CONFLICT (user_id) DO UPDATE SET " +
+                   "epoch_ms = GREATEST(user_token_epochs.epoch_ms, EXCLUDED.epoch_ms), " +
+                   "revoke_reason = EXCLUDED.revoke_reason, updated_at = CURRENT_TIMESTAMP",
+           nativeQuery = true)
+    int raiseEpoch(@Param("userId") String userId, @Param("epochMs") long epochMs, @Param("reason") String reason);
+}
@@ -2,6 +2,9 @@ package org.ttt.safevaultbackend.repository;
 
 import org.ttt.safevaultbackend.entity.UserVault;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -31,4 +34,13 @@ public interface UserVaultRepository extends JpaRepository<UserVault, String> {
      * @param userId 用户 ID
      */
     void deleteByUserId(String userId);
+
+    /**
+     * 以单条语句删除用户的密码库（不加载实体）
+     * @param userId 用户 ID
+     * @return 删除条数
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM UserVault v WHERE v.userId = :userId")
+    int bulkDeleteByUserId(@Param("userId") String userId);
 }
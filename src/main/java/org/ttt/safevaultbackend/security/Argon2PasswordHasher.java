@@ -2,10 +2,21 @@ package org.ttt.safevaultbackend.security;
 
 import de.mkammerer.argon2.Argon2;
 import de.mkammerer.argon2.Argon2Factory;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 import org.ttt.safevaultbackend.config.Argon2Config;
+import org.ttt.safevaultbackend.jfr.PasswordHashEvent;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Argon2 密码哈希服务
@@ -14,10 +25,14 @@ import org.ttt.safevaultbackend.config.Argon2Config;
  * - 抗 GPU/ASIC 攻击能力（内存硬哈希）
  * - 抗侧信道攻击（Argon2id 混合模式）
  * - 可配置的安全参数
+ * - 有界并发：哈希计算通过 JNA 在本地代码中执行，虚拟线程在本地调用期间会固定载体线程，
+ *   因此计算全部交给 max-concurrent 个平台线程执行，调用方只等待结果；
+ *   等待中的虚拟线程会卸载，不占用载体线程。排队超过 queue-capacity 时拒绝并抛出 SecurityException
+ * - 指标：password.hash 按操作（hash/verify）和结果计时，password.hash.wait 记录排队等待的时间；
+ *   同时发出 JFR 事件 {@link PasswordHashEvent}
  */
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class Argon2PasswordHasher {
 
     private final Argon2Config config;
@@ -27,6 +42,33 @@ public class Argon2PasswordHasher {
      */
     private final Argon2 argon2 = Argon2Factory.create(Argon2Factory.Argon2Types.ARGON2id);
 
+    /**
+     * 哈希计算线程池（平台线程）
+     */
+    private final ThreadPoolExecutor executor;
+
+    private final MeterRegistry meterRegistry;
+    private final Timer waitTimer;
+
+    public Argon2PasswordHasher(Argon2Config config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        this.waitTimer = Timer.builder("password.hash.wait").register(meterRegistry);
+        int maxConcurrent = config.getMaxConcurrent() > 0
+                ? config.getMaxConcurrent() : Runtime.getRuntime().availableProcessors();
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("argon2-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(config.getQueueCapacity()), threadFactory,
+                new ThreadPoolExecutor.AbortPolicy());
+        log.info("Argon2 哈希并发上限: {}, 排队上限: {}", maxConcurrent, config.getQueueCapacity());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
     /**
      * 对密码进行哈希
      *
@@ -40,16 +82,32 @@ public class Argon2PasswordHasher {
 
             // Argon2 会自动生成随机盐值并包含在返回的哈希字符串中
             // 格式：$argon2id$v=19$m=65536,t=3,p=4$<salt>$<hash>
-            String hash = argon2.hash(
-                config.getTimeCost(),      // 迭代次数
-                config.getMemoryCost(),    // 内存成本（KB）
-                config.getParallelism(),   // 并行度
-                password                   // 密码
-            );
+            String hash = compute(queued -> {
+                PasswordHashEvent event = newEvent("hash", queued);
+                Timer.Sample sample = Timer.start();
+                String result = "failure";
+                try {
+                    String value = argon2.hash(
+                        config.getTimeCost(),      // 迭代次数
+                        config.getMemoryCost(),    // 内存成本（KB）
+                        config.getParallelism(),   // 并行度
+                        password                   // 密码
+                    );
+                    result = "success";
+                    event.success = true;
+                    return value;
+                } finally {
+                    sample.stop(hashTimer("hash", result));
+                    event.commit();
+                }
+            });
 
             log.debug("密码哈希完成，长度: {} 字符", hash.length());
             return hash;
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SecurityException("密码哈希被中断", e);
         } catch (Exception e) {
             log.error("密码哈希失败", e);
             throw new SecurityException("密码哈希失败", e);
@@ -90,7 +148,20 @@ public class Argon2PasswordHasher {
         }
 
         try {
-            boolean verified = argon2.verify(hash, password);
+            boolean verified = compute(queued -> {
+                PasswordHashEvent event = newEvent("verify", queued);
+                Timer.Sample sample = Timer.start();
+                String result = "failure";
+                try {
+                    boolean matched = argon2.verify(hash, password);
+                    result = matched ? "success" : "mismatch";
+                    event.success = matched;
+                    return matched;
+                } finally {
+                    sample.stop(hashTimer("verify", result));
+                    event.commit();
+                }
+            });
 
             if (verified) {
                 log.debug("密码验证成功");
@@ -100,6 +171,13 @@ public class Argon2PasswordHasher {
 
             return verified;
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("密码验证被中断");
+            return false;
+        } catch (RejectedExecutionException e) {
+            // 排队已满时不能按密码错误处理
+            throw new SecurityException("密码验证繁忙，请稍后重试", e);
         } catch (Exception e) {
             log.error("密码验证失败", e);
             return false;
@@ -125,6 +203,60 @@ public class Argon2PasswordHasher {
         return verify(hash, password.toCharArray());
     }
 
+    /**
+     * 在哈希线程池中执行计算并等待结果
+     * 调用方被中断时取消计算；调用方返回后才会清空密码数组，计算期间密码保持有效
+     *
+     * @throws RejectedExecutionException 排队已满
+     */
+    private <T> T compute(Computation<T> computation) throws InterruptedException, ExecutionException {
+        long submitted = System.nanoTime();
+        Future<T> future = executor.submit(() -> {
+            long queued = System.nanoTime() - submitted;
+            waitTimer.record(queued, TimeUnit.NANOSECONDS);
+            return computation.run(queued);
+        });
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        }
+    }
+
+    /**
+     * 在哈希线程中执行的计算
+     */
+    @FunctionalInterface
+    private interface Computation<T> {
+
+        /**
+         * @param queuedNanos 排队等待时间（纳秒）
+         */
+        T run(long queuedNanos) throws Exception;
+    }
+
+    /**
+     * 创建并开始 JFR 事件，记录当前哈希参数
+     */
+    private PasswordHashEvent newEvent(String operation, long queuedNanos) {
+        PasswordHashEvent event = new PasswordHashEvent();
+        event.begin();
+        event.operation = operation;
+        event.memoryCost = config.getMemoryCost() * 1024L;
+        event.timeCost = config.getTimeCost();
+        event.parallelism = config.getParallelism();
+        event.permitWait = queuedNanos;
+        return event;
+    }
+
+    private Timer hashTimer(String operation, String result) {
+        return Timer.builder("password.hash")
+                .tag("operation", operation)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
     /**
      * 检查哈希值是否需要重新计算
      * 当 Argon2 参数配置发生变化时，用于判断是否需要更新用户密码哈希
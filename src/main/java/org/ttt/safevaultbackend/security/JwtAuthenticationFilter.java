@@ -1,5 +1,9 @@
 package org.ttt.safevaultbackend.security;
 
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -18,6 +22,9 @@ import java.util.ArrayList;
 /**
  * JWT 认证过滤器
  * 安全加固：添加Token撤销检查（2.4）
+ *
+ * 指标：auth.jwt.phase 按阶段（verify 签名与有效期校验、parse 读取声明、revocation 撤销检查）计时，
+ * auth.jwt.requests 按结果（absent/valid/invalid/revoked/error）计数。
  */
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
@@ -25,10 +32,28 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final JwtTokenProvider tokenProvider;
     private final TokenRevokeService tokenRevokeService;
 
+    private final Timer verifyTimer;
+    private final Timer parseTimer;
+    private final Timer revocationTimer;
+    private final Counter absentCounter;
+    private final Counter validCounter;
+    private final Counter invalidCounter;
+    private final Counter revokedCounter;
+    private final Counter errorCounter;
+
     public JwtAuthenticationFilter(JwtTokenProvider tokenProvider,
-                                    TokenRevokeService tokenRevokeService) {
+                                    TokenRevokeService tokenRevokeService,
+                                    MeterRegistry meterRegistry) {
         this.tokenProvider = tokenProvider;
         this.tokenRevokeService = tokenRevokeService;
+        this.verifyTimer = phaseTimer(meterRegistry, "verify");
+        this.parseTimer = phaseTimer(meterRegistry, "parse");
+        this.revocationTimer = phaseTimer(meterRegistry, "revocation");
+        this.absentCounter = resultCounter(meterRegistry, "absent");
+        this.validCounter = resultCounter(meterRegistry, "valid");
+        this.invalidCounter = resultCounter(meterRegistry, "invalid");
+        this.revokedCounter = resultCounter(meterRegistry, "revoked");
+        this.errorCounter = resultCounter(meterRegistry, "error");
     }
 
     @Override
@@ -44,16 +69,31 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             String jwt = getJwtFromRequest(request);
 
             if (jwt == null) {
+                absentCounter.increment();
                 logger.debug("No JWT token found in request headers for: " + requestPath);
             } else {
                 logger.debug("JWT token found, length: " + jwt.length() + ", validating...");
 
-                if (tokenProvider.validateToken(jwt)) {
-                    String userId = tokenProvider.getUserIdFromToken(jwt);
+                // 只解析一次令牌：签名校验后的声明同时用于读取用户ID和撤销检查
+                Timer.Sample sample = Timer.start();
+                Claims claims = tokenProvider.parseValidClaims(jwt);
+                sample.stop(verifyTimer);
+
+                if (claims != null) {
+                    sample = Timer.start();
+                    String userId = claims.getSubject();
+                    sample.stop(parseTimer);
                     String deviceId = request.getHeader("X-Device-ID");
 
                     // 安全加固：检查Token是否已被撤销（2.4）
-                    if (tokenRevokeService.isTokenRevoked(jwt, userId, deviceId)) {
+                    sample = Timer.start();
+                    TokenRevokeService.Revocation revocation = tokenRevokeService.getRevocation(jwt, claims, deviceId);
+                    sample.stop(revocationTimer);
+                    boolean revoked = revocation == TokenRevokeService.Revocation.REVOKED
+                            || (revocation == TokenRevokeService.Revocation.ACCOUNT_DELETED
+                                && !isDeletionStatusRequest(request));
+                    if (revoked) {
+                        revokedCounter.increment();
                         logger.warn("Token已撤销: userId=" + userId + ", deviceId=" + deviceId + ", path=" + requestPath);
                         response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                         response.setContentType("application/json;charset=UTF-8");
@@ -61,6 +101,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                         return;
                     }
 
+                    validCounter.increment();
                     logger.info("JWT validated successfully for user: " + userId + " on: " + requestPath);
 
                     UsernamePasswordAuthenticationToken authentication =
@@ -70,6 +111,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                     SecurityContextHolder.getContext().setAuthentication(authentication);
                     logger.debug("SecurityContext updated with user: " + userId);
                 } else {
+                    invalidCounter.increment();
                     logger.warn("JWT token validation failed for: " + requestPath);
                     // Token 验证失败的详细原因
                     if (tokenProvider.isTokenExpired(jwt)) {
@@ -78,12 +120,35 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 }
             }
         } catch (Exception ex) {
+            errorCounter.increment();
             logger.error("Could not set user authentication in security context for: " + requestPath, ex);
         }
 
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * 是否为账户删除进度查询
+     * 删除账户时用户的全部令牌立即撤销，但用户仍需要用原令牌查询自己的删除进度（控制器校验任务归属）；
+     * 只放行仅因账户删除被撤销的令牌，登出、设备撤销等其他原因撤销的令牌仍然拒绝
+     */
+    private static boolean isDeletionStatusRequest(HttpServletRequest request) {
+        return "GET".equals(request.getMethod())
+                && request.getServletPath().startsWith("/v1/account/deletion/");
+    }
+
+    private static Timer phaseTimer(MeterRegistry meterRegistry, String phase) {
+        return Timer.builder("auth.jwt.phase")
+                .tag("phase", phase)
+                .register(meterRegistry);
+    }
+
+    private static Counter resultCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("auth.jwt.requests")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
     private String getJwtFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
         if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
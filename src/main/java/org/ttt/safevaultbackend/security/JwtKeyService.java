@@ -0,0 +1,449 @@
+package org.ttt.safevaultbackend.security;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.SignatureAlgorithm;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.ttt.safevaultbackend.config.JwtSigningProperties;
+import org.ttt.safevaultbackend.entity.JwtSigningKey;
+import org.ttt.safevaultbackend.repository.JwtSigningKeyRepository;
+import org.ttt.safevaultbackend.util.CryptoPrimitives;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * JWT 密钥服务
+ * 管理签名密钥和按 kid 选择的验证公钥，支持 RS256/ES256/EdDSA。
+ *
+ * 密钥来源：
+ * 1. jwt.rsa.* 配置的 RSA 密钥：始终可用于验证（无 kid 的旧令牌也使用它），未配置其他签名密钥时用于签名；
+ * 2. jwt.signing.private-key/public-key 配置的静态密钥（ES256/EdDSA）；
+ * 3. 启用轮换时 jwt_signing_keys 表中的密钥：新密钥先发布公钥，延迟激活后才用于签名，
+ *    旧密钥退役后继续用于验证直到最长令牌有效期结束，因此轮换不会使已签发的令牌失效。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class JwtKeyService {
+
+    private static final String ROTATION_LOCK_KEY = "jwt:key-rotation:lock";
+    private static final Duration ROTATION_LOCK_TTL = Duration.ofSeconds(60);
+
+    /**
+     * 遇到未知 kid 时从数据库重新加载的最小间隔，防止伪造 kid 触发大量查询
+     */
+    private static final long UNKNOWN_KID_RELOAD_INTERVAL_MS = 5000;
+
+    private static final int GCM_TAG_LENGTH = 128;
+    private static final int GCM_IV_LENGTH = 12;
+
+    private final JwtSigningKeyRepository signingKeyRepository;
+    private final JwtSigningProperties properties;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    @Value("${jwt.rsa.private-key}")
+    private String rsaPrivateKey;
+
+    @Value("${jwt.rsa.public-key}")
+    private String rsaPublicKey;
+
+    @Value("${jwt.refresh-token-expiration}")
+    private long refreshTokenExpiration;
+
+    /**
+     * 配置文件中的密钥（RSA 及可选的静态密钥），不随数据库刷新变化
+     */
+    private final List<LoadedKey> configuredKeys = new ArrayList<>();
+    private LoadedKey legacyRsaKey;
+
+    private volatile KeySet keySet = KeySet.EMPTY;
+    private volatile long lastReloadAt;
+
+    /**
+     * 重新加载锁
+     * 加载过程中会访问数据库，使用 ReentrantLock 而非 synchronized，虚拟线程等待时不固定载体线程
+     */
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    /**
+     * 签名密钥
+     *
+     * @param kid       密钥 ID
+     * @param algorithm 签名算法
+     * @param key       私钥
+     */
+    public record SigningKey(String kid, SignatureAlgorithm algorithm, PrivateKey key) {
+    }
+
+    /**
+     * 启动时加载配置中的密钥及数据库中的轮换密钥
+     */
+    @PostConstruct
+    public void init() {
+        legacyRsaKey = loadLegacyRsaKey();
+        configuredKeys.add(legacyRsaKey);
+
+        String algorithm = properties.getAlgorithm();
+        resolveAlgorithm(algorithm);
+        if (!"RS256".equals(algorithm) && !properties.isRotationEnabled()) {
+            if (isBlank(properties.getPrivateKey()) || isBlank(properties.getPublicKey())) {
+                throw new IllegalStateException("使用 " + algorithm
+                        + " 且未启用密钥轮换时必须配置 jwt.signing.private-key 和 jwt.signing.public-key");
+            }
+            configuredKeys.add(decodeKey(null, algorithm, properties.getPublicKey(),
+                    Base64.getDecoder().decode(properties.getPrivateKey()), null, null));
+        }
+
+        if (properties.isRotationEnabled()) {
+            keyEncryptionKey();
+            if (properties.getActivationDelaySeconds() * 1000 < properties.getRefreshIntervalMs() * 2) {
+                log.warn("jwt.signing.activation-delay-seconds={} 小于两个密钥刷新间隔，实际激活延迟按 {} 处理",
+                        properties.getActivationDelaySeconds(), activationDelay());
+            }
+        }
+
+        reload();
+        log.info("JWT 密钥已加载: algorithm={}, rotationEnabled={}, signingKid={}",
+                algorithm, properties.isRotationEnabled(), keySet.signer.kid());
+    }
+
+    /**
+     * 获取当前签名密钥
+     */
+    public SigningKey currentSigningKey() {
+        return keySet.signer;
+    }
+
+    /**
+     * 根据 kid 获取验证公钥
+     *
+     * @param kid JWT 头部的 kid；为空时返回 jwt.rsa.* 公钥（兼容旧令牌）
+     * @return 公钥；未知 kid 返回 null
+     */
+    public PublicKey resolveVerificationKey(String kid) {
+        if (kid == null) {
+            return legacyRsaKey.publicKey();
+        }
+
+        LoadedKey key = keySet.byKid.get(kid);
+        if (key == null && properties.isRotationEnabled()
+                && System.currentTimeMillis() - lastReloadAt > UNKNOWN_KID_RELOAD_INTERVAL_MS) {
+            // 其他节点可能刚刚创建了新密钥
+            reload();
+            key = keySet.byKid.get(kid);
+        }
+        return key != null ? key.publicKey() : null;
+    }
+
+    /**
+     * 获取所有可用于验证的公钥（JWKS 格式）
+     */
+    public List<Map<String, ?>> publicJwks() {
+        List<Map<String, ?>> jwks = new ArrayList<>();
+        for (LoadedKey key : keySet.byKid.values()) {
+            jwks.add(Jwks.builder()
+                    .key(key.publicKey())
+                    .id(key.kid())
+                    .algorithm(key.algorithm().getId())
+                    .publicKeyUse("sig")
+                    .build());
+        }
+        return jwks;
+    }
+
+    /**
+     * 定时从数据库刷新轮换密钥
+     */
+    @Scheduled(fixedDelayString = "${jwt.signing.refresh-interval-ms:60000}")
+    public void scheduledReload() {
+        if (properties.isRotationEnabled()) {
+            reload();
+        }
+    }
+
+    /**
+     * 检查并执行密钥轮换
+     * 通过 Redis 锁保证同一时刻只有一个节点执行
+     */
+    @Scheduled(fixedDelayString = "${jwt.signing.rotation-check-interval-ms:300000}")
+    @Transactional
+    public void rotateIfDue() {
+        if (!properties.isRotationEnabled()) {
+            return;
+        }
+
+        try {
+            Boolean locked = stringRedisTemplate.opsForValue()
+                    .setIfAbsent(ROTATION_LOCK_KEY, "1", ROTATION_LOCK_TTL);
+            if (!Boolean.TRUE.equals(locked)) {
+                return;
+            }
+
+            LocalDateTime now = LocalDateTime.now();
+            int deleted = signingKeyRepository.deleteExpiredKeys(now);
+            if (deleted > 0) {
+                log.info("删除已过期的 JWT 签名密钥: count={}", deleted);
+            }
+
+            List<JwtSigningKey> keys = signingKeyRepository.findUsableKeys(now);
+            JwtSigningKey active = null;
+            for (JwtSigningKey key : keys) {
+                if (key.getActivatesAt().isAfter(now)) {
+                    // 已有待激活的密钥
+                    return;
+                }
+                if (key.getRetiresAt() == null) {
+                    active = key;
+                }
+            }
+
+            if (active != null && active.getActivatesAt()
+                    .plusHours(properties.getRotationIntervalHours()).isAfter(now)) {
+                return;
+            }
+
+            // 包括首个密钥在内都先发布公钥，所有节点刷新后才用于签名；
+            // 首个密钥激活前继续使用配置中的静态密钥签名
+            LocalDateTime activatesAt = now.plus(activationDelay());
+            JwtSigningKey created = generateKey(activatesAt);
+            signingKeyRepository.save(created);
+
+            if (active != null) {
+                active.setRetiresAt(activatesAt);
+                active.setExpiresAt(activatesAt.plus(Duration.ofMillis(refreshTokenExpiration)).plusMinutes(5));
+                signingKeyRepository.save(active);
+            }
+
+            log.info("已生成新的 JWT 签名密钥: kid={}, algorithm={}, activatesAt={}, retiringKid={}",
+                    created.getKid(), created.getAlgorithm(), activatesAt, active != null ? active.getKid() : null);
+        } catch (Exception e) {
+            log.error("JWT 密钥轮换失败", e);
+            return;
+        }
+
+        reload();
+    }
+
+    /**
+     * 新密钥从发布到用于签名的延迟
+     * 至少为两个刷新间隔，保证每个节点都已通过定时刷新加载新公钥，
+     * 不依赖未知 kid 触发的按需刷新（该刷新有频率限制）
+     */
+    private Duration activationDelay() {
+        Duration configured = Duration.ofSeconds(properties.getActivationDelaySeconds());
+        Duration minimum = Duration.ofMillis(properties.getRefreshIntervalMs() * 2);
+        return configured.compareTo(minimum) >= 0 ? configured : minimum;
+    }
+
+    /**
+     * 从数据库重新加载轮换密钥并计算当前签名密钥
+     */
+    private void reload() {
+        reloadLock.lock();
+        try {
+            lastReloadAt = System.currentTimeMillis();
+            LocalDateTime now = LocalDateTime.now();
+
+            Map<String, LoadedKey> byKid = new LinkedHashMap<>();
+            for (LoadedKey key : configuredKeys) {
+                byKid.put(key.kid(), key);
+            }
+
+            // 未启用轮换时：配置了静态密钥则用其签名，否则使用 RSA 密钥
+            LoadedKey signer = configuredKeys.get(configuredKeys.size() - 1);
+
+            if (properties.isRotationEnabled()) {
+                try {
+                    LoadedKey rotatedSigner = null;
+                    for (JwtSigningKey entity : signingKeyRepository.findUsableKeys(now)) {
+                        LoadedKey key = decodeKey(entity.getKid(), entity.getAlgorithm(), entity.getPublicKey(),
+                                decryptPrivateKey(entity.getPrivateKeyEncrypted()),
+                                entity.getActivatesAt(), entity.getRetiresAt());
+                        byKid.put(key.kid(), key);
+                        if (key.canSign(now)) {
+                            rotatedSigner = key;
+                        }
+                    }
+                    if (rotatedSigner != null) {
+                        signer = rotatedSigner;
+                    } else if (keySet.signer != null && keySet.byKid.containsKey(keySet.signer.kid())) {
+                        // 尚未生成轮换密钥时沿用原签名密钥
+                        signer = keySet.byKid.get(keySet.signer.kid());
+                    }
+                } catch (Exception e) {
+                    log.error("加载 JWT 轮换密钥失败，继续使用已加载的密钥", e);
+                    if (keySet != KeySet.EMPTY) {
+                        return;
+                    }
+                }
+            }
+
+            keySet = new KeySet(new SigningKey(signer.kid(), signer.algorithm(), signer.privateKey()),
+                    Collections.unmodifiableMap(byKid));
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    /**
+     * 生成新的签名密钥
+     */
+    private JwtSigningKey generateKey(LocalDateTime activatesAt) throws Exception {
+        String algorithm = properties.getAlgorithm();
+        KeyPair keyPair = resolveAlgorithm(algorithm).keyPair().build();
+        byte[] publicKey = keyPair.getPublic().getEncoded();
+
+        return JwtSigningKey.builder()
+                .kid(fingerprint(algorithm, publicKey))
+                .algorithm(algorithm)
+                .publicKey(Base64.getEncoder().encodeToString(publicKey))
+                .privateKeyEncrypted(encryptPrivateKey(keyPair.getPrivate().getEncoded()))
+                .activatesAt(activatesAt)
+                .build();
+    }
+
+    private LoadedKey loadLegacyRsaKey() {
+        if (isBlank(rsaPrivateKey)) {
+            throw new IllegalStateException("JWT_RSA_PRIVATE_KEY 环境变量未设置！应用无法启动。");
+        }
+        if (isBlank(rsaPublicKey)) {
+            throw new IllegalStateException("JWT_RSA_PUBLIC_KEY 环境变量未设置！应用无法启动。");
+        }
+
+        // 检查是否使用了示例密钥
+        if (rsaPrivateKey.contains("your-rsa") || rsaPublicKey.contains("your-rsa")) {
+            log.warn("警告：JWT_RSA_* 密钥似乎是示例值！生产环境请使用真实的 RSA 密钥对。");
+        }
+
+        try {
+            return decodeKey(null, "RS256", rsaPublicKey, Base64.getDecoder().decode(rsaPrivateKey), null, null);
+        } catch (Exception e) {
+            throw new IllegalStateException("加载 RSA 密钥对失败！请检查环境变量配置。错误: " + e.getMessage(), e);
+        }
+    }
+
+    private LoadedKey decodeKey(String kid, String algorithm, String publicKeyBase64, byte[] privateKeyBytes,
+                                LocalDateTime activatesAt, LocalDateTime retiresAt) {
+        try {
+            byte[] publicKeyBytes = Base64.getDecoder().decode(publicKeyBase64);
+            KeyFactory keyFactory = KeyFactory.getInstance(keyFactoryAlgorithm(algorithm));
+            PublicKey publicKey = keyFactory.generatePublic(new X509EncodedKeySpec(publicKeyBytes));
+            PrivateKey privateKey = keyFactory.generatePrivate(new PKCS8EncodedKeySpec(privateKeyBytes));
+            return new LoadedKey(kid != null ? kid : fingerprint(algorithm, publicKeyBytes),
+                    resolveAlgorithm(algorithm), publicKey, privateKey, activatesAt, retiresAt);
+        } catch (Exception e) {
+            throw new IllegalStateException("解析 JWT 密钥失败: algorithm=" + algorithm + ", kid=" + kid, e);
+        } finally {
+            Arrays.fill(privateKeyBytes, (byte) 0);
+        }
+    }
+
+    private String encryptPrivateKey(byte[] privateKey) throws Exception {
+        byte[] iv = CryptoPrimitives.randomBytes(GCM_IV_LENGTH);
+        SecretKeySpec keyEncryptionKey = keyEncryptionKey();
+        byte[] ciphertext = CryptoPrimitives.withCipher("AES/GCM/NoPadding", cipher -> {
+            cipher.init(Cipher.ENCRYPT_MODE, keyEncryptionKey, new GCMParameterSpec(GCM_TAG_LENGTH, iv));
+            return cipher.doFinal(privateKey);
+        });
+        Arrays.fill(privateKey, (byte) 0);
+
+        return Base64.getEncoder().encodeToString(
+                ByteBuffer.allocate(iv.length + ciphertext.length).put(iv).put(ciphertext).array());
+    }
+
+    private byte[] decryptPrivateKey(String encrypted) throws Exception {
+        byte[] data = Base64.getDecoder().decode(encrypted);
+        SecretKeySpec keyEncryptionKey = keyEncryptionKey();
+        return CryptoPrimitives.withCipher("AES/GCM/NoPadding", cipher -> {
+            cipher.init(Cipher.DECRYPT_MODE, keyEncryptionKey,
+                    new GCMParameterSpec(GCM_TAG_LENGTH, data, 0, GCM_IV_LENGTH));
+            return cipher.doFinal(data, GCM_IV_LENGTH, data.length - GCM_IV_LENGTH);
+        });
+    }
+
+    private SecretKeySpec keyEncryptionKey() {
+        if (isBlank(properties.getKeyEncryptionKey())) {
+            throw new IllegalStateException("启用 JWT 密钥轮换时必须配置 jwt.signing.key-encryption-key");
+        }
+        byte[] kek = Base64.getDecoder().decode(properties.getKeyEncryptionKey());
+        if (kek.length != 32) {
+            throw new IllegalStateException("jwt.signing.key-encryption-key 必须是 Base64 编码的 256 位密钥");
+        }
+        return new SecretKeySpec(kek, "AES");
+    }
+
+    /**
+     * 以公钥指纹生成 kid
+     */
+    private static String fingerprint(String algorithm, byte[] publicKey) {
+        String hash = Base64.getUrlEncoder().withoutPadding().encodeToString(CryptoPrimitives.sha256(publicKey));
+        return algorithm.toLowerCase() + "-" + hash.substring(0, 16);
+    }
+
+    private static SignatureAlgorithm resolveAlgorithm(String algorithm) {
+        return switch (algorithm) {
+            case "RS256" -> Jwts.SIG.RS256;
+            case "ES256" -> Jwts.SIG.ES256;
+            case "EdDSA" -> Jwts.SIG.EdDSA;
+            default -> throw new IllegalStateException("不支持的 JWT 签名算法: " + algorithm + "（仅支持 RS256、ES256、EdDSA）");
+        };
+    }
+
+    private static String keyFactoryAlgorithm(String algorithm) {
+        return switch (algorithm) {
+            case "RS256" -> "RSA";
+            case "ES256" -> "EC";
+            case "EdDSA" -> "EdDSA";
+            default -> throw new IllegalStateException("不支持的 JWT 签名算法: " + algorithm);
+        };
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isEmpty();
+    }
+
+    /**
+     * 已加载的密钥
+     */
+    private record LoadedKey(String kid, SignatureAlgorithm algorithm, PublicKey publicKey, PrivateKey privateKey,
+                             LocalDateTime activatesAt, LocalDateTime retiresAt) {
+
+        boolean canSign(LocalDateTime now) {
+            return activatesAt != null && !activatesAt.isAfter(now)
+                    && (retiresAt == null || retiresAt.isAfter(now));
+        }
+    }
+
+    /**
+     * 不可变的密钥快照，刷新时整体替换
+     */
+    private record KeySet(SigningKey signer, Map<String, LoadedKey> byKid) {
+        static final KeySet EMPTY = new KeySet(null, Map.of());
+    }
+}
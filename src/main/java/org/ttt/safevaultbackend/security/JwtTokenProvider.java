@@ -1,34 +1,37 @@
 package org.ttt.safevaultbackend.security;
 
 import io.jsonwebtoken.*;
-import io.jsonwebtoken.security.Keys;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.ttt.safevaultbackend.jfr.JwtVerifyEvent;
 
-import jakarta.annotation.PostConstruct;
-import java.nio.charset.StandardCharsets;
-import java.security.*;
-import java.security.spec.PKCS8EncodedKeySpec;
-import java.security.spec.X509EncodedKeySpec;
-import java.util.Base64;
+import java.security.Key;
 import java.util.Date;
 
 /**
  * JWT Token 提供者
  * 安全加固第三阶段：使用 RS256 非对称加密算法
+ * 签名算法可配置为 RS256/ES256/EdDSA，令牌头部携带 kid，验证时按 kid 选择公钥（见 {@link JwtKeyService}）
  */
 @Component
 public class JwtTokenProvider {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtTokenProvider.class);
 
-    @Value("${jwt.rsa.private-key}")
-    private String rsaPrivateKey;
+    /**
+     * 毫秒精度的签发时间声明
+     * 标准 iat 只有秒精度，令牌纪元比较需要毫秒精度
+     */
+    private static final String ISSUED_AT_MILLIS_CLAIM = "iat_ms";
 
-    @Value("${jwt.rsa.public-key}")
-    private String rsaPublicKey;
+    private final JwtKeyService keyService;
+
+    /**
+     * 共享的解析器，按令牌头部 kid 定位验证公钥
+     */
+    private final JwtParser parser;
 
     @Value("${jwt.access-token-expiration}")
     private long accessTokenExpiration;
@@ -36,86 +39,53 @@ public class JwtTokenProvider {
     @Value("${jwt.refresh-token-expiration}")
     private long refreshTokenExpiration;
 
-    private PrivateKey privateKey;
-    private PublicKey publicKey;
-
-    /**
-     * 启动时加载 RSA 密钥对
-     * 安全加固第三阶段：使用 RSA 非对称加密
-     */
-    @PostConstruct
-    public void init() {
-        try {
-            if (rsaPrivateKey == null || rsaPrivateKey.isEmpty()) {
-                String errorMsg = "JWT_RSA_PRIVATE_KEY 环境变量未设置！应用无法启动。";
-                logger.error(errorMsg);
-                throw new IllegalStateException(errorMsg);
-            }
-
-            if (rsaPublicKey == null || rsaPublicKey.isEmpty()) {
-                String errorMsg = "JWT_RSA_PUBLIC_KEY 环境变量未设置！应用无法启动。";
-                logger.error(errorMsg);
-                throw new IllegalStateException(errorMsg);
-            }
-
-            // 检查是否使用了示例密钥
-            if (rsaPrivateKey.contains("your-rsa") || rsaPublicKey.contains("your-rsa")) {
-                logger.warn("警告：JWT_RSA_* 密钥似乎是示例值！生产环境请使用真实的 RSA 密钥对。");
-            }
-
-            KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-
-            // 加载私钥（PKCS8 格式）
-            byte[] privateKeyBytes = Base64.getDecoder().decode(rsaPrivateKey);
-            PKCS8EncodedKeySpec privateKeySpec = new PKCS8EncodedKeySpec(privateKeyBytes);
-            this.privateKey = keyFactory.generatePrivate(privateKeySpec);
-
-            // 加载公钥（X509 格式）
-            byte[] publicKeyBytes = Base64.getDecoder().decode(rsaPublicKey);
-            X509EncodedKeySpec publicKeySpec = new X509EncodedKeySpec(publicKeyBytes);
-            this.publicKey = keyFactory.generatePublic(publicKeySpec);
-
-            logger.info("RSA 密钥对加载成功（算法: RSA, 密钥长度: {} 位）",
-                publicKey instanceof java.security.interfaces.RSAPublicKey
-                    ? ((java.security.interfaces.RSAPublicKey) publicKey).getModulus().bitLength()
-                    : "未知");
-
-        } catch (Exception e) {
-            String errorMsg = "加载 RSA 密钥对失败！请检查环境变量配置。错误: " + e.getMessage();
-            logger.error(errorMsg, e);
-            throw new IllegalStateException(errorMsg, e);
-        }
+    public JwtTokenProvider(JwtKeyService keyService) {
+        this.keyService = keyService;
+        this.parser = Jwts.parser()
+                .keyLocator(new LocatorAdapter<Key>() {
+                    @Override
+                    protected Key locate(JwsHeader header) {
+                        Key key = keyService.resolveVerificationKey(header.getKeyId());
+                        if (key == null) {
+                            throw new UnsupportedJwtException("Unknown JWT key id: " + header.getKeyId());
+                        }
+                        return key;
+                    }
+                })
+                .build();
     }
 
     /**
      * 生成访问令牌
-     * 安全加固第三阶段：使用 RS256 签名
+     * 安全加固第三阶段：使用当前签名密钥（默认 RS256）
      */
     public String generateAccessToken(String userId) {
-        Date now = new Date();
-        Date expiryDate = new Date(now.getTime() + accessTokenExpiration);
-
-        return Jwts.builder()
-                .subject(userId)
-                .issuedAt(now)
-                .expiration(expiryDate)
-                .signWith(privateKey, Jwts.SIG.RS256)
-                .compact();
+        return generateToken(userId, accessTokenExpiration);
     }
 
     /**
      * 生成刷新令牌
-     * 安全加固第三阶段：使用 RS256 签名
+     * 安全加固第三阶段：使用当前签名密钥（默认 RS256）
      */
     public String generateRefreshToken(String userId) {
+        return generateToken(userId, refreshTokenExpiration);
+    }
+
+    /**
+     * 使用当前签名密钥签发令牌
+     */
+    private String generateToken(String userId, long expiration) {
         Date now = new Date();
-        Date expiryDate = new Date(now.getTime() + refreshTokenExpiration);
+        Date expiryDate = new Date(now.getTime() + expiration);
+        JwtKeyService.SigningKey signingKey = keyService.currentSigningKey();
 
         return Jwts.builder()
+                .header().keyId(signingKey.kid()).and()
                 .subject(userId)
                 .issuedAt(now)
+                .claim(ISSUED_AT_MILLIS_CLAIM, now.getTime())
                 .expiration(expiryDate)
-                .signWith(privateKey, Jwts.SIG.RS256)
+                .signWith(signingKey.key(), signingKey.algorithm())
                 .compact();
     }
 
@@ -123,27 +93,50 @@ public class JwtTokenProvider {
      * 从令牌获取用户ID
      */
     public String getUserIdFromToken(String token) {
-        Claims claims = Jwts.parser()
-                .verifyWith(publicKey)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        Claims claims = parser.parseSignedClaims(token).getPayload();
 
         return claims.getSubject();
     }
 
+    /**
+     * 从已解析的声明获取毫秒精度的签发时间
+     * 本声明加入前签发的令牌只有秒精度的 iat，按该秒的起点返回（与纪元比较时偏向判定为已撤销）
+     *
+     * @return 签发时间（Unix 毫秒）；令牌未携带签发时间时返回 null
+     */
+    public static Long getIssuedAtMillis(Claims claims) {
+        if (claims.get(ISSUED_AT_MILLIS_CLAIM) instanceof Number millis) {
+            return millis.longValue();
+        }
+        Date issuedAt = claims.getIssuedAt();
+        return issuedAt != null ? issuedAt.getTime() : null;
+    }
+
     /**
      * 验证令牌
-     * 安全加固第三阶段：使用 RSA 公钥验证 RS256 签名
+     * 安全加固第三阶段：按 kid 选择公钥验证签名
      */
     public boolean validateToken(String token) {
+        return parseValidClaims(token) != null;
+    }
+
+    /**
+     * 验证令牌并返回声明
+     * 调用方只需解析一次令牌，即可同时完成签名校验和读取声明
+     *
+     * @return 声明；令牌无效（签名错误、过期、格式错误等）时返回 null
+     */
+    public Claims parseValidClaims(String token) {
+        JwtVerifyEvent event = new JwtVerifyEvent();
+        event.begin();
         try {
-            Jwts.parser()
-                    .verifyWith(publicKey)
-                    .build()
-                    .parseSignedClaims(token);
+            Jws<Claims> jws = parser.parseSignedClaims(token);
+            JwsHeader header = jws.getHeader();
+            event.valid = true;
+            event.algorithm = header.getAlgorithm();
+            event.keyId = header.getKeyId();
             logger.debug("JWT token validated successfully");
-            return true;
+            return jws.getPayload();
         } catch (ExpiredJwtException e) {
             logger.warn("JWT token is expired: " + e.getMessage());
         } catch (UnsupportedJwtException e) {
@@ -154,8 +147,10 @@ public class JwtTokenProvider {
             logger.warn("JWT token signature validation failed: " + e.getMessage());
         } catch (IllegalArgumentException e) {
             logger.warn("JWT token is illegal: " + e.getMessage());
+        } finally {
+            event.commit();
         }
-        return false;
+        return null;
     }
 
     /**
@@ -163,11 +158,7 @@ public class JwtTokenProvider {
      */
     public boolean isTokenExpired(String token) {
         try {
-            Claims claims = Jwts.parser()
-                    .verifyWith(publicKey)
-                    .build()
-                    .parseSignedClaims(token)
-                    .getPayload();
+            Claims claims = parser.parseSignedClaims(token).getPayload();
 
             return claims.getExpiration().before(new Date());
         } catch (JwtException | IllegalArgumentException e) {
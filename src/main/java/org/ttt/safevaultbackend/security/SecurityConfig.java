@@ -1,18 +1,24 @@
 package org.ttt.safevaultbackend.security;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.health.HealthEndpoint;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
+import org.ttt.safevaultbackend.config.ActuatorSecurityProperties;
 
 import java.util.Arrays;
 import java.util.List;
@@ -26,7 +32,45 @@ import java.util.List;
 @RequiredArgsConstructor
 public class SecurityConfig {
 
+    private static final String ACTUATOR_ADMIN_ROLE = "ACTUATOR_ADMIN";
+
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    private final ActuatorSecurityProperties actuatorSecurityProperties;
+
+    /**
+     * 管理端点过滤链（优先于业务过滤链匹配）
+     * health 和 prometheus 公开（管理端口仅对内网开放），metrics、jfr 等其他端点只允许运维账号
+     * 通过 HTTP Basic 访问；不挂载 JWT 过滤器，普通用户的访问令牌在管理端点上无效。
+     */
+    @Bean
+    @Order(1)
+    public SecurityFilterChain actuatorSecurityFilterChain(HttpSecurity http) throws Exception {
+        boolean adminConfigured = !actuatorSecurityProperties.getPassword().isBlank();
+        http
+                .securityMatcher(EndpointRequest.toAnyEndpoint())
+                .csrf(AbstractHttpConfigurer::disable)
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .authorizeHttpRequests(auth -> {
+                    auth.requestMatchers(EndpointRequest.to(HealthEndpoint.class)).permitAll();
+                    auth.requestMatchers(EndpointRequest.to("prometheus")).permitAll();
+                    if (adminConfigured) {
+                        auth.anyRequest().hasRole(ACTUATOR_ADMIN_ROLE);
+                    } else {
+                        // 未配置运维账号时拒绝访问其他管理端点
+                        auth.anyRequest().denyAll();
+                    }
+                })
+                .httpBasic(basic -> { });
+        if (adminConfigured) {
+            // 密码已带编码前缀，由默认的 DelegatingPasswordEncoder 按前缀校验
+            http.userDetailsService(new InMemoryUserDetailsManager(User
+                    .withUsername(actuatorSecurityProperties.getUsername())
+                    .password(actuatorSecurityProperties.getPassword())
+                    .roles(ACTUATOR_ADMIN_ROLE)
+                    .build()));
+        }
+        return http.build();
+    }
 
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
@@ -39,6 +83,7 @@ public class SecurityConfig {
                         .requestMatchers(
                                 "/v1/auth/**",
                                 "/v1/users/search",
+                                "/.well-known/jwks.json",  // JWT 验证公钥
                                 "/verify/**",           // 邮箱验证页面（公开访问）
                                 "/static/**",           // 静态资源（图片、CSS等）
                                 "/ws/**",
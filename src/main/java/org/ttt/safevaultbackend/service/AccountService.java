@@ -2,80 +2,322 @@ package org.ttt.safevaultbackend.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import org.ttt.safevaultbackend.entity.ContactShare;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.ttt.safevaultbackend.config.AccountDeletionProperties;
+import org.ttt.safevaultbackend.dto.ShareNotificationMessage;
+import org.ttt.safevaultbackend.dto.UserSnapshot;
+import org.ttt.safevaultbackend.dto.response.AccountDeletionProgressResponse;
+import org.ttt.safevaultbackend.entity.AccountDeletionTask;
 import org.ttt.safevaultbackend.entity.ContactShareStatus;
-import org.ttt.safevaultbackend.entity.User;
-import org.ttt.safevaultbackend.exception.BusinessException;
+import org.ttt.safevaultbackend.enums.AccountDeletionPhase;
+import org.ttt.safevaultbackend.enums.AccountDeletionStatus;
 import org.ttt.safevaultbackend.exception.ResourceNotFoundException;
+import org.ttt.safevaultbackend.repository.AccountDeletionTaskRepository;
 import org.ttt.safevaultbackend.repository.ContactShareRepository;
+import org.ttt.safevaultbackend.repository.FriendRequestRepository;
+import org.ttt.safevaultbackend.repository.FriendshipRepository;
+import org.ttt.safevaultbackend.repository.UserPrivateKeyRepository;
+import org.ttt.safevaultbackend.repository.UserKeyMaterialRepository;
 import org.ttt.safevaultbackend.repository.UserRepository;
 import org.ttt.safevaultbackend.repository.UserVaultRepository;
+import org.ttt.safevaultbackend.util.UuidV7;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 账户服务
  * 处理账户删除等账户级操作
+ *
+ * 账户删除按阶段分批执行：每批使用批量 UPDATE/DELETE 语句并在独立事务中提交，
+ * 进度记录在 account_deletion_tasks 表中。小账户在请求内直接完成，
+ * 大账户由后台任务从中断处继续。
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class AccountService {
 
+    private static final List<AccountDeletionStatus> UNFINISHED_STATUSES =
+            List.of(AccountDeletionStatus.PENDING, AccountDeletionStatus.RUNNING);
+
+    private static final List<ContactShareStatus> ACTIVE_SHARE_STATUSES =
+            List.of(ContactShareStatus.PENDING, ContactShareStatus.ACCEPTED);
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
     private final UserRepository userRepository;
     private final UserVaultRepository userVaultRepository;
+    private final UserPrivateKeyRepository userPrivateKeyRepository;
+    private final UserKeyMaterialRepository userKeyMaterialRepository;
     private final ContactShareRepository contactShareRepository;
+    private final FriendshipRepository friendshipRepository;
+    private final FriendRequestRepository friendRequestRepository;
+    private final AccountDeletionTaskRepository deletionTaskRepository;
+    private final TokenRevokeService tokenRevokeService;
+    private final UserCacheService userCacheService;
+    private final WebSocketService webSocketService;
+    private final AccountDeletionProperties properties;
+    private final TransactionTemplate transactionTemplate;
 
     /**
-     * 删除账户及所有相关数据
-     * 使用事务确保操作的原子性
+     * 请求删除账户及所有相关数据
+     * 立即使用户的所有令牌失效，并在请求内执行有限批次；未完成部分由后台任务继续
      *
      * @param userId 用户ID
-     * @throws ResourceNotFoundException 如果用户不存在
-     * @throws BusinessException 如果删除失败
+     * @return 删除任务（如已存在未完成的任务则返回该任务）
+     * @throws ResourceNotFoundException 如果用户不存在且没有进行中的删除任务
+     */
+    public AccountDeletionTask requestDeletion(String userId) {
+        log.info("请求删除账户: userId={}", userId);
+
+        AccountDeletionTask task = transactionTemplate.execute(status ->
+                deletionTaskRepository.findFirstByUserIdAndStatusIn(userId, UNFINISHED_STATUSES)
+                        .orElseGet(() -> {
+                            if (!userRepository.existsById(userId)) {
+                                throw new ResourceNotFoundException("User", "userId", userId);
+                            }
+                            return deletionTaskRepository.save(AccountDeletionTask.builder()
+                                    .taskId(UuidV7.generateString())
+                                    .userId(userId)
+                                    .build());
+                        }));
+
+        // 提升令牌纪元，一次性撤销该用户已签发的所有令牌
+        tokenRevokeService.revokeAllUserTokens(userId, TokenRevokeService.REASON_ACCOUNT_DELETED);
+
+        runSteps(task.getTaskId(), properties.getInlineSteps());
+
+        return deletionTaskRepository.findById(task.getTaskId()).orElse(task);
+    }
+
+    /**
+     * 查询账户删除进度
+     *
+     * @param taskId 删除任务ID
+     * @param userId 当前用户ID，只能查询自己的删除任务
+     * @return 删除进度
+     * @throws ResourceNotFoundException 如果任务不存在或不属于当前用户（不区分两种情况，避免泄露任务是否存在）
+     */
+    public AccountDeletionProgressResponse getDeletionProgress(String taskId, String userId) {
+        AccountDeletionTask task = deletionTaskRepository.findById(taskId)
+                .filter(t -> t.getUserId().equals(userId))
+                .orElseThrow(() -> new ResourceNotFoundException("AccountDeletionTask", "taskId", taskId));
+
+        return AccountDeletionProgressResponse.builder()
+                .taskId(task.getTaskId())
+                .status(task.getStatus().name())
+                .phase(task.getPhase().name())
+                .revokedShares(task.getRevokedShares())
+                .deletedShares(task.getDeletedShares())
+                .deletedFriendRecords(task.getDeletedFriendRecords())
+                .notifiedUsers(task.getNotifiedUsers())
+                .createdAt(task.getCreatedAt())
+                .completedAt(task.getCompletedAt())
+                .build();
+    }
+
+    /**
+     * 继续执行未完成的删除任务
+     * 由定时任务调用，进程重启或请求内未完成的任务在此继续
+     *
+     * @return 本轮处理的任务数
      */
-    @Transactional(rollbackFor = Exception.class)
-    public void deleteAccount(String userId) {
-        log.info("开始删除账户: userId={}", userId);
-
-        // 1. 查找用户
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("User", "userId", userId));
-
-        log.info("找到用户: userId={}, email={}", user.getUserId(), user.getEmail());
-
-        // 2. 撤销所有活动的分享（用户创建的）
-        List<ContactShare> createdShares = contactShareRepository.findActiveSharesByFromUser(
-                userId,
-                List.of(ContactShareStatus.PENDING, ContactShareStatus.ACCEPTED)
-        );
-        for (ContactShare share : createdShares) {
-            if (share.isRevocable()) {
-                share.setStatus(ContactShareStatus.REVOKED);
-                share.setRevokedAt(LocalDateTime.now());
-                contactShareRepository.save(share);
+    public int resumePendingDeletions() {
+        List<AccountDeletionTask> tasks = deletionTaskRepository.findByStatusInOrderByCreatedAtAsc(
+                UNFINISHED_STATUSES, PageRequest.of(0, properties.getWorkerBatchSize()));
+
+        for (AccountDeletionTask task : tasks) {
+            runSteps(task.getTaskId(), Integer.MAX_VALUE);
+        }
+        return tasks.size();
+    }
+
+    /**
+     * 执行删除任务的若干批次
+     * 每批在独立事务中提交，撤销通知在提交后发送
+     */
+    private void runSteps(String taskId, int maxSteps) {
+        for (int i = 0; i < maxSteps; i++) {
+            StepResult result;
+            try {
+                result = transactionTemplate.execute(status -> executeStep(taskId));
+            } catch (ObjectOptimisticLockingFailureException e) {
+                // 其他实例正在推进同一任务
+                log.debug("删除任务正由其他线程执行: taskId={}", taskId);
+                return;
+            } catch (Exception e) {
+                recordFailure(taskId, e);
+                return;
+            }
+
+            if (result == null) {
+                return;
+            }
+            sendRevokeNotifications(result);
+            if (result.finished()) {
+                return;
             }
         }
-        log.info("撤销用户创建的活动分享: count={}", createdShares.size());
+    }
 
-        // 3. 删除所有分享记录（创建的和接收的）
-        List<ContactShare> allShares = contactShareRepository.findByFromUser_UserIdOrderByCreatedAtDesc(userId);
-        allShares.addAll(contactShareRepository.findByToUser_UserIdOrderByCreatedAtDesc(userId));
-        for (ContactShare share : allShares) {
-            contactShareRepository.delete(share);
+    /**
+     * 执行当前阶段的一个批次
+     *
+     * @return 批次结果；任务不存在或已结束时返回 null
+     */
+    private StepResult executeStep(String taskId) {
+        AccountDeletionTask task = deletionTaskRepository.findById(taskId).orElse(null);
+        if (task == null || task.isFinished()) {
+            return null;
         }
-        log.info("删除用户相关的所有分享记录: count={}", allShares.size());
 
-        // 4. 删除密码库数据
-        userVaultRepository.deleteByUserId(userId);
-        log.info("删除用户密码库: 成功");
+        String userId = task.getUserId();
+        int chunkSize = properties.getChunkSize();
+        String fromDisplayName = null;
+        Map<String, List<String>> revokedByRecipient = Collections.emptyMap();
+
+        switch (task.getPhase()) {
+            case REVOKE_SHARES -> {
+                List<ContactShareRepository.ShareRecipient> recipients =
+                        contactShareRepository.findRevocableShareRecipients(
+                                userId, ACTIVE_SHARE_STATUSES, PageRequest.of(0, chunkSize));
+                if (recipients.isEmpty()) {
+                    task.setPhase(AccountDeletionPhase.DELETE_SHARES);
+                    break;
+                }
 
-        // 5. 删除用户记录（最后删除，因为其他表有外键引用）
-        userRepository.delete(user);
+                fromDisplayName = userCacheService.findById(userId).map(UserSnapshot::getDisplayName).orElse(null);
+                revokedByRecipient = new LinkedHashMap<>();
+                List<String> shareIds = new ArrayList<>(recipients.size());
+                for (ContactShareRepository.ShareRecipient recipient : recipients) {
+                    shareIds.add(recipient.getShareId());
+                    revokedByRecipient.computeIfAbsent(recipient.getToUserId(), k -> new ArrayList<>())
+                            .add(recipient.getShareId());
+                }
 
-        log.info("账户删除成功: userId={}", userId);
+                int revoked = contactShareRepository.revokeByShareIds(
+                        shareIds, ContactShareStatus.REVOKED, LocalDateTime.now());
+                task.setRevokedShares(task.getRevokedShares() + revoked);
+                task.setNotifiedUsers(task.getNotifiedUsers() + revokedByRecipient.size());
+            }
+            case DELETE_SHARES -> {
+                int deleted = contactShareRepository.deleteBatchByUserId(userId, chunkSize);
+                task.setDeletedShares(task.getDeletedShares() + deleted);
+                if (deleted < chunkSize) {
+                    task.setPhase(AccountDeletionPhase.DELETE_FRIENDSHIPS);
+                }
+            }
+            case DELETE_FRIENDSHIPS -> {
+                // 先删好友关系，本批未满时用剩余额度删除好友请求，两者都删完后进入下一阶段
+                int friendships = friendshipRepository.deleteBatchByUserId(userId, chunkSize);
+                int requests = friendships < chunkSize
+                        ? friendRequestRepository.deleteBatchByUserId(userId, chunkSize - friendships)
+                        : 0;
+                task.setDeletedFriendRecords(task.getDeletedFriendRecords() + friendships + requests);
+                if (friendships + requests < chunkSize) {
+                    task.setPhase(AccountDeletionPhase.DELETE_VAULT);
+                }
+            }
+            case DELETE_VAULT -> {
+                userVaultRepository.bulkDeleteByUserId(userId);
+                userPrivateKeyRepository.bulkDeleteByUserId(userId);
+                userKeyMaterialRepository.bulkDeleteByUserId(userId);
+                task.setPhase(AccountDeletionPhase.DELETE_USER);
+            }
+            case DELETE_USER -> {
+                // 最后删除用户记录，因为其他表有外键引用
+                userRepository.deleteByUserIdDirect(userId);
+                // 批量删除不会触发实体监听器，手动使用户缓存失效
+                userCacheService.evict(userId);
+                task.setPhase(AccountDeletionPhase.DONE);
+                task.setStatus(AccountDeletionStatus.COMPLETED);
+                task.setCompletedAt(LocalDateTime.now());
+            }
+            case DONE -> {
+                task.setStatus(AccountDeletionStatus.COMPLETED);
+                task.setCompletedAt(LocalDateTime.now());
+            }
+        }
+
+        if (!task.isFinished()) {
+            task.setStatus(AccountDeletionStatus.RUNNING);
+        }
+        task.setAttempts(0);
+        task.setLastError(null);
+        // 批量语句会清空持久化上下文，此处通过 merge 保存（受乐观锁保护）
+        deletionTaskRepository.save(task);
+
+        if (task.isFinished()) {
+            log.info("账户删除成功: userId={}, taskId={}, revokedShares={}, deletedShares={}",
+                    userId, taskId, task.getRevokedShares(), task.getDeletedShares());
+        }
+
+        return new StepResult(userId, fromDisplayName, revokedByRecipient, task.isFinished());
+    }
+
+    /**
+     * 在独立事务中记录批次失败，连续失败超过上限时标记任务失败
+     */
+    private void recordFailure(String taskId, Exception cause) {
+        log.error("账户删除批次执行失败: taskId={}", taskId, cause);
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    deletionTaskRepository.findById(taskId).ifPresent(task -> {
+                        task.setAttempts(task.getAttempts() + 1);
+                        String message = String.valueOf(cause.getMessage());
+                        task.setLastError(message.length() > MAX_ERROR_LENGTH
+                                ? message.substring(0, MAX_ERROR_LENGTH) : message);
+                        if (task.getAttempts() >= properties.getMaxAttempts()) {
+                            task.setStatus(AccountDeletionStatus.FAILED);
+                            log.error("账户删除任务多次失败，已标记为 FAILED: taskId={}, userId={}",
+                                    taskId, task.getUserId());
+                        }
+                        deletionTaskRepository.save(task);
+                    }));
+        } catch (Exception e) {
+            log.error("记录账户删除失败状态时出错: taskId={}", taskId, e);
+        }
+    }
+
+    /**
+     * 按接收方合并发送撤销通知，每个接收方每批只收到一条消息
+     */
+    private void sendRevokeNotifications(StepResult result) {
+        for (Map.Entry<String, List<String>> entry : result.revokedByRecipient().entrySet()) {
+            List<String> shareIds = entry.getValue();
+            try {
+                ShareNotificationMessage notification = ShareNotificationMessage.builder()
+                        .type("SHARE_REVOKED")
+                        .shareId(shareIds.get(0))
+                        .shareIds(shareIds)
+                        .fromUserId(result.userId())
+                        .fromDisplayName(result.fromDisplayName())
+                        .message(shareIds.size() == 1
+                                ? "分享已被撤销"
+                                : String.format("%d 个分享已被撤销", shareIds.size()))
+                        .timestamp(System.currentTimeMillis())
+                        .build();
+                webSocketService.sendShareNotification(entry.getKey(), notification);
+            } catch (Exception e) {
+                log.warn("发送分享撤销通知失败: toUserId={}, error={}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 单个批次的执行结果
+     */
+    private record StepResult(String userId,
+                              String fromDisplayName,
+                              Map<String, List<String>> revokedByRecipient,
+                              boolean finished) {
     }
 }
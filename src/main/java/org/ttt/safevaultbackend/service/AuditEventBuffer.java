@@ -0,0 +1,296 @@
+package org.ttt.safevaultbackend.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.ttt.safevaultbackend.config.AuditProperties;
+import org.ttt.safevaultbackend.entity.EmailVerificationHistory;
+import org.ttt.safevaultbackend.entity.VerificationEvent;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 审计记录缓冲区
+ * verification_events 和 email_verification_history 的写入先进入固定容量的环形缓冲区，
+ * 由 auditExecutor 线程按 JDBC 批量写入，注册和验证请求不再等待审计写入。
+ *
+ * - 调用方处于事务中时，事务提交后才入队（回滚的业务操作不留下审计记录，且避免引用未提交的用户）；
+ * - 缓冲区满时按 audit.overflow-policy 丢弃或由调用线程同步写入；
+ * - 批量写入失败时逐条重试，只丢弃仍然失败的记录（如关联用户已被删除）；
+ * - 关闭时写完缓冲区中的所有记录；
+ * - 待写入数和丢弃数导出为 audit.buffer.pending / audit.buffer.dropped 指标。
+ */
+@Slf4j
+@Component
+public class AuditEventBuffer {
+
+    private static final String INSERT_EVENT_SQL =
+            "INSERT INTO verification_events (user_id, email, event_type, verification_token, ip_address, " +
+            "user_agent, success, failure_reason, event_timestamp, metadata) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_HISTORY_SQL =
+            "INSERT INTO email_verification_history (user_id, email, verification_code, verification_token, " +
+            "request_type, ip_address, device_fingerprint, sent_at, verified_at, is_used, expires_at, " +
+            "delivery_status, provider) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ThreadPoolTaskExecutor auditExecutor;
+    private final AuditProperties properties;
+
+    private final BlockingQueue<VerificationEvent> events;
+    private final BlockingQueue<EmailVerificationHistory> histories;
+
+    /**
+     * 保证同一时刻只有一个刷新任务在写入，避免多个线程各自拿到很小的批次
+     */
+    private final AtomicBoolean flushing = new AtomicBoolean(false);
+    private final AtomicLong dropped = new AtomicLong();
+
+    public AuditEventBuffer(JdbcTemplate jdbcTemplate,
+                            @Qualifier("auditExecutor") ThreadPoolTaskExecutor auditExecutor,
+                            AuditProperties properties,
+                            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.auditExecutor = auditExecutor;
+        this.properties = properties;
+        this.events = new ArrayBlockingQueue<>(properties.getBufferCapacity());
+        this.histories = new ArrayBlockingQueue<>(properties.getBufferCapacity());
+
+        Gauge.builder("audit.buffer.pending", events, BlockingQueue::size)
+                .description("缓冲区中待写入的审计记录数")
+                .tag("table", "verification_events")
+                .register(meterRegistry);
+        Gauge.builder("audit.buffer.pending", histories, BlockingQueue::size)
+                .description("缓冲区中待写入的审计记录数")
+                .tag("table", "email_verification_history")
+                .register(meterRegistry);
+        FunctionCounter.builder("audit.buffer.dropped", dropped, AtomicLong::get)
+                .description("因缓冲区已满或写入失败而丢弃的审计记录数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 提交验证事件
+     */
+    public void submit(VerificationEvent event) {
+        if (event.getEventTimestamp() == null) {
+            event.setEventTimestamp(LocalDateTime.now());
+        }
+        if (event.getSuccess() == null) {
+            event.setSuccess(false);
+        }
+        afterCommit(() -> enqueue(events, event));
+    }
+
+    /**
+     * 提交验证历史
+     */
+    public void submit(EmailVerificationHistory history) {
+        if (history.getSentAt() == null) {
+            history.setSentAt(LocalDateTime.now());
+        }
+        if (history.getIsUsed() == null) {
+            history.setIsUsed(false);
+        }
+        afterCommit(() -> enqueue(histories, history));
+    }
+
+    /**
+     * 获取因缓冲区已满或写入失败而丢弃的记录数
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * 获取缓冲区中待写入的记录数
+     */
+    public int getPendingCount() {
+        return events.size() + histories.size();
+    }
+
+    /**
+     * 定时刷新
+     */
+    @Scheduled(fixedDelayString = "${audit.flush-interval-ms:500}")
+    public void scheduledFlush() {
+        if (!events.isEmpty() || !histories.isEmpty()) {
+            auditExecutor.execute(this::flush);
+        }
+    }
+
+    /**
+     * 关闭时写完所有缓冲的记录
+     */
+    @PreDestroy
+    public void drain() {
+        int pending = getPendingCount();
+        while (!flushing.compareAndSet(false, true)) {
+            Thread.onSpinWait();
+        }
+        try {
+            while (!events.isEmpty() || !histories.isEmpty()) {
+                writeEvents();
+                writeHistories();
+            }
+        } finally {
+            flushing.set(false);
+        }
+        log.info("审计缓冲区已排空: written={}, dropped={}", pending, dropped.get());
+    }
+
+    private void flush() {
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            while (!events.isEmpty() || !histories.isEmpty()) {
+                writeEvents();
+                writeHistories();
+            }
+        } catch (Exception e) {
+            log.error("审计记录写入失败", e);
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    private <T> void enqueue(BlockingQueue<T> queue, T record) {
+        if (!queue.offer(record)) {
+            if (properties.getOverflowPolicy() == AuditProperties.OverflowPolicy.CALLER_RUNS) {
+                writeDirect(record);
+            } else {
+                long count = dropped.incrementAndGet();
+                if (count == 1 || count % 1000 == 0) {
+                    log.warn("审计缓冲区已满，丢弃记录: totalDropped={}", count);
+                }
+            }
+            return;
+        }
+        if (queue.size() >= properties.getBatchSize()) {
+            auditExecutor.execute(this::flush);
+        }
+    }
+
+    private void writeDirect(Object record) {
+        if (record instanceof VerificationEvent event) {
+            writeBatch(INSERT_EVENT_SQL, List.of(event), this::bindEvent);
+        } else if (record instanceof EmailVerificationHistory history) {
+            writeBatch(INSERT_HISTORY_SQL, List.of(history), this::bindHistory);
+        }
+    }
+
+    private void writeEvents() {
+        List<VerificationEvent> batch = new ArrayList<>(properties.getBatchSize());
+        events.drainTo(batch, properties.getBatchSize());
+        if (!batch.isEmpty()) {
+            writeBatch(INSERT_EVENT_SQL, batch, this::bindEvent);
+        }
+    }
+
+    private void writeHistories() {
+        List<EmailVerificationHistory> batch = new ArrayList<>(properties.getBatchSize());
+        histories.drainTo(batch, properties.getBatchSize());
+        if (!batch.isEmpty()) {
+            writeBatch(INSERT_HISTORY_SQL, batch, this::bindHistory);
+        }
+    }
+
+    /**
+     * 批量写入；失败时逐条重试，跳过无法写入的记录
+     */
+    private <T> void writeBatch(String sql, List<T> batch, Binder<T> binder) {
+        try {
+            jdbcTemplate.batchUpdate(sql, batch, batch.size(), binder::bind);
+            return;
+        } catch (DataAccessException e) {
+            log.warn("审计批量写入失败，改为逐条写入: size={}, error={}", batch.size(), e.getMessage());
+        }
+
+        for (T record : batch) {
+            try {
+                jdbcTemplate.update(sql, ps -> binder.bind(ps, record));
+            } catch (DataAccessException e) {
+                dropped.incrementAndGet();
+                log.warn("丢弃无法写入的审计记录: {}", e.getMostSpecificCause().getMessage());
+            }
+        }
+    }
+
+    private void bindEvent(PreparedStatement ps, VerificationEvent event) throws SQLException {
+        ps.setString(1, event.getUserId());
+        ps.setString(2, event.getEmail());
+        ps.setString(3, event.getEventType().name());
+        ps.setString(4, event.getVerificationToken());
+        ps.setString(5, event.getIpAddress());
+        ps.setString(6, event.getUserAgent());
+        ps.setBoolean(7, event.getSuccess());
+        ps.setString(8, event.getFailureReason());
+        ps.setTimestamp(9, Timestamp.valueOf(event.getEventTimestamp()));
+        ps.setString(10, event.getMetadata());
+    }
+
+    private void bindHistory(PreparedStatement ps, EmailVerificationHistory history) throws SQLException {
+        ps.setString(1, history.getUserId());
+        ps.setString(2, history.getEmail());
+        ps.setString(3, history.getVerificationCode());
+        ps.setString(4, history.getVerificationToken());
+        ps.setString(5, history.getRequestType().name());
+        ps.setString(6, history.getIpAddress());
+        ps.setString(7, history.getDeviceFingerprint());
+        ps.setTimestamp(8, Timestamp.valueOf(history.getSentAt()));
+        setTimestamp(ps, 9, history.getVerifiedAt());
+        ps.setBoolean(10, history.getIsUsed());
+        ps.setTimestamp(11, Timestamp.valueOf(history.getExpiresAt()));
+        ps.setString(12, history.getDeliveryStatus() != null ? history.getDeliveryStatus().name() : null);
+        ps.setString(13, history.getProvider());
+    }
+
+    private static void setTimestamp(PreparedStatement ps, int index, LocalDateTime value) throws SQLException {
+        if (value != null) {
+            ps.setTimestamp(index, Timestamp.valueOf(value));
+        } else {
+            ps.setNull(index, Types.TIMESTAMP);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Binder<T> {
+        void bind(PreparedStatement ps, T record) throws SQLException;
+    }
+}
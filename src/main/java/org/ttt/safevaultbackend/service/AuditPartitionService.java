@@ -0,0 +1,221 @@
+package org.ttt.safevaultbackend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.ttt.safevaultbackend.config.AuditProperties;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 审计表分区维护服务
+ * verification_events 和 email_verification_history 按月范围分区（见 V27 迁移），
+ * 本服务负责提前创建未来月份的分区，并按保留期整体删除或分离过期分区。
+ *
+ * 分区命名为 <父表>_pYYYYMM；清理时只处理整月都早于保留期的分区，
+ * 因此实际保留时间在 保留天数 到 保留天数 + 1 个月 之间。
+ *
+ * 两张表各有一个默认分区 <父表>_default（见 V32 迁移）兜底，月分区未预建时写入不会失败；
+ * 预建失败时计数 audit.partition.create.failures 并抛出，已预建的未来月份数和默认分区行数
+ * 分别由 audit.partition.months.ahead 和 audit.partition.default.rows 暴露，用于告警。
+ */
+@Slf4j
+@Service
+public class AuditPartitionService {
+
+    public static final String VERIFICATION_EVENTS = "verification_events";
+    public static final String VERIFICATION_HISTORY = "email_verification_history";
+
+    private static final DateTimeFormatter SUFFIX_FORMAT = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private static final String LIST_PARTITIONS_SQL =
+            "SELECT c.relname FROM pg_inherits i " +
+            "JOIN pg_class c ON c.oid = i.inhrelid " +
+            "JOIN pg_class p ON p.oid = i.inhparent " +
+            "WHERE p.relname = ? ORDER BY c.relname";
+
+    private static final String DEFAULT_ROWS_SQL =
+            "SELECT (SELECT count(*) FROM verification_events_default) + " +
+            "(SELECT count(*) FROM email_verification_history_default)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AuditProperties properties;
+    private final Counter failureCounter;
+
+    /**
+     * 两张表中已存在分区的最少未来月份数（当月不计），初始为 -1 表示尚未检查
+     */
+    private final AtomicLong monthsAhead = new AtomicLong(-1);
+
+    /**
+     * 落入默认分区的行数，非 0 说明曾有月分区未按时创建
+     */
+    private final AtomicLong defaultRows = new AtomicLong();
+
+    public AuditPartitionService(JdbcTemplate jdbcTemplate,
+                                 AuditProperties properties,
+                                 MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.failureCounter = Counter.builder("audit.partition.create.failures").register(meterRegistry);
+        Gauge.builder("audit.partition.months.ahead", monthsAhead, AtomicLong::get)
+                .description("已预建的未来月份分区数")
+                .register(meterRegistry);
+        Gauge.builder("audit.partition.default.rows", defaultRows, AtomicLong::get)
+                .description("审计表默认分区中的行数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 启动时补齐分区，避免停机跨月后写入失败
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            ensurePartitions();
+        } catch (Exception e) {
+            log.error("启动时创建审计表分区失败", e);
+        }
+    }
+
+    /**
+     * 为两张审计表创建当月及未来 audit.partition-months-ahead 个月的分区
+     * 失败时计数并抛出，由维护任务记录失败；无论成功与否都刷新覆盖月份和默认分区行数指标
+     *
+     * @return 新创建的分区数
+     */
+    public int ensurePartitions() {
+        try {
+            int created = ensurePartitions(VERIFICATION_EVENTS) + ensurePartitions(VERIFICATION_HISTORY);
+            if (created > 0) {
+                log.info("已创建 {} 个审计表分区", created);
+            }
+            return created;
+        } catch (RuntimeException e) {
+            failureCounter.increment();
+            log.error("预建审计表分区失败，新数据将写入默认分区", e);
+            throw e;
+        } finally {
+            refreshMetrics();
+        }
+    }
+
+    /**
+     * 清理过期的验证事件分区
+     *
+     * @return 清理的分区数
+     */
+    public int dropExpiredEventPartitions() {
+        return dropExpiredPartitions(VERIFICATION_EVENTS, properties.getEventRetentionDays());
+    }
+
+    /**
+     * 清理过期的验证历史分区
+     *
+     * @return 清理的分区数
+     */
+    public int dropExpiredHistoryPartitions() {
+        return dropExpiredPartitions(VERIFICATION_HISTORY, properties.getHistoryRetentionDays());
+    }
+
+    private int ensurePartitions(String parent) {
+        YearMonth month = YearMonth.now();
+        int created = 0;
+        for (int i = 0; i <= properties.getPartitionMonthsAhead(); i++) {
+            Boolean result = jdbcTemplate.queryForObject("SELECT create_monthly_partition(?, ?)",
+                    Boolean.class, parent, Date.valueOf(month.plusMonths(i).atDay(1)));
+            if (Boolean.TRUE.equals(result)) {
+                created++;
+            }
+        }
+        return created;
+    }
+
+    /**
+     * 刷新分区覆盖指标；查询失败只记录日志，保留上次的值
+     */
+    private void refreshMetrics() {
+        try {
+            monthsAhead.set(Math.min(coveredMonthsAhead(VERIFICATION_EVENTS),
+                    coveredMonthsAhead(VERIFICATION_HISTORY)));
+            Long rows = jdbcTemplate.queryForObject(DEFAULT_ROWS_SQL, Long.class);
+            defaultRows.set(rows != null ? rows : 0);
+            if (defaultRows.get() > 0) {
+                log.warn("审计表默认分区中有 {} 行数据，对应月分区创建时会自动迁入", defaultRows.get());
+            }
+        } catch (Exception e) {
+            log.warn("刷新审计表分区指标失败", e);
+        }
+    }
+
+    /**
+     * 从当月开始连续存在分区的未来月份数；当月分区缺失时返回 -1
+     */
+    private int coveredMonthsAhead(String parent) {
+        List<YearMonth> months = jdbcTemplate.queryForList(LIST_PARTITIONS_SQL, String.class, parent).stream()
+                .map(partition -> parseMonth(parent, partition))
+                .filter(month -> month != null)
+                .toList();
+        YearMonth month = YearMonth.now();
+        int covered = -1;
+        while (months.contains(month)) {
+            covered++;
+            month = month.plusMonths(1);
+        }
+        return covered;
+    }
+
+    private int dropExpiredPartitions(String parent, int retentionDays) {
+        LocalDate cutoff = LocalDate.now().minusDays(retentionDays);
+        List<String> partitions = jdbcTemplate.queryForList(LIST_PARTITIONS_SQL, String.class, parent);
+
+        int removed = 0;
+        for (String partition : partitions) {
+            YearMonth month = parseMonth(parent, partition);
+            // 分区上界（下月1日）不晚于截止日期时，整个分区都已过期
+            if (month == null || month.plusMonths(1).atDay(1).isAfter(cutoff)) {
+                continue;
+            }
+
+            if (properties.getRetentionMode() == AuditProperties.RetentionMode.DETACH) {
+                jdbcTemplate.execute("ALTER TABLE " + quote(parent) + " DETACH PARTITION " + quote(partition));
+                log.info("已分离过期审计分区: {}", partition);
+            } else {
+                jdbcTemplate.execute("DROP TABLE " + quote(partition));
+                log.info("已删除过期审计分区: {}", partition);
+            }
+            removed++;
+        }
+        return removed;
+    }
+
+    /**
+     * 从分区名解析月份；不符合命名规则的分区返回 null，不做处理
+     */
+    private static YearMonth parseMonth(String parent, String partition) {
+        String prefix = parent + "_p";
+        if (!partition.startsWith(prefix)) {
+            return null;
+        }
+        try {
+            return YearMonth.parse(partition.substring(prefix.length()), SUFFIX_FORMAT);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -3,8 +3,10 @@ package org.ttt.safevaultbackend.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.ttt.safevaultbackend.dto.request.*;
 import org.ttt.safevaultbackend.dto.response.AuthResponse;
 import org.ttt.safevaultbackend.dto.response.CompleteRegistrationResponse;
@@ -16,51 +18,76 @@ import org.ttt.safevaultbackend.dto.response.VerifyEmailResponse;
 import org.ttt.safevaultbackend.dto.response.VerificationStatusResponse;
 import org.ttt.safevaultbackend.dto.DeviceInfo;
 import org.ttt.safevaultbackend.dto.PendingUser;
+import org.ttt.safevaultbackend.dto.UserSnapshot;
 import org.ttt.safevaultbackend.entity.User;
+import org.ttt.safevaultbackend.entity.UserDevice;
+import org.ttt.safevaultbackend.entity.UserKeyMaterial;
 import org.ttt.safevaultbackend.entity.UserPrivateKey;
+import org.ttt.safevaultbackend.enums.VerificationEventType;
 import org.ttt.safevaultbackend.exception.BusinessException;
 import org.ttt.safevaultbackend.exception.ResourceNotFoundException;
+import org.ttt.safevaultbackend.repository.UserDeviceRepository;
+import org.ttt.safevaultbackend.repository.UserKeyMaterialRepository;
 import org.ttt.safevaultbackend.repository.UserRepository;
 import org.ttt.safevaultbackend.repository.UserPrivateKeyRepository;
 import org.ttt.safevaultbackend.security.Argon2PasswordHasher;
 import org.ttt.safevaultbackend.security.JwtTokenProvider;
-import org.ttt.safevaultbackend.service.EmailService;
+import org.ttt.safevaultbackend.util.CryptoPrimitives;
 import org.ttt.safevaultbackend.service.PendingUserService;
 import org.ttt.safevaultbackend.service.VerificationTokenService;
+import org.ttt.safevaultbackend.util.UuidV7;
 
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
-import java.util.stream.Collectors;
 
 /**
  * 认证服务
  * 支持旧的设备 ID 认证和新的邮箱认证
+ *
+ * 签发令牌（RS256 签名）和签名校验都在事务之外执行，事务只包含数据库读写，
+ * 避免 CPU 密集的加密操作占用连接池中的连接。
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class AuthService {
 
+    /**
+     * 验证邮件已写入发件箱、等待异步发送
+     */
+    private static final String EMAIL_STATUS_QUEUED = "QUEUED";
+
     private final UserRepository userRepository;
     private final UserPrivateKeyRepository userPrivateKeyRepository;
+    private final UserKeyMaterialRepository userKeyMaterialRepository;
     private final JwtTokenProvider tokenProvider;
-    private final EmailService emailService;
+    private final EmailOutboxService emailOutboxService;
     private final VerificationTokenService verificationTokenService;
     private final PendingUserService pendingUserService;
+    private final UserExistenceFilter userExistenceFilter;
     private final CryptoService cryptoService;
     private final TokenRevokeService tokenRevokeService;
     private final VerificationEventService verificationEventService;
     private final EmailVerificationHistoryService verificationHistoryService;
     private final Argon2PasswordHasher argon2PasswordHasher;
     private final NonceService nonceService;
+    private final UserDeviceRepository userDeviceRepository;
+    private final DeviceActivityTracker deviceActivityTracker;
+    private final UserCacheService userCacheService;
+    private final TransactionTemplate transactionTemplate;
 
     @Value("${email.verification.token-expiration-minutes:10}")
     private int tokenExpirationMinutes;
 
+    @Value("${email.verification.max-sends-per-hour:5}")
+    private int maxSendsPerHour;
+
+    @Value("${email.verification.max-failed-verifications-per-hour:10}")
+    private int maxFailedVerificationsPerHour;
+
     @Value("${registration.cleanup-timeout-minutes:5}")
     private int registrationTimeoutMinutes;
 
@@ -70,10 +97,9 @@ public class AuthService {
     /**
      * 用户注册
      */
-    @Transactional
     public AuthResponse register(RegisterRequest request) {
         // 检查用户名是否已存在
-        if (userRepository.existsByUsername(request.getUsername())) {
+        if (userExistenceFilter.existsByUsername(request.getUsername())) {
             throw new BusinessException("USER_ALREADY_EXISTS", "用户名已存在");
         }
 
@@ -83,15 +109,22 @@ public class AuthService {
         }
 
         // 创建新用户
-        User user = User.builder()
-                .userId(UUID.randomUUID().toString())
+        User newUser = User.builder()
+                .userId(UuidV7.generateString())
                 .deviceId(request.getDeviceId())
                 .username(request.getUsername())
                 .displayName(request.getDisplayName())
-                .publicKey(request.getPublicKey())
                 .build();
 
-        user = userRepository.save(user);
+        User user = transactionTemplate.execute(status -> {
+            User saved = userRepository.save(newUser);
+            userKeyMaterialRepository.save(UserKeyMaterial.builder()
+                    .userId(saved.getUserId())
+                    .publicKey(request.getPublicKey())
+                    .build());
+            userExistenceFilter.add(saved.getEmail(), saved.getUsername());
+            return saved;
+        });
 
         // 生成 Token
         String accessToken = tokenProvider.generateAccessToken(user.getUserId());
@@ -108,7 +141,6 @@ public class AuthService {
     /**
      * 用户登录
      */
-    @Transactional(readOnly = true)
     public AuthResponse login(LoginRequest request) {
         // 查找用户
         User user = userRepository.findByUserId(request.getUserId())
@@ -137,7 +169,6 @@ public class AuthService {
     /**
      * 通过用户名登录
      */
-    @Transactional(readOnly = true)
     public AuthResponse loginByUsername(LoginByUsernameRequest request) {
         // 通过用户名查找用户
         User user = userRepository.findByUsername(request.getUsername())
@@ -162,6 +193,7 @@ public class AuthService {
 
     /**
      * 刷新令牌
+     * 不开启事务：用户存在性检查只占用一次查询的连接
      */
     public AuthResponse refreshToken(String refreshToken) {
         // 验证刷新令牌
@@ -207,12 +239,12 @@ public class AuthService {
      */
     public EmailRegistrationResponse registerWithEmail(EmailRegistrationRequest request) {
         // 检查邮箱是否已在数据库中注册
-        if (userRepository.existsByEmail(request.getEmail())) {
+        if (userExistenceFilter.existsByEmail(request.getEmail())) {
             throw new BusinessException("EMAIL_ALREADY_EXISTS", "该邮箱已被注册");
         }
 
         // 检查用户名是否已被使用
-        if (userRepository.existsByUsername(request.getUsername())) {
+        if (userExistenceFilter.existsByUsername(request.getUsername())) {
             throw new BusinessException("USERNAME_ALREADY_EXISTS", "该用户名已被使用");
         }
 
@@ -247,6 +279,8 @@ public class AuthService {
             }
         }
 
+        checkSendLimit(request.getEmail());
+
         // 生成验证令牌
         String token = pendingUserService.generateVerificationToken();
 
@@ -278,18 +312,16 @@ public class AuthService {
         // 构建验证链接（Deep Link）
         String verificationUrl = "safevault://verify-email?token=" + token;
 
-        // 发送验证邮件
-        boolean emailSent = emailService.sendVerificationEmail(request.getEmail(), verificationUrl);
-
-        // 记录邮件发送事件
-        verificationEventService.recordEmailSent(null, request.getEmail(), token, emailSent, emailSent ? null : "邮件发送失败");
+        // 验证邮件写入发件箱异步发送，发送结果由发件箱记录到验证事件
+        emailOutboxService.enqueueVerificationEmail(request.getEmail(), verificationUrl, token);
 
         log.info("发起邮箱注册: email={}, username={}, token={}", request.getEmail(), request.getUsername(), token);
 
         return EmailRegistrationResponse.builder()
-                .message("注册成功，请查收验证邮件")
+                .message("注册成功，验证邮件正在发送，请稍后查收")
                 .email(request.getEmail())
-                .emailSent(emailSent)
+                .emailSent(false)
+                .emailStatus(EMAIL_STATUS_QUEUED)
                 .expiresInSeconds((long) tokenExpirationMinutes * 60)
                 .build();
     }
@@ -301,7 +333,6 @@ public class AuthService {
      * @param request 验证令牌
      * @return 验证响应
      */
-    @Transactional
     public VerifyEmailResponse verifyEmail(VerifyEmailRequest request) {
         try {
             log.info("收到邮箱验证请求: token={}", request.getToken());
@@ -323,12 +354,24 @@ public class AuthService {
                     pendingUser.getTokenExpiresAt(),
                     pendingUser.getCreatedAt());
 
+            // 一小时内验证失败次数过多时拒绝，直到窗口滑过
+            if (verificationEventService.exceedsRetryLimit(pendingUser.getEmail(), VerificationEventType.TOKEN_INVALID,
+                    LocalDateTime.now().minusHours(1), maxFailedVerificationsPerHour - 1L)) {
+                log.warn("验证失败: 失败次数过多, email={}", pendingUser.getEmail());
+                return VerifyEmailResponse.builder()
+                        .success(false)
+                        .message("验证失败次数过多，请稍后重试")
+                        .build();
+            }
+
             // 检查令牌是否过期
             if (pendingUser.isTokenExpired()) {
                 log.warn("验证失败: 令牌已过期, email={}, tokenExpiresAt={}, now={}",
                         pendingUser.getEmail(),
                         pendingUser.getTokenExpiresAt(),
                         LocalDateTime.now());
+                verificationEventService.recordTokenInvalid(null, pendingUser.getEmail(), request.getToken(),
+                        "令牌已过期", null);
                 // 清理过期的待验证用户
                 pendingUserService.deletePendingUser(pendingUser.getEmail());
                 return VerifyEmailResponse.builder()
@@ -338,6 +381,7 @@ public class AuthService {
             }
 
             // 再次检查数据库中是否已存在该邮箱（防止并发注册）
+            // 直接查询数据库：过滤器在提交后才写入，刚注册的用户可能尚未写入过滤器
             if (userRepository.existsByEmail(pendingUser.getEmail())) {
                 log.warn("验证失败: 该邮箱已被注册, email={}", pendingUser.getEmail());
                 // 清理 Redis 中的数据
@@ -361,7 +405,7 @@ public class AuthService {
 
             // 创建用户记录（邮箱已验证状态）
             User user = User.builder()
-                    .userId(UUID.randomUUID().toString())
+                    .userId(UuidV7.generateString())
                     .email(pendingUser.getEmail())
                     .username(pendingUser.getUsername())
                     .displayName(pendingUser.getDisplayName())
@@ -370,7 +414,13 @@ public class AuthService {
                     .verifiedAt(LocalDateTime.now())
                     .build();
 
-            user = userRepository.save(user);
+            // 在独立事务中写入并提交，唯一约束冲突（并发注册）在此处抛出并转换为业务响应
+            User newUser = user;
+            user = transactionTemplate.execute(status -> {
+                User saved = userRepository.saveAndFlush(newUser);
+                userExistenceFilter.add(saved.getEmail(), saved.getUsername());
+                return saved;
+            });
 
             // 清除 Redis 中的待验证用户
             pendingUserService.deletePendingUser(pendingUser.getEmail());
@@ -391,6 +441,12 @@ public class AuthService {
                     .username(user.getUsername())
                     .build();
 
+        } catch (DataIntegrityViolationException e) {
+            log.warn("验证失败: 邮箱或用户名已被并发注册, token={}", request.getToken());
+            return VerifyEmailResponse.builder()
+                    .success(false)
+                    .message("该邮箱或用户名已被注册")
+                    .build();
         } catch (Exception e) {
             log.error("邮箱验证失败: token={}", request.getToken(), e);
             return VerifyEmailResponse.builder()
@@ -430,6 +486,8 @@ public class AuthService {
             }
         }
 
+        checkSendLimit(request.getEmail());
+
         // 生成新的验证令牌
         String newToken = pendingUserService.generateVerificationToken();
         LocalDateTime tokenExpiresAt = LocalDateTime.now().plusMinutes(tokenExpirationMinutes);
@@ -448,33 +506,43 @@ public class AuthService {
         // 构建验证链接
         String verificationUrl = "safevault://verify-email?token=" + newToken;
 
-        // 发送验证邮件
-        boolean emailSent = emailService.sendVerificationEmail(request.getEmail(), verificationUrl);
-
-        // 记录邮件发送事件
-        verificationEventService.recordEmailSent(null, request.getEmail(), newToken, emailSent, emailSent ? null : "邮件发送失败");
+        // 验证邮件写入发件箱异步发送，发送结果由发件箱记录到验证事件
+        emailOutboxService.enqueueVerificationEmail(request.getEmail(), verificationUrl, newToken);
 
         log.info("重新发送验证邮件: email={}, newToken={}", request.getEmail(), newToken);
 
         return EmailRegistrationResponse.builder()
-                .message("验证邮件已重新发送")
+                .message("验证邮件正在重新发送，请稍后查收")
                 .email(request.getEmail())
-                .emailSent(emailSent)
+                .emailSent(false)
+                .emailStatus(EMAIL_STATUS_QUEUED)
                 .expiresInSeconds((long) tokenExpirationMinutes * 60)
                 .build();
     }
 
+    /**
+     * 检查验证邮件发送频率：一小时内最多发送 max-sends-per-hour 封
+     * 计数来自 Redis 滑动窗口计数器，首次检查时由验证历史补种
+     */
+    private void checkSendLimit(String email) {
+        if (verificationHistoryService.exceedsSendLimit(email, LocalDateTime.now().minusHours(1), maxSendsPerHour - 1L)) {
+            throw new BusinessException("SEND_LIMIT_EXCEEDED", "验证邮件发送次数过多，请一小时后再试");
+        }
+    }
+
     /**
      * 检查邮箱验证状态
      * 用于前端轮询检查用户是否已在 Web 页面完成验证
+     * 匿名请求没有读己之写标记，刚完成的验证可能尚未复制到副本，因此不标记只读、始终读主库
      *
      * @param email 邮箱地址
      * @return 验证状态响应
      */
-    @Transactional(readOnly = true)
+    @Transactional
     public VerificationStatusResponse checkVerificationStatus(String email) {
         // 首先检查数据库中是否已有该邮箱的用户（表示已验证）
-        if (userRepository.existsByEmail(email)) {
+        // 过滤器判定一定不存在时跳过数据库查询
+        if (userExistenceFilter.mightContainEmail(email)) {
             User user = userRepository.findByEmail(email).orElse(null);
             if (user != null && user.getEmailVerified()) {
                 return VerificationStatusResponse.builder()
@@ -519,14 +587,15 @@ public class AuthService {
     /**
      * 登录预检查（Challenge-Response 机制第一步）
      * 生成并返回服务器挑战码（nonce）
+     * 通常紧跟在完成注册之后调用，与 checkVerificationStatus 相同读主库
      *
      * @param request 登录预检查请求
      * @return 登录预检查响应，包含 nonce 和过期时间
      */
-    @Transactional(readOnly = true)
+    @Transactional
     public LoginPrecheckResponse loginPrecheck(LoginPrecheckRequest request) {
         // 检查用户是否存在
-        User user = userRepository.findByEmail(request.getEmail())
+        UserSnapshot user = userCacheService.findByEmail(request.getEmail())
                 .orElseThrow(() -> new ResourceNotFoundException("User", "email", request.getEmail()));
 
         // 检查邮箱是否已验证
@@ -541,7 +610,8 @@ public class AuthService {
         long expiresAt = System.currentTimeMillis() / 1000 + 30; // 30 秒后过期
 
         // 检查派生密钥是否存在
-        if (user.getPasswordVerifier() == null || user.getPasswordVerifier().isEmpty()) {
+        String passwordVerifier = loadPasswordVerifier(user.getUserId());
+        if (passwordVerifier == null || passwordVerifier.isEmpty()) {
             throw new BusinessException("PASSWORD_VERIFIER_MISSING",
                 "用户派生密钥未配置，请先完成注册");
         }
@@ -553,7 +623,7 @@ public class AuthService {
                 .nonce(nonce)
                 .expiresAt(expiresAt)
                 .userId(user.getUserId())
-                .passwordVerifier(user.getPasswordVerifier())
+                .passwordVerifier(passwordVerifier)
                 .build();
     }
 
@@ -564,10 +634,9 @@ public class AuthService {
      * @param request 邮箱登录请求
      * @return 邮箱登录响应
      */
-    @Transactional
     public EmailLoginResponse loginByEmail(LoginByEmailRequest request) {
         // 查找用户
-        User user = userRepository.findByEmail(request.getEmail())
+        UserSnapshot user = userCacheService.findByEmail(request.getEmail())
                 .orElseThrow(() -> new ResourceNotFoundException("User", "email", request.getEmail()));
 
         // 检查邮箱是否已验证
@@ -579,129 +648,134 @@ public class AuthService {
         verifyDerivedKeySignature(request.getEmail(), request.getDeviceId(),
                 request.getDerivedKeySignature(), request.getNonce());
 
-        // 获取当前设备列表
-        List<DeviceInfo> devices = getDevicesList(user);
+        String userId = user.getUserId();
+        String deviceId = request.getDeviceId();
+        int maxDevices = user.getMaxDevices() != null ? user.getMaxDevices() : 5;
+
+        // 设备登记在事务内完成，令牌在事务提交后签发
+        DeviceLogin deviceLogin = transactionTemplate.execute(
+                status -> registerDeviceLogin(userId, deviceId, maxDevices, request));
+        boolean isNewDevice = deviceLogin.isNewDevice();
+        List<DeviceInfo> devices = deviceLogin.devices();
+
+        // 生成 Token
+        String accessToken = tokenProvider.generateAccessToken(userId);
+        String refreshToken = tokenProvider.generateRefreshToken(userId);
+
+        return EmailLoginResponse.builder()
+                .userId(userId)
+                .email(user.getEmail())
+                .username(user.getUsername())
+                .displayName(user.getDisplayName())
+                .accessToken(accessToken)
+                .refreshToken(refreshToken)
+                .expiresIn(tokenProvider.getAccessTokenExpirationSeconds())
+                .emailVerified(user.getEmailVerified())
+                .devices(devices)
+                .isNewDevice(isNewDevice)
+                .message(isNewDevice ? "新设备登录成功" : null)
+                .maxDevices(maxDevices)
+                .build();
+    }
+
+    /**
+     * 邮箱登录的设备登记结果
+     *
+     * @param isNewDevice 是否为新设备
+     * @param devices     登记后的设备列表
+     */
+    private record DeviceLogin(boolean isNewDevice, List<DeviceInfo> devices) {
+    }
 
-        // 检查是否为新设备
-        boolean isNewDevice = devices.stream()
-                .noneMatch(d -> d.getDeviceId().equals(request.getDeviceId()));
+    /**
+     * 登记登录设备（在事务内执行）
+     * 新设备超出数量限制时撤销最久未使用的设备
+     */
+    private DeviceLogin registerDeviceLogin(String userId, String deviceId, int maxDevices,
+                                            LoginByEmailRequest request) {
+        // 检查是否为新设备（user_devices 唯一索引查询）
+        boolean isNewDevice = !userDeviceRepository.existsByUserIdAndDeviceId(userId, deviceId);
 
         if (isNewDevice) {
             // 新设备：检查设备数量限制
-            int maxDevices = user.getMaxDevices() != null ? user.getMaxDevices() : 5;
-
-            if (devices.size() >= maxDevices) {
+            if (userDeviceRepository.countByUserId(userId) >= maxDevices) {
                 // 已达到上限，撤销最久未使用的设备
-                DeviceInfo oldestDevice = devices.stream()
-                        .min((d1, d2) -> {
-                            LocalDateTime t1 = d1.getLastActiveAt() != null ? d1.getLastActiveAt() : d1.getCreatedAt();
-                            LocalDateTime t2 = d2.getLastActiveAt() != null ? d2.getLastActiveAt() : d2.getCreatedAt();
-                            return t1.compareTo(t2);
-                        })
-                        .orElseThrow();
-
-                // 撤销最旧设备的Token
-                try {
-                    tokenRevokeService.revokeDevice(
-                        oldestDevice.getDeviceId(),
-                        user.getUserId()
-                    );
-                    log.info("达到设备数量上限，撤销最旧设备: userId={}, deviceId={}, oldestDeviceId={}",
-                        user.getUserId(), request.getDeviceId(), oldestDevice.getDeviceId());
-                } catch (Exception e) {
-                    log.warn("撤销最旧设备失败，继续添加新设备: userId={}, oldestDeviceId={}",
-                        user.getUserId(), oldestDevice.getDeviceId(), e);
-                }
-
-                // 从列表中移除
-                devices.removeIf(d -> d.getDeviceId().equals(oldestDevice.getDeviceId()));
+                userDeviceRepository.findFirstByUserIdOrderByLastActiveAtAsc(userId)
+                        .ifPresent(oldestDevice -> evictDevice(userId, deviceId, oldestDevice));
             }
 
             // 添加新设备
-            DeviceInfo newDevice = DeviceInfo.builder()
-                    .deviceId(request.getDeviceId())
+            userDeviceRepository.save(UserDevice.builder()
+                    .id(UuidV7.generateString())
+                    .userId(userId)
+                    .deviceId(deviceId)
                     .deviceName(request.getDeviceName())
                     .deviceType(request.getDeviceType() != null ? request.getDeviceType() : "unknown")
                     .osVersion(request.getOsVersion())
-                    .createdAt(LocalDateTime.now())
-                    .lastActiveAt(LocalDateTime.now())
-                    .isCurrentDevice(true)
-                    .build();
-
-            devices.add(newDevice);
-
-            // 更新用户记录
-            user.setDevices(DeviceInfo.toJson(devices));
-            userRepository.save(user);
-
-            // 生成 Token
-            String accessToken = tokenProvider.generateAccessToken(user.getUserId());
-            String refreshToken = tokenProvider.generateRefreshToken(user.getUserId());
+                    .build());
+        } else {
+            // 已注册设备：只记录活跃时间，由追踪器批量写入，不更新 users 记录
+            deviceActivityTracker.touch(userId, deviceId);
+        }
 
-            return EmailLoginResponse.builder()
-                    .userId(user.getUserId())
-                    .email(user.getEmail())
-                    .username(user.getUsername())
-                    .displayName(user.getDisplayName())
-                    .accessToken(accessToken)
-                    .refreshToken(refreshToken)
-                    .expiresIn(tokenProvider.getAccessTokenExpirationSeconds())
-                    .emailVerified(user.getEmailVerified())
-                    .devices(devices)
-                    .isNewDevice(true)
-                    .message("新设备登录成功")
-                    .maxDevices(maxDevices)
-                    .build();
+        return new DeviceLogin(isNewDevice, getDevicesList(userId, deviceId));
+    }
 
-        } else {
-            // 已注册设备：更新最后活跃时间
-            devices = devices.stream()
-                    .map(d -> {
-                        if (d.getDeviceId().equals(request.getDeviceId())) {
-                            d.setLastActiveAt(LocalDateTime.now());
-                            d.setCurrentDevice(true);
-                        } else {
-                            d.setCurrentDevice(false);
-                        }
-                        return d;
-                    })
-                    .collect(Collectors.toList());
-
-            // 更新用户记录
-            user.setDevices(DeviceInfo.toJson(devices));
-            userRepository.save(user);
-
-            // 生成 Token
-            String accessToken = tokenProvider.generateAccessToken(user.getUserId());
-            String refreshToken = tokenProvider.generateRefreshToken(user.getUserId());
-
-            return EmailLoginResponse.builder()
-                    .userId(user.getUserId())
-                    .email(user.getEmail())
-                    .username(user.getUsername())
-                    .displayName(user.getDisplayName())
-                    .accessToken(accessToken)
-                    .refreshToken(refreshToken)
-                    .expiresIn(tokenProvider.getAccessTokenExpirationSeconds())
-                    .emailVerified(user.getEmailVerified())
-                    .devices(devices)
-                    .isNewDevice(false)
-                    .maxDevices(user.getMaxDevices() != null ? user.getMaxDevices() : 5)
-                    .build();
+    /**
+     * 撤销并移除最久未使用的设备
+     *
+     * @param userId        用户ID
+     * @param newDeviceId   正在登录的新设备ID
+     * @param oldestDevice  最久未使用的设备
+     */
+    private void evictDevice(String userId, String newDeviceId, UserDevice oldestDevice) {
+        // 撤销最旧设备的Token
+        try {
+            tokenRevokeService.revokeDevice(oldestDevice.getDeviceId(), userId);
+            log.info("达到设备数量上限，撤销最旧设备: userId={}, deviceId={}, oldestDeviceId={}",
+                    userId, newDeviceId, oldestDevice.getDeviceId());
+        } catch (Exception e) {
+            log.warn("撤销最旧设备失败，继续添加新设备: userId={}, oldestDeviceId={}",
+                    userId, oldestDevice.getDeviceId(), e);
         }
+
+        userDeviceRepository.deleteByUserIdAndDeviceId(userId, oldestDevice.getDeviceId());
+        deviceActivityTracker.forget(userId, oldestDevice.getDeviceId());
     }
 
     /**
      * 获取用户的设备列表
+     * 合并追踪器中尚未刷新的活跃时间
      *
-     * @param user 用户
+     * @param userId          用户ID
+     * @param currentDeviceId 当前请求的设备ID；为空时以最近活跃的设备作为当前设备
      * @return 设备列表
      */
-    private List<DeviceInfo> getDevicesList(User user) {
-        if (user.getDevices() == null || user.getDevices().isEmpty()) {
-            return new ArrayList<>();
+    private List<DeviceInfo> getDevicesList(String userId, String currentDeviceId) {
+        List<DeviceInfo> devices = new ArrayList<>();
+        for (UserDevice device : userDeviceRepository.findByUserIdOrderByCreatedAtAsc(userId)) {
+            LocalDateTime pendingLastActive = deviceActivityTracker.getPendingLastActive(userId, device.getDeviceId());
+            devices.add(DeviceInfo.builder()
+                    .deviceId(device.getDeviceId())
+                    .deviceName(device.getDeviceName())
+                    .deviceType(device.getDeviceType())
+                    .osVersion(device.getOsVersion())
+                    .createdAt(device.getCreatedAt())
+                    .lastActiveAt(pendingLastActive != null ? pendingLastActive : device.getLastActiveAt())
+                    .build());
+        }
+
+        String current = currentDeviceId;
+        if (current == null) {
+            current = devices.stream()
+                    .max((d1, d2) -> d1.getLastActiveAt().compareTo(d2.getLastActiveAt()))
+                    .map(DeviceInfo::getDeviceId)
+                    .orElse(null);
         }
-        return DeviceInfo.fromJson(user.getDevices());
+        for (DeviceInfo device : devices) {
+            device.setCurrentDevice(device.getDeviceId().equals(current));
+        }
+        return devices;
     }
 
     // ========== 签名验证方法 ==========
@@ -795,14 +869,14 @@ public class AuthService {
             throw new BusinessException("INVALID_NONCE", "挑战码无效或已过期");
         }
 
-        // 获取用户以验证签名
-        User user = userRepository.findByEmail(email)
+        // 获取用户以验证签名（与 loginByEmail 命中同一缓存条目）
+        UserSnapshot user = userCacheService.findByEmail(email)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "email", email));
 
         // 使用派生密钥验证器作为HMAC密钥
         // 注意：passwordVerifier 存储的是 PBKDF2 派生密钥的 Base64 编码
         // 客户端使用相同的派生密钥生成签名，实现零知识证明
-        String derivedKeyBase64 = user.getPasswordVerifier();
+        String derivedKeyBase64 = loadPasswordVerifier(user.getUserId());
 
         if (derivedKeyBase64 == null || derivedKeyBase64.isEmpty()) {
             throw new BusinessException("INVALID_SIGNATURE", "用户派生密钥未配置，无法验证签名");
@@ -838,13 +912,7 @@ public class AuthService {
             byte[] derivedKeyBytes = java.util.Base64.getDecoder().decode(derivedKeyBase64);
 
             // 使用派生密钥字节数组作为 HMAC 密钥
-            javax.crypto.Mac mac = javax.crypto.Mac.getInstance("HmacSHA256");
-            javax.crypto.spec.SecretKeySpec secretKey = new javax.crypto.spec.SecretKeySpec(
-                derivedKeyBytes,
-                "HmacSHA256"
-            );
-            mac.init(secretKey);
-            byte[] signature = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+            byte[] signature = CryptoPrimitives.hmacSha256(derivedKeyBytes, data.getBytes(StandardCharsets.UTF_8));
             return java.util.Base64.getEncoder().encodeToString(signature);
         } catch (Exception e) {
             log.error("HMAC签名计算失败", e);
@@ -861,13 +929,10 @@ public class AuthService {
      */
     private String computeHmacSignature(String data, String key) {
         try {
-            javax.crypto.Mac mac = javax.crypto.Mac.getInstance("HmacSHA256");
-            javax.crypto.spec.SecretKeySpec secretKey = new javax.crypto.spec.SecretKeySpec(
+            byte[] signature = CryptoPrimitives.hmacSha256(
                 key.getBytes(StandardCharsets.UTF_8),
-                "HmacSHA256"
+                data.getBytes(StandardCharsets.UTF_8)
             );
-            mac.init(secretKey);
-            byte[] signature = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
             return java.util.Base64.getEncoder().encodeToString(signature);
         } catch (Exception e) {
             log.error("HMAC签名计算失败", e);
@@ -882,13 +947,8 @@ public class AuthService {
      * @return Base64编码的签名
      */
     private String computeHashSignature(String data) {
-        try {
-            java.security.MessageDigest digest = java.security.MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(data.getBytes(java.nio.charset.StandardCharsets.UTF_8));
-            return java.util.Base64.getEncoder().encodeToString(hash);
-        } catch (Exception e) {
-            throw new BusinessException("SIGNATURE_ERROR", "签名计算失败");
-        }
+        byte[] hash = CryptoPrimitives.sha256(data.getBytes(StandardCharsets.UTF_8));
+        return java.util.Base64.getEncoder().encodeToString(hash);
     }
 
     // ========== 设备管理方法 ==========
@@ -905,7 +965,7 @@ public class AuthService {
     @Transactional
     public LogoutResponse logout(String userId, String token, LogoutRequest request) {
         // 验证用户存在
-        User user = userRepository.findById(userId)
+        userCacheService.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "userId", userId));
 
         // 撤销令牌（如果提供）
@@ -937,8 +997,33 @@ public class AuthService {
      * @param request 完成注册请求
      * @return 完成注册响应
      */
-    @Transactional
     public CompleteRegistrationResponse completeRegistration(CompleteRegistrationRequest request) {
+        // 数据库变更在事务内完成，令牌在事务提交后签发
+        User user = transactionTemplate.execute(status -> activateRegistration(request));
+
+        // 生成访问令牌和刷新令牌
+        String accessToken = tokenProvider.generateAccessToken(user.getUserId());
+        String refreshToken = tokenProvider.generateRefreshToken(user.getUserId());
+
+        log.info("用户完成注册: userId={}, email={}, username={}", user.getUserId(), user.getEmail(), user.getUsername());
+
+        return CompleteRegistrationResponse.builder()
+                .success(true)
+                .message("注册成功")
+                .userId(user.getUserId())
+                .accessToken(accessToken)
+                .refreshToken(refreshToken)
+                .displayName(user.getDisplayName())
+                .build();
+    }
+
+    /**
+     * 校验注册状态并保存密码验证器和密钥（在事务内执行）
+     *
+     * @param request 完成注册请求
+     * @return 已激活的用户
+     */
+    private User activateRegistration(CompleteRegistrationRequest request) {
         // 查找用户（通过邮箱）
         User user = userRepository.findByEmail(request.getEmail())
                 .orElseThrow(() -> new ResourceNotFoundException("User", "email", request.getEmail()));
@@ -974,12 +1059,15 @@ public class AuthService {
         }
 
         // 检查是否已完成注册
-        if (user.getPasswordVerifier() != null && !user.getPasswordVerifier().isEmpty()) {
+        String userId = user.getUserId();
+        UserKeyMaterial keyMaterial = userKeyMaterialRepository.findById(userId)
+                .orElseGet(() -> UserKeyMaterial.builder().userId(userId).build());
+        if (keyMaterial.getPasswordVerifier() != null && !keyMaterial.getPasswordVerifier().isEmpty()) {
             throw new BusinessException("REGISTRATION_ALREADY_COMPLETED", "注册已完成，请直接登录");
         }
 
         // 保存密码验证器和盐值（前端已经使用Argon2id哈希密码）
-        user.setPasswordVerifier(request.getPasswordVerifier());
+        keyMaterial.setPasswordVerifier(request.getPasswordVerifier());
         user.setPasswordSalt(request.getSalt());
 
         // 设置密码哈希算法为 Argon2id（新用户默认使用）
@@ -987,9 +1075,10 @@ public class AuthService {
         log.info("新用户使用 Argon2id 密码哈希算法: userId={}", user.getUserId());
 
         // 保存公钥和加密的私钥
-        user.setPublicKey(request.getPublicKey());
-        user.setPrivateKeyEncrypted(request.getEncryptedPrivateKey());
-        user.setPrivateKeyIv(request.getPrivateKeyIv());
+        keyMaterial.setPublicKey(request.getPublicKey());
+        keyMaterial.setPrivateKeyEncrypted(request.getEncryptedPrivateKey());
+        keyMaterial.setPrivateKeyIv(request.getPrivateKeyIv());
+        userKeyMaterialRepository.save(keyMaterial);
 
         // 设置设备ID（如果是新用户）
         if (user.getDeviceId() == null || user.getDeviceId().isEmpty()) {
@@ -1014,38 +1103,23 @@ public class AuthService {
         userPrivateKeyRepository.save(userPrivateKey);
         log.info("保存私钥到 user_private_keys 表: userId={}, authTag长度={}", user.getUserId(), request.getAuthTag() != null ? request.getAuthTag().length() : 0);
 
-        // 生成访问令牌和刷新令牌
-        String accessToken = tokenProvider.generateAccessToken(user.getUserId());
-        String refreshToken = tokenProvider.generateRefreshToken(user.getUserId());
-
-        log.info("用户完成注册: userId={}, email={}, username={}", user.getUserId(), user.getEmail(), user.getUsername());
-
-        return CompleteRegistrationResponse.builder()
-                .success(true)
-                .message("注册成功")
-                .userId(user.getUserId())
-                .accessToken(accessToken)
-                .refreshToken(refreshToken)
-                .displayName(user.getDisplayName())
-                .build();
+        return user;
     }
 
     /**
      * 获取用户设备列表
      *
-     * @param userId 用户 ID
+     * @param userId          用户 ID
+     * @param currentDeviceId 当前请求的设备 ID（X-Device-ID，可为空）
      * @return 设备列表
      */
     @Transactional(readOnly = true)
-    public java.util.List<DeviceInfo> getUserDevices(String userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("User", "userId", userId));
-
-        if (user.getDevices() == null || user.getDevices().isEmpty()) {
-            return new java.util.ArrayList<>();
+    public java.util.List<DeviceInfo> getUserDevices(String userId, String currentDeviceId) {
+        if (!userRepository.existsById(userId)) {
+            throw new ResourceNotFoundException("User", "userId", userId);
         }
 
-        return DeviceInfo.fromJson(user.getDevices());
+        return getDevicesList(userId, currentDeviceId);
     }
 
     /**
@@ -1053,14 +1127,12 @@ public class AuthService {
      *
      * @param userId           用户 ID
      * @param deviceIdToRemove 要移除的设备 ID
+     * @param currentDeviceId  当前请求的设备 ID（X-Device-ID，可为空）
      * @return 是否成功移除
      */
     @Transactional
-    public boolean removeDevice(String userId, String deviceIdToRemove) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("User", "userId", userId));
-
-        java.util.List<DeviceInfo> devices = getUserDevices(userId);
+    public boolean removeDevice(String userId, String deviceIdToRemove, String currentDeviceId) {
+        java.util.List<DeviceInfo> devices = getUserDevices(userId, currentDeviceId);
 
         // 检查是否尝试移除当前设备
         DeviceInfo currentDevice = devices.stream()
@@ -1074,11 +1146,10 @@ public class AuthService {
         }
 
         // 移除设备
-        boolean removed = devices.removeIf(d -> d.getDeviceId().equals(deviceIdToRemove));
+        boolean removed = userDeviceRepository.deleteByUserIdAndDeviceId(userId, deviceIdToRemove) > 0;
 
         if (removed) {
-            user.setDevices(DeviceInfo.toJson(devices));
-            userRepository.save(user);
+            deviceActivityTracker.forget(userId, deviceIdToRemove);
             log.info("移除设备: userId={}, deviceId={}", userId, deviceIdToRemove);
         }
 
@@ -1155,16 +1226,16 @@ public class AuthService {
     /**
      * 验证用户密码（使用 Argon2id）
      *
-     * @param user 用户实体
+     * @param user 用户快照
      * @param password 明文密码
      * @return 密码是否匹配
      */
-    public boolean verifyPassword(User user, String password) {
+    public boolean verifyPassword(UserSnapshot user, String password) {
         if (user == null || password == null) {
             return false;
         }
 
-        String storedHash = user.getPasswordVerifier();
+        String storedHash = loadPasswordVerifier(user.getUserId());
         if (storedHash == null || storedHash.isEmpty()) {
             log.warn("用户密码验证器为空: userId={}", user.getUserId());
             return false;
@@ -1195,11 +1266,22 @@ public class AuthService {
     /**
      * 检查用户密码哈希是否需要重新计算
      */
-    public boolean needsPasswordRehash(User user) {
-        if (user == null || user.getPasswordVerifier() == null) {
+    public boolean needsPasswordRehash(UserSnapshot user) {
+        if (user == null) {
             return false;
         }
-        return argon2PasswordHasher.needsRehash(user.getPasswordVerifier());
+        String storedHash = loadPasswordVerifier(user.getUserId());
+        return storedHash != null && argon2PasswordHasher.needsRehash(storedHash);
+    }
+
+    /**
+     * 读取用户的密码验证器
+     * 验证器属于凭据，不随用户快照写入 Redis，只在进程内缓存（见 UserCacheService#findPasswordVerifier）
+     *
+     * @return 密码验证器；尚未完成注册的用户返回 null
+     */
+    private String loadPasswordVerifier(String userId) {
+        return userCacheService.findPasswordVerifier(userId).orElse(null);
     }
 
     /**
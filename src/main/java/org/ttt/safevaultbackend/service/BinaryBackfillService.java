@@ -0,0 +1,305 @@
+package org.ttt.safevaultbackend.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Array;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * bytea 影子列回填服务
+ * V30 迁移为 Base64 编码的加密数据列添加了 <列名>_bytes 影子列，新写入的行由应用和触发器同步；
+ * 本服务作为维护任务（binary-backfill）按主键顺序分批转换已有数据，每批一个短事务，不整表加锁。
+ *
+ * 每批转换后在同一事务中校验：对二进制列和文本列解码结果分别计算 SHA-256 比较，
+ * 不一致的行清空二进制列（读取回退到文本列）并计数；无法按标准 Base64 解码的行保留文本并计数。
+ * 目标表登记在 binary_migration_targets 中，检查点为 "表名:上一批次最后的主键"，
+ * 一张表完成后记录 backfilled_at。
+ *
+ * 切换分三步，均需在所有实例升级后进行：
+ * 1. 所有表回填完成且没有校验不一致的行后，启用收缩迁移 V30_1，记录 cutover_at；
+ * 2. AUTO 写入模式的实例检测到切换后只写二进制列，binary-text-clear 任务分批清空已转换行的文本列，
+ *    全部清空后记录 text_cleared_at，存储不再双份；
+ * 3. 后续版本移除实体上的文本列映射并删除文本列。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BinaryBackfillService {
+
+    private static final String PENDING_TARGETS_SQL =
+            "SELECT table_name, key_column, data_columns FROM binary_migration_targets " +
+            "WHERE backfilled_at IS NULL ORDER BY table_name";
+
+    private static final String RESET_COUNTS_SQL =
+            "UPDATE binary_migration_targets SET converted_rows = 0, unconvertible_rows = 0, mismatched_rows = 0 " +
+            "WHERE table_name = ?";
+
+    private static final String ADD_COUNTS_SQL =
+            "UPDATE binary_migration_targets SET converted_rows = converted_rows + ?, " +
+            "unconvertible_rows = unconvertible_rows + ?, mismatched_rows = mismatched_rows + ? " +
+            "WHERE table_name = ?";
+
+    private static final String MARK_DONE_SQL =
+            "UPDATE binary_migration_targets SET backfilled_at = CURRENT_TIMESTAMP WHERE table_name = ? " +
+            "RETURNING converted_rows, unconvertible_rows, mismatched_rows";
+
+    private static final String CUTOVER_SQL =
+            "SELECT count(*) > 0 AND bool_and(cutover_at IS NOT NULL) FROM binary_migration_targets";
+
+    private static final String CLEAR_PENDING_TARGETS_SQL =
+            "SELECT table_name, key_column, data_columns FROM binary_migration_targets " +
+            "WHERE cutover_at IS NOT NULL AND text_cleared_at IS NULL ORDER BY table_name";
+
+    private static final String MARK_CLEARED_SQL =
+            "UPDATE binary_migration_targets SET text_cleared_at = CURRENT_TIMESTAMP WHERE table_name = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 是否已切换到只写二进制列（V30_1 已执行）
+     */
+    private volatile boolean cutOver;
+
+    /**
+     * 回填目标
+     *
+     * @param table       表名
+     * @param key         主键列
+     * @param dataColumns 需要转换的 Base64 文本列
+     */
+    private record Target(String table, String key, List<String> dataColumns) {
+    }
+
+    /**
+     * 是否已切换到只写二进制列，供 AUTO 写入模式使用
+     */
+    public boolean isCutOver() {
+        return cutOver;
+    }
+
+    /**
+     * 刷新切换状态
+     * 每个实例各自定时检查；查询失败时保持原状态
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${binary-storage.cutover-check-interval-ms:60000}",
+            fixedDelayString = "${binary-storage.cutover-check-interval-ms:60000}")
+    public void refreshCutover() {
+        try {
+            boolean current = Boolean.TRUE.equals(jdbcTemplate.queryForObject(CUTOVER_SQL, Boolean.class));
+            if (current != cutOver) {
+                log.info("bytea 存储切换状态: cutOver={}", current);
+            }
+            cutOver = current;
+        } catch (Exception e) {
+            log.warn("检查 bytea 存储切换状态失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 回填并校验一个批次（维护任务使用）
+     */
+    public MaintenanceJob.Chunk backfill(String checkpoint, int batchSize) {
+        List<Target> targets = jdbcTemplate.query(PENDING_TARGETS_SQL, (rs, rowNum) -> new Target(
+                rs.getString("table_name"),
+                rs.getString("key_column"),
+                toList(rs.getArray("data_columns"))));
+        if (targets.isEmpty()) {
+            return MaintenanceJob.Chunk.done(0);
+        }
+
+        // 检查点中的表已完成（或已被其他实例标记）时从下一张未完成的表开始
+        Target target = targets.get(0);
+        String lastKey = "";
+        if (checkpoint != null) {
+            int separator = checkpoint.indexOf(':');
+            String table = checkpoint.substring(0, separator);
+            for (Target candidate : targets) {
+                if (candidate.table().equals(table)) {
+                    target = candidate;
+                    lastKey = checkpoint.substring(separator + 1);
+                    break;
+                }
+            }
+        }
+        if (lastKey.isEmpty()) {
+            // 从头开始（首次运行或检查点过期），重新统计
+            jdbcTemplate.update(RESET_COUNTS_SQL, target.table());
+        }
+
+        Map<String, Object> result = jdbcTemplate.queryForMap(batchSql(target), lastKey, batchSize);
+        int rows = ((Number) result.get("updated")).intValue();
+        long converted = ((Number) result.get("converted")).longValue();
+        String batchLastKey = (String) result.get("last_key");
+
+        if (batchLastKey != null) {
+            Map<String, Object> verified = jdbcTemplate.queryForMap(verifySql(target),
+                    lastKey, batchLastKey, lastKey, batchLastKey);
+            long mismatched = ((Number) verified.get("mismatched")).longValue();
+            long unconvertible = ((Number) verified.get("unconvertible")).longValue();
+            if (mismatched > 0) {
+                log.warn("bytea 影子列校验不一致，已清空二进制列并回退到文本: table={}, rows={}, range=({}, {}]",
+                        target.table(), mismatched, lastKey, batchLastKey);
+            }
+            jdbcTemplate.update(ADD_COUNTS_SQL, converted, unconvertible, mismatched, target.table());
+            return new MaintenanceJob.Chunk(rows, target.table() + ":" + batchLastKey, false);
+        }
+
+        // 已扫描到表末尾
+        Map<String, Object> counts = jdbcTemplate.queryForMap(MARK_DONE_SQL, target.table());
+        log.info("bytea 影子列回填完成: table={}, converted={}, unconvertible={}, mismatched={}",
+                target.table(), counts.get("converted_rows"), counts.get("unconvertible_rows"),
+                counts.get("mismatched_rows"));
+        boolean last = targets.size() == 1;
+        if (last) {
+            log.info("所有 bytea 影子列已回填完成，核对 binary_migration_targets 的计数后可切换到 BINARY 写入模式");
+        }
+        return new MaintenanceJob.Chunk(rows, null, last);
+    }
+
+    /**
+     * 清空一个批次已转换行的文本列（维护任务使用，切换后执行）
+     * 只清空二进制列与文本解码结果一致的行；无法转换或不一致的行保留文本，读取时回退到文本列
+     */
+    public MaintenanceJob.Chunk clearText(String checkpoint, int batchSize) {
+        List<Target> targets = jdbcTemplate.query(CLEAR_PENDING_TARGETS_SQL, (rs, rowNum) -> new Target(
+                rs.getString("table_name"),
+                rs.getString("key_column"),
+                toList(rs.getArray("data_columns"))));
+        if (targets.isEmpty()) {
+            return MaintenanceJob.Chunk.done(0);
+        }
+
+        Target target = targets.get(0);
+        String lastKey = "";
+        if (checkpoint != null) {
+            int separator = checkpoint.indexOf(':');
+            String table = checkpoint.substring(0, separator);
+            for (Target candidate : targets) {
+                if (candidate.table().equals(table)) {
+                    target = candidate;
+                    lastKey = checkpoint.substring(separator + 1);
+                    break;
+                }
+            }
+        }
+
+        Map<String, Object> result = jdbcTemplate.queryForMap(clearTextSql(target), lastKey, batchSize);
+        int rows = ((Number) result.get("updated")).intValue();
+        String batchLastKey = (String) result.get("last_key");
+        if (batchLastKey != null) {
+            return new MaintenanceJob.Chunk(rows, target.table() + ":" + batchLastKey, false);
+        }
+
+        jdbcTemplate.update(MARK_CLEARED_SQL, target.table());
+        log.info("bytea 存储已转换行的文本列清空完成: table={}", target.table());
+        return new MaintenanceJob.Chunk(rows, null, targets.size() == 1);
+    }
+
+    /**
+     * 按主键顺序取一批行，只转换文本有值而二进制列为空的行
+     * 返回处理行数、其中全部列转换成功的行数和本批最后的主键（超出表末尾时为 NULL）
+     */
+    private static String batchSql(Target target) {
+        String key = quote(target.key());
+        String assignments = target.dataColumns().stream()
+                .map(c -> quote(c + "_bytes") + " = COALESCE(t." + quote(c + "_bytes") +
+                          ", base64_or_null(t." + quote(c) + "))")
+                .collect(Collectors.joining(", "));
+        String pending = pendingColumns(target, "t.");
+        return "WITH batch AS (SELECT " + key + " AS k FROM " + quote(target.table()) +
+               " WHERE " + key + " > ? ORDER BY " + key + " LIMIT ?), " +
+               "updated AS (UPDATE " + quote(target.table()) + " t SET " + assignments +
+               " FROM batch WHERE t." + key + " = batch.k AND (" + pending + ") " +
+               "RETURNING NOT (" + pending + ") AS converted) " +
+               "SELECT (SELECT count(*) FROM updated) AS updated, " +
+               "(SELECT count(*) FROM updated WHERE converted) AS converted, " +
+               "(SELECT max(k) FROM batch) AS last_key";
+    }
+
+    /**
+     * 校验本批主键范围内的行
+     * 二进制列与文本列同时有值时比较二进制列与文本解码结果的 SHA-256，不一致的清空二进制列；
+     * 文本使用 base64_or_null 解码，非标准形式的文本不会抛出异常，按不一致处理（回退到原文本）。
+     * 返回不一致的行数和文本有值但无法转换的行数
+     */
+    private static String verifySql(Target target) {
+        String key = quote(target.key());
+        String table = quote(target.table());
+        String range = key + " > ? AND " + key + " <= ?";
+        String assignments = target.dataColumns().stream()
+                .map(c -> quote(c + "_bytes") + " = CASE WHEN " + mismatch(c) +
+                          " THEN NULL ELSE " + quote(c + "_bytes") + " END")
+                .collect(Collectors.joining(", "));
+        String mismatched = target.dataColumns().stream()
+                .map(BinaryBackfillService::mismatch)
+                .collect(Collectors.joining(" OR "));
+        String unconvertible = pendingColumns(target, "");
+        return "WITH cleared AS (UPDATE " + table + " SET " + assignments +
+               " WHERE " + range + " AND (" + mismatched + ") RETURNING 1) " +
+               "SELECT (SELECT count(*) FROM cleared) AS mismatched, " +
+               "(SELECT count(*) FROM " + table + " WHERE " + range + " AND (" + unconvertible + ")) AS unconvertible";
+    }
+
+    /**
+     * 按主键顺序取一批行，清空二进制列与文本解码结果一致的文本列
+     * 返回修改行数和本批最后的主键（超出表末尾时为 NULL）
+     */
+    private static String clearTextSql(Target target) {
+        String key = quote(target.key());
+        String assignments = target.dataColumns().stream()
+                .map(c -> quote(c) + " = CASE WHEN " + convertible(c) + " THEN NULL ELSE t." + quote(c) + " END")
+                .collect(Collectors.joining(", "));
+        String anyConvertible = target.dataColumns().stream()
+                .map(BinaryBackfillService::convertible)
+                .collect(Collectors.joining(" OR "));
+        return "WITH batch AS (SELECT " + key + " AS k FROM " + quote(target.table()) +
+               " WHERE " + key + " > ? ORDER BY " + key + " LIMIT ?), " +
+               "updated AS (UPDATE " + quote(target.table()) + " t SET " + assignments +
+               " FROM batch WHERE t." + key + " = batch.k AND (" + anyConvertible + ") RETURNING 1) " +
+               "SELECT (SELECT count(*) FROM updated) AS updated, (SELECT max(k) FROM batch) AS last_key";
+    }
+
+    /**
+     * 文本列有值且与二进制列一致、可以清空的条件
+     */
+    private static String convertible(String column) {
+        return "(t." + quote(column) + " IS NOT NULL AND t." + quote(column + "_bytes") + " IS NOT NULL AND " +
+               "sha256(t." + quote(column + "_bytes") + ") = sha256(base64_or_null(t." + quote(column) + ")))";
+    }
+
+    /**
+     * 二进制列与文本解码结果不一致的条件
+     */
+    private static String mismatch(String column) {
+        return "(" + quote(column) + " IS NOT NULL AND " + quote(column + "_bytes") + " IS NOT NULL AND " +
+               "sha256(" + quote(column + "_bytes") + ") IS DISTINCT FROM sha256(base64_or_null(" + quote(column) + ")))";
+    }
+
+    /**
+     * 文本有值而二进制列为空（尚未转换或无法转换）的条件
+     */
+    private static String pendingColumns(Target target, String alias) {
+        return target.dataColumns().stream()
+                .map(c -> "(" + alias + quote(c) + " IS NOT NULL AND " + alias + quote(c + "_bytes") + " IS NULL)")
+                .collect(Collectors.joining(" OR "));
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    private static List<String> toList(Array array) throws SQLException {
+        return Arrays.asList((String[]) array.getArray());
+    }
+}
@@ -1,19 +1,24 @@
 package org.ttt.safevaultbackend.service;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.ttt.safevaultbackend.dto.*;
 import org.ttt.safevaultbackend.dto.request.CreateContactShareRequest;
 import org.ttt.safevaultbackend.dto.response.*;
 import org.ttt.safevaultbackend.entity.*;
 import org.ttt.safevaultbackend.exception.BusinessException;
 import org.ttt.safevaultbackend.exception.ResourceNotFoundException;
+import org.ttt.safevaultbackend.jfr.ShareListMappingEvent;
 import org.ttt.safevaultbackend.repository.ContactShareRepository;
 import org.ttt.safevaultbackend.repository.FriendshipRepository;
 import org.ttt.safevaultbackend.repository.UserRepository;
+import org.ttt.safevaultbackend.util.UuidV7;
 
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
@@ -26,13 +31,28 @@ import java.util.stream.Collectors;
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class ContactShareService {
 
     private final ContactShareRepository contactShareRepository;
     private final UserRepository userRepository;
     private final FriendshipRepository friendshipRepository;
     private final WebSocketService webSocketService;
+    private final UserCacheService userCacheService;
+    private final TaskExecutor taskExecutor;
+
+    public ContactShareService(ContactShareRepository contactShareRepository,
+                               UserRepository userRepository,
+                               FriendshipRepository friendshipRepository,
+                               WebSocketService webSocketService,
+                               UserCacheService userCacheService,
+                               @Qualifier("taskExecutor") TaskExecutor taskExecutor) {
+        this.contactShareRepository = contactShareRepository;
+        this.userRepository = userRepository;
+        this.friendshipRepository = friendshipRepository;
+        this.webSocketService = webSocketService;
+        this.userCacheService = userCacheService;
+        this.taskExecutor = taskExecutor;
+    }
 
     /**
      * 创建联系人分享
@@ -40,11 +60,11 @@ public class ContactShareService {
     @Transactional
     public ContactShareResponse createContactShare(CreateContactShareRequest request, String fromUserId) {
         // 验证发送方用户存在
-        User fromUser = userRepository.findById(fromUserId)
+        UserSnapshot fromUser = userCacheService.findById(fromUserId)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "userId", fromUserId));
 
         // 验证接收方用户存在
-        User toUser = userRepository.findById(request.getToUserId())
+        userCacheService.findById(request.getToUserId())
                 .orElseThrow(() -> new ResourceNotFoundException("User", "userId", request.getToUserId()));
 
         // 不能分享给自己
@@ -74,7 +94,7 @@ public class ContactShareService {
         }
 
         // 创建分享
-        String shareId = UUID.randomUUID().toString();
+        String shareId = UuidV7.generateString();
         LocalDateTime expiresAt = LocalDateTime.now().plusMinutes(request.getExpiresInMinutes());
 
         // 构建加密数据
@@ -82,8 +102,8 @@ public class ContactShareService {
 
         ContactShare contactShare = ContactShare.builder()
                 .shareId(shareId)
-                .fromUser(fromUser)
-                .toUser(toUser)
+                .fromUser(userRepository.getReferenceById(fromUserId))
+                .toUser(userRepository.getReferenceById(request.getToUserId()))
                 .passwordId(request.getPasswordId())
                 .encryptedData(serializeEncryptedData(encryptedData))
                 .encryptionVersion(encryptionVersion)
@@ -97,7 +117,7 @@ public class ContactShareService {
         contactShare = contactShareRepository.save(contactShare);
 
         // 发送实时通知
-        sendShareNotification(toUser.getUserId(), fromUser, shareId, "NEW_SHARE");
+        sendShareNotification(request.getToUserId(), fromUser.getUserId(), fromUser.getDisplayName(), shareId, "NEW_SHARE");
 
         log.info("Created contact share: {} from {} to {} (encryption: {})", shareId, fromUserId, request.getToUserId(), encryptionVersion);
 
@@ -116,7 +136,7 @@ public class ContactShareService {
      */
     @Transactional(readOnly = true)
     public ReceivedContactShareResponse receiveShare(String shareId, String userId) {
-        ContactShare share = contactShareRepository.findById(shareId)
+        ContactShare share = contactShareRepository.findWithUsersByShareId(shareId)
                 .orElseThrow(() -> new ResourceNotFoundException("ContactShare", "shareId", shareId));
 
         // 验证接收权限
@@ -168,7 +188,7 @@ public class ContactShareService {
      */
     @Transactional
     public AcceptShareResponse acceptShare(String shareId, String userId) {
-        ContactShare share = contactShareRepository.findById(shareId)
+        ContactShare share = contactShareRepository.findWithUsersByShareId(shareId)
                 .orElseThrow(() -> new ResourceNotFoundException("ContactShare", "shareId", shareId));
 
         // 验证接收权限
@@ -214,7 +234,7 @@ public class ContactShareService {
      */
     @Transactional
     public void revokeShare(String shareId, String userId) {
-        ContactShare share = contactShareRepository.findById(shareId)
+        ContactShare share = contactShareRepository.findWithUsersByShareId(shareId)
                 .orElseThrow(() -> new ResourceNotFoundException("ContactShare", "shareId", shareId));
 
         // 验证发送方权限
@@ -250,9 +270,15 @@ public class ContactShareService {
                 Arrays.asList(ContactShareStatus.PENDING, ContactShareStatus.ACCEPTED)
         );
 
-        return shares.stream()
+        ShareListMappingEvent event = new ShareListMappingEvent();
+        event.begin();
+        List<SentContactShareResponse> responses = shares.stream()
                 .map(this::mapToSentShareResponse)
                 .collect(Collectors.toList());
+        event.direction = "sent";
+        event.rows = responses.size();
+        event.commit();
+        return responses;
     }
 
     /**
@@ -265,34 +291,42 @@ public class ContactShareService {
                 Arrays.asList(ContactShareStatus.PENDING, ContactShareStatus.ACCEPTED)
         );
 
-        return shares.stream()
+        ShareListMappingEvent event = new ShareListMappingEvent();
+        event.begin();
+        List<ReceivedContactShareResponse> responses = shares.stream()
                 .map(this::mapToReceivedShareResponse)
                 .collect(Collectors.toList());
+        event.direction = "received";
+        event.rows = responses.size();
+        event.commit();
+        return responses;
     }
 
     /**
-     * 定时任务：检查并更新过期分享
-     * 每小时执行一次
+     * 分批将过期分享标记为 EXPIRED（维护任务使用）
+     * 已更新的分享不再满足查询条件，无需检查点；通知在本批次提交后推送
      */
-    @Scheduled(cron = "0 0 * * * ?")
-    @Transactional
-    public void updateExpiredShares() {
-        List<ContactShare> expiredShares = contactShareRepository.findExpiredShares(
+    public MaintenanceJob.Chunk updateExpiredShares(String checkpoint, int batchSize) {
+        List<ContactShareRepository.ExpiredShare> expiredShares = contactShareRepository.findExpiredShares(
                 LocalDateTime.now(),
-                ContactShareStatus.EXPIRED
+                ContactShareStatus.EXPIRED,
+                PageRequest.of(0, batchSize)
         );
+        if (expiredShares.isEmpty()) {
+            return MaintenanceJob.Chunk.done(0);
+        }
 
-        for (ContactShare share : expiredShares) {
-            share.setStatus(ContactShareStatus.EXPIRED);
-            contactShareRepository.save(share);
+        contactShareRepository.markExpiredByShareIds(
+                expiredShares.stream().map(ContactShareRepository.ExpiredShare::getShareId).toList(),
+                ContactShareStatus.EXPIRED);
 
-            // 通知相关用户
-            sendShareNotification(share.getToUser().getUserId(), share.getFromUser(), share.getShareId(), "SHARE_EXPIRED");
+        // 通知接收方
+        for (ContactShareRepository.ExpiredShare share : expiredShares) {
+            sendShareNotification(share.getToUserId(), share.getFromUserId(), share.getFromDisplayName(),
+                    share.getShareId(), "SHARE_EXPIRED");
         }
 
-        if (!expiredShares.isEmpty()) {
-            log.info("Updated {} expired shares", expiredShares.size());
-        }
+        return MaintenanceJob.Chunk.of(expiredShares.size(), null, batchSize);
     }
 
     /**
@@ -366,16 +400,35 @@ public class ContactShareService {
      * 发送分享通知
      */
     private void sendShareNotification(String toUserId, User fromUser, String shareId, String type) {
+        sendShareNotification(toUserId, fromUser.getUserId(), fromUser.getDisplayName(), shareId, type);
+    }
+
+    /**
+     * 发送分享通知
+     * 通知内容在事务内构建，提交后交给 @Async 线程池推送：回滚的变更不会推送给客户端；
+     * afterCommit 回调执行时事务的数据库连接尚未释放，推送不在回调中同步执行，不延长连接持有时间
+     */
+    private void sendShareNotification(String toUserId, String fromUserId, String fromDisplayName,
+                                       String shareId, String type) {
         ShareNotificationMessage notification = ShareNotificationMessage.builder()
                 .type(type)
                 .shareId(shareId)
-                .fromUserId(fromUser.getUserId())
-                .fromDisplayName(fromUser.getDisplayName())
-                .message(buildNotificationMessage(type, fromUser.getDisplayName()))
+                .fromUserId(fromUserId)
+                .fromDisplayName(fromDisplayName)
+                .message(buildNotificationMessage(type, fromDisplayName))
                 .timestamp(System.currentTimeMillis())
                 .build();
 
-        webSocketService.sendShareNotification(toUserId, notification);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    taskExecutor.execute(() -> webSocketService.sendShareNotification(toUserId, notification));
+                }
+            });
+        } else {
+            webSocketService.sendShareNotification(toUserId, notification);
+        }
     }
 
     /**
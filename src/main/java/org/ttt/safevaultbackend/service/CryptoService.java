@@ -1,6 +1,7 @@
 package org.ttt.safevaultbackend.service;
 
 import org.springframework.stereotype.Service;
+import org.ttt.safevaultbackend.util.CryptoPrimitives;
 
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
@@ -9,7 +10,6 @@ import javax.crypto.spec.SecretKeySpec;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.*;
-import java.security.spec.X509EncodedKeySpec;
 import java.util.Arrays;
 import java.util.Base64;
 
@@ -75,9 +75,10 @@ public class CryptoService {
      */
     public String encryptSessionKey(SecretKey sessionKey, PublicKey receiverPublicKey, String version) throws Exception {
         String transformation = getRsaTransformation(version);
-        Cipher cipher = Cipher.getInstance(transformation);
-        cipher.init(Cipher.ENCRYPT_MODE, receiverPublicKey);
-        byte[] encryptedKey = cipher.doFinal(sessionKey.getEncoded());
+        byte[] encryptedKey = CryptoPrimitives.withCipher(transformation, cipher -> {
+            cipher.init(Cipher.ENCRYPT_MODE, receiverPublicKey);
+            return cipher.doFinal(sessionKey.getEncoded());
+        });
         return Base64.getEncoder().encodeToString(encryptedKey);
     }
 
@@ -101,9 +102,10 @@ public class CryptoService {
      */
     public SecretKey decryptSessionKey(String encryptedSessionKey, PrivateKey receiverPrivateKey, String version) throws Exception {
         String transformation = getRsaTransformation(version);
-        Cipher cipher = Cipher.getInstance(transformation);
-        cipher.init(Cipher.DECRYPT_MODE, receiverPrivateKey);
-        byte[] decryptedKey = cipher.doFinal(Base64.getDecoder().decode(encryptedSessionKey));
+        byte[] decryptedKey = CryptoPrimitives.withCipher(transformation, cipher -> {
+            cipher.init(Cipher.DECRYPT_MODE, receiverPrivateKey);
+            return cipher.doFinal(Base64.getDecoder().decode(encryptedSessionKey));
+        });
         return new SecretKeySpec(decryptedKey, "AES");
     }
 
@@ -139,14 +141,14 @@ public class CryptoService {
      */
     public String encryptData(String plaintext, SecretKey sessionKey) throws Exception {
         // 生成随机 IV
-        byte[] iv = new byte[GCM_IV_LENGTH];
-        new SecureRandom().nextBytes(iv);
+        byte[] iv = CryptoPrimitives.randomBytes(GCM_IV_LENGTH);
 
         // 加密
-        Cipher cipher = Cipher.getInstance(AES_GCM_NO_PADDING);
         GCMParameterSpec parameterSpec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
-        cipher.init(Cipher.ENCRYPT_MODE, sessionKey, parameterSpec);
-        byte[] ciphertext = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+        byte[] ciphertext = CryptoPrimitives.withCipher(AES_GCM_NO_PADDING, cipher -> {
+            cipher.init(Cipher.ENCRYPT_MODE, sessionKey, parameterSpec);
+            return cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+        });
 
         // 组合 IV 和密文
         ByteBuffer byteBuffer = ByteBuffer.allocate(iv.length + ciphertext.length);
@@ -169,10 +171,11 @@ public class CryptoService {
         byte[] ciphertext = Arrays.copyOfRange(decodedData, GCM_IV_LENGTH, decodedData.length);
 
         // 解密
-        Cipher cipher = Cipher.getInstance(AES_GCM_NO_PADDING);
         GCMParameterSpec parameterSpec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
-        cipher.init(Cipher.DECRYPT_MODE, sessionKey, parameterSpec);
-        byte[] plaintext = cipher.doFinal(ciphertext);
+        byte[] plaintext = CryptoPrimitives.withCipher(AES_GCM_NO_PADDING, cipher -> {
+            cipher.init(Cipher.DECRYPT_MODE, sessionKey, parameterSpec);
+            return cipher.doFinal(ciphertext);
+        });
 
         return new String(plaintext, StandardCharsets.UTF_8);
     }
@@ -181,10 +184,8 @@ public class CryptoService {
      * 生成分享签名（HMAC-SHA256）
      */
     public String generateShareSignature(String data, String secret) throws Exception {
-        javax.crypto.Mac mac = javax.crypto.Mac.getInstance("HmacSHA256");
-        SecretKeySpec secretKeySpec = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
-        mac.init(secretKeySpec);
-        byte[] signature = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        byte[] signature = CryptoPrimitives.hmacSha256(
+                secret.getBytes(StandardCharsets.UTF_8), data.getBytes(StandardCharsets.UTF_8));
         return Base64.getEncoder().encodeToString(signature);
     }
 
@@ -206,18 +207,12 @@ public class CryptoService {
      */
     public boolean verifySignature(String data, String signature, String publicKey) {
         try {
-            // 解码公钥
-            byte[] publicKeyBytes = Base64.getDecoder().decode(publicKey);
-            java.security.KeyFactory keyFactory = java.security.KeyFactory.getInstance("RSA");
-            X509EncodedKeySpec keySpec = new X509EncodedKeySpec(publicKeyBytes);
-            PublicKey pubKey = keyFactory.generatePublic(keySpec);
+            // 解析公钥（相同公钥只解析一次）
+            PublicKey pubKey = CryptoPrimitives.rsaPublicKey(publicKey);
 
             // 验证签名
             byte[] signatureBytes = Base64.getDecoder().decode(signature);
-            java.security.Signature sig = java.security.Signature.getInstance("SHA256withRSA");
-            sig.initVerify(pubKey);
-            sig.update(data.getBytes(StandardCharsets.UTF_8));
-            return sig.verify(signatureBytes);
+            return CryptoPrimitives.verifySha256WithRsa(pubKey, data.getBytes(StandardCharsets.UTF_8), signatureBytes);
         } catch (Exception e) {
             return false;
         }
@@ -0,0 +1,106 @@
+package org.ttt.safevaultbackend.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 设备活跃时间追踪器
+ * 已注册设备登录时只在内存中记录最后活跃时间，定期合并为一次批量 UPDATE 写入 user_devices，
+ * 同一设备在一个刷新周期内的多次登录只产生一次写入
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DeviceActivityTracker {
+
+    private static final String UPDATE_SQL =
+            "UPDATE user_devices SET last_active_at = ? " +
+            "WHERE user_id = ? AND device_id = ? AND last_active_at < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 待刷新的活跃时间，键为 (userId, deviceId)
+     */
+    private final Map<DeviceKey, LocalDateTime> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 记录设备活跃
+     *
+     * @param userId   用户 ID
+     * @param deviceId 设备 ID
+     */
+    public void touch(String userId, String deviceId) {
+        pending.put(new DeviceKey(userId, deviceId), LocalDateTime.now());
+    }
+
+    /**
+     * 获取尚未刷新的最后活跃时间
+     *
+     * @return 未刷新时返回 null
+     */
+    public LocalDateTime getPendingLastActive(String userId, String deviceId) {
+        return pending.get(new DeviceKey(userId, deviceId));
+    }
+
+    /**
+     * 丢弃设备的待刷新记录（设备被移除时调用）
+     */
+    public void forget(String userId, String deviceId) {
+        pending.remove(new DeviceKey(userId, deviceId));
+    }
+
+    /**
+     * 批量刷新活跃时间
+     * 每30秒执行一次（可配置）
+     */
+    @Scheduled(fixedDelayString = "${devices.activity-flush-interval-ms:30000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> batch = new ArrayList<>();
+        for (Map.Entry<DeviceKey, LocalDateTime> entry : pending.entrySet()) {
+            // 仅移除本次读取到的值，刷新期间的新活跃记录留到下个周期
+            if (pending.remove(entry.getKey(), entry.getValue())) {
+                Timestamp lastActive = Timestamp.valueOf(entry.getValue());
+                batch.add(new Object[]{lastActive, entry.getKey().userId(), entry.getKey().deviceId(), lastActive});
+            }
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, batch);
+            log.debug("刷新设备活跃时间: count={}", batch.size());
+        } catch (Exception e) {
+            log.error("刷新设备活跃时间失败: count={}", batch.size(), e);
+            // 放回队列等待下次刷新，不覆盖期间产生的更新记录
+            for (Object[] row : batch) {
+                pending.putIfAbsent(new DeviceKey((String) row[1], (String) row[2]),
+                        ((Timestamp) row[0]).toLocalDateTime());
+            }
+        }
+    }
+
+    /**
+     * 应用关闭前刷新剩余的活跃记录
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private record DeviceKey(String userId, String deviceId) {
+    }
+}
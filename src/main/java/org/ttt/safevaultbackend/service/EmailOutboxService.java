@@ -0,0 +1,436 @@
+package org.ttt.safevaultbackend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.ttt.safevaultbackend.config.EmailOutboxProperties;
+import org.ttt.safevaultbackend.entity.EmailOutboxMessage;
+import org.ttt.safevaultbackend.enums.DeliveryStatus;
+import org.ttt.safevaultbackend.enums.EmailOutboxStatus;
+import org.ttt.safevaultbackend.enums.EmailType;
+import org.ttt.safevaultbackend.repository.EmailOutboxRepository;
+import org.ttt.safevaultbackend.repository.EmailVerificationHistoryRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 邮件发件箱服务
+ * 业务请求只把邮件写入 email_outbox 表即返回，由固定大小的工作线程池异步发送：
+ * - 每个工作线程一次领取一批邮件，通过连接池中保持连接的同一个 SMTP Transport 连续发送；
+ * - 发送失败按指数退避重试，重试耗尽后标记为 FAILED 并同步更新验证历史的投递状态；
+ * - 领取使用 FOR UPDATE SKIP LOCKED + 租约，多节点并发消费互不重复，进程崩溃后租约到期可被重新领取。
+ */
+@Slf4j
+@Service
+public class EmailOutboxService {
+
+    private final EmailOutboxRepository outboxRepository;
+    private final EmailVerificationHistoryRepository historyRepository;
+    private final EmailService emailService;
+    private final SmtpTransportPool transportPool;
+    private final VerificationEventService verificationEventService;
+    private final EmailOutboxProperties properties;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * 发送工作线程池，并发批次数由 slots 限制，因此任务队列不会无限增长
+     */
+    private final ExecutorService workers;
+
+    /**
+     * 领取调度线程，入队后的唤醒在此执行，不占用请求线程
+     */
+    private final ExecutorService dispatcher;
+
+    private final Semaphore slots;
+    private final AtomicBoolean dispatching = new AtomicBoolean(false);
+    private volatile boolean shuttingDown;
+
+    private final AtomicLong pendingCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final Counter sentCounter;
+    private final Counter retryCounter;
+    private final Counter abandonedCounter;
+    private final Timer batchTimer;
+
+    public EmailOutboxService(EmailOutboxRepository outboxRepository,
+                              EmailVerificationHistoryRepository historyRepository,
+                              EmailService emailService,
+                              SmtpTransportPool transportPool,
+                              VerificationEventService verificationEventService,
+                              EmailOutboxProperties properties,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.historyRepository = historyRepository;
+        this.emailService = emailService;
+        this.transportPool = transportPool;
+        this.verificationEventService = verificationEventService;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        int threads = properties.getWorkerThreads();
+        this.slots = new Semaphore(threads);
+        this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), namedThreads("email-outbox-worker-"));
+        this.dispatcher = Executors.newSingleThreadExecutor(namedThreads("email-outbox-dispatcher-"));
+
+        Gauge.builder("email.outbox.pending", pendingCount, AtomicLong::get)
+                .description("发件箱中等待发送的邮件数")
+                .register(meterRegistry);
+        Gauge.builder("email.outbox.failed", failedCount, AtomicLong::get)
+                .description("重试耗尽的邮件数")
+                .register(meterRegistry);
+        Gauge.builder("email.outbox.busy.workers", slots, s -> threads - s.availablePermits())
+                .description("正在发送的工作线程数")
+                .register(meterRegistry);
+        this.sentCounter = Counter.builder("email.outbox.sent").register(meterRegistry);
+        this.retryCounter = Counter.builder("email.outbox.retries").register(meterRegistry);
+        this.abandonedCounter = Counter.builder("email.outbox.abandoned").register(meterRegistry);
+        this.batchTimer = Timer.builder("email.outbox.batch.duration")
+                .description("一批邮件的发送耗时")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 将验证邮件加入发件箱
+     * 调用方处于事务中时，事务提交后才唤醒发送
+     *
+     * @param toEmail         收件人邮箱
+     * @param verificationUrl 验证链接
+     * @param token           验证令牌
+     */
+    public void enqueueVerificationEmail(String toEmail, String verificationUrl, String token) {
+        enqueue(EmailType.VERIFICATION, toEmail, verificationUrl, token);
+    }
+
+    /**
+     * 将密码重置邮件加入发件箱
+     *
+     * @param toEmail  收件人邮箱
+     * @param resetUrl 重置链接
+     */
+    public void enqueuePasswordResetEmail(String toEmail, String resetUrl) {
+        enqueue(EmailType.PASSWORD_RESET, toEmail, resetUrl, null);
+    }
+
+    private void enqueue(EmailType type, String toEmail, String linkUrl, String token) {
+        outboxRepository.save(EmailOutboxMessage.builder()
+                .emailType(type)
+                .recipient(toEmail)
+                .linkUrl(linkUrl)
+                .verificationToken(token)
+                .build());
+        pendingCount.incrementAndGet();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wakeUp();
+                }
+            });
+        } else {
+            wakeUp();
+        }
+    }
+
+    /**
+     * 唤醒调度线程立即领取待发送邮件
+     */
+    public void wakeUp() {
+        if (!shuttingDown) {
+            dispatcher.execute(this::dispatch);
+        }
+    }
+
+    /**
+     * 定时轮询，负责重试到期的邮件和租约过期的邮件
+     */
+    @Scheduled(fixedDelayString = "${email.outbox.poll-interval-ms:1000}")
+    public void poll() {
+        dispatch();
+    }
+
+    /**
+     * 定时刷新队列统计
+     */
+    @Scheduled(fixedDelay = 30000)
+    public void refreshQueueStats() {
+        try {
+            pendingCount.set(outboxRepository.countByStatus(EmailOutboxStatus.PENDING)
+                    + outboxRepository.countByStatus(EmailOutboxStatus.SENDING));
+            failedCount.set(outboxRepository.countByStatus(EmailOutboxStatus.FAILED));
+        } catch (Exception e) {
+            log.warn("刷新发件箱统计失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 清理已发送的记录
+     * 每天凌晨4点执行
+     */
+    @Scheduled(cron = "0 0 4 * * ?")
+    public void cleanupSentMessages() {
+        LocalDateTime before = LocalDateTime.now().minusDays(properties.getRetentionDays());
+        Integer deleted = transactionTemplate.execute(status ->
+                outboxRepository.deleteSentBefore(EmailOutboxStatus.SENT, before));
+        log.info("清理已发送的发件箱记录: count={}, before={}", deleted, before);
+    }
+
+    /**
+     * 领取邮件并分派给空闲的工作线程，直到没有空闲线程或没有待发送邮件
+     */
+    private void dispatch() {
+        if (shuttingDown || !dispatching.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            while (slots.tryAcquire()) {
+                List<EmailOutboxMessage> batch;
+                try {
+                    batch = claimBatch();
+                } catch (Exception e) {
+                    slots.release();
+                    log.error("领取发件箱邮件失败", e);
+                    return;
+                }
+
+                if (batch.isEmpty()) {
+                    slots.release();
+                    return;
+                }
+
+                workers.execute(() -> {
+                    try {
+                        sendBatch(batch);
+                    } finally {
+                        slots.release();
+                    }
+                });
+
+                if (batch.size() < properties.getBatchSize()) {
+                    return;
+                }
+            }
+        } finally {
+            dispatching.set(false);
+        }
+    }
+
+    /**
+     * 领取一批到期邮件，标记为发送中并设置租约
+     */
+    private List<EmailOutboxMessage> claimBatch() {
+        List<EmailOutboxMessage> batch = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<EmailOutboxMessage> messages = outboxRepository.lockDueMessages(now, properties.getBatchSize());
+            LocalDateTime lockedUntil = now.plusSeconds(properties.getLockTimeoutSeconds());
+            for (EmailOutboxMessage message : messages) {
+                message.setStatus(EmailOutboxStatus.SENDING);
+                message.setLockedUntil(lockedUntil);
+                message.setAttempts(message.getAttempts() + 1);
+            }
+            return messages;
+        });
+        return batch != null ? batch : Collections.emptyList();
+    }
+
+    /**
+     * 通过同一个 SMTP 连接发送一批邮件
+     */
+    private void sendBatch(List<EmailOutboxMessage> batch) {
+        Timer.Sample sample = Timer.start();
+        List<EmailOutboxMessage> sent = new ArrayList<>(batch.size());
+
+        Transport transport;
+        try {
+            transport = transportPool.borrow();
+        } catch (MessagingException e) {
+            log.warn("连接 SMTP 服务器失败，本批邮件稍后重试: count={}, error={}", batch.size(), e.getMessage());
+            batch.forEach(message -> handleFailure(message, e));
+            sample.stop(batchTimer);
+            return;
+        }
+
+        try {
+            for (EmailOutboxMessage message : batch) {
+                String type = message.getEmailType().name().toLowerCase(Locale.ROOT);
+                Timer.Sample messageSample = Timer.start();
+                try {
+                    MimeMessage mimeMessage = buildMessage(message);
+                    mimeMessage.saveChanges();
+                    transport.sendMessage(mimeMessage, mimeMessage.getAllRecipients());
+                    emailService.recordSend(messageSample, type, "outbox", true);
+                    sent.add(message);
+                } catch (Exception e) {
+                    emailService.recordSend(messageSample, type, "outbox", false);
+                    handleFailure(message, e);
+                    if (!transport.isConnected()) {
+                        // 连接已断开，本批剩余邮件换新连接发送
+                        transportPool.invalidate(transport);
+                        transport = transportPool.borrow();
+                    }
+                }
+            }
+        } catch (MessagingException e) {
+            log.warn("重新连接 SMTP 服务器失败: {}", e.getMessage());
+            for (EmailOutboxMessage message : batch) {
+                if (!sent.contains(message) && message.getStatus() == EmailOutboxStatus.SENDING) {
+                    handleFailure(message, e);
+                }
+            }
+            transport = null;
+        } finally {
+            if (transport != null) {
+                transportPool.release(transport);
+            }
+        }
+
+        if (!sent.isEmpty()) {
+            markSent(sent);
+        }
+        sample.stop(batchTimer);
+    }
+
+    private MimeMessage buildMessage(EmailOutboxMessage message) throws MessagingException {
+        return switch (message.getEmailType()) {
+            case VERIFICATION -> emailService.buildVerificationMessage(message.getRecipient(), message.getLinkUrl());
+            case PASSWORD_RESET -> emailService.buildPasswordResetMessage(message.getRecipient(), message.getLinkUrl());
+        };
+    }
+
+    private void markSent(List<EmailOutboxMessage> sent) {
+        List<Long> ids = new ArrayList<>(sent.size());
+        for (EmailOutboxMessage message : sent) {
+            ids.add(message.getId());
+            message.setStatus(EmailOutboxStatus.SENT);
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    outboxRepository.markSent(ids, EmailOutboxStatus.SENT, LocalDateTime.now()));
+        } catch (Exception e) {
+            // 邮件已发出；状态未更新时租约到期后会被重复发送，只记录错误
+            log.error("更新发件箱发送状态失败: ids={}", ids, e);
+        }
+        sentCounter.increment(sent.size());
+        pendingCount.addAndGet(-sent.size());
+
+        for (EmailOutboxMessage message : sent) {
+            if (message.getVerificationToken() != null) {
+                recordEmailEvent(message, true, null);
+            }
+        }
+    }
+
+    /**
+     * 处理发送失败：未达到最大次数时按指数退避重新排队，否则标记为 FAILED
+     */
+    private void handleFailure(EmailOutboxMessage message, Exception cause) {
+        int attempts = message.getAttempts();
+        String error = truncate(cause.getMessage());
+        boolean giveUp = attempts >= properties.getMaxAttempts();
+
+        long backoff = Math.min(properties.getMaxBackoffSeconds(),
+                properties.getInitialBackoffSeconds() << Math.min(attempts - 1, 20));
+        EmailOutboxStatus status = giveUp ? EmailOutboxStatus.FAILED : EmailOutboxStatus.PENDING;
+        message.setStatus(status);
+
+        try {
+            transactionTemplate.executeWithoutResult(tx -> {
+                outboxRepository.markFailed(message.getId(), status, LocalDateTime.now().plusSeconds(backoff), error);
+                if (giveUp && message.getVerificationToken() != null) {
+                    historyRepository.updateDeliveryStatusByToken(message.getVerificationToken(), DeliveryStatus.FAILED);
+                }
+            });
+        } catch (Exception e) {
+            log.error("更新发件箱失败状态失败: id={}", message.getId(), e);
+        }
+
+        if (giveUp) {
+            abandonedCounter.increment();
+            pendingCount.decrementAndGet();
+            failedCount.incrementAndGet();
+            log.error("邮件发送重试耗尽: id={}, to={}, attempts={}, error={}",
+                    message.getId(), message.getRecipient(), attempts, error);
+            if (message.getVerificationToken() != null) {
+                recordEmailEvent(message, false, "邮件发送失败: " + error);
+            }
+        } else {
+            retryCounter.increment();
+            log.warn("邮件发送失败，{} 秒后重试: id={}, to={}, attempts={}, error={}",
+                    backoff, message.getId(), message.getRecipient(), attempts, error);
+        }
+    }
+
+    private void recordEmailEvent(EmailOutboxMessage message, boolean success, String failureReason) {
+        try {
+            verificationEventService.recordEmailSent(null, message.getRecipient(),
+                    message.getVerificationToken(), success, failureReason);
+        } catch (Exception e) {
+            log.warn("记录邮件发送事件失败: id={}, error={}", message.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 停止领取新邮件，等待正在发送的批次完成
+     * 未完成的邮件保持发送中状态，租约到期后由其他节点或下次启动重新领取
+     */
+    @PreDestroy
+    public void shutdown() {
+        shuttingDown = true;
+        dispatcher.shutdown();
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > 500 ? message.substring(0, 500) : message;
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
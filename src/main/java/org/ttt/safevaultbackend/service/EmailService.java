@@ -1,5 +1,9 @@
 package org.ttt.safevaultbackend.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.activation.DataHandler;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -8,23 +12,53 @@ import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeBodyPart;
 import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.PreencodedMimeBodyPart;
+import jakarta.mail.util.ByteArrayDataSource;
 
-import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Base64;
+import java.util.Map;
 
 /**
  * 邮件服务
  * 使用阿里云 SMTP 服务直接发送验证邮件
+ * 模板由 {@link EmailTemplateRenderer} 预编译缓存；发件人地址和内嵌图标的 DataHandler 启动时构建一次，
+ * 每封邮件只新建消息本身和引用共享数据的 MIME 部件
+ *
+ * 指标：email.send 按邮件类型、发送通道（direct 直接发送 / outbox 发件箱）和结果计时
  */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class EmailService {
 
+    /**
+     * 邮件专用图标，已预先缩放到模板显示尺寸（90px）的 2 倍，约 24KB
+     */
+    private static final String ICON_PATH = "static/images/safevault_icon_email.png";
+    private static final String ICON_CONTENT_ID = "safe-vaultIcon";
+    private static final String ICON_CONTENT_TYPE = "image/png";
+
     private final JavaMailSender javaMailSender;
+    private final EmailTemplateRenderer templateRenderer;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 内嵌图标的 MIME Base64 数据，启动时编码一次，所有邮件共享同一个只读 DataHandler
+     */
+    private DataHandler iconDataHandler;
+
+    /**
+     * 解析后的发件人地址
+     */
+    private InternetAddress fromAddress;
 
     @Value("${spring.mail.from:noreply@safevault.com}")
     private String fromEmail;
@@ -32,54 +66,70 @@ public class EmailService {
     @Value("${app.base-url:http://localhost:8080/api}")
     private String baseUrl;
 
+    @PostConstruct
+    public void init() throws AddressException {
+        fromAddress = new InternetAddress(fromEmail);
+        byte[] encodedIcon = loadEncodedIcon();
+        if (encodedIcon != null) {
+            iconDataHandler = new DataHandler(new ByteArrayDataSource(encodedIcon, ICON_CONTENT_TYPE));
+        }
+    }
+
     /**
      * 发送邮箱验证邮件（HTML 格式）
+     * 同步发送，每次建立新的 SMTP 连接；业务流程应通过 {@link EmailOutboxService} 异步发送
      *
      * @param toEmail         收件人邮箱
      * @param verificationUrl 验证链接（safevault://verify-email?token=xxx）
      * @return 是否发送成功
      */
     public boolean sendVerificationEmail(String toEmail, String verificationUrl) {
+        Timer.Sample sample = Timer.start();
         try {
             log.info("Preparing to send verification email to: {}", toEmail);
-            log.info("From email: {}", fromEmail);
-            log.info("Verification URL: {}", verificationUrl);
-
-            MimeMessage mimeMessage = javaMailSender.createMimeMessage();
-            // true 表示多部分消息
-            MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
-
-            helper.setFrom(fromEmail);
-            helper.setTo(toEmail);
-            helper.setSubject("验证您的 SafeVault 邮箱");
-
-            // 添加内嵌图片作为附件
-            ClassPathResource imageResource = new ClassPathResource("static/images/safevault_icon.png");
-            if (imageResource.exists()) {
-                helper.addInline("safe-vaultIcon", imageResource);
-                log.info("Successfully attached SafeVault icon as inline resource");
-            } else {
-                log.warn("SafeVault icon not found in classpath: static/images/safevault_icon.png");
-            }
-
-            // 构建 HTML 邮件内容（使用 cid: 协议引用图片）
-            String htmlContent = buildVerificationEmailHtml(toEmail, verificationUrl);
-            helper.setText(htmlContent, true);
 
-            log.info("Sending email with MIME message...");
+            MimeMessage mimeMessage = buildVerificationMessage(toEmail, verificationUrl);
 
             // 发送邮件
             javaMailSender.send(mimeMessage);
 
             log.info("Verification email sent successfully to: {}", toEmail);
+            recordSend(sample, "verification", "direct", true);
             return true;
 
         } catch (Exception e) {
             log.error("Failed to send verification email to {}: {}", toEmail, e.getMessage(), e);
+            recordSend(sample, "verification", "direct", false);
             return false;
         }
     }
 
+    /**
+     * 构建邮箱验证邮件（HTML 格式，内嵌图标）
+     *
+     * @param toEmail         收件人邮箱
+     * @param verificationUrl 验证链接（safevault://verify-email?token=xxx）
+     * @return 待发送的邮件
+     */
+    public MimeMessage buildVerificationMessage(String toEmail, String verificationUrl) throws MessagingException {
+        MimeMessage mimeMessage = javaMailSender.createMimeMessage();
+        // true 表示多部分消息
+        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+
+        helper.setFrom(fromAddress);
+        helper.setTo(toEmail);
+        helper.setSubject("验证您的 SafeVault 邮箱");
+
+        // 构建 HTML 邮件内容（使用 cid: 协议引用图片）
+        String htmlContent = buildVerificationEmailHtml(toEmail, verificationUrl);
+        helper.setText(htmlContent, true);
+
+        // 添加内嵌图片作为附件（必须在 setText 之后）
+        addInlineIcon(helper);
+
+        return mimeMessage;
+    }
+
     /**
      * 发送纯文本验证邮件（备用方案）
      *
@@ -88,6 +138,7 @@ public class EmailService {
      * @return 是否发送成功
      */
     public boolean sendVerificationEmailText(String toEmail, String verificationUrl) {
+        Timer.Sample sample = Timer.start();
         try {
             SimpleMailMessage message = new SimpleMailMessage();
             message.setFrom(fromEmail);
@@ -100,10 +151,12 @@ public class EmailService {
             javaMailSender.send(message);
 
             log.info("Text verification email sent to: {}", toEmail);
+            recordSend(sample, "verification", "direct", true);
             return true;
 
         } catch (Exception e) {
             log.error("Failed to send text verification email to {}: {}", toEmail, e.getMessage(), e);
+            recordSend(sample, "verification", "direct", false);
             return false;
         }
     }
@@ -116,37 +169,93 @@ public class EmailService {
      * @return 是否发送成功
      */
     public boolean sendPasswordResetEmail(String toEmail, String resetUrl) {
+        Timer.Sample sample = Timer.start();
         try {
-            MimeMessage mimeMessage = javaMailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
-
-            helper.setFrom(fromEmail);
-            helper.setTo(toEmail);
-            helper.setSubject("重置您的 SafeVault 密码");
-
-            // 添加内嵌图片作为附件
-            ClassPathResource imageResource = new ClassPathResource("static/images/safevault_icon.png");
-            if (imageResource.exists()) {
-                helper.addInline("safe-vaultIcon", imageResource);
-                log.info("Successfully attached SafeVault icon for password reset email");
-            } else {
-                log.warn("SafeVault icon not found in classpath for password reset email");
-            }
-
-            String htmlContent = buildPasswordResetEmailHtml(toEmail, resetUrl);
-            helper.setText(htmlContent, true);
-
-            javaMailSender.send(mimeMessage);
+            javaMailSender.send(buildPasswordResetMessage(toEmail, resetUrl));
 
             log.info("Password reset email sent to: {}", toEmail);
+            recordSend(sample, "password_reset", "direct", true);
             return true;
 
         } catch (Exception e) {
             log.error("Failed to send password reset email to {}: {}", toEmail, e.getMessage(), e);
+            recordSend(sample, "password_reset", "direct", false);
             return false;
         }
     }
 
+    /**
+     * 记录一次邮件发送的耗时和结果
+     *
+     * @param type    邮件类型（verification / password_reset）
+     * @param channel 发送通道（direct / outbox）
+     */
+    void recordSend(Timer.Sample sample, String type, String channel, boolean success) {
+        sample.stop(Timer.builder("email.send")
+                .tag("type", type)
+                .tag("channel", channel)
+                .tag("result", success ? "success" : "failure")
+                .register(meterRegistry));
+    }
+
+    /**
+     * 构建密码重置邮件
+     *
+     * @param toEmail  收件人邮箱
+     * @param resetUrl 重置链接
+     * @return 待发送的邮件
+     */
+    public MimeMessage buildPasswordResetMessage(String toEmail, String resetUrl) throws MessagingException {
+        MimeMessage mimeMessage = javaMailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+
+        helper.setFrom(fromAddress);
+        helper.setTo(toEmail);
+        helper.setSubject("重置您的 SafeVault 密码");
+
+        String htmlContent = buildPasswordResetEmailHtml(toEmail, resetUrl);
+        helper.setText(htmlContent, true);
+
+        addInlineIcon(helper);
+
+        return mimeMessage;
+    }
+
+    /**
+     * 添加内嵌图标
+     * MIME 部件会记录所属的 multipart，不能跨邮件共享；部件本身只引用共享的 DataHandler，不复制图标数据
+     */
+    private void addInlineIcon(MimeMessageHelper helper) throws MessagingException {
+        if (iconDataHandler == null) {
+            return;
+        }
+        PreencodedMimeBodyPart iconPart = new PreencodedMimeBodyPart("base64");
+        iconPart.setDisposition(MimeBodyPart.INLINE);
+        iconPart.setContentID("<" + ICON_CONTENT_ID + ">");
+        iconPart.setDataHandler(iconDataHandler);
+        helper.getMimeMultipart().addBodyPart(iconPart);
+    }
+
+    /**
+     * 加载邮件专用图标并编码一次，供所有邮件共享
+     */
+    private byte[] loadEncodedIcon() {
+        ClassPathResource imageResource = new ClassPathResource(ICON_PATH);
+        if (!imageResource.exists()) {
+            log.warn("SafeVault icon not found in classpath: {}", ICON_PATH);
+            return null;
+        }
+
+        try (InputStream inputStream = imageResource.getInputStream()) {
+            byte[] icon = inputStream.readAllBytes();
+            log.info("Loaded SafeVault icon for emails: {} bytes", icon.length);
+            return Base64.getMimeEncoder().encode(icon);
+        } catch (IOException e) {
+            log.warn("Failed to load SafeVault icon: {}", e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * 构建验证邮件 HTML 内容
      */
@@ -156,10 +265,9 @@ public class EmailService {
         String httpsUrl = "https://frp-ski.com:41751/api/verify/email?token=" + token;
 
         try {
-            String template = loadTemplate("email/verification-email.html");
-            return template
-                    .replace("{{verificationUrl}}", httpsUrl)
-                    .replace("{{timestamp}}", LocalDateTime.now().toString());
+            return templateRenderer.render("email/verification-email.html", Map.of(
+                    "verificationUrl", httpsUrl,
+                    "timestamp", LocalDateTime.now().toString()));
         } catch (IOException e) {
             log.error("Failed to load verification email template", e);
             return buildFallbackEmail(httpsUrl);
@@ -192,10 +300,9 @@ public class EmailService {
      */
     private String buildVerificationEmailText(String email, String verificationUrl) {
         try {
-            String template = loadTemplate("email/verification-email.txt");
-            return template
-                    .replace("{{verificationUrl}}", verificationUrl)
-                    .replace("{{timestamp}}", LocalDateTime.now().toString());
+            return templateRenderer.render("email/verification-email.txt", Map.of(
+                    "verificationUrl", verificationUrl,
+                    "timestamp", LocalDateTime.now().toString()));
         } catch (IOException e) {
             log.error("Failed to load verification email text template", e);
             return "SafeVault - 验证您的邮箱\n\n请访问以下链接验证邮箱: " + verificationUrl;
@@ -207,29 +314,15 @@ public class EmailService {
      */
     private String buildPasswordResetEmailHtml(String email, String resetUrl) {
         try {
-            String template = loadTemplate("email/password-reset.html");
-            return template
-                    .replace("{{resetUrl}}", resetUrl)
-                    .replace("{{timestamp}}", LocalDateTime.now().toString());
+            return templateRenderer.render("email/password-reset.html", Map.of(
+                    "resetUrl", resetUrl,
+                    "timestamp", LocalDateTime.now().toString()));
         } catch (IOException e) {
             log.error("Failed to load password reset email template", e);
             return buildFallbackEmail(resetUrl);
         }
     }
 
-    /**
-     * 从 resources/templates 目录加载模板文件
-     */
-    private String loadTemplate(String templatePath) throws IOException {
-        try (InputStream inputStream = getClass().getClassLoader()
-                .getResourceAsStream("templates/" + templatePath)) {
-            if (inputStream == null) {
-                throw new IOException("Template not found: " + templatePath);
-            }
-            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
-        }
-    }
-
     /**
      * 构建备用邮件内容（当模板加载失败时使用）
      */
@@ -0,0 +1,118 @@
+package org.ttt.safevaultbackend.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 邮件模板渲染器
+ * resources/templates 下的邮件模板首次使用时加载并预编译为"文本片段 + 占位符"序列，之后常驻内存；
+ * 渲染时只按顺序拼接到预估容量的 StringBuilder 中，不再逐个 replace 整个模板。
+ *
+ * 占位符格式为 {{name}}；.html 模板中的变量值会做 HTML 转义。
+ */
+@Slf4j
+@Component
+public class EmailTemplateRenderer {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+
+    private final Map<String, CompiledTemplate> templates = new ConcurrentHashMap<>();
+
+    /**
+     * 渲染模板
+     *
+     * @param templatePath 相对 resources/templates 的路径，如 email/verification-email.html
+     * @param variables    占位符取值；未提供的占位符渲染为空字符串
+     * @return 渲染结果
+     * @throws IOException 模板不存在或读取失败
+     */
+    public String render(String templatePath, Map<String, String> variables) throws IOException {
+        CompiledTemplate template = templates.get(templatePath);
+        if (template == null) {
+            template = compile(templatePath, loadTemplate(templatePath));
+            templates.putIfAbsent(templatePath, template);
+        }
+        return template.render(variables);
+    }
+
+    /**
+     * 从 resources/templates 目录加载模板文件
+     */
+    private String loadTemplate(String templatePath) throws IOException {
+        try (InputStream inputStream = getClass().getClassLoader()
+                .getResourceAsStream("templates/" + templatePath)) {
+            if (inputStream == null) {
+                throw new IOException("Template not found: " + templatePath);
+            }
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private CompiledTemplate compile(String templatePath, String source) {
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+
+        int position = 0;
+        while (true) {
+            int start = source.indexOf(OPEN, position);
+            int end = start >= 0 ? source.indexOf(CLOSE, start + OPEN.length()) : -1;
+            if (start < 0 || end < 0) {
+                literals.add(source.substring(position));
+                break;
+            }
+            literals.add(source.substring(position, start));
+            names.add(source.substring(start + OPEN.length(), end).trim());
+            position = end + CLOSE.length();
+        }
+
+        log.debug("Compiled email template: {}, placeholders={}", templatePath, names);
+        return new CompiledTemplate(literals.toArray(new String[0]), names.toArray(new String[0]),
+                source.length(), templatePath.endsWith(".html"));
+    }
+
+    /**
+     * 预编译的模板：literals.length == names.length + 1
+     */
+    private record CompiledTemplate(String[] literals, String[] names, int sourceLength, boolean html) {
+
+        String render(Map<String, String> variables) {
+            StringBuilder sb = new StringBuilder(sourceLength + 256);
+            for (int i = 0; i < names.length; i++) {
+                sb.append(literals[i]);
+                String value = variables.get(names[i]);
+                if (value != null) {
+                    if (html) {
+                        appendEscaped(sb, value);
+                    } else {
+                        sb.append(value);
+                    }
+                }
+            }
+            sb.append(literals[names.length]);
+            return sb.toString();
+        }
+
+        private static void appendEscaped(StringBuilder sb, String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '&' -> sb.append("&amp;");
+                    case '<' -> sb.append("&lt;");
+                    case '>' -> sb.append("&gt;");
+                    case '"' -> sb.append("&quot;");
+                    case '\'' -> sb.append("&#39;");
+                    default -> sb.append(c);
+                }
+            }
+        }
+    }
+}
@@ -2,9 +2,7 @@ package org.ttt.safevaultbackend.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.ttt.safevaultbackend.entity.EmailVerificationHistory;
 import org.ttt.safevaultbackend.enums.DeliveryStatus;
@@ -14,6 +12,7 @@ import org.ttt.safevaultbackend.repository.EmailVerificationHistoryRepository;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalLong;
 
 /**
  * 邮箱验证历史服务
@@ -25,34 +24,31 @@ import java.util.Optional;
 public class EmailVerificationHistoryService {
 
     private final EmailVerificationHistoryRepository historyRepository;
+    private final AuditEventBuffer auditEventBuffer;
+    private final VerificationCounterService counterService;
 
     /**
      * 创建验证历史记录
      */
     @Transactional
     public EmailVerificationHistory createHistory(EmailVerificationHistory history) {
+        counterService.recordSend(history.getEmail());
         return historyRepository.save(history);
     }
 
     /**
      * 异步创建验证历史记录 (不影响主流程)
+     * 写入审计缓冲区，由后台线程批量写入数据库
      */
-    @Async
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void createHistoryAsync(EmailVerificationHistory history) {
-        try {
-            historyRepository.save(history);
-            log.debug("Verification history created for email: {}", history.getEmail());
-        } catch (Exception e) {
-            log.error("Failed to create verification history: {}", e.getMessage(), e);
-        }
+        counterService.recordSend(history.getEmail());
+        auditEventBuffer.submit(history);
+        log.debug("Verification history queued for email: {}", history.getEmail());
     }
 
     /**
      * 记录注册验证历史
      */
-    @Async
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void recordRegistrationHistory(String userId, String email, String token, String ipAddress, LocalDateTime expiresAt, String provider) {
         EmailVerificationHistory history = EmailVerificationHistory.builder()
             .userId(userId)
@@ -100,19 +96,24 @@ public class EmailVerificationHistoryService {
     }
 
     /**
-     * 检查邮箱发送频率限制
+     * 检查邮箱发送频率限制（次数大于 limit）
      */
-    @Transactional(readOnly = true)
     public boolean exceedsSendLimit(String email, LocalDateTime since, long limit) {
-        return historyRepository.exceedsSendLimit(email, since, limit);
+        return countSentAfter(email, since) > limit;
     }
 
     /**
      * 统计指定时间范围内发送的验证次数
+     * 优先使用 Redis 滑动窗口计数器，不可用时回退到审计表查询，并用查询结果补种计数器
      */
-    @Transactional(readOnly = true)
     public long countSentAfter(String email, LocalDateTime since) {
-        return historyRepository.countByEmailAfter(email, since);
+        OptionalLong count = counterService.countSends(email, since);
+        if (count.isPresent()) {
+            return count.getAsLong();
+        }
+        long total = historyRepository.countByEmailAfter(email, since);
+        counterService.seedSends(email, since, total);
+        return total;
     }
 
     /**
@@ -0,0 +1,166 @@
+package org.ttt.safevaultbackend.service;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.Recording;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.ttt.safevaultbackend.config.FlightRecorderProperties;
+import org.ttt.safevaultbackend.jfr.JwtVerifyEvent;
+import org.ttt.safevaultbackend.jfr.PasswordHashEvent;
+import org.ttt.safevaultbackend.jfr.ShareListMappingEvent;
+import org.ttt.safevaultbackend.jfr.VaultUpdateEvent;
+import org.ttt.safevaultbackend.jfr.WebSocketSendEvent;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * JFR 持续记录服务
+ * jfr.enabled=true 时在启动后开始一个持续记录：JDK 内置事件（GC、锁、I/O 等）加上业务热点路径的自定义事件，
+ * 数据按保留时长/大小滚动。需要分析时通过 actuator 端点导出，在 JMC 中把业务延迟与 GC、锁事件对照查看。
+ *
+ * 未启用时自定义事件处于禁用状态，埋点只剩一次对象分配和启用检查。
+ * 记录中排除环境变量和系统属性事件，避免导出文件中包含密钥。
+ * 每次导出写入独立的临时文件，超过 jfr.dump-retention-minutes 后由定时任务删除，不影响仍在下载的导出。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FlightRecorderService {
+
+    private static final String RECORDING_NAME = "safevault";
+
+    private static final List<Class<? extends Event>> CUSTOM_EVENTS = List.of(
+            JwtVerifyEvent.class,
+            PasswordHashEvent.class,
+            VaultUpdateEvent.class,
+            ShareListMappingEvent.class,
+            WebSocketSendEvent.class);
+
+    /**
+     * 可能包含密钥的 JDK 事件
+     */
+    private static final List<String> SENSITIVE_EVENTS = List.of(
+            "jdk.InitialEnvironmentVariable",
+            "jdk.InitialSystemProperty",
+            "jdk.JVMInformation");
+
+    private final FlightRecorderProperties properties;
+
+    private final ReentrantLock dumpLock = new ReentrantLock();
+
+    private volatile Recording recording;
+
+    /**
+     * 已导出、尚未清理的文件
+     */
+    private final Queue<DumpFile> dumps = new ConcurrentLinkedQueue<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            Recording created = new Recording(Configuration.getConfiguration(properties.getSettings()));
+            created.setName(RECORDING_NAME);
+            created.setToDisk(true);
+            created.setMaxAge(Duration.ofMinutes(properties.getMaxAgeMinutes()));
+            created.setMaxSize(properties.getMaxSizeMb() * 1024 * 1024);
+            for (Class<? extends Event> eventClass : CUSTOM_EVENTS) {
+                created.enable(eventClass).withThreshold(Duration.ofMillis(properties.getEventThresholdMs()));
+            }
+            for (String eventName : SENSITIVE_EVENTS) {
+                created.disable(eventName);
+            }
+            created.start();
+            recording = created;
+            log.info("JFR 持续记录已启动: settings={}, maxAge={}min, maxSize={}MB",
+                    properties.getSettings(), properties.getMaxAgeMinutes(), properties.getMaxSizeMb());
+        } catch (Exception e) {
+            log.error("启动 JFR 持续记录失败", e);
+        }
+    }
+
+    /**
+     * 是否正在记录
+     */
+    public boolean isRecording() {
+        return recording != null;
+    }
+
+    /**
+     * 将当前记录导出到文件
+     *
+     * @return 导出的文件；未启用记录时为空
+     */
+    public Optional<Path> dump() throws IOException {
+        Recording current = recording;
+        if (current == null) {
+            return Optional.empty();
+        }
+        dumpLock.lock();
+        try {
+            Path directory = Path.of(properties.getDumpDirectory() != null
+                    ? properties.getDumpDirectory() : System.getProperty("java.io.tmpdir"));
+            Path file = Files.createTempFile(directory, RECORDING_NAME + "-", ".jfr");
+            dumps.add(new DumpFile(file, Instant.now()));
+            current.dump(file);
+            log.info("JFR 记录已导出: file={}, size={}KB", file, Files.size(file) / 1024);
+            return Optional.of(file);
+        } finally {
+            dumpLock.unlock();
+        }
+    }
+
+    /**
+     * 删除超过保留时长的导出文件
+     */
+    @Scheduled(fixedDelayString = "${jfr.dump-cleanup-interval-ms:60000}")
+    public void cleanupDumps() {
+        Instant cutoff = Instant.now().minus(Duration.ofMinutes(properties.getDumpRetentionMinutes()));
+        DumpFile oldest;
+        while ((oldest = dumps.peek()) != null && oldest.createdAt().isBefore(cutoff)) {
+            dumps.poll();
+            delete(oldest.path());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        Recording current = recording;
+        if (current != null) {
+            recording = null;
+            current.close();
+        }
+        DumpFile dump;
+        while ((dump = dumps.poll()) != null) {
+            delete(dump.path());
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("删除 JFR 导出文件失败: file={}, error={}", file, e.getMessage());
+        }
+    }
+
+    private record DumpFile(Path path, Instant createdAt) {
+    }
+}
@@ -5,6 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.ttt.safevaultbackend.dto.FriendNotificationMessage;
+import org.ttt.safevaultbackend.dto.UserSnapshot;
 import org.ttt.safevaultbackend.dto.request.RespondFriendRequestRequest;
 import org.ttt.safevaultbackend.dto.request.SendFriendRequestRequest;
 import org.ttt.safevaultbackend.dto.response.FriendDto;
@@ -21,10 +22,10 @@ import org.ttt.safevaultbackend.repository.FriendRequestRepository;
 import org.ttt.safevaultbackend.repository.FriendshipRepository;
 import org.ttt.safevaultbackend.repository.UserRepository;
 import org.ttt.safevaultbackend.websocket.WebSocketConnectionManager;
+import org.ttt.safevaultbackend.util.UuidV7;
 
 import java.time.ZoneOffset;
 import java.util.List;
-import java.util.UUID;
 import java.util.stream.Collectors;
 
 /**
@@ -40,14 +41,15 @@ public class FriendServiceImpl implements FriendService {
     private final FriendRequestRepository friendRequestRepository;
     private final WebSocketService webSocketService;
     private final WebSocketConnectionManager connectionManager;
+    private final UserCacheService userCacheService;
 
     @Override
     @Transactional
     public String sendFriendRequest(SendFriendRequestRequest request, String fromUserId) {
         // 验证用户存在
-        User fromUser = userRepository.findById(fromUserId)
+        UserSnapshot fromUser = userCacheService.findById(fromUserId)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "userId", fromUserId));
-        User toUser = userRepository.findById(request.getToUserId())
+        UserSnapshot toUser = userCacheService.findById(request.getToUserId())
                 .orElseThrow(() -> new ResourceNotFoundException("User", "userId", request.getToUserId()));
 
         // 不能发送好友请求给自己
@@ -68,7 +70,7 @@ public class FriendServiceImpl implements FriendService {
 
         // 创建好友请求
         FriendRequest friendRequest = FriendRequest.builder()
-                .id(UUID.randomUUID().toString())
+                .id(UuidV7.generateString())
                 .fromUserId(fromUserId)
                 .toUserId(request.getToUserId())
                 .message(request.getMessage())
@@ -116,7 +118,7 @@ public class FriendServiceImpl implements FriendService {
         if (request.getAccept()) {
             // 接受好友请求：创建双向好友关系
             Friendship friendship = Friendship.builder()
-                    .id(UUID.randomUUID().toString())
+                    .id(UuidV7.generateString())
                     .userIdA(friendRequest.getFromUserId())
                     .userIdB(friendRequest.getToUserId())
                     .status(FriendStatus.ACCEPTED)
@@ -128,8 +130,8 @@ public class FriendServiceImpl implements FriendService {
                     friendRequest.getFromUserId(), friendRequest.getToUserId());
 
             // 发送接受通知给发送方
-            User fromUser = userRepository.findById(friendRequest.getFromUserId()).orElse(null);
-            User toUser = userRepository.findById(toUserId).orElse(null);
+            UserSnapshot fromUser = userCacheService.findById(friendRequest.getFromUserId()).orElse(null);
+            UserSnapshot toUser = userCacheService.findById(toUserId).orElse(null);
 
             if (fromUser != null && toUser != null) {
                 FriendNotificationMessage notification = FriendNotificationMessage.builder()
@@ -167,7 +169,7 @@ public class FriendServiceImpl implements FriendService {
                             ? friendship.getUserIdB()
                             : friendship.getUserIdA();
 
-                    return userRepository.findById(friendId)
+                    return userCacheService.findById(friendId)
                             .map(user -> FriendDto.builder()
                                     .userId(user.getUserId())
                                     .username(user.getUsername())
@@ -191,7 +193,7 @@ public class FriendServiceImpl implements FriendService {
 
         return requests.stream()
                 .map(request -> {
-                    User fromUser = userRepository.findById(request.getFromUserId()).orElse(null);
+                    UserSnapshot fromUser = userCacheService.findById(request.getFromUserId()).orElse(null);
                     if (fromUser == null) {
                         return null;
                     }
@@ -217,9 +219,9 @@ public class FriendServiceImpl implements FriendService {
     @Transactional
     public void deleteFriend(String userId, String friendUserId) {
         // 验证用户存在
-        userRepository.findById(userId)
+        userCacheService.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "userId", userId));
-        userRepository.findById(friendUserId)
+        userCacheService.findById(friendUserId)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "userId", friendUserId));
 
         // 检查是否是好友
@@ -232,7 +234,7 @@ public class FriendServiceImpl implements FriendService {
         log.info("Friendship deleted: userId={}, friendId={}", userId, friendUserId);
 
         // 通知对方
-        User currentUser = userRepository.findById(userId).orElse(null);
+        UserSnapshot currentUser = userCacheService.findById(userId).orElse(null);
         if (currentUser != null) {
             FriendNotificationMessage notification = FriendNotificationMessage.builder()
                     .type("FRIEND_DELETED")
@@ -0,0 +1,43 @@
+package org.ttt.safevaultbackend.service;
+
+/**
+ * 分批执行的维护任务
+ * 每次调用处理一个批次，由 MaintenanceJobRunner 在独立事务中执行并保存检查点。
+ * 检查点提交前实例崩溃时批次会被重新执行，因此实现必须是幂等的。
+ */
+@FunctionalInterface
+public interface MaintenanceJob {
+
+    /**
+     * 处理一个批次
+     *
+     * @param checkpoint 上一批次返回的检查点；首次执行或上次运行已完成时为 null
+     * @param batchSize  批次大小
+     * @return 批次结果
+     */
+    Chunk processChunk(String checkpoint, int batchSize);
+
+    /**
+     * 批次结果
+     *
+     * @param rows       本批次处理的行数
+     * @param checkpoint 下一批次的检查点
+     * @param finished   是否已处理完所有数据
+     */
+    record Chunk(int rows, String checkpoint, boolean finished) {
+
+        /**
+         * 按行数判断是否完成：不足一个批次说明已没有更多数据
+         */
+        public static Chunk of(int rows, String checkpoint, int batchSize) {
+            return new Chunk(rows, checkpoint, rows < batchSize);
+        }
+
+        /**
+         * 单批次即完成的任务
+         */
+        public static Chunk done(int rows) {
+            return new Chunk(rows, null, true);
+        }
+    }
+}
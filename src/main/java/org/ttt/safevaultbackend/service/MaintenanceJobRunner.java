@@ -0,0 +1,227 @@
+package org.ttt.safevaultbackend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.ttt.safevaultbackend.config.MaintenanceProperties;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 维护任务执行器
+ * 所有实例都按计划触发维护任务，但同一时刻只有持有 Redis 租约的实例真正执行，
+ * 副本数增加不会放大清理负载和锁竞争。
+ *
+ * - 租约：SET NX PX 获取，每个批次提交后续期，比较持有者后才续期/释放；
+ * - 分批：每个批次在独立事务中执行，批次之间按配置暂停；
+ * - 检查点：每个批次提交后写入 Redis，实例崩溃或单次运行超时后，下一次调度从检查点继续；
+ * - 线程：定时任务通过 submit 提交到专用线程池执行，批次间暂停和单次最长 max-run-ms 的运行
+ *   不占用调度线程，发件箱轮询、审计刷新等短周期任务不受影响；
+ * - 指标：maintenance.job.rows / chunks / duration / skipped / failures，按任务名打标签。
+ */
+@Slf4j
+@Service
+public class MaintenanceJobRunner {
+
+    private static final String LEASE_KEY_PREFIX = "maintenance:lease:";
+    private static final String CHECKPOINT_KEY_PREFIX = "maintenance:checkpoint:";
+
+    /**
+     * 仍是持有者时续期
+     */
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+            "  return redis.call('PEXPIRE', KEYS[1], ARGV[2]) " +
+            "end " +
+            "return 0",
+            Long.class);
+
+    /**
+     * 仍是持有者时释放
+     */
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+            "  return redis.call('DEL', KEYS[1]) " +
+            "end " +
+            "return 0",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MaintenanceProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolTaskExecutor maintenanceExecutor;
+
+    /**
+     * 本实例已提交、尚未结束的任务名，同一任务不重复排队
+     */
+    private final Set<String> submitted = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 实例标识，与每次运行的随机值组成租约持有者
+     */
+    private final String instanceId = UUID.randomUUID().toString();
+
+    public MaintenanceJobRunner(StringRedisTemplate redisTemplate,
+                                PlatformTransactionManager transactionManager,
+                                MaintenanceProperties properties,
+                                MeterRegistry meterRegistry,
+                                @Qualifier("maintenanceExecutor") ThreadPoolTaskExecutor maintenanceExecutor) {
+        this.redisTemplate = redisTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.maintenanceExecutor = maintenanceExecutor;
+    }
+
+    /**
+     * 在维护任务线程池中执行任务，调用方（调度线程）立即返回
+     * 本实例上一次提交的同名任务仍在排队或运行时跳过
+     *
+     * @param name 任务名
+     * @param job  任务
+     */
+    public void submit(String name, MaintenanceJob job) {
+        if (!submitted.add(name)) {
+            log.debug("维护任务仍在执行，跳过本次调度: {}", name);
+            return;
+        }
+        try {
+            maintenanceExecutor.execute(() -> {
+                try {
+                    run(name, job);
+                } catch (Exception e) {
+                    log.error("定时任务执行失败: {}", name, e);
+                } finally {
+                    submitted.remove(name);
+                }
+            });
+        } catch (RuntimeException e) {
+            submitted.remove(name);
+            log.warn("维护任务提交失败: job={}, error={}", name, e.getMessage());
+        }
+    }
+
+    /**
+     * 执行维护任务
+     * 其他实例持有租约时直接返回
+     *
+     * @param name 任务名，同时用作租约、检查点和指标标签
+     * @param job  任务
+     * @return 本次处理的总行数；未获得租约时为 0
+     */
+    public int run(String name, MaintenanceJob job) {
+        MaintenanceProperties.Job settings = properties.getJobs().get(name);
+        if (settings != null && !settings.isEnabled()) {
+            log.debug("维护任务已禁用: {}", name);
+            return 0;
+        }
+        int batchSize = settings != null && settings.getBatchSize() != null
+                ? settings.getBatchSize() : properties.getBatchSize();
+        long pauseMs = settings != null && settings.getPauseMs() != null
+                ? settings.getPauseMs() : properties.getPauseMs();
+
+        String leaseKey = LEASE_KEY_PREFIX + name;
+        String owner = instanceId + ":" + UUID.randomUUID();
+        Boolean acquired = redisTemplate.opsForValue()
+                .setIfAbsent(leaseKey, owner, Duration.ofMillis(properties.getLeaseTtlMs()));
+        if (!Boolean.TRUE.equals(acquired)) {
+            Counter.builder("maintenance.job.skipped").tag("job", name).register(meterRegistry).increment();
+            log.debug("维护任务正由其他实例执行: {}", name);
+            return 0;
+        }
+
+        String checkpointKey = CHECKPOINT_KEY_PREFIX + name;
+        Timer.Sample sample = Timer.start(meterRegistry);
+        long deadline = System.currentTimeMillis() + properties.getMaxRunMs();
+        int total = 0;
+        int chunks = 0;
+        boolean finished = false;
+        try {
+            String checkpoint = redisTemplate.opsForValue().get(checkpointKey);
+            if (checkpoint != null) {
+                log.info("维护任务从检查点继续: job={}, checkpoint={}", name, checkpoint);
+            }
+
+            while (true) {
+                String current = checkpoint;
+                MaintenanceJob.Chunk chunk = transactionTemplate.execute(
+                        status -> job.processChunk(current, batchSize));
+                if (chunk == null) {
+                    break;
+                }
+                total += chunk.rows();
+                chunks++;
+                Counter.builder("maintenance.job.rows").tag("job", name).register(meterRegistry)
+                        .increment(chunk.rows());
+                Counter.builder("maintenance.job.chunks").tag("job", name).register(meterRegistry)
+                        .increment();
+
+                if (chunk.finished()) {
+                    redisTemplate.delete(checkpointKey);
+                    finished = true;
+                    break;
+                }
+                checkpoint = chunk.checkpoint();
+                if (checkpoint != null) {
+                    redisTemplate.opsForValue().set(checkpointKey, checkpoint,
+                            Duration.ofHours(properties.getCheckpointTtlHours()));
+                }
+
+                if (!renew(leaseKey, owner)) {
+                    log.warn("维护任务租约已丢失，停止执行: job={}", name);
+                    break;
+                }
+                if (System.currentTimeMillis() >= deadline) {
+                    log.info("维护任务达到单次运行时限，剩余部分留给下次调度: job={}", name);
+                    break;
+                }
+                if (pauseMs > 0) {
+                    Thread.sleep(pauseMs);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("维护任务被中断: job={}", name);
+        } catch (RuntimeException e) {
+            Counter.builder("maintenance.job.failures").tag("job", name).register(meterRegistry).increment();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder("maintenance.job.duration").tag("job", name).register(meterRegistry));
+            release(leaseKey, owner);
+        }
+
+        if (total > 0 || chunks > 1) {
+            log.info("维护任务执行完成: job={}, rows={}, chunks={}, finished={}", name, total, chunks, finished);
+        }
+        return total;
+    }
+
+    private boolean renew(String leaseKey, String owner) {
+        Long result = redisTemplate.execute(RENEW_SCRIPT, List.of(leaseKey),
+                owner, String.valueOf(properties.getLeaseTtlMs()));
+        return result != null && result == 1L;
+    }
+
+    private void release(String leaseKey, String owner) {
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, List.of(leaseKey), owner);
+        } catch (Exception e) {
+            // 未释放的租约到期后自动失效
+            log.warn("释放维护任务租约失败: key={}, error={}", leaseKey, e.getMessage());
+        }
+    }
+}
@@ -1,17 +1,27 @@
 package org.ttt.safevaultbackend.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
+import org.ttt.safevaultbackend.util.CryptoPrimitives;
 
-import java.security.SecureRandom;
 import java.util.Base64;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Nonce 服务
  * 管理 Challenge-Response 机制的挑战码生成和验证
+ *
+ * Redis 中只保存 nonce 绑定的邮箱，过期完全由 TTL 控制；
+ * 验证时通过 Lua 脚本在服务端一次完成"读取-比对-删除"，避免并发重复消费。
+ *
+ * 指标：auth.nonce.consume 按结果（hit/miss/mismatch）计数。
  */
 @Slf4j
 @Service
@@ -19,12 +29,29 @@ import java.util.concurrent.TimeUnit;
 public class NonceService {
 
     private final RedisTemplate<String, String> redisTemplate;
-    private final SecureRandom secureRandom = new SecureRandom();
+    private final MeterRegistry meterRegistry;
 
     private static final String NONCE_PREFIX = "auth:nonce:";
     private static final int NONCE_SIZE_BYTES = 32; // 256 bits
     private static final int NONCE_EXPIRATION_SECONDS = 30; // 30 seconds
 
+    /**
+     * 消费结果：1 成功，0 不存在或已过期/已使用，-1 邮箱不匹配
+     */
+    private static final long CONSUME_OK = 1L;
+    private static final long CONSUME_NOT_FOUND = 0L;
+
+    /**
+     * 原子消费脚本：邮箱匹配时删除并返回 1；邮箱不匹配时保留 nonce 并返回 -1
+     */
+    private static final RedisScript<Long> CONSUME_SCRIPT = new DefaultRedisScript<>(
+            "local v = redis.call('GET', KEYS[1]) " +
+            "if not v then return 0 end " +
+            "if v ~= ARGV[1] then return -1 end " +
+            "redis.call('DEL', KEYS[1]) " +
+            "return 1",
+            Long.class);
+
     /**
      * 生成并存储 nonce
      *
@@ -33,80 +60,60 @@ public class NonceService {
      */
     public String generateNonce(String email) {
         // 生成随机 nonce
-        byte[] nonceBytes = new byte[NONCE_SIZE_BYTES];
-        secureRandom.nextBytes(nonceBytes);
+        byte[] nonceBytes = CryptoPrimitives.randomBytes(NONCE_SIZE_BYTES);
         String nonce = Base64.getEncoder().encodeToString(nonceBytes);
 
-        // 存储到 Redis，设置过期时间
-        String key = NONCE_PREFIX + nonce;
-        long expiresAt = System.currentTimeMillis() / 1000 + NONCE_EXPIRATION_SECONDS;
-
-        NonceData nonceData = NonceData.builder()
-                .email(email)
-                .expiresAt(expiresAt)
-                .used(false)
-                .build();
-
+        // 存储到 Redis，值为绑定的邮箱，过期由 TTL 控制
         redisTemplate.opsForValue().set(
-                key,
-                nonceData.toJson(),
+                NONCE_PREFIX + nonce,
+                email,
                 NONCE_EXPIRATION_SECONDS,
                 TimeUnit.SECONDS
         );
 
-        log.debug("Generated nonce for email: {}, expires at: {}", email, expiresAt);
+        log.debug("Generated nonce for email: {}, expires in: {}s", email, NONCE_EXPIRATION_SECONDS);
         return nonce;
     }
 
     /**
-     * 验证 nonce 并标记为已使用（一次性）
+     * 验证 nonce 并立即删除（一次性）
+     * 单次往返完成校验与消费，同一 nonce 并发验证时只有一个请求成功
      *
      * @param nonce nonce 字符串
      * @param email 期望的用户邮箱
      * @return 是否验证成功
      */
     public boolean validateAndConsumeNonce(String nonce, String email) {
-        String key = NONCE_PREFIX + nonce;
-        String json = redisTemplate.opsForValue().get(key);
-
-        if (json == null) {
-            log.warn("Nonce not found or expired: {}", nonce);
+        if (nonce == null || email == null) {
             return false;
         }
 
-        NonceData nonceData = NonceData.fromJson(json);
+        Long result = redisTemplate.execute(CONSUME_SCRIPT, List.of(NONCE_PREFIX + nonce), email);
 
-        // 检查是否已使用
-        if (nonceData.isUsed()) {
-            log.warn("Nonce already used: {}", nonce);
-            return false;
+        if (result != null && result == CONSUME_OK) {
+            recordConsume("hit");
+            log.debug("Nonce validated and consumed: {}", nonce);
+            return true;
         }
-
-        // 检查邮箱是否匹配
-        if (!email.equals(nonceData.getEmail())) {
-            log.warn("Nonce email mismatch: expected={}, got={}", nonceData.getEmail(), email);
-            return false;
+        if (result == null || result == CONSUME_NOT_FOUND) {
+            recordConsume("miss");
+            log.warn("Nonce not found, expired or already used: {}", nonce);
+        } else {
+            recordConsume("mismatch");
+            log.warn("Nonce email mismatch: nonce={}, got={}", nonce, email);
         }
+        return false;
+    }
 
-        // 检查是否过期
-        long currentTime = System.currentTimeMillis() / 1000;
-        if (currentTime > nonceData.getExpiresAt()) {
-            log.warn("Nonce expired: {}, expired at: {}, current: {}",
-                    nonce, nonceData.getExpiresAt(), currentTime);
-            redisTemplate.delete(key);
-            return false;
-        }
-
-        // 标记为已使用（用后即焚）
-        nonceData.setUsed(true);
-        redisTemplate.opsForValue().set(key, nonceData.toJson(), 5, TimeUnit.MINUTES);
-
-        log.debug("Nonce validated and marked as used: {}", nonce);
-        return true;
+    private void recordConsume(String result) {
+        Counter.builder("auth.nonce.consume")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
     }
 
     /**
-     * 清理已使用的 nonce（可选，由 Redis TTL 自动处理）
+     * 清理 nonce（可选，由 Redis TTL 自动处理）
      *
      * @param nonce nonce 字符串
      */
@@ -114,67 +121,4 @@ public class NonceService {
         String key = NONCE_PREFIX + nonce;
         redisTemplate.delete(key);
     }
-
-    /**
-     * Nonce 数据结构
-     */
-    @lombok.Data
-    @lombok.Builder
-    @lombok.NoArgsConstructor
-    @lombok.AllArgsConstructor
-    public static class NonceData {
-        private String email;
-        private long expiresAt;
-        private boolean used;
-
-        public String toJson() {
-            return String.format("{\"email\":\"%s\",\"expiresAt\":%d,\"used\":%b}",
-                    email, expiresAt, used);
-        }
-
-        public static NonceData fromJson(String json) {
-            // 使用正则表达式提取字段（更可靠）
-            java.util.regex.Pattern pattern = java.util.regex.Pattern.compile(
-                    "\\{\"email\":\"([^\"]+)\",\"expiresAt\":(\\d+),\"used\":(true|false)\\}"
-            );
-            java.util.regex.Matcher matcher = pattern.matcher(json);
-
-            if (matcher.matches()) {
-                String email = matcher.group(1);
-                long expiresAt = Long.parseLong(matcher.group(2));
-                boolean used = Boolean.parseBoolean(matcher.group(3));
-
-                return NonceData.builder()
-                        .email(email)
-                        .expiresAt(expiresAt)
-                        .used(used)
-                        .build();
-            }
-
-            // 降级处理：尝试简单解析
-            try {
-                String email = json.substring(
-                        json.indexOf("\"email\":\"") + 9,
-                        json.indexOf("\",\"expiresAt\":")
-                );
-                long expiresAt = Long.parseLong(json.substring(
-                        json.indexOf("\"expiresAt\":") + 12,
-                        json.indexOf(",\"used\"")
-                ));
-                boolean used = Boolean.parseBoolean(json.substring(
-                        json.indexOf("\"used\":") + 7,
-                        json.indexOf("}")
-                ));
-
-                return NonceData.builder()
-                        .email(email)
-                        .expiresAt(expiresAt)
-                        .used(used)
-                        .build();
-            } catch (Exception e) {
-                log.error("Failed to parse NonceData JSON: {}", json, e);
-                throw new RuntimeException("Invalid NonceData format", e);
-            }
-        }
-    }
 }
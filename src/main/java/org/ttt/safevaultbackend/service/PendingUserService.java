@@ -1,28 +1,50 @@
 package org.ttt.safevaultbackend.service;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 import org.ttt.safevaultbackend.dto.PendingUser;
 import org.ttt.safevaultbackend.exception.BusinessException;
+import org.ttt.safevaultbackend.util.CryptoPrimitives;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
  * 待验证用户服务
  * 管理 Redis 中的待验证用户数据
+ *
+ * 待验证用户以 Hash 存储在 pending:user:{email}，字段名使用短名称，值为纯文本
+ * （时间为 ISO-8601），不再携带 JSON 类型元数据；token -> email 映射为普通字符串键。
+ * 写入和删除通过 Lua 脚本一次往返原子完成两个键的更新，按令牌查询也在脚本中一次完成。
+ * 脚本内会根据前缀拼出关联键，要求两类键位于同一个 Redis 节点（当前为单节点部署）。
+ *
+ * 兼容旧格式：升级前写入的待验证用户是带 @class 的 JSON 字符串，令牌映射的值是带引号的 JSON 字符串。
+ * 读到旧格式时解析一次并按剩余有效期改写为 Hash；旧数据最长保留 pending-user-expiration-minutes，
+ * 此后兼容逻辑可以删除。
  */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class PendingUserService {
 
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final StringRedisTemplate redisTemplate;
 
     @Value("${email.verification.pending-user-expiration-minutes:30}")
     private long pendingUserExpirationMinutes;
@@ -30,6 +52,75 @@ public class PendingUserService {
     private static final String PENDING_USER_KEY_PREFIX = "pending:user:";
     private static final String EMAIL_TOKEN_KEY_PREFIX = "email:token:";
 
+    /**
+     * Hash 字段名
+     */
+    private static final String FIELD_EMAIL = "e";
+    private static final String FIELD_USERNAME = "u";
+    private static final String FIELD_DISPLAY_NAME = "n";
+    private static final String FIELD_TOKEN = "t";
+    private static final String FIELD_TOKEN_EXPIRES_AT = "x";
+    private static final String FIELD_CREATED_AT = "c";
+    private static final String FIELD_LAST_EMAIL_SENT_AT = "s";
+
+    /**
+     * 按令牌查询时用户数据仍为旧 JSON 格式的标记
+     */
+    private static final String LEGACY_MARKER = "@legacy";
+
+    /**
+     * 解析旧 JSON 格式（忽略 @class 类型元数据）
+     */
+    private static final ObjectMapper LEGACY_MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    /**
+     * 保存脚本
+     * KEYS[1]: 用户键，KEYS[2]: 新令牌键（无令牌时为空串）
+     * ARGV[1]: 过期毫秒数，ARGV[2]: 邮箱，ARGV[3]: 令牌键前缀，ARGV[4..]: Hash 字段和值
+     * 旧令牌与新令牌不同时删除旧的映射；非 Hash 类型的旧数据直接覆盖
+     */
+    private static final RedisScript<Long> SAVE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('TYPE', KEYS[1]).ok == 'hash' then " +
+            "  local old = redis.call('HGET', KEYS[1], 't') " +
+            "  if old and ARGV[3] .. old ~= KEYS[2] then redis.call('DEL', ARGV[3] .. old) end " +
+            "end " +
+            "redis.call('DEL', KEYS[1]) " +
+            "redis.call('HSET', KEYS[1], unpack(ARGV, 4)) " +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[1]) " +
+            "if KEYS[2] ~= '' then redis.call('SET', KEYS[2], ARGV[2], 'PX', ARGV[1]) end " +
+            "return 1",
+            Long.class);
+
+    /**
+     * 按令牌查询脚本
+     * KEYS[1]: 令牌键；ARGV[1]: 用户键前缀
+     * 返回用户 Hash 的字段和值，不存在时返回空列表；用户数据为旧 JSON 格式时返回 [@legacy, 邮箱]
+     */
+    private static final RedisScript<List> FIND_BY_TOKEN_SCRIPT = new DefaultRedisScript<>(
+            "local email = redis.call('GET', KEYS[1]) " +
+            "if not email then return {} end " +
+            "if string.sub(email, 1, 1) == '\"' then email = string.sub(email, 2, -2) end " +
+            "local key = ARGV[1] .. email " +
+            "local type = redis.call('TYPE', key).ok " +
+            "if type == 'string' then return {'" + LEGACY_MARKER + "', email} end " +
+            "if type ~= 'hash' then return {} end " +
+            "return redis.call('HGETALL', key)",
+            List.class);
+
+    /**
+     * 删除脚本
+     * KEYS[1]: 用户键；ARGV[1]: 令牌键前缀
+     */
+    private static final RedisScript<Long> DELETE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('TYPE', KEYS[1]).ok == 'hash' then " +
+            "  local t = redis.call('HGET', KEYS[1], 't') " +
+            "  if t then redis.call('DEL', ARGV[1] .. t) end " +
+            "end " +
+            "return redis.call('DEL', KEYS[1])",
+            Long.class);
+
     /**
      * Redis Key 格式
      */
@@ -43,11 +134,16 @@ public class PendingUserService {
 
     /**
      * 保存待验证用户到 Redis
+     * 用户数据和令牌映射在一次脚本调用中原子写入
      *
      * @param pendingUser 待验证用户
      * @return 是否保存成功
      */
     public boolean savePendingUser(PendingUser pendingUser) {
+        return save(pendingUser, Duration.ofMinutes(pendingUserExpirationMinutes).toMillis());
+    }
+
+    private boolean save(PendingUser pendingUser, long ttlMillis) {
         try {
             String userKey = getPendingUserKey(pendingUser.getEmail());
 
@@ -56,43 +152,19 @@ public class PendingUserService {
                 pendingUser.setCreatedAt(LocalDateTime.now());
             }
 
-            log.info("准备保存待验证用户到Redis: email={}, username={}, token={}, tokenExpiresAt={}",
-                    pendingUser.getEmail(),
-                    pendingUser.getUsername(),
-                    pendingUser.getVerificationToken(),
-                    pendingUser.getTokenExpiresAt());
-
-            // 保存到 Redis，设置过期时间
-            redisTemplate.opsForValue().set(
-                    userKey,
-                    pendingUser,
-                    Duration.ofMinutes(pendingUserExpirationMinutes)
-            );
-
-            log.info("已保存用户数据到Redis: key={}", userKey);
-
-            // 同时保存 token -> email 的映射，方便验证时查找
-            if (pendingUser.getVerificationToken() != null) {
-                String tokenKey = getEmailTokenKey(pendingUser.getVerificationToken());
-                String email = pendingUser.getEmail().toLowerCase();
-
-                redisTemplate.opsForValue().set(
-                        tokenKey,
-                        email,
-                        Duration.ofMinutes(pendingUserExpirationMinutes)
-                );
-
-                log.info("已保存token映射到Redis: tokenKey={}, email={}", tokenKey, email);
-
-                // 验证保存是否成功（立即读取确认）
-                Object savedEmail = redisTemplate.opsForValue().get(tokenKey);
-                log.info("验证token映射保存结果: expected={}, actual={}, match={}",
-                        email, savedEmail, email.equals(savedEmail));
-
-                if (!email.equals(savedEmail)) {
-                    log.error("Redis token映射验证失败！保存的值与读取的值不一致");
-                }
-            }
+            String tokenKey = pendingUser.getVerificationToken() != null
+                    ? getEmailTokenKey(pendingUser.getVerificationToken()) : "";
+
+            List<String> args = new ArrayList<>(17);
+            args.add(String.valueOf(ttlMillis));
+            args.add(pendingUser.getEmail().toLowerCase());
+            args.add(EMAIL_TOKEN_KEY_PREFIX);
+            toHash(pendingUser).forEach((field, value) -> {
+                args.add(field);
+                args.add(value);
+            });
+
+            redisTemplate.execute(SAVE_SCRIPT, List.of(userKey, tokenKey), args.toArray());
 
             log.info("保存待验证用户到 Redis 成功: email={}, expiresIn={}分钟",
                     pendingUser.getEmail(), pendingUserExpirationMinutes);
@@ -128,44 +200,21 @@ public class PendingUserService {
     public PendingUser getPendingUserByEmail(String email) {
         try {
             String key = getPendingUserKey(email);
-            log.info("通过 email 查找待验证用户: email={}, key={}", email, key);
-
-            Object obj = redisTemplate.opsForValue().get(key);
-
-            log.info("Redis 查询结果: key={}, obj={}, objType={}",
-                    key, obj, obj != null ? obj.getClass().getName() : "null");
-
-            if (obj instanceof PendingUser) {
-                return (PendingUser) obj;
-            }
-
-            // 尝试直接用 LinkedHashMap 反序列化（兼容旧数据）
-            if (obj instanceof java.util.LinkedHashMap) {
-                try {
-                    @SuppressWarnings("unchecked")
-                    java.util.LinkedHashMap<String, Object> map = (java.util.LinkedHashMap<String, Object>) obj;
-
-                    log.info("从 LinkedHashMap 构建 PendingUser: email={}, username={}, tokenExpiresAt={}",
-                            map.get("email"), map.get("username"), map.get("tokenExpiresAt"));
-
-                    // 手动构建 PendingUser 对象，避免 Jackson 反序列化问题
-                    return PendingUser.builder()
-                            .email((String) map.get("email"))
-                            .username((String) map.get("username"))
-                            .displayName((String) map.get("displayName"))
-                            .verificationToken((String) map.get("verificationToken"))
-                            .tokenExpiresAt(parseLocalDateTime(map.get("tokenExpiresAt")))
-                            .createdAt(parseLocalDateTime(map.get("createdAt")))
-                            .lastEmailSentAt(parseLocalDateTime(map.get("lastEmailSentAt")))
-                            .build();
-                } catch (Exception e) {
-                    log.error("从 LinkedHashMap 构建 PendingUser 失败", e);
+            Map<Object, Object> entries;
+            try {
+                entries = redisTemplate.opsForHash().entries(key);
+            } catch (DataAccessException e) {
+                // 旧格式为字符串类型，HGETALL 返回 WRONGTYPE
+                if (redisTemplate.type(key) == DataType.STRING) {
+                    return upgradeLegacy(key);
                 }
+                throw e;
             }
-
-            log.warn("未找到 PendingUser: email={}, key={}, objType={}",
-                    email, key, obj != null ? obj.getClass().getName() : "null");
-            return null;
+            if (entries.isEmpty()) {
+                log.debug("未找到待验证用户: email={}", email);
+                return null;
+            }
+            return fromHash(entries);
 
         } catch (Exception e) {
             log.error("获取待验证用户失败: email={}", email, e);
@@ -175,52 +224,47 @@ public class PendingUserService {
 
     /**
      * 根据验证令牌获取待验证用户
+     * 令牌映射和用户数据在一次脚本调用中读取
      *
      * @param token 验证令牌
      * @return 待验证用户，不存在或令牌无效返回 null
      */
     public PendingUser getPendingUserByToken(String token) {
         try {
-            // 先通过 token 获取 email
-            String key = getEmailTokenKey(token);
-
-            log.info("通过令牌查找待验证用户: token={}, key={}", token, key);
-
-            Object emailObj = redisTemplate.opsForValue().get(key);
-
-            if (emailObj == null) {
-                log.warn("未找到token对应的email: token={}, key={}", token, key);
+            @SuppressWarnings("unchecked")
+            List<Object> result = redisTemplate.execute(FIND_BY_TOKEN_SCRIPT,
+                    List.of(getEmailTokenKey(token)), PENDING_USER_KEY_PREFIX);
+            if (result == null || result.isEmpty()) {
+                log.warn("未找到令牌对应的待验证用户");
                 return null;
             }
+            if (result.size() == 2 && LEGACY_MARKER.equals(result.get(0))) {
+                PendingUser pendingUser = upgradeLegacy(getPendingUserKey(result.get(1).toString()));
+                return pendingUser != null && token.equals(pendingUser.getVerificationToken()) ? pendingUser : null;
+            }
 
-            String email = emailObj.toString();
-            log.info("找到token对应的email: token={}, email={}", token, email);
-
-            return getPendingUserByEmail(email);
+            Map<Object, Object> entries = new HashMap<>();
+            for (int i = 0; i + 1 < result.size(); i += 2) {
+                entries.put(result.get(i), result.get(i + 1));
+            }
+            return fromHash(entries);
 
         } catch (Exception e) {
-            log.error("通过令牌获取待验证用户失败: token={}", token, e);
+            log.error("通过令牌获取待验证用户失败", e);
             return null;
         }
     }
 
     /**
-     * 删除待验证用户
+     * 删除待验证用户及其令牌映射
      *
      * @param email 邮箱
      */
     public void deletePendingUser(String email) {
         try {
-            PendingUser pendingUser = getPendingUserByEmail(email);
-            if (pendingUser != null) {
-                // 删除用户数据
-                redisTemplate.delete(getPendingUserKey(email));
-
-                // 删除 token 映射
-                if (pendingUser.getVerificationToken() != null) {
-                    redisTemplate.delete(getEmailTokenKey(pendingUser.getVerificationToken()));
-                }
-
+            Long deleted = redisTemplate.execute(DELETE_SCRIPT,
+                    List.of(getPendingUserKey(email)), EMAIL_TOKEN_KEY_PREFIX);
+            if (deleted != null && deleted > 0) {
                 log.info("删除待验证用户: email={}", email);
             }
 
@@ -231,6 +275,7 @@ public class PendingUserService {
 
     /**
      * 更新验证令牌和发送时间
+     * 旧令牌映射在保存脚本中一并删除
      *
      * @param email           邮箱
      * @param newToken        新令牌
@@ -244,11 +289,6 @@ public class PendingUserService {
                 throw new BusinessException("PENDING_USER_NOT_FOUND", "待验证用户不存在或已过期");
             }
 
-            // 删除旧的 token 映射
-            if (pendingUser.getVerificationToken() != null) {
-                redisTemplate.delete(getEmailTokenKey(pendingUser.getVerificationToken()));
-            }
-
             // 更新令牌和时间
             pendingUser.setVerificationToken(newToken);
             pendingUser.setTokenExpiresAt(tokenExpiresAt);
@@ -285,27 +325,22 @@ public class PendingUserService {
     /**
      * 调试方法：获取 Redis 中的原始值
      */
-    public java.util.Map<String, Object> debugGetRawValue(String email) {
-        java.util.Map<String, Object> result = new java.util.HashMap<>();
+    public Map<String, Object> debugGetRawValue(String email) {
+        Map<String, Object> result = new HashMap<>();
         try {
             String key = getPendingUserKey(email);
-            Object obj = redisTemplate.opsForValue().get(key);
+            Map<Object, Object> entries = redisTemplate.opsForHash().entries(key);
 
             result.put("key", key);
-            result.put("exists", redisTemplate.hasKey(key));
-            result.put("value", obj);
-            result.put("valueType", obj != null ? obj.getClass().getName() : "null");
-
-            if (obj instanceof java.util.LinkedHashMap) {
-                result.put("mapContent", obj);
-            }
+            result.put("exists", !entries.isEmpty());
+            result.put("value", entries);
 
             // 同时检查 token 映射
-            if (obj instanceof PendingUser) {
-                String tokenKey = getEmailTokenKey(((PendingUser) obj).getVerificationToken());
-                Object tokenValue = redisTemplate.opsForValue().get(tokenKey);
+            Object token = entries.get(FIELD_TOKEN);
+            if (token != null) {
+                String tokenKey = getEmailTokenKey(token.toString());
                 result.put("tokenKey", tokenKey);
-                result.put("tokenValue", tokenValue);
+                result.put("tokenValue", redisTemplate.opsForValue().get(tokenKey));
             }
 
         } catch (Exception e) {
@@ -320,24 +355,76 @@ public class PendingUserService {
      * @return Base64 URL 安全编码的令牌
      */
     public String generateVerificationToken() {
-        byte[] tokenBytes = new byte[32];
-        new java.security.SecureRandom().nextBytes(tokenBytes);
+        byte[] tokenBytes = CryptoPrimitives.randomBytes(32);
         return Base64.getUrlEncoder().withoutPadding().encodeToString(tokenBytes);
     }
 
     /**
-     * 解析 LocalDateTime（兼容多种格式）
+     * 读取旧 JSON 格式的待验证用户并按剩余有效期改写为 Hash
+     * 并发请求可能各自改写一次，内容相同，结果一致
+     *
+     * @param key 用户键
+     * @return 待验证用户；数据已过期或无法解析返回 null
      */
-    private LocalDateTime parseLocalDateTime(Object value) {
-        if (value == null) {
+    private PendingUser upgradeLegacy(String key) {
+        String json = redisTemplate.opsForValue().get(key);
+        Long ttlMillis = redisTemplate.getExpire(key, TimeUnit.MILLISECONDS);
+        if (json == null || ttlMillis == null || ttlMillis == -2) {
+            return null;
+        }
+
+        PendingUser pendingUser;
+        try {
+            pendingUser = LEGACY_MAPPER.readValue(json, PendingUser.class);
+        } catch (Exception e) {
+            log.warn("无法解析旧格式的待验证用户，已删除: key={}, error={}", key, e.getMessage());
+            redisTemplate.delete(key);
             return null;
         }
-        if (value instanceof LocalDateTime) {
-            return (LocalDateTime) value;
+        if (pendingUser.getEmail() == null) {
+            return null;
         }
-        if (value instanceof String) {
-            return LocalDateTime.parse((String) value);
+
+        // 无过期时间（-1）的旧数据按完整有效期处理
+        save(pendingUser, ttlMillis > 0 ? ttlMillis : Duration.ofMinutes(pendingUserExpirationMinutes).toMillis());
+        log.info("已将旧格式的待验证用户改写为 Hash: email={}", pendingUser.getEmail());
+        return pendingUser;
+    }
+
+    /**
+     * 转换为 Hash 字段，空值字段不写入
+     */
+    private static Map<String, String> toHash(PendingUser pendingUser) {
+        Map<String, String> hash = new LinkedHashMap<>();
+        putIfNotNull(hash, FIELD_EMAIL, pendingUser.getEmail());
+        putIfNotNull(hash, FIELD_USERNAME, pendingUser.getUsername());
+        putIfNotNull(hash, FIELD_DISPLAY_NAME, pendingUser.getDisplayName());
+        putIfNotNull(hash, FIELD_TOKEN, pendingUser.getVerificationToken());
+        putIfNotNull(hash, FIELD_TOKEN_EXPIRES_AT, pendingUser.getTokenExpiresAt());
+        putIfNotNull(hash, FIELD_CREATED_AT, pendingUser.getCreatedAt());
+        putIfNotNull(hash, FIELD_LAST_EMAIL_SENT_AT, pendingUser.getLastEmailSentAt());
+        return hash;
+    }
+
+    private static void putIfNotNull(Map<String, String> hash, String field, Object value) {
+        if (value != null) {
+            hash.put(field, value.toString());
         }
-        return null;
+    }
+
+    private static PendingUser fromHash(Map<Object, Object> hash) {
+        return PendingUser.builder()
+                .email((String) hash.get(FIELD_EMAIL))
+                .username((String) hash.get(FIELD_USERNAME))
+                .displayName((String) hash.get(FIELD_DISPLAY_NAME))
+                .verificationToken((String) hash.get(FIELD_TOKEN))
+                .tokenExpiresAt(parseLocalDateTime(hash.get(FIELD_TOKEN_EXPIRES_AT)))
+                .createdAt(parseLocalDateTime(hash.get(FIELD_CREATED_AT)))
+                .lastEmailSentAt(parseLocalDateTime(hash.get(FIELD_LAST_EMAIL_SENT_AT)))
+                .build();
+    }
+
+    private static LocalDateTime parseLocalDateTime(Object value) {
+        return value != null ? LocalDateTime.parse(value.toString()) : null;
     }
 }
@@ -0,0 +1,312 @@
+package org.ttt.safevaultbackend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.ttt.safevaultbackend.config.RateLimitProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分布式速率限制服务
+ * 基于 Redis 的令牌桶：容量为窗口内允许的请求数，按 容量/窗口 的速率连续补充。
+ *
+ * 每次检查通过一个 Lua 脚本在服务端完成"补充-判断-扣减"，一次往返且原子执行；
+ * 多个键（多个限制维度）在同一脚本中检查，只有全部有余量时才同时扣减。
+ * 令牌桶没有固定窗口边界，窗口切换时不会出现双倍突发。
+ *
+ * 本地租约层：每个键在本地持有一块从 Redis 预先扣减的令牌（租约），租约内的请求不访问 Redis；
+ * Redis 拒绝后记录等待时间，期间该键的请求直接在本地拒绝，攻击流量不再放大到 Redis。
+ * 租出的令牌已在 Redis 扣减，因此不会超发；到期未用完的令牌由定时任务批量归还。
+ */
+@Slf4j
+@Service
+public class RateLimiterService {
+
+    /**
+     * 令牌桶脚本
+     * KEYS: 各维度的桶；ARGV[1]: 容量，ARGV[2]: 补满所需毫秒数，ARGV[3]: 希望获取的令牌数
+     * 各桶扣减相同数量 g = min(希望数, 各桶余量)，g < 1 时不扣减
+     * 返回 {被拒绝的键序号（0 表示通过）, 需等待的毫秒数, 实际获得的令牌数}
+     * 使用 Redis 服务器时间，避免各节点时钟偏差
+     */
+    private static final RedisScript<List> TOKEN_BUCKET_SCRIPT = new DefaultRedisScript<>(
+            "local now = redis.call('TIME') " +
+            "local nowMs = tonumber(now[1]) * 1000 + math.floor(tonumber(now[2]) / 1000) " +
+            "local capacity = tonumber(ARGV[1]) " +
+            "local windowMs = tonumber(ARGV[2]) " +
+            "local granted = tonumber(ARGV[3]) " +
+            "local rate = capacity / windowMs " +
+            "local tokens = {} " +
+            "for i, key in ipairs(KEYS) do " +
+            "  local b = redis.call('HMGET', key, 't', 'ts') " +
+            "  local t = tonumber(b[1]) " +
+            "  local ts = tonumber(b[2]) " +
+            "  if t == nil or ts == nil then t = capacity ts = nowMs end " +
+            "  t = math.min(capacity, t + math.max(0, nowMs - ts) * rate) " +
+            "  if t < 1 then return {i, math.ceil((1 - t) / rate), 0} end " +
+            "  granted = math.min(granted, math.floor(t)) " +
+            "  tokens[i] = t " +
+            "end " +
+            "for i, key in ipairs(KEYS) do " +
+            "  redis.call('HSET', key, 't', tostring(tokens[i] - granted), 'ts', nowMs) " +
+            "  redis.call('PEXPIRE', key, windowMs) " +
+            "end " +
+            "return {0, 0, granted}",
+            List.class);
+
+    /**
+     * 归还脚本
+     * ARGV 依次为每个键的 {归还令牌数, 容量}；桶已过期（已补满）的键忽略
+     */
+    private static final RedisScript<Long> REFUND_SCRIPT = new DefaultRedisScript<>(
+            "for i, key in ipairs(KEYS) do " +
+            "  local t = tonumber(redis.call('HGET', key, 't')) " +
+            "  if t ~= nil then " +
+            "    local n = tonumber(ARGV[i * 2 - 1]) " +
+            "    local capacity = tonumber(ARGV[i * 2]) " +
+            "    redis.call('HSET', key, 't', tostring(math.min(capacity, t + n))) " +
+            "  end " +
+            "end " +
+            "return #KEYS",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final RateLimitProperties properties;
+
+    /**
+     * 本地租约，键为 Redis 桶键
+     */
+    private final Cache<String, LocalBucket> localBuckets;
+
+    public RateLimiterService(StringRedisTemplate redisTemplate, RateLimitProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.properties = properties;
+        this.localBuckets = Caffeine.newBuilder()
+                .maximumSize(properties.getLocalMaxKeys())
+                .expireAfterAccess(Math.max(properties.getLeaseTtlMs() * 4, 60000), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * 检查结果
+     *
+     * @param allowed      是否允许
+     * @param blockedKey   拒绝时耗尽配额的键
+     * @param retryAfterMs 拒绝时建议的重试等待毫秒数
+     */
+    public record Decision(boolean allowed, String blockedKey, long retryAfterMs) {
+
+        static final Decision ALLOWED = new Decision(true, null, 0);
+    }
+
+    /**
+     * 尝试从所有键对应的令牌桶中各扣减一个令牌
+     *
+     * @param keys     各限制维度的键
+     * @param capacity 窗口内允许的最大请求数
+     * @param window   时间窗口
+     * @return 检查结果；Redis 不可用时抛出异常，由调用方决定降级策略
+     */
+    public Decision tryAcquire(List<String> keys, int capacity, Duration window) {
+        if (keys.isEmpty()) {
+            return Decision.ALLOWED;
+        }
+        if (!properties.isLocalEnabled()) {
+            return acquireRemote(keys, capacity, window, 1).decision();
+        }
+
+        long now = System.currentTimeMillis();
+        List<LocalBucket> buckets = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            LocalBucket bucket = localBuckets.get(key, k -> new LocalBucket(k, capacity));
+            long blockedFor = bucket.blockedFor(now);
+            if (blockedFor > 0) {
+                // 等待期内直接本地拒绝，不访问 Redis
+                return new Decision(false, key, blockedFor);
+            }
+            buckets.add(bucket);
+        }
+
+        // 先从本地租约取令牌，租约耗尽的键统一向 Redis 续租
+        List<LocalBucket> taken = new ArrayList<>(buckets.size());
+        List<LocalBucket> missing = new ArrayList<>();
+        for (LocalBucket bucket : buckets) {
+            if (bucket.tryTake(now)) {
+                taken.add(bucket);
+            } else {
+                missing.add(bucket);
+            }
+        }
+        if (missing.isEmpty()) {
+            return Decision.ALLOWED;
+        }
+
+        List<String> missingKeys = new ArrayList<>(missing.size());
+        for (LocalBucket bucket : missing) {
+            missingKeys.add(bucket.key);
+        }
+
+        RemoteResult result;
+        try {
+            result = acquireRemote(missingKeys, capacity, window, leaseSize(capacity));
+        } catch (RuntimeException e) {
+            taken.forEach(LocalBucket::giveBack);
+            throw e;
+        }
+
+        if (!result.decision().allowed()) {
+            taken.forEach(LocalBucket::giveBack);
+            for (LocalBucket bucket : missing) {
+                if (bucket.key.equals(result.decision().blockedKey())) {
+                    bucket.blockUntil(now + result.decision().retryAfterMs());
+                }
+            }
+            return result.decision();
+        }
+
+        // 本次请求消耗一个，其余作为租约留在本地
+        long leaseExpiresAt = now + Math.min(properties.getLeaseTtlMs(), window.toMillis());
+        for (LocalBucket bucket : missing) {
+            bucket.lease(result.granted() - 1, leaseExpiresAt);
+        }
+        return Decision.ALLOWED;
+    }
+
+    /**
+     * 将过期租约中未使用的令牌归还 Redis
+     * 一次脚本调用完成所有键的归还
+     */
+    @Scheduled(fixedDelayString = "${rate-limit.sync-interval-ms:5000}")
+    public void syncLeases() {
+        refund(System.currentTimeMillis());
+    }
+
+    /**
+     * 关闭时归还所有租约
+     */
+    @PreDestroy
+    public void shutdown() {
+        refund(Long.MAX_VALUE);
+    }
+
+    private void refund(long now) {
+        if (!properties.isLocalEnabled()) {
+            return;
+        }
+
+        List<String> keys = new ArrayList<>();
+        List<String> args = new ArrayList<>();
+        for (LocalBucket bucket : localBuckets.asMap().values()) {
+            int unused = bucket.releaseExpired(now);
+            if (unused > 0) {
+                keys.add(bucket.key);
+                args.add(String.valueOf(unused));
+                args.add(String.valueOf(bucket.capacity));
+            }
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        try {
+            redisTemplate.execute(REFUND_SCRIPT, keys, args.toArray());
+            log.debug("已归还速率限制租约: keys={}", keys.size());
+        } catch (Exception e) {
+            // 未归还的令牌随桶补充自然恢复，只会使限流暂时偏严格
+            log.warn("归还速率限制租约失败: keys={}, error={}", keys.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * 计算单次租约的令牌数
+     */
+    private int leaseSize(int capacity) {
+        int size = (int) Math.floor(capacity * properties.getLeaseFraction());
+        return Math.max(1, Math.min(size, properties.getMaxLeaseSize()));
+    }
+
+    private RemoteResult acquireRemote(List<String> keys, int capacity, Duration window, int permits) {
+        @SuppressWarnings("unchecked")
+        List<Long> result = redisTemplate.execute(TOKEN_BUCKET_SCRIPT, keys,
+                String.valueOf(capacity), String.valueOf(window.toMillis()), String.valueOf(permits));
+        if (result == null || result.size() < 3) {
+            throw new IllegalStateException("速率限制脚本返回结果异常: " + result);
+        }
+
+        int blockedIndex = result.get(0).intValue();
+        if (blockedIndex == 0) {
+            return new RemoteResult(Decision.ALLOWED, result.get(2).intValue());
+        }
+        return new RemoteResult(new Decision(false, keys.get(blockedIndex - 1), result.get(1)), 0);
+    }
+
+    private record RemoteResult(Decision decision, int granted) {
+    }
+
+    /**
+     * 单个键的本地租约
+     */
+    private static final class LocalBucket {
+
+        private final String key;
+        private final int capacity;
+        private int remaining;
+        private long leaseExpiresAt;
+        private long blockedUntil;
+
+        LocalBucket(String key, int capacity) {
+            this.key = key;
+            this.capacity = capacity;
+        }
+
+        synchronized long blockedFor(long now) {
+            return blockedUntil > now ? blockedUntil - now : 0;
+        }
+
+        synchronized boolean tryTake(long now) {
+            if (remaining > 0 && leaseExpiresAt > now) {
+                remaining--;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void giveBack() {
+            remaining++;
+        }
+
+        synchronized void lease(int tokens, long expiresAt) {
+            // 并发续租时合并剩余令牌
+            remaining += tokens;
+            leaseExpiresAt = Math.max(leaseExpiresAt, expiresAt);
+        }
+
+        synchronized void blockUntil(long until) {
+            blockedUntil = until;
+        }
+
+        /**
+         * 释放已过期的租约
+         *
+         * @return 需要归还的令牌数
+         */
+        synchronized int releaseExpired(long now) {
+            if (remaining == 0 || leaseExpiresAt > now) {
+                return 0;
+            }
+            int unused = remaining;
+            remaining = 0;
+            return unused;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package org.ttt.safevaultbackend.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.ttt.safevaultbackend.entity.User;
@@ -22,6 +23,7 @@ public class RegistrationCleanupService {
 
     private final UserRepository userRepository;
     private final VerificationEventService verificationEventService;
+    private final UserCacheService userCacheService;
 
     @Value("${registration.cleanup-timeout-minutes:5}")
     private int timeoutMinutes;
@@ -62,6 +64,11 @@ public class RegistrationCleanupService {
             // 执行删除操作
             int deleted = userRepository.deleteTimeoutRegistrations(cutoffTime);
 
+            // 批量删除不会触发实体监听器，手动使用户缓存失效
+            for (User user : timeoutUsers) {
+                userCacheService.evict(user.getUserId());
+            }
+
             log.info("定时任务: 清理了 {} 个超时未完成注册的用户", deleted);
             return deleted;
 
@@ -71,6 +78,34 @@ public class RegistrationCleanupService {
         }
     }
 
+    /**
+     * 分批清理超时未完成注册的用户（维护任务使用）
+     * 已删除的用户不再满足查询条件，无需检查点
+     */
+    public MaintenanceJob.Chunk cleanupTimeoutRegistrations(String checkpoint, int batchSize) {
+        LocalDateTime cutoffTime = LocalDateTime.now().minusMinutes(timeoutMinutes);
+        List<User> timeoutUsers = userRepository.findTimeoutRegistrations(cutoffTime, PageRequest.of(0, batchSize));
+        if (timeoutUsers.isEmpty()) {
+            return MaintenanceJob.Chunk.done(0);
+        }
+
+        for (User user : timeoutUsers) {
+            verificationEventService.recordRegistrationCleanup(
+                user.getUserId(),
+                user.getEmail(),
+                user.getVerifiedAt()
+            );
+        }
+
+        List<String> userIds = timeoutUsers.stream().map(User::getUserId).toList();
+        int deleted = userRepository.deleteTimeoutRegistrations(userIds, cutoffTime);
+
+        // 批量删除不会触发实体监听器，手动使用户缓存失效
+        userIds.forEach(userCacheService::evict);
+
+        return new MaintenanceJob.Chunk(deleted, null, timeoutUsers.size() < batchSize);
+    }
+
     /**
      * 获取当前超时配置（分钟）
      */
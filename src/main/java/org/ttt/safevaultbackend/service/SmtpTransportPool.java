@@ -0,0 +1,114 @@
+package org.ttt.safevaultbackend.service;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.ttt.safevaultbackend.config.EmailOutboxProperties;
+
+import java.util.Iterator;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+
+/**
+ * SMTP 连接池
+ * 复用已建立的 SSL SMTP 连接，避免每封邮件都重新握手和认证；
+ * 连接空闲超过 email.outbox.transport-idle-timeout-ms 后关闭
+ */
+@Slf4j
+@Component
+public class SmtpTransportPool {
+
+    private final JavaMailSenderImpl mailSender;
+    private final EmailOutboxProperties properties;
+
+    /**
+     * 空闲连接，最近归还的在队首
+     */
+    private final BlockingDeque<IdleTransport> idle = new LinkedBlockingDeque<>();
+
+    public SmtpTransportPool(JavaMailSender javaMailSender, EmailOutboxProperties properties) {
+        if (!(javaMailSender instanceof JavaMailSenderImpl impl)) {
+            throw new IllegalStateException("SMTP 连接池需要 JavaMailSenderImpl，实际为: "
+                    + javaMailSender.getClass().getName());
+        }
+        this.mailSender = impl;
+        this.properties = properties;
+    }
+
+    /**
+     * 借出一个已连接的 Transport
+     * 优先复用空闲连接（isConnected 会发送 NOOP 检测连接是否仍可用），否则新建连接
+     */
+    public Transport borrow() throws MessagingException {
+        IdleTransport candidate;
+        while ((candidate = idle.pollFirst()) != null) {
+            if (candidate.transport().isConnected()) {
+                return candidate.transport();
+            }
+            close(candidate.transport());
+        }
+
+        Transport transport = mailSender.getSession().getTransport(mailSender.getProtocol());
+        transport.connect(mailSender.getHost(), mailSender.getPort(),
+                mailSender.getUsername(), mailSender.getPassword());
+        log.debug("已建立新的 SMTP 连接: host={}", mailSender.getHost());
+        return transport;
+    }
+
+    /**
+     * 归还连接；已断开或连接池已满时直接关闭
+     */
+    public void release(Transport transport) {
+        if (transport.isConnected() && idle.size() < properties.getWorkerThreads()) {
+            idle.offerFirst(new IdleTransport(transport, System.currentTimeMillis()));
+        } else {
+            close(transport);
+        }
+    }
+
+    /**
+     * 丢弃出错的连接
+     */
+    public void invalidate(Transport transport) {
+        close(transport);
+    }
+
+    /**
+     * 关闭空闲超时的连接
+     */
+    @Scheduled(fixedDelayString = "${email.outbox.transport-idle-timeout-ms:60000}")
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - properties.getTransportIdleTimeoutMs();
+        Iterator<IdleTransport> iterator = idle.iterator();
+        while (iterator.hasNext()) {
+            IdleTransport candidate = iterator.next();
+            if (candidate.idleSince() < cutoff && idle.remove(candidate)) {
+                close(candidate.transport());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        IdleTransport candidate;
+        while ((candidate = idle.pollFirst()) != null) {
+            close(candidate.transport());
+        }
+    }
+
+    private void close(Transport transport) {
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            log.debug("关闭 SMTP 连接失败: {}", e.getMessage());
+        }
+    }
+
+    private record IdleTransport(Transport transport, long idleSince) {
+    }
+}
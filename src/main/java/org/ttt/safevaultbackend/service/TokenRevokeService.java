@@ -1,18 +1,23 @@
 package org.ttt.safevaultbackend.service;
 
+import io.jsonwebtoken.Claims;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.ttt.safevaultbackend.entity.RevokedToken;
 import org.ttt.safevaultbackend.repository.RevokedTokenRepository;
+import org.ttt.safevaultbackend.repository.UserTokenEpochRepository;
 import org.ttt.safevaultbackend.security.JwtTokenProvider;
+import org.ttt.safevaultbackend.util.CryptoPrimitives;
 
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Base64;
+import java.util.List;
 
 /**
  * 令牌撤销服务
@@ -23,8 +28,34 @@ import java.util.Base64;
 @RequiredArgsConstructor
 public class TokenRevokeService {
 
+    /**
+     * 账户删除的撤销原因
+     * 因账户删除而撤销的令牌仍可查询删除进度，其他原因撤销的令牌不可以
+     */
+    public static final String REASON_ACCOUNT_DELETED = "ACCOUNT_DELETED";
+
+    /**
+     * 用户令牌纪元 Redis 键前缀
+     * 值为“纪元时间（毫秒）:撤销原因”，签发时间不晚于纪元的令牌全部视为已撤销；0 表示用户没有纪元。
+     * Redis 只是缓存，持久化的纪元在 user_token_epochs 表中，键不存在时从数据库加载
+     */
+    private static final String TOKEN_EPOCH_PREFIX = "auth:token-epoch:";
+
+    /**
+     * 没有纪元的用户的缓存有效期
+     * 仅在撤销时 Redis 写入失败、而读取恢复正常的情况下，决定旧的“无纪元”缓存最长存在多久
+     */
+    private static final Duration NO_EPOCH_TTL = Duration.ofMinutes(5);
+
+    /**
+     * 分批清理的起始过期时间（早于任何撤销记录）
+     */
+    private static final LocalDateTime CLEANUP_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+
     private final RevokedTokenRepository revokedTokenRepository;
     private final JwtTokenProvider tokenProvider;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final UserTokenEpochRepository userTokenEpochRepository;
 
     /**
      * 撤销令牌
@@ -69,53 +100,163 @@ public class TokenRevokeService {
     }
 
     /**
-     * 检查令牌是否已被撤销
+     * 令牌撤销状态
+     */
+    public enum Revocation {
+        /** 未撤销 */
+        NONE,
+        /** 仅因账户删除被纪元撤销 */
+        ACCOUNT_DELETED,
+        /** 其他原因撤销（登出、设备撤销、修改密码等），或无法确定撤销状态 */
+        REVOKED
+    }
+
+    /**
+     * 检查令牌的撤销状态
+     * 被纪元撤销时仍检查单个令牌的撤销记录：登出或设备撤销过的令牌不会因为账户删除而降级为 ACCOUNT_DELETED。
+     * 无法确定撤销状态（数据库不可用）时按 REVOKED 处理
      *
      * @param token    JWT 令牌
-     * @param userId   用户 ID
+     * @param claims   已验证的令牌声明
      * @param deviceId 设备 ID
-     * @return true 表示令牌已被撤销
+     * @return 撤销状态
      */
     @Transactional(readOnly = true)
-    public boolean isTokenRevoked(String token, String userId, String deviceId) {
+    public Revocation getRevocation(String token, Claims claims, String deviceId) {
+        String userId = claims.getSubject();
         try {
+            TokenEpoch epoch = getTokenEpoch(userId);
+            boolean beforeEpoch = isBeforeTokenEpoch(claims, epoch);
+            if (beforeEpoch && !REASON_ACCOUNT_DELETED.equals(epoch.reason())) {
+                return Revocation.REVOKED;
+            }
             String tokenHash = hashToken(token);
-            return revokedTokenRepository.isTokenRevoked(userId, deviceId, tokenHash, LocalDateTime.now());
+            if (revokedTokenRepository.isTokenRevoked(userId, deviceId, tokenHash, LocalDateTime.now())) {
+                return Revocation.REVOKED;
+            }
+            return beforeEpoch ? Revocation.ACCOUNT_DELETED : Revocation.NONE;
         } catch (Exception e) {
-            log.error("检查令牌撤销状态失败: userId={}", userId, e);
-            return false;
+            log.error("检查令牌撤销状态失败，按已撤销处理: userId={}", userId, e);
+            return Revocation.REVOKED;
         }
     }
 
     /**
      * 撤销用户的所有令牌（用于密码修改或账户删除）
+     * 通过提升用户令牌纪元一次性使此前签发的全部令牌失效，无需逐条写入撤销记录。
+     * 纪元先写入数据库（持久化来源），再覆盖 Redis 缓存
      *
      * @param userId       用户 ID
      * @param revokeReason 撤销原因
      */
     @Transactional
     public void revokeAllUserTokens(String userId, String revokeReason) {
+        long epochMillis = System.currentTimeMillis();
         try {
-            int count = revokedTokenRepository.markAllUserTokens(userId, revokeReason);
-            log.info("标记用户所有令牌为已撤销: userId={}, count={}, reason={}", userId, count, revokeReason);
+            userTokenEpochRepository.raiseEpoch(userId, epochMillis, revokeReason);
         } catch (Exception e) {
             log.error("撤销用户所有令牌失败: userId={}", userId, e);
             throw new RuntimeException("撤销令牌失败", e);
         }
+        try {
+            // 纪元只需缓存到此前签发的最长有效期令牌过期为止
+            Duration ttl = Duration.ofSeconds(tokenProvider.getRefreshTokenExpirationSeconds());
+            stringRedisTemplate.opsForValue().set(tokenEpochKey(userId),
+                    new TokenEpoch(epochMillis, revokeReason).toCacheValue(), ttl);
+        } catch (Exception e) {
+            // 数据库中的纪元已生效：缓存未命中或 Redis 不可用时都会读取数据库
+            log.error("写入令牌纪元缓存失败: userId={}, error={}", userId, e.getMessage());
+        }
+        log.info("提升用户令牌纪元: userId={}, epoch={}, reason={}", userId, epochMillis, revokeReason);
     }
 
     /**
-     * 定时清理过期的撤销记录
-     * 每天凌晨2点执行
+     * 分批清理过期的撤销记录（维护任务使用）
+     * 检查点为上一批次的最大过期时间
      */
-    @Scheduled(cron = "0 0 2 * * ?")
-    @Transactional
-    public void cleanupExpiredTokens() {
+    public MaintenanceJob.Chunk cleanupExpiredTokens(String checkpoint, int batchSize) {
+        LocalDateTime after = checkpoint != null ? LocalDateTime.parse(checkpoint) : CLEANUP_START;
+        List<RevokedToken> expired = revokedTokenRepository.findExpiredTokens(
+                LocalDateTime.now(), after, PageRequest.of(0, batchSize));
+        if (expired.isEmpty()) {
+            return MaintenanceJob.Chunk.done(0);
+        }
+
+        int deleted = revokedTokenRepository.deleteByIds(expired.stream().map(RevokedToken::getId).toList());
+        String next = expired.get(expired.size() - 1).getExpiresAt().toString();
+        return MaintenanceJob.Chunk.of(deleted, next, batchSize);
+    }
+
+    /**
+     * 检查令牌签发时间是否不晚于用户令牌纪元（毫秒精度）
+     * 未携带签发时间的令牌在用户存在纪元时视为已撤销
+     */
+    private boolean isBeforeTokenEpoch(Claims claims, TokenEpoch epoch) {
+        if (epoch.epochMs() <= 0) {
+            return false;
+        }
+        Long issuedAt = JwtTokenProvider.getIssuedAtMillis(claims);
+        return issuedAt == null || issuedAt <= epoch.epochMs();
+    }
+
+    /**
+     * 获取用户令牌纪元，没有纪元时纪元为 0
+     * 优先读取 Redis 缓存；键不存在（新部署、淘汰、清空）或 Redis 不可用时从主库读取，
+     * 数据库读取失败时抛出异常，由调用方按已撤销处理
+     */
+    private TokenEpoch getTokenEpoch(String userId) {
+        String key = tokenEpochKey(userId);
+        try {
+            String cached = stringRedisTemplate.opsForValue().get(key);
+            if (cached != null) {
+                return TokenEpoch.fromCacheValue(cached);
+            }
+        } catch (Exception e) {
+            log.warn("读取令牌纪元缓存失败，回退到数据库: userId={}, error={}", userId, e.getMessage());
+            return loadTokenEpoch(userId);
+        }
+
+        TokenEpoch epoch = loadTokenEpoch(userId);
         try {
-            int deleted = revokedTokenRepository.deleteExpiredTokens(LocalDateTime.now());
-            log.info("清理过期的撤销记录: count={}", deleted);
+            // SET NX：撤销时写入的纪元优先，避免读取到旧值的请求覆盖刚写入的纪元
+            Duration ttl = epoch.epochMs() > 0
+                    ? Duration.ofSeconds(tokenProvider.getRefreshTokenExpirationSeconds())
+                    : NO_EPOCH_TTL;
+            stringRedisTemplate.opsForValue().setIfAbsent(key, epoch.toCacheValue(), ttl);
         } catch (Exception e) {
-            log.error("清理过期撤销记录失败", e);
+            log.warn("写入令牌纪元缓存失败: userId={}, error={}", userId, e.getMessage());
+        }
+        return epoch;
+    }
+
+    private TokenEpoch loadTokenEpoch(String userId) {
+        return userTokenEpochRepository.findOnPrimary(userId)
+                .map(e -> new TokenEpoch(e.getEpochMs(), e.getRevokeReason()))
+                .orElse(TokenEpoch.NONE);
+    }
+
+    private String tokenEpochKey(String userId) {
+        return TOKEN_EPOCH_PREFIX + userId;
+    }
+
+    /**
+     * 用户令牌纪元及撤销原因
+     * 缓存值格式为“纪元:原因”；只有纪元的旧格式值按原因未知处理
+     */
+    private record TokenEpoch(long epochMs, String reason) {
+
+        static final TokenEpoch NONE = new TokenEpoch(0L, null);
+
+        String toCacheValue() {
+            return reason != null ? epochMs + ":" + reason : String.valueOf(epochMs);
+        }
+
+        static TokenEpoch fromCacheValue(String value) {
+            int separator = value.indexOf(':');
+            if (separator < 0) {
+                return new TokenEpoch(Long.parseLong(value), null);
+            }
+            return new TokenEpoch(Long.parseLong(value.substring(0, separator)), value.substring(separator + 1));
         }
     }
 
@@ -126,13 +267,8 @@ public class TokenRevokeService {
      * @return Base64 编码的哈希值
      */
     private String hashToken(String token) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(token.getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(hash);
-        } catch (Exception e) {
-            throw new RuntimeException("计算令牌哈希失败", e);
-        }
+        byte[] hash = CryptoPrimitives.sha256(token.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(hash);
     }
 
     /**
@@ -0,0 +1,361 @@
+package org.ttt.safevaultbackend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.ttt.safevaultbackend.config.UserCacheProperties;
+import org.ttt.safevaultbackend.dto.UserSnapshot;
+import org.ttt.safevaultbackend.entity.User;
+import org.ttt.safevaultbackend.repository.UserKeyMaterialRepository;
+import org.ttt.safevaultbackend.repository.UserRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 用户缓存服务
+ * 两级缓存：进程内 Caffeine 缓存 + Redis，分别按 userId 和 email 索引，缓存内容为不可变的 UserSnapshot。
+ *
+ * 用户实体更新或删除时由 UserCacheInvalidationListener 在事务提交后调用 evict，
+ * 删除 Redis 条目并通过 pub/sub 通知所有节点清除本地缓存。
+ * email 索引只保存 userId，读取时校验快照中的邮箱，邮箱变更后旧索引自然失效。
+ *
+ * 防止旧数据回填：每个用户在 Redis 中有一个失效代数，evict 时递增。
+ * 缓存未命中时先读取代数再查询数据库，写回 Redis 时代数已变化（期间发生过失效）则放弃写入，
+ * 避免在提交前读取的旧数据在失效之后重新写入缓存。
+ *
+ * 密码验证器属于凭据，不写入 Redis，只在进程内单独缓存，随快照一起失效。
+ * 验证器只在完成注册时写入一次，空值不缓存，因此缓存中的值不会比数据库旧。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UserCacheService implements MessageListener {
+
+    /**
+     * 缓存失效广播频道，消息内容为 userId
+     */
+    public static final String INVALIDATION_CHANNEL = "user-cache:invalidate";
+
+    /**
+     * 快照键前缀
+     * v2 起快照不再包含密码验证器，旧版本键不再读取，按原有效期自然过期
+     */
+    private static final String ID_KEY_PREFIX = "user:snapshot:v2:";
+    private static final String EMAIL_KEY_PREFIX = "user:email:";
+    private static final String GENERATION_KEY_PREFIX = "user:gen:";
+
+    /**
+     * 代数未变化时写入快照和邮箱索引
+     * KEYS[1]: 代数；KEYS[2]: 快照；KEYS[3]: 邮箱索引
+     * ARGV[1]: 加载前读取的代数（不存在时为空串）；ARGV[2]: 快照 JSON；ARGV[3]: userId；ARGV[4]: 过期秒数；ARGV[5]: 是否写入邮箱索引
+     * 返回 1 表示已写入，0 表示期间发生过失效
+     */
+    private static final RedisScript<Long> WRITE_SCRIPT = new DefaultRedisScript<>(
+            "local gen = redis.call('GET', KEYS[1]) or '' " +
+            "if gen ~= ARGV[1] then return 0 end " +
+            "redis.call('SET', KEYS[2], ARGV[2], 'EX', ARGV[4]) " +
+            "if ARGV[5] == '1' then redis.call('SET', KEYS[3], ARGV[3], 'EX', ARGV[4]) end " +
+            "return 1",
+            Long.class);
+
+    /**
+     * 失效：递增代数并删除快照
+     * 代数的过期时间与快照相同，足以覆盖任何仍在进行中的加载
+     * KEYS[1]: 代数；KEYS[2]: 快照；ARGV[1]: 过期秒数
+     */
+    private static final RedisScript<Long> EVICT_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('INCR', KEYS[1]) " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[1]) " +
+            "redis.call('DEL', KEYS[2]) " +
+            "return 1",
+            Long.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private final UserRepository userRepository;
+    private final UserKeyMaterialRepository userKeyMaterialRepository;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final UserCacheProperties properties;
+
+    private Cache<String, UserSnapshot> localById;
+    private Cache<String, String> localEmailIndex;
+    private Cache<String, String> localVerifier;
+
+    @PostConstruct
+    public void init() {
+        Duration ttl = Duration.ofSeconds(properties.getLocalTtlSeconds());
+        localById = Caffeine.newBuilder()
+                .maximumSize(properties.getLocalMaxSize())
+                .expireAfterWrite(ttl)
+                .build();
+        localEmailIndex = Caffeine.newBuilder()
+                .maximumSize(properties.getLocalMaxSize())
+                .expireAfterWrite(ttl)
+                .build();
+        localVerifier = Caffeine.newBuilder()
+                .maximumSize(properties.getLocalMaxSize())
+                .expireAfterWrite(ttl)
+                .build();
+
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+        log.info("用户缓存已初始化: enabled={}, localMaxSize={}, localTtl={}s, redisTtl={}s",
+                properties.isEnabled(), properties.getLocalMaxSize(),
+                properties.getLocalTtlSeconds(), properties.getRedisTtlSeconds());
+    }
+
+    /**
+     * 根据用户 ID 获取用户快照
+     *
+     * @param userId 用户 ID
+     * @return 用户快照（用户不存在时为空）
+     */
+    public Optional<UserSnapshot> findById(String userId) {
+        if (userId == null) {
+            return Optional.empty();
+        }
+        if (!properties.isEnabled()) {
+            return userRepository.findById(userId).map(this::load);
+        }
+
+        UserSnapshot snapshot = localById.getIfPresent(userId);
+        if (snapshot != null) {
+            return Optional.of(snapshot);
+        }
+
+        snapshot = readRedis(userId);
+        if (snapshot != null) {
+            cacheLocally(snapshot);
+            return Optional.of(snapshot);
+        }
+
+        // 先读取代数再查询数据库
+        String generation = readGeneration(userId);
+        snapshot = userRepository.findById(userId).map(this::load).orElse(null);
+        if (snapshot == null) {
+            return Optional.empty();
+        }
+        if (writeRedis(snapshot, generation)) {
+            cacheLocally(snapshot);
+        }
+        return Optional.of(snapshot);
+    }
+
+    /**
+     * 根据邮箱获取用户快照
+     *
+     * @param email 邮箱
+     * @return 用户快照（用户不存在时为空）
+     */
+    public Optional<UserSnapshot> findByEmail(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        if (!properties.isEnabled()) {
+            return userRepository.findByEmail(email).map(this::load);
+        }
+
+        String userId = localEmailIndex.getIfPresent(email);
+        if (userId == null) {
+            userId = readRedisEmailIndex(email);
+        }
+        if (userId != null) {
+            Optional<UserSnapshot> snapshot = findById(userId);
+            if (snapshot.isPresent() && email.equals(snapshot.get().getEmail())) {
+                localEmailIndex.put(email, userId);
+                return snapshot;
+            }
+            // 索引已过时（邮箱变更或用户已删除）
+            localEmailIndex.invalidate(email);
+        }
+
+        // 只按邮箱查询用户ID，快照按用户ID加载，以便在加载前读取失效代数
+        Optional<UserSnapshot> loaded = userRepository.findUserIdByEmail(email).flatMap(this::findById);
+        if (loaded.isPresent() && !email.equals(loaded.get().getEmail())) {
+            // 缓存中的快照早于邮箱变更（失效消息丢失），直接读取数据库
+            return userRepository.findByEmail(email).map(this::load);
+        }
+        return loaded;
+    }
+
+    /**
+     * 获取用户的密码验证器（登录预检查和登录验证使用）
+     * 只缓存在本地，未命中时按主键查询密钥材料
+     *
+     * @param userId 用户 ID
+     * @return 密码验证器；尚未完成注册的用户为空
+     */
+    public Optional<String> findPasswordVerifier(String userId) {
+        if (userId == null) {
+            return Optional.empty();
+        }
+        if (!properties.isEnabled()) {
+            return userKeyMaterialRepository.findPasswordVerifier(userId);
+        }
+        String verifier = localVerifier.getIfPresent(userId);
+        if (verifier != null) {
+            return Optional.of(verifier);
+        }
+        Optional<String> loaded = userKeyMaterialRepository.findPasswordVerifier(userId);
+        loaded.ifPresent(value -> localVerifier.put(userId, value));
+        return loaded;
+    }
+
+    /**
+     * 使用户缓存失效
+     * 在事务中调用时推迟到提交后执行，避免其他请求在提交前重新加载旧数据
+     *
+     * @param userId 用户 ID
+     */
+    public void evict(String userId) {
+        if (userId == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    doEvict(userId);
+                }
+            });
+        } else {
+            doEvict(userId);
+        }
+    }
+
+    /**
+     * 接收其他节点的失效广播
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String userId = new String(message.getBody(), StandardCharsets.UTF_8);
+        invalidateLocally(userId);
+        log.debug("收到用户缓存失效消息: userId={}", userId);
+    }
+
+    private void doEvict(String userId) {
+        invalidateLocally(userId);
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(EVICT_SCRIPT,
+                    List.of(GENERATION_KEY_PREFIX + userId, ID_KEY_PREFIX + userId),
+                    String.valueOf(properties.getRedisTtlSeconds()));
+            stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, userId);
+        } catch (Exception e) {
+            log.warn("用户缓存失效广播失败，其他节点将在本地缓存过期后刷新: userId={}, error={}",
+                    userId, e.getMessage());
+        }
+    }
+
+    /**
+     * 缓存未命中时加载快照：用户记录和密钥材料按主键分别查询
+     */
+    private UserSnapshot load(User user) {
+        return UserSnapshot.from(user, userKeyMaterialRepository.findById(user.getUserId()).orElse(null));
+    }
+
+    /**
+     * 清除本地缓存中的快照、密码验证器和指向该用户的邮箱索引
+     * 邮箱索引按值清除，快照已被淘汰或邮箱已变更时同样有效
+     */
+    private void invalidateLocally(String userId) {
+        localById.invalidate(userId);
+        localVerifier.invalidate(userId);
+        localEmailIndex.asMap().values().removeIf(userId::equals);
+    }
+
+    private void cacheLocally(UserSnapshot snapshot) {
+        localById.put(snapshot.getUserId(), snapshot);
+        if (snapshot.getEmail() != null) {
+            localEmailIndex.put(snapshot.getEmail(), snapshot.getUserId());
+        }
+    }
+
+    private UserSnapshot readRedis(String userId) {
+        try {
+            String json = stringRedisTemplate.opsForValue().get(ID_KEY_PREFIX + userId);
+            return json != null ? MAPPER.readValue(json, UserSnapshot.class) : null;
+        } catch (Exception e) {
+            log.warn("读取 Redis 用户缓存失败，回退到数据库: userId={}, error={}", userId, e.getMessage());
+            return null;
+        }
+    }
+
+    private String readRedisEmailIndex(String email) {
+        try {
+            return stringRedisTemplate.opsForValue().get(EMAIL_KEY_PREFIX + email);
+        } catch (Exception e) {
+            log.warn("读取 Redis 邮箱索引失败，回退到数据库: email={}, error={}", email, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 读取用户的失效代数
+     *
+     * @return 代数（不存在时为空串）；Redis 不可用时为 null
+     */
+    private String readGeneration(String userId) {
+        try {
+            String generation = stringRedisTemplate.opsForValue().get(GENERATION_KEY_PREFIX + userId);
+            return generation != null ? generation : "";
+        } catch (Exception e) {
+            log.warn("读取用户缓存代数失败: userId={}, error={}", userId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 代数未变化时写入 Redis
+     *
+     * @param generation 加载前读取的代数；为 null（Redis 不可用）时不写入 Redis
+     * @return 快照是否可以写入本地缓存：期间发生过失效时返回 false；Redis 不可用时返回 true（本地缓存短期有效）
+     */
+    private boolean writeRedis(UserSnapshot snapshot, String generation) {
+        if (generation == null) {
+            return true;
+        }
+        try {
+            String email = snapshot.getEmail();
+            Long written = stringRedisTemplate.execute(WRITE_SCRIPT,
+                    List.of(GENERATION_KEY_PREFIX + snapshot.getUserId(),
+                            ID_KEY_PREFIX + snapshot.getUserId(),
+                            EMAIL_KEY_PREFIX + (email != null ? email : "")),
+                    generation,
+                    MAPPER.writeValueAsString(snapshot),
+                    snapshot.getUserId(),
+                    String.valueOf(properties.getRedisTtlSeconds()),
+                    email != null ? "1" : "0");
+            if (written == null || written == 0L) {
+                log.debug("加载期间用户缓存已失效，放弃写入: userId={}", snapshot.getUserId());
+                return false;
+            }
+            return true;
+        } catch (Exception e) {
+            log.warn("写入 Redis 用户缓存失败: userId={}, error={}", snapshot.getUserId(), e.getMessage());
+            return true;
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package org.ttt.safevaultbackend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.ttt.safevaultbackend.config.UserExistenceFilterProperties;
+import org.ttt.safevaultbackend.repository.UserRepository;
+import org.ttt.safevaultbackend.util.CryptoPrimitives;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 用户存在性过滤器
+ * 在 Redis 位图上维护已注册邮箱和用户名的布隆过滤器，注册和状态查询先检查过滤器：
+ * 过滤器判定不存在时直接返回（不会漏判），可能存在时再查询数据库确认。
+ * 注册尝试和枚举探测中绝大多数是不存在的邮箱，因此不再每次访问数据库。
+ *
+ * - 邮箱和用户名按小写写入和查询，结果是数据库精确匹配的超集，不会产生漏判；
+ * - 布隆过滤器不支持删除，已删除用户只会造成误判，由定期重建清除；
+ * - 过滤器尚未构建或 Redis 不可用时，所有检查回退到数据库查询；
+ * - 新用户在事务提交后写入过滤器，写入失败时删除过滤器使其失效；删除也失败时本实例的检查
+ *   回退到数据库查询，并在之后每次检查时重试删除，直到成功；
+ * - 重建在临时键上进行，完成后原子替换；重建期间新注册的用户同时写入临时键。
+ *   用户在提交后才写入，提交早于重建扫描的用户会被扫描到，晚于扫描的用户写入时临时键已存在，
+ *   因此重建不会遗漏并发注册的用户（重建必须读主库，不能走只读副本）。
+ *
+ * 过滤器只用于快速排除，注册时的最终判定仍以数据库唯一约束为准。
+ */
+@Slf4j
+@Service
+public class UserExistenceFilter {
+
+    private static final String EMAIL_KEY = "bloom:user:email";
+    private static final String USERNAME_KEY = "bloom:user:username";
+    private static final String BUILD_SUFFIX = ":build";
+
+    private static final int ABSENT = 0;
+    private static final int PRESENT = 1;
+    private static final int UNKNOWN = -1;
+
+    /**
+     * 检查脚本
+     * KEYS[1]: 位图；ARGV: 位偏移
+     * 返回 -1 表示过滤器未构建，0 表示一定不存在，1 表示可能存在
+     */
+    private static final RedisScript<Long> CHECK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return -1 end " +
+            "for i = 1, #ARGV do " +
+            "  if redis.call('GETBIT', KEYS[1], ARGV[i]) == 0 then return 0 end " +
+            "end " +
+            "return 1",
+            Long.class);
+
+    /**
+     * 写入脚本
+     * KEYS: 目标位图（正式键和重建中的临时键）；ARGV: 位偏移
+     * 只写入已存在的位图，避免在未构建的键上产生残缺的过滤器
+     */
+    private static final RedisScript<Long> ADD_SCRIPT = new DefaultRedisScript<>(
+            "local written = 0 " +
+            "for _, key in ipairs(KEYS) do " +
+            "  if redis.call('EXISTS', key) == 1 then " +
+            "    for i = 1, #ARGV do redis.call('SETBIT', key, ARGV[i], 1) end " +
+            "    written = written + 1 " +
+            "  end " +
+            "end " +
+            "return written",
+            Long.class);
+
+    /**
+     * 完成重建：临时键替换正式键
+     * 临时键缺失（重建期间 Redis 数据丢失）时不替换，返回 0
+     */
+    private static final RedisScript<Long> SWAP_SCRIPT = new DefaultRedisScript<>(
+            "for i = 1, #KEYS, 2 do " +
+            "  if redis.call('EXISTS', KEYS[i + 1]) == 0 then return 0 end " +
+            "end " +
+            "for i = 1, #KEYS, 2 do redis.call('RENAME', KEYS[i + 1], KEYS[i]) end " +
+            "return 1",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final UserRepository userRepository;
+    private final UserExistenceFilterProperties properties;
+
+    /**
+     * 位图大小（位）
+     */
+    private final long bits;
+
+    /**
+     * 哈希函数个数
+     */
+    private final int hashes;
+
+    /**
+     * 写入和删除都失败后置位：正式位图可能缺少已提交的用户，本实例不再信任过滤器
+     */
+    private final AtomicBoolean invalidationPending = new AtomicBoolean();
+
+    private final Counter emailNegatives;
+    private final Counter emailFalsePositives;
+    private final Counter emailHits;
+    private final Counter usernameNegatives;
+    private final Counter usernameFalsePositives;
+    private final Counter usernameHits;
+
+    public UserExistenceFilter(StringRedisTemplate redisTemplate,
+                               UserRepository userRepository,
+                               UserExistenceFilterProperties properties,
+                               MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.userRepository = userRepository;
+        this.properties = properties;
+
+        double n = properties.getExpectedInsertions();
+        double p = properties.getFalsePositiveRate();
+        this.bits = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        this.hashes = Math.max(1, (int) Math.round(bits / n * Math.log(2)));
+
+        this.emailNegatives = filterCounter(meterRegistry, "email", "negative");
+        this.emailFalsePositives = filterCounter(meterRegistry, "email", "false_positive");
+        this.emailHits = filterCounter(meterRegistry, "email", "hit");
+        this.usernameNegatives = filterCounter(meterRegistry, "username", "negative");
+        this.usernameFalsePositives = filterCounter(meterRegistry, "username", "false_positive");
+        this.usernameHits = filterCounter(meterRegistry, "username", "hit");
+
+        // 实测误判率 = 误判次数 / 实际不存在的检查次数
+        Gauge.builder("user.existence.filter.false.positive.rate", this,
+                        f -> falsePositiveRate(f.emailFalsePositives, f.emailNegatives))
+                .tag("field", "email")
+                .register(meterRegistry);
+        Gauge.builder("user.existence.filter.false.positive.rate", this,
+                        f -> falsePositiveRate(f.usernameFalsePositives, f.usernameNegatives))
+                .tag("field", "username")
+                .register(meterRegistry);
+
+        log.info("用户存在性过滤器: bits={}, hashes={}", bits, hashes);
+    }
+
+    /**
+     * 检查邮箱是否已注册
+     * 过滤器判定不存在时不访问数据库
+     */
+    public boolean existsByEmail(String email) {
+        int result = check(EMAIL_KEY, email);
+        if (result == ABSENT) {
+            emailNegatives.increment();
+            return false;
+        }
+        boolean exists = userRepository.existsByEmail(email);
+        if (result == PRESENT) {
+            (exists ? emailHits : emailFalsePositives).increment();
+        }
+        return exists;
+    }
+
+    /**
+     * 检查用户名是否已被使用
+     * 过滤器判定不存在时不访问数据库
+     */
+    public boolean existsByUsername(String username) {
+        int result = check(USERNAME_KEY, username);
+        if (result == ABSENT) {
+            usernameNegatives.increment();
+            return false;
+        }
+        boolean exists = userRepository.existsByUsername(username);
+        if (result == PRESENT) {
+            (exists ? usernameHits : usernameFalsePositives).increment();
+        }
+        return exists;
+    }
+
+    /**
+     * 邮箱是否可能已注册（不查询数据库）
+     * 返回 false 时一定未注册；返回 true 时需由调用方查询数据库确认
+     */
+    public boolean mightContainEmail(String email) {
+        int result = check(EMAIL_KEY, email);
+        if (result == ABSENT) {
+            emailNegatives.increment();
+        }
+        return result != ABSENT;
+    }
+
+    /**
+     * 记录新用户
+     * 在事务中调用时于提交后写入（回滚的用户不会写入），否则立即写入
+     */
+    public void add(String email, String username) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    addNow(email, username);
+                }
+            });
+        } else {
+            addNow(email, username);
+        }
+    }
+
+    /**
+     * 使过滤器失效，之后的检查回退到数据库查询，直到重建完成
+     *
+     * @return 是否已删除
+     */
+    public boolean invalidate() {
+        try {
+            redisTemplate.delete(List.of(EMAIL_KEY, USERNAME_KEY));
+            return true;
+        } catch (Exception e) {
+            log.error("删除用户存在性过滤器失败: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 过滤器是否已构建
+     */
+    public boolean isReady() {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(EMAIL_KEY))
+                && Boolean.TRUE.equals(redisTemplate.hasKey(USERNAME_KEY));
+    }
+
+    /**
+     * 分批重建过滤器（维护任务使用）
+     * 检查点为上一批次最后的用户ID；首个批次清空并预分配临时位图，最后一个批次原子替换正式位图
+     */
+    public MaintenanceJob.Chunk rebuild(String checkpoint, int batchSize) {
+        String emailBuildKey = EMAIL_KEY + BUILD_SUFFIX;
+        String usernameBuildKey = USERNAME_KEY + BUILD_SUFFIX;
+
+        if (checkpoint == null) {
+            redisTemplate.delete(List.of(emailBuildKey, usernameBuildKey));
+            redisTemplate.opsForValue().setBit(emailBuildKey, bits - 1, false);
+            redisTemplate.opsForValue().setBit(usernameBuildKey, bits - 1, false);
+        }
+
+        List<Object[]> rows = userRepository.findIdentitiesAfter(checkpoint != null ? checkpoint : "",
+                PageRequest.of(0, batchSize));
+        List<String> emailOffsets = new ArrayList<>();
+        List<String> usernameOffsets = new ArrayList<>();
+        for (Object[] row : rows) {
+            appendOffsets(emailOffsets, (String) row[1]);
+            appendOffsets(usernameOffsets, (String) row[2]);
+        }
+        if (!emailOffsets.isEmpty()) {
+            redisTemplate.execute(ADD_SCRIPT, List.of(emailBuildKey), emailOffsets.toArray());
+        }
+        if (!usernameOffsets.isEmpty()) {
+            redisTemplate.execute(ADD_SCRIPT, List.of(usernameBuildKey), usernameOffsets.toArray());
+        }
+
+        if (rows.size() < batchSize) {
+            Long swapped = redisTemplate.execute(SWAP_SCRIPT,
+                    List.of(EMAIL_KEY, emailBuildKey, USERNAME_KEY, usernameBuildKey));
+            if (swapped != null && swapped == 1) {
+                log.info("用户存在性过滤器重建完成");
+            } else {
+                log.warn("用户存在性过滤器临时键已丢失，放弃本次重建，等待下次重建");
+            }
+            return MaintenanceJob.Chunk.done(rows.size());
+        }
+        String last = (String) rows.get(rows.size() - 1)[0];
+        return new MaintenanceJob.Chunk(rows.size(), last, false);
+    }
+
+    /**
+     * 检查过滤器
+     *
+     * @return ABSENT 一定不存在，PRESENT 可能存在，UNKNOWN 过滤器未启用、未构建或不可用
+     */
+    private int check(String key, String value) {
+        if (!properties.isEnabled() || value == null) {
+            return UNKNOWN;
+        }
+        if (invalidationPending.get()) {
+            if (!invalidate()) {
+                return UNKNOWN;
+            }
+            invalidationPending.set(false);
+            log.info("用户存在性过滤器已失效，等待重建");
+        }
+        try {
+            List<String> offsets = new ArrayList<>(hashes);
+            appendOffsets(offsets, value);
+            Long result = redisTemplate.execute(CHECK_SCRIPT, List.of(key), offsets.toArray());
+            return result != null && result >= 0 ? result.intValue() : UNKNOWN;
+        } catch (Exception e) {
+            log.warn("用户存在性过滤器不可用，回退到数据库查询: {}", e.getMessage());
+            return UNKNOWN;
+        }
+    }
+
+    private void addNow(String email, String username) {
+        try {
+            addTo(EMAIL_KEY, email);
+            addTo(USERNAME_KEY, username);
+        } catch (Exception e) {
+            // 漏写会造成漏判：删除正式位图使过滤器失效（回退到数据库查询），由维护任务重建
+            log.error("写入用户存在性过滤器失败，过滤器将失效并等待重建: {}", e.getMessage());
+            if (!invalidate()) {
+                invalidationPending.set(true);
+            }
+        }
+    }
+
+    private void addTo(String key, String value) {
+        if (value == null) {
+            return;
+        }
+        List<String> offsets = new ArrayList<>(hashes);
+        appendOffsets(offsets, value);
+        redisTemplate.execute(ADD_SCRIPT, List.of(key, key + BUILD_SUFFIX), offsets.toArray());
+    }
+
+    /**
+     * 计算位偏移：由 SHA-256 的前 16 字节得到两个哈希值，按 h1 + i * h2 生成 k 个位置
+     */
+    private void appendOffsets(List<String> offsets, String value) {
+        if (value == null) {
+            return;
+        }
+        ByteBuffer digest = ByteBuffer.wrap(CryptoPrimitives.sha256(
+                value.trim().toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8)));
+        long h1 = digest.getLong();
+        long h2 = digest.getLong();
+        for (int i = 0; i < hashes; i++) {
+            offsets.add(String.valueOf(Math.floorMod(h1 + i * h2, bits)));
+        }
+    }
+
+    private static Counter filterCounter(MeterRegistry meterRegistry, String field, String result) {
+        return Counter.builder("user.existence.filter.checks")
+                .tag("field", field)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static double falsePositiveRate(Counter falsePositives, Counter negatives) {
+        double total = falsePositives.count() + negatives.count();
+        return total > 0 ? falsePositives.count() / total : 0.0;
+    }
+}
@@ -6,15 +6,19 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.ttt.safevaultbackend.dto.PasswordData;
+import org.ttt.safevaultbackend.dto.UserSnapshot;
 import org.ttt.safevaultbackend.dto.response.*;
 import org.ttt.safevaultbackend.entity.User;
+import org.ttt.safevaultbackend.entity.UserKeyMaterial;
 import org.ttt.safevaultbackend.exception.ResourceNotFoundException;
 import org.ttt.safevaultbackend.repository.ContactShareRepository;
+import org.ttt.safevaultbackend.repository.UserKeyMaterialRepository;
 import org.ttt.safevaultbackend.repository.UserRepository;
 
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -27,6 +31,8 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final ContactShareRepository contactShareRepository;
+    private final UserKeyMaterialRepository userKeyMaterialRepository;
+    private final UserCacheService userCacheService;
 
     /**
      * 获取当前用户ID
@@ -45,10 +51,10 @@ public class UserService {
     @Transactional(readOnly = true)
     public UserProfileResponse getUserProfile() {
         String userId = getCurrentUserId();
-        User user = userRepository.findById(userId)
+        UserSnapshot user = userCacheService.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "userId", userId));
 
-        int shareCount = contactShareRepository.findByFromUser_UserIdOrderByCreatedAtDesc(userId).size();
+        int shareCount = (int) contactShareRepository.countByFromUser_UserId(userId);
 
         return UserProfileResponse.builder()
                 .userId(user.getUserId())
@@ -65,10 +71,10 @@ public class UserService {
      */
     @Transactional(readOnly = true)
     public UserProfileResponse getUserById(String targetUserId) {
-        User user = userRepository.findById(targetUserId)
+        UserSnapshot user = userCacheService.findById(targetUserId)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "userId", targetUserId));
 
-        int shareCount = contactShareRepository.findByFromUser_UserIdOrderByCreatedAtDesc(targetUserId).size();
+        int shareCount = (int) contactShareRepository.countByFromUser_UserId(targetUserId);
 
         return UserProfileResponse.builder()
                 .userId(user.getUserId())
@@ -86,13 +92,24 @@ public class UserService {
     @Transactional(readOnly = true)
     public List<UserSearchResponse> searchUsers(String query) {
         List<User> users = userRepository.searchByUserIdOrUsername(query);
+        if (users.isEmpty()) {
+            return List.of();
+        }
+
+        // 公钥一次批量查询
+        Map<String, String> publicKeys = userKeyMaterialRepository.findPublicKeys(
+                        users.stream().map(User::getUserId).toList())
+                .stream()
+                .filter(view -> view.getPublicKey() != null)
+                .collect(Collectors.toMap(UserKeyMaterialRepository.PublicKeyView::getUserId,
+                        UserKeyMaterialRepository.PublicKeyView::getPublicKey));
 
         return users.stream()
                 .map(user -> UserSearchResponse.builder()
                         .userId(user.getUserId())
                         .username(user.getUsername())
                         .displayName(user.getDisplayName())
-                        .publicKey(user.getPublicKey())
+                        .publicKey(publicKeys.get(user.getUserId()))
                         .build())
                 .collect(Collectors.toList());
     }
@@ -109,11 +126,15 @@ public class UserService {
         user.setDisplayName(displayName);
         user = userRepository.save(user);
 
+        String publicKey = userKeyMaterialRepository.findById(userId)
+                .map(UserKeyMaterial::getPublicKey)
+                .orElse(null);
+
         return UserProfileResponse.builder()
                 .userId(user.getUserId())
                 .username(user.getUsername())
                 .displayName(user.getDisplayName())
-                .publicKey(user.getPublicKey())
+                .publicKey(publicKey)
                 .createdAt(user.getCreatedAt().toEpochSecond(ZoneOffset.UTC))
                 .shareCount(0)
                 .build();
@@ -125,7 +146,7 @@ public class UserService {
     @Transactional(readOnly = true)
     public QRCodeResponse generateQRCode() {
         String userId = getCurrentUserId();
-        User user = userRepository.findById(userId)
+        UserSnapshot user = userCacheService.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "userId", userId));
 
         // 生成临时 Token
@@ -151,8 +172,8 @@ public class UserService {
     public PasswordData getUserStatistics() {
         String userId = getCurrentUserId();
 
-        long createdSharesCount = contactShareRepository.findByFromUser_UserIdOrderByCreatedAtDesc(userId).size();
-        long receivedSharesCount = contactShareRepository.findByToUser_UserIdOrderByCreatedAtDesc(userId).size();
+        long createdSharesCount = contactShareRepository.countByFromUser_UserId(userId);
+        long receivedSharesCount = contactShareRepository.countByToUser_UserId(userId);
 
         return PasswordData.builder()
                 .title("用户统计")
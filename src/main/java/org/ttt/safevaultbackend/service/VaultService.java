@@ -1,5 +1,8 @@
 package org.ttt.safevaultbackend.service;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -12,15 +15,18 @@ import org.ttt.safevaultbackend.entity.User;
 import org.ttt.safevaultbackend.entity.UserVault;
 import org.ttt.safevaultbackend.exception.BusinessException;
 import org.ttt.safevaultbackend.exception.ResourceNotFoundException;
+import org.ttt.safevaultbackend.jfr.VaultUpdateEvent;
 import org.ttt.safevaultbackend.repository.UserRepository;
 import org.ttt.safevaultbackend.repository.UserVaultRepository;
+import org.ttt.safevaultbackend.util.UuidV7;
 
 import java.time.LocalDateTime;
-import java.util.UUID;
 
 /**
  * 密码库服务
  * 零知识架构：服务器只存储加密数据，不解密
+ *
+ * 指标：vault.sync 按结果（created/ok/conflict/force/error）计时，vault.sync.payload 记录同步数据大小
  */
 @Slf4j
 @Service
@@ -29,6 +35,7 @@ public class VaultService {
 
     private final UserVaultRepository vaultRepository;
     private final UserRepository userRepository;
+    private final MeterRegistry meterRegistry;
 
     /**
      * 获取用户的密码库
@@ -62,7 +69,7 @@ public class VaultService {
 
         // 创建新密码库
         UserVault vault = UserVault.builder()
-                .vaultId(UUID.randomUUID().toString())
+                .vaultId(UuidV7.generateString())
                 .userId(userId)
                 .encryptedData(request.getEncryptedData())
                 .dataIv(request.getDataIv())
@@ -86,27 +93,40 @@ public class VaultService {
      */
     @Transactional
     public VaultSyncResponse syncVault(String userId, VaultSyncRequest request) {
-        // 检查用户是否存在
-        userRepository.findById(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("User", "userId", userId));
+        Timer.Sample sample = Timer.start();
+        String outcome = "error";
+        try {
+            // 检查用户是否存在
+            userRepository.findById(userId)
+                    .orElseThrow(() -> new ResourceNotFoundException("User", "userId", userId));
 
-        // 获取现有密码库（如果存在）
-        var existingVaultOpt = vaultRepository.findByUserId(userId);
+            recordPayloadSize(request);
 
-        if (existingVaultOpt.isEmpty()) {
-            // 用户没有密码库，直接创建
-            return createNewVault(userId, request);
-        }
+            // 获取现有密码库（如果存在）
+            var existingVaultOpt = vaultRepository.findByUserId(userId);
 
-        UserVault existingVault = existingVaultOpt.get();
+            if (existingVaultOpt.isEmpty()) {
+                // 用户没有密码库，直接创建
+                outcome = "created";
+                return createNewVault(userId, request);
+            }
 
-        // 检查版本冲突
-        if (hasVersionConflict(existingVault.getVersion(), request.getClientVersion())) {
-            return handleConflict(existingVault, request);
-        }
+            UserVault existingVault = existingVaultOpt.get();
 
-        // 没有冲突，直接更新
-        return updateVault(existingVault, request);
+            // 检查版本冲突
+            if (hasVersionConflict(existingVault.getVersion(), request.getClientVersion())) {
+                outcome = request.isForceSync() ? "force" : "conflict";
+                return handleConflict(existingVault, request);
+            }
+
+            // 没有冲突，直接更新
+            outcome = "ok";
+            return updateVault(existingVault, request);
+        } finally {
+            sample.stop(Timer.builder("vault.sync")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
     }
 
     /**
@@ -123,6 +143,17 @@ public class VaultService {
         log.info("删除密码库: userId={}", userId);
     }
 
+    /**
+     * 记录同步数据大小（加密数据的 Base64 长度）
+     */
+    private void recordPayloadSize(VaultSyncRequest request) {
+        String encryptedData = request.getEncryptedData();
+        DistributionSummary.builder("vault.sync.payload")
+                .baseUnit("bytes")
+                .register(meterRegistry)
+                .record(encryptedData != null ? encryptedData.length() : 0);
+    }
+
     /**
      * 检查是否存在版本冲突
      */
@@ -157,6 +188,10 @@ public class VaultService {
      * 更新现有密码库
      */
     private VaultSyncResponse updateVault(UserVault vault, VaultSyncRequest request) {
+        VaultUpdateEvent event = new VaultUpdateEvent();
+        event.begin();
+        long previousVersion = vault.getVersion();
+
         // 更新加密数据
         vault.setEncryptedData(request.getEncryptedData());
         vault.setDataIv(request.getDataIv());
@@ -167,6 +202,15 @@ public class VaultService {
 
         vault = vaultRepository.save(vault);
 
+        event.end();
+        if (event.shouldCommit()) {
+            String encryptedData = request.getEncryptedData();
+            event.blobBytes = encryptedData != null ? encryptedData.length() : 0;
+            event.versionDelta = vault.getVersion() - request.getClientVersion();
+            event.forced = hasVersionConflict(previousVersion, request.getClientVersion());
+            event.commit();
+        }
+
         return VaultSyncResponse.builder()
                 .success(true)
                 .hasConflict(false)
@@ -183,7 +227,7 @@ public class VaultService {
      */
     private VaultSyncResponse createNewVault(String userId, VaultSyncRequest request) {
         UserVault vault = UserVault.builder()
-                .vaultId(UUID.randomUUID().toString())
+                .vaultId(UuidV7.generateString())
                 .userId(userId)
                 .encryptedData(request.getEncryptedData())
                 .dataIv(request.getDataIv())
@@ -0,0 +1,254 @@
+package org.ttt.safevaultbackend.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.ttt.safevaultbackend.config.AuditProperties;
+import org.ttt.safevaultbackend.enums.VerificationEventType;
+import org.ttt.safevaultbackend.util.CryptoPrimitives;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.OptionalLong;
+
+/**
+ * 验证频率计数服务
+ * 按邮箱（及事件类型）维护 Redis 滑动窗口计数器，频率限制检查不再对审计表做 COUNT 范围扫描。
+ *
+ * 每个计数器是一个 Hash：字段为时间桶序号，值为该桶内的次数，整个键在最长窗口后过期。
+ * 查询时在 Lua 脚本中累加窗口内的桶并顺带删除过期的桶，字段数不超过 最长窗口 / 桶长度，
+ * 与审计表的数据量无关。
+ *
+ * 计数器创建时在 born 字段记下所在桶序号，只有窗口起点晚于该桶时计数器才完整；
+ * 键被淘汰、Redis 清空或刚上线时窗口内的早期事件不在计数器中，此时返回空由数据库统计，
+ * 不会把频率限制悄悄重置为 0。调用方随后用数据库的统计结果补种计数器（seed），
+ * 此后同一窗口的检查直接读取计数器，每个邮箱只有第一次检查查询数据库。
+ *
+ * 记录在 @Async 线程池中执行，Redis 往返不在请求路径上；计数因此可能比请求晚几毫秒可见。
+ *
+ * Redis 不可用或查询窗口超过 audit.counter-max-window-hours 时同样返回空，由调用方回退到数据库查询。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class VerificationCounterService {
+
+    private static final String EVENT_KEY_PREFIX = "verification:counter:event:";
+    private static final String SEND_KEY_PREFIX = "verification:counter:send:";
+
+    /**
+     * 记录脚本
+     * KEYS[1]: 计数器；ARGV[1]: 当前桶序号，ARGV[2]: 键过期毫秒数
+     * 计数器不存在（或缺少 born 字段）时以当前桶作为起点
+     */
+    private static final RedisScript<Long> RECORD_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('HSETNX', KEYS[1], 'born', ARGV[1]) " +
+            "local n = redis.call('HINCRBY', KEYS[1], ARGV[1], 1) " +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[2]) " +
+            "return n",
+            Long.class);
+
+    /**
+     * 统计脚本
+     * KEYS[1]: 计数器；ARGV[1]: 窗口起点所在桶序号，ARGV[2]: 仍需保留的最早桶序号
+     * 计数器不存在或创建晚于窗口起点（born 所在桶可能缺少创建前的事件）时返回 -1
+     */
+    private static final RedisScript<Long> COUNT_SCRIPT = new DefaultRedisScript<>(
+            "local since = tonumber(ARGV[1]) " +
+            "local born = redis.call('HGET', KEYS[1], 'born') " +
+            "if not born or tonumber(born) >= since then " +
+            "  return -1 " +
+            "end " +
+            "local fields = redis.call('HGETALL', KEYS[1]) " +
+            "local oldest = tonumber(ARGV[2]) " +
+            "local total = 0 " +
+            "for i = 1, #fields, 2 do " +
+            "  if fields[i] ~= 'born' then " +
+            "    local bucket = tonumber(fields[i]) " +
+            "    if bucket < oldest then " +
+            "      redis.call('HDEL', KEYS[1], fields[i]) " +
+            "    elseif bucket >= since then " +
+            "      total = total + tonumber(fields[i + 1]) " +
+            "    end " +
+            "  end " +
+            "end " +
+            "return total",
+            Long.class);
+
+    /**
+     * 补种脚本
+     * KEYS[1]: 计数器；ARGV[1]: 窗口起点所在桶序号，ARGV[2]: 数据库统计的窗口内次数，ARGV[3]: 键过期毫秒数
+     * 计数器已覆盖该窗口时不做修改；否则把数据库次数中计数器尚未包含的部分记到窗口起点的桶，
+     * 并把 born 前移到窗口起点之前。已在计数器中的事件按已写入数据库处理，不重复计入
+     */
+    private static final RedisScript<Long> SEED_SCRIPT = new DefaultRedisScript<>(
+            "local since = tonumber(ARGV[1]) " +
+            "local born = redis.call('HGET', KEYS[1], 'born') " +
+            "if born and tonumber(born) < since then " +
+            "  return 0 " +
+            "end " +
+            "local fields = redis.call('HGETALL', KEYS[1]) " +
+            "local total = 0 " +
+            "for i = 1, #fields, 2 do " +
+            "  if fields[i] ~= 'born' and tonumber(fields[i]) >= since then " +
+            "    total = total + tonumber(fields[i + 1]) " +
+            "  end " +
+            "end " +
+            "local missing = tonumber(ARGV[2]) - total " +
+            "if missing > 0 then " +
+            "  redis.call('HINCRBY', KEYS[1], ARGV[1], missing) " +
+            "end " +
+            "redis.call('HSET', KEYS[1], 'born', since - 1) " +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[3]) " +
+            "return 1",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final AuditProperties properties;
+
+    /**
+     * 记录一次验证事件
+     */
+    @Async
+    public void recordEvent(String email, VerificationEventType eventType) {
+        record(eventKey(email, eventType));
+    }
+
+    /**
+     * 记录一次验证邮件发送
+     */
+    @Async
+    public void recordSend(String email) {
+        record(sendKey(email));
+    }
+
+    /**
+     * 统计邮箱在指定时间之后的某类事件次数
+     *
+     * @return 次数；计数器不可用或不完整时为空
+     */
+    public OptionalLong countEvents(String email, VerificationEventType eventType, LocalDateTime since) {
+        return count(eventKey(email, eventType), since);
+    }
+
+    /**
+     * 统计邮箱在指定时间之后的验证邮件发送次数
+     *
+     * @return 次数；计数器不可用或不完整时为空
+     */
+    public OptionalLong countSends(String email, LocalDateTime since) {
+        return count(sendKey(email), since);
+    }
+
+    /**
+     * 用数据库统计的事件次数补种计数器
+     *
+     * @param count 数据库中 since 之后的次数
+     */
+    public void seedEvents(String email, VerificationEventType eventType, LocalDateTime since, long count) {
+        seed(eventKey(email, eventType), since, count);
+    }
+
+    /**
+     * 用数据库统计的发送次数补种计数器
+     *
+     * @param count 数据库中 since 之后的次数
+     */
+    public void seedSends(String email, LocalDateTime since, long count) {
+        seed(sendKey(email), since, count);
+    }
+
+    private void record(String key) {
+        if (!properties.isCounterEnabled() || key == null) {
+            return;
+        }
+        try {
+            long ttlMs = Duration.ofHours(properties.getCounterMaxWindowHours()).toMillis()
+                    + properties.getCounterBucketSeconds() * 1000;
+            redisTemplate.execute(RECORD_SCRIPT, List.of(key),
+                    String.valueOf(bucketOf(System.currentTimeMillis())), String.valueOf(ttlMs));
+        } catch (Exception e) {
+            // 计数丢失只会使限制暂时偏宽松，不影响主流程
+            log.warn("验证计数器写入失败: {}", e.getMessage());
+        }
+    }
+
+    private void seed(String key, LocalDateTime since, long count) {
+        if (!properties.isCounterEnabled() || key == null) {
+            return;
+        }
+        long sinceMs = since.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long maxWindowMs = Duration.ofHours(properties.getCounterMaxWindowHours()).toMillis();
+        if (System.currentTimeMillis() - sinceMs > maxWindowMs) {
+            return;
+        }
+        try {
+            long ttlMs = maxWindowMs + properties.getCounterBucketSeconds() * 1000;
+            redisTemplate.execute(SEED_SCRIPT, List.of(key),
+                    String.valueOf(bucketOf(sinceMs)), String.valueOf(count), String.valueOf(ttlMs));
+        } catch (Exception e) {
+            // 未补种只会使下一次检查继续查询数据库
+            log.warn("验证计数器补种失败: {}", e.getMessage());
+        }
+    }
+
+    private OptionalLong count(String key, LocalDateTime since) {
+        if (!properties.isCounterEnabled() || key == null) {
+            return OptionalLong.empty();
+        }
+
+        long now = System.currentTimeMillis();
+        long sinceMs = since.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long maxWindowMs = Duration.ofHours(properties.getCounterMaxWindowHours()).toMillis();
+        if (now - sinceMs > maxWindowMs) {
+            return OptionalLong.empty();
+        }
+
+        try {
+            Long total = redisTemplate.execute(COUNT_SCRIPT, List.of(key),
+                    String.valueOf(bucketOf(sinceMs)), String.valueOf(bucketOf(now - maxWindowMs)));
+            if (total == null || total < 0) {
+                // 计数器不存在或起点晚于窗口，窗口内的早期事件只在审计表中
+                return OptionalLong.empty();
+            }
+            return OptionalLong.of(total);
+        } catch (Exception e) {
+            log.warn("验证计数器读取失败，回退到数据库查询: {}", e.getMessage());
+            return OptionalLong.empty();
+        }
+    }
+
+    private long bucketOf(long epochMillis) {
+        return epochMillis / (properties.getCounterBucketSeconds() * 1000);
+    }
+
+    private static String eventKey(String email, VerificationEventType eventType) {
+        String hash = hashEmail(email);
+        return hash != null ? EVENT_KEY_PREFIX + eventType.name() + ":" + hash : null;
+    }
+
+    private static String sendKey(String email) {
+        String hash = hashEmail(email);
+        return hash != null ? SEND_KEY_PREFIX + hash : null;
+    }
+
+    /**
+     * 以哈希形式作为键，避免在 Redis 中保存明文邮箱
+     */
+    private static String hashEmail(String email) {
+        if (email == null || email.isBlank()) {
+            return null;
+        }
+        byte[] hash = CryptoPrimitives.sha256(email.trim().toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(hash).substring(0, 22);
+    }
+}
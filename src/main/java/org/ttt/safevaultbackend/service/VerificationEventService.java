@@ -2,9 +2,7 @@ package org.ttt.safevaultbackend.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.ttt.safevaultbackend.entity.VerificationEvent;
 import org.ttt.safevaultbackend.enums.VerificationEventType;
@@ -12,6 +10,7 @@ import org.ttt.safevaultbackend.repository.VerificationEventRepository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.OptionalLong;
 
 /**
  * 验证事件服务
@@ -23,19 +22,17 @@ import java.util.List;
 public class VerificationEventService {
 
     private final VerificationEventRepository eventRepository;
+    private final AuditEventBuffer auditEventBuffer;
+    private final VerificationCounterService counterService;
 
     /**
      * 记录验证事件 (异步执行,不影响主流程)
+     * 写入审计缓冲区，由后台线程批量写入数据库
      */
-    @Async
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void recordEventAsync(VerificationEvent event) {
-        try {
-            eventRepository.save(event);
-            log.debug("Verification event recorded: {}", event.getEventType());
-        } catch (Exception e) {
-            log.error("Failed to record verification event: {}", e.getMessage(), e);
-        }
+        counterService.recordEvent(event.getEmail(), event.getEventType());
+        auditEventBuffer.submit(event);
+        log.debug("Verification event queued: {}", event.getEventType());
     }
 
     /**
@@ -43,14 +40,14 @@ public class VerificationEventService {
      */
     @Transactional
     public VerificationEvent recordEvent(VerificationEvent event) {
+        counterService.recordEvent(event.getEmail(), event.getEventType());
         return eventRepository.save(event);
     }
 
     /**
      * 记录令牌生成事件
      */
-    @Transactional
-    public VerificationEvent recordTokenGenerated(String userId, String email, String token, String ipAddress) {
+    public void recordTokenGenerated(String userId, String email, String token, String ipAddress) {
         VerificationEvent event = VerificationEvent.builder()
             .userId(userId)
             .email(email)
@@ -59,14 +56,13 @@ public class VerificationEventService {
             .ipAddress(ipAddress)
             .success(true)
             .build();
-        return recordEvent(event);
+        recordEventAsync(event);
     }
 
     /**
      * 记录令牌验证成功事件
      */
-    @Transactional
-    public VerificationEvent recordTokenVerified(String userId, String email, String token, String ipAddress) {
+    public void recordTokenVerified(String userId, String email, String token, String ipAddress) {
         VerificationEvent event = VerificationEvent.builder()
             .userId(userId)
             .email(email)
@@ -75,14 +71,13 @@ public class VerificationEventService {
             .ipAddress(ipAddress)
             .success(true)
             .build();
-        return recordEvent(event);
+        recordEventAsync(event);
     }
 
     /**
      * 记录令牌验证失败事件
      */
-    @Transactional
-    public VerificationEvent recordTokenInvalid(String userId, String email, String token, String failureReason, String ipAddress) {
+    public void recordTokenInvalid(String userId, String email, String token, String failureReason, String ipAddress) {
         VerificationEvent event = VerificationEvent.builder()
             .userId(userId)
             .email(email)
@@ -92,14 +87,13 @@ public class VerificationEventService {
             .success(false)
             .failureReason(failureReason)
             .build();
-        return recordEvent(event);
+        recordEventAsync(event);
     }
 
     /**
      * 记录邮件发送事件
      */
-    @Transactional
-    public VerificationEvent recordEmailSent(String userId, String email, String token, boolean success, String failureReason) {
+    public void recordEmailSent(String userId, String email, String token, boolean success, String failureReason) {
         VerificationEvent event = VerificationEvent.builder()
             .userId(userId)
             .email(email)
@@ -108,7 +102,7 @@ public class VerificationEventService {
             .success(success)
             .failureReason(failureReason)
             .build();
-        return recordEvent(event);
+        recordEventAsync(event);
     }
 
     /**
@@ -137,18 +131,23 @@ public class VerificationEventService {
 
     /**
      * 检查邮箱在指定时间范围内的事件次数
+     * 优先使用 Redis 滑动窗口计数器，不可用时回退到审计表查询，并用查询结果补种计数器
      */
-    @Transactional(readOnly = true)
     public long countEmailEventsInPeriod(String email, VerificationEventType eventType, LocalDateTime since) {
-        return eventRepository.countByEmailAndEventTypeAfter(email, eventType, since);
+        OptionalLong count = counterService.countEvents(email, eventType, since);
+        if (count.isPresent()) {
+            return count.getAsLong();
+        }
+        long total = eventRepository.countByEmailAndEventTypeAfter(email, eventType, since);
+        counterService.seedEvents(email, eventType, since, total);
+        return total;
     }
 
     /**
-     * 检查是否超过重试限制
+     * 检查是否超过重试限制（次数大于 limit）
      */
-    @Transactional(readOnly = true)
     public boolean exceedsRetryLimit(String email, VerificationEventType eventType, LocalDateTime since, long limit) {
-        return eventRepository.exceedsRetryLimit(email, eventType, since, limit);
+        return countEmailEventsInPeriod(email, eventType, since) > limit;
     }
 
     /**
@@ -165,8 +164,7 @@ public class VerificationEventService {
      * 记录注册超时事件
      * 当用户完成注册时发现已超时，记录此事件
      */
-    @Transactional
-    public VerificationEvent recordRegistrationTimeout(String userId, String email, LocalDateTime verifiedAt, LocalDateTime timeout) {
+    public void recordRegistrationTimeout(String userId, String email, LocalDateTime verifiedAt, LocalDateTime timeout) {
         VerificationEvent event = VerificationEvent.builder()
             .userId(userId)
             .email(email)
@@ -174,14 +172,13 @@ public class VerificationEventService {
             .success(false)
             .failureReason("注册超时，验证时间: " + verifiedAt + "，超时时间: " + timeout)
             .build();
-        return recordEvent(event);
+        recordEventAsync(event);
     }
 
     /**
      * 记录注册清理事件
      * 定时任务清理超时用户时记录此事件
      */
-    @Transactional
     public void recordRegistrationCleanup(String userId, String email, LocalDateTime verifiedAt) {
         VerificationEvent event = VerificationEvent.builder()
             .userId(userId)
@@ -189,6 +186,6 @@ public class VerificationEventService {
             .eventType(VerificationEventType.REGISTRATION_CLEANUP)
             .success(true)
             .build();
-        recordEvent(event);
+        recordEventAsync(event);
     }
 }
@@ -1,11 +1,14 @@
 package org.ttt.safevaultbackend.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.ttt.safevaultbackend.dto.FriendNotificationMessage;
 import org.ttt.safevaultbackend.dto.ShareNotificationMessage;
+import org.ttt.safevaultbackend.jfr.WebSocketSendEvent;
 import org.ttt.safevaultbackend.websocket.WebSocketConnectionManager;
 
 /**
@@ -18,12 +21,13 @@ public class WebSocketServiceImpl implements WebSocketService {
 
     private final SimpMessagingTemplate messagingTemplate;
     private final WebSocketConnectionManager connectionManager;
+    private final ObjectMapper objectMapper;
 
     @Override
     public void sendShareNotification(String userId, ShareNotificationMessage notification) {
         String destination = "/user/queue/shares";
         log.info("Sending share notification to userId={}: {}", userId, notification);
-        messagingTemplate.convertAndSendToUser(userId, destination, notification);
+        sendToUser(userId, destination, notification);
     }
 
     @Override
@@ -48,7 +52,7 @@ public class WebSocketServiceImpl implements WebSocketService {
     public void sendFriendNotification(String userId, FriendNotificationMessage notification) {
         String destination = "/user/queue/friends";
         log.info("Sending friend notification to userId={}: {}", userId, notification);
-        messagingTemplate.convertAndSendToUser(userId, destination, notification);
+        sendToUser(userId, destination, notification);
     }
 
     @Override
@@ -71,4 +75,28 @@ public class WebSocketServiceImpl implements WebSocketService {
             log.warn("Heartbeat from offline user: userId={}", userId);
         }
     }
+
+    /**
+     * 发送消息给指定用户，并发出 JFR 事件
+     * 消息大小只在事件被记录时计算（需再序列化一次），未开启记录时没有额外开销
+     */
+    private void sendToUser(String userId, String destination, Object payload) {
+        WebSocketSendEvent event = new WebSocketSendEvent();
+        event.begin();
+        messagingTemplate.convertAndSendToUser(userId, destination, payload);
+        event.end();
+        if (event.shouldCommit()) {
+            event.destination = destination;
+            event.bytes = payloadSize(payload);
+            event.commit();
+        }
+    }
+
+    private long payloadSize(Object payload) {
+        try {
+            return objectMapper.writeValueAsBytes(payload).length;
+        } catch (JsonProcessingException e) {
+            return -1;
+        }
+    }
 }
@@ -0,0 +1,47 @@
+package org.ttt.safevaultbackend.util;
+
+import java.util.Base64;
+
+/**
+ * Base64 文本与二进制列之间的转换工具
+ * 与 V30 迁移中的 base64_or_null 规则一致：只接受标准 Base64（带填充、无换行），
+ * 且重新编码后必须与原文本一致，保证以二进制存储后 API 返回的 Base64 与客户端上传的逐字节相同。
+ */
+public final class Base64Bytes {
+
+    private Base64Bytes() {
+    }
+
+    /**
+     * 解码标准 Base64 文本
+     *
+     * @return 解码后的字节；null 或不符合标准形式的文本返回 null，由调用方保留文本
+     */
+    public static byte[] decodeOrNull(String value) {
+        if (value == null || value.length() % 4 != 0) {
+            return null;
+        }
+        byte[] decoded;
+        try {
+            decoded = Base64.getDecoder().decode(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        // 末尾非零填充位等非标准形式也能解码，但重新编码后不同
+        return Base64.getEncoder().encodeToString(decoded).equals(value) ? decoded : null;
+    }
+
+    /**
+     * 编码为标准 Base64 文本
+     */
+    public static String encode(byte[] value) {
+        return value != null ? Base64.getEncoder().encodeToString(value) : null;
+    }
+
+    /**
+     * 双读：二进制列有值时编码返回，否则返回文本列
+     */
+    public static String read(byte[] bytes, String text) {
+        return bytes != null ? encode(bytes) : text;
+    }
+}
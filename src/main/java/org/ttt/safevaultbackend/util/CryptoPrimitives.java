@@ -0,0 +1,234 @@
+package org.ttt.safevaultbackend.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 加密原语工具类
+ * 通过有界对象池复用 MessageDigest/Mac/Signature/Cipher/KeyFactory 实例，共享一个 SecureRandom，
+ * 并缓存解析后的公钥，避免热点路径上重复的 Provider 查找和对象分配。
+ *
+ * 不使用 ThreadLocal：虚拟线程每个请求一个线程，按线程缓存的实例不会被复用。
+ * 实例只在借出期间由一个线程使用，归还时池已满则丢弃，空闲实例数不超过 CPU 核数的两倍。
+ * Cipher 通过 withCipher 借用，回调中必须先 init 再使用。
+ */
+public final class CryptoPrimitives {
+
+    private static final String SHA_256 = "SHA-256";
+    private static final String HMAC_SHA256 = "HmacSHA256";
+    private static final String SHA256_WITH_RSA = "SHA256withRSA";
+    private static final String RSA = "RSA";
+
+    /**
+     * 公钥缓存上限
+     */
+    private static final int PUBLIC_KEY_CACHE_SIZE = 1024;
+
+    private static final SecureRandom SECURE_RANDOM = createSecureRandom();
+
+    /**
+     * 每种实例的最大空闲数
+     */
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+
+    private static final InstancePool<MessageDigest> SHA_256_DIGESTS =
+            new InstancePool<>(() -> MessageDigest.getInstance(SHA_256));
+
+    private static final InstancePool<Mac> HMAC_SHA256_MACS =
+            new InstancePool<>(() -> Mac.getInstance(HMAC_SHA256));
+
+    private static final InstancePool<Signature> SHA256_WITH_RSA_SIGNATURES =
+            new InstancePool<>(() -> Signature.getInstance(SHA256_WITH_RSA));
+
+    private static final InstancePool<KeyFactory> RSA_KEY_FACTORIES =
+            new InstancePool<>(() -> KeyFactory.getInstance(RSA));
+
+    private static final ConcurrentHashMap<String, InstancePool<Cipher>> CIPHERS = new ConcurrentHashMap<>();
+
+    /**
+     * 已解析的 RSA 公钥，键为 X.509 编码的 SHA-256 指纹
+     */
+    private static final Cache<String, PublicKey> PUBLIC_KEYS = Caffeine.newBuilder()
+            .maximumSize(PUBLIC_KEY_CACHE_SIZE)
+            .build();
+
+    private CryptoPrimitives() {
+    }
+
+    /**
+     * 获取共享的安全随机数生成器（线程安全）
+     */
+    public static SecureRandom secureRandom() {
+        return SECURE_RANDOM;
+    }
+
+    /**
+     * 生成指定长度的随机字节
+     */
+    public static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        SECURE_RANDOM.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * 计算 SHA-256 摘要
+     */
+    public static byte[] sha256(byte[] data) {
+        // digest() 完成后实例自动重置，可直接复用
+        MessageDigest digest = SHA_256_DIGESTS.borrow();
+        try {
+            return digest.digest(data);
+        } finally {
+            SHA_256_DIGESTS.release(digest);
+        }
+    }
+
+    /**
+     * 计算 HMAC-SHA256
+     *
+     * @param key  HMAC 密钥
+     * @param data 待签名数据
+     */
+    public static byte[] hmacSha256(byte[] key, byte[] data) throws GeneralSecurityException {
+        Mac mac = HMAC_SHA256_MACS.borrow();
+        try {
+            mac.init(new SecretKeySpec(key, HMAC_SHA256));
+            return mac.doFinal(data);
+        } finally {
+            HMAC_SHA256_MACS.release(mac);
+        }
+    }
+
+    /**
+     * 使用 SHA256withRSA 验证签名
+     */
+    public static boolean verifySha256WithRsa(PublicKey publicKey, byte[] data, byte[] signature)
+            throws GeneralSecurityException {
+        Signature sig = SHA256_WITH_RSA_SIGNATURES.borrow();
+        try {
+            sig.initVerify(publicKey);
+            sig.update(data);
+            return sig.verify(signature);
+        } finally {
+            SHA256_WITH_RSA_SIGNATURES.release(sig);
+        }
+    }
+
+    /**
+     * 借用 Cipher 实例执行操作，操作结束后归还
+     * 实例可能上一次以其他模式和密钥初始化过，回调中必须先 init
+     *
+     * @param transformation 转换模式，如 AES/GCM/NoPadding
+     * @param operation      使用 Cipher 的操作
+     */
+    public static <T> T withCipher(String transformation, CipherOperation<T> operation)
+            throws GeneralSecurityException {
+        InstancePool<Cipher> pool = CIPHERS.computeIfAbsent(transformation,
+                t -> new InstancePool<>(() -> Cipher.getInstance(t)));
+        Cipher cipher = pool.borrow();
+        try {
+            return operation.apply(cipher);
+        } finally {
+            pool.release(cipher);
+        }
+    }
+
+    /**
+     * 解析 Base64 编码的 X.509 RSA 公钥，相同公钥只解析一次
+     */
+    public static PublicKey rsaPublicKey(String publicKeyBase64) throws GeneralSecurityException {
+        byte[] encoded = Base64.getDecoder().decode(publicKeyBase64);
+        String fingerprint = Base64.getEncoder().encodeToString(sha256(encoded));
+
+        PublicKey cached = PUBLIC_KEYS.getIfPresent(fingerprint);
+        if (cached != null) {
+            return cached;
+        }
+
+        KeyFactory keyFactory = RSA_KEY_FACTORIES.borrow();
+        try {
+            PublicKey publicKey = keyFactory.generatePublic(new X509EncodedKeySpec(encoded));
+            PUBLIC_KEYS.put(fingerprint, publicKey);
+            return publicKey;
+        } finally {
+            RSA_KEY_FACTORIES.release(keyFactory);
+        }
+    }
+
+    private static SecureRandom createSecureRandom() {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    }
+
+    private static <T> T newInstance(InstanceSupplier<T> supplier) {
+        try {
+            return supplier.get();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("加密算法不可用", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface InstanceSupplier<T> {
+        T get() throws GeneralSecurityException;
+    }
+
+    /**
+     * 使用借出的 Cipher 执行的操作
+     */
+    @FunctionalInterface
+    public interface CipherOperation<T> {
+        T apply(Cipher cipher) throws GeneralSecurityException;
+    }
+
+    /**
+     * 有界实例池：池空时新建实例，归还时超过上限则丢弃
+     */
+    private static final class InstancePool<T> {
+
+        private final ConcurrentLinkedQueue<T> idle = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger idleCount = new AtomicInteger();
+        private final InstanceSupplier<T> supplier;
+
+        InstancePool(InstanceSupplier<T> supplier) {
+            this.supplier = supplier;
+        }
+
+        T borrow() {
+            T instance = idle.poll();
+            if (instance != null) {
+                idleCount.decrementAndGet();
+                return instance;
+            }
+            return newInstance(supplier);
+        }
+
+        void release(T instance) {
+            if (idleCount.incrementAndGet() <= POOL_SIZE) {
+                idle.offer(instance);
+            } else {
+                idleCount.decrementAndGet();
+            }
+        }
+    }
+}
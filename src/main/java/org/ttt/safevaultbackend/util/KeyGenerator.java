@@ -37,7 +37,7 @@ public class KeyGenerator {
     public static KeyPair generateECDHKeyPair() throws Exception {
         java.security.KeyPairGenerator keyPairGenerator = java.security.KeyPairGenerator.getInstance("ECDH", BouncyCastleProvider.PROVIDER_NAME);
         ECParameterSpec ecSpec = ECNamedCurveTable.getParameterSpec("P-521");
-        keyPairGenerator.initialize(ecSpec, new SecureRandom());
+        keyPairGenerator.initialize(ecSpec, CryptoPrimitives.secureRandom());
         return keyPairGenerator.generateKeyPair();
     }
 
@@ -54,9 +54,7 @@ public class KeyGenerator {
      * 生成随机 IV（用于 AES-GCM）
      */
     public static byte[] generateRandomIV() {
-        byte[] iv = new byte[12]; // GCM 推荐 12 字节
-        new SecureRandom().nextBytes(iv);
-        return iv;
+        return CryptoPrimitives.randomBytes(12); // GCM 推荐 12 字节
     }
 
     /**
@@ -1,5 +1,7 @@
 package org.ttt.safevaultbackend.websocket;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
@@ -19,6 +21,12 @@ public class WebSocketConnectionManager {
     // 会话ID到用户ID的映射
     private final Map<String, String> sessionUserMap = new ConcurrentHashMap<>();
 
+    public WebSocketConnectionManager(MeterRegistry meterRegistry) {
+        Gauge.builder("websocket.sessions", sessionUserMap, Map::size)
+                .description("当前 WebSocket 会话数")
+                .register(meterRegistry);
+    }
+
     /**
      * 添加连接
      */
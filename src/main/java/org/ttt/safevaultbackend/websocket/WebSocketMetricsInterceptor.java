@@ -0,0 +1,32 @@
+package org.ttt.safevaultbackend.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+
+/**
+ * WebSocket 消息计数拦截器
+ * 按方向（inbound/outbound）和 STOMP 命令计数 websocket.messages，每秒消息数由 Prometheus rate() 计算
+ */
+@RequiredArgsConstructor
+public class WebSocketMetricsInterceptor implements ChannelInterceptor {
+
+    private final MeterRegistry meterRegistry;
+    private final String direction;
+
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        StompCommand command = StompHeaderAccessor.wrap(message).getCommand();
+        Counter.builder("websocket.messages")
+                .tag("direction", direction)
+                .tag("command", command != null ? command.name() : "NONE")
+                .tag("result", sent && ex == null ? "success" : "failure")
+                .register(meterRegistry)
+                .increment();
+    }
+}
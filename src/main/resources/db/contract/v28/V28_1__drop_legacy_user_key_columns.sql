@@ -0,0 +1,15 @@
+-- 拆分 users 表的大字段（收缩阶段，对应 V28）
+-- 所有实例升级到只读写 user_key_material 的版本后执行：删除双向同步触发器和 users 上的旧列。
+-- 已废弃的 devices JSON 列（V24 起由 user_devices 表替代）一并删除。
+DROP TRIGGER IF EXISTS sync_users_key_material_insert ON users;
+DROP TRIGGER IF EXISTS sync_users_key_material_update ON users;
+DROP TRIGGER IF EXISTS sync_key_material_users ON user_key_material;
+DROP FUNCTION IF EXISTS sync_users_to_key_material();
+DROP FUNCTION IF EXISTS sync_key_material_to_users();
+
+ALTER TABLE users
+    DROP COLUMN IF EXISTS public_key,
+    DROP COLUMN IF EXISTS private_key_encrypted,
+    DROP COLUMN IF EXISTS private_key_iv,
+    DROP COLUMN IF EXISTS password_verifier,
+    DROP COLUMN IF EXISTS devices;
@@ -0,0 +1,28 @@
+-- 加密数据从 Base64 TEXT 切换到 bytea 存储：收缩阶段（对应 V30）
+-- 所有实例升级、binary-backfill 全部完成且没有校验不一致的行后执行：
+-- 标记切换时间，AUTO 写入模式的实例随后只写二进制列，binary-text-clear 任务分批清空已转换行的文本列。
+-- 校验不一致的行已清空二进制列并回退到文本，需排查后将对应表的 backfilled_at 置空重新回填，再执行本迁移。
+-- 须在 db/contract/v28 之后启用：清空 user_key_material 的文本列前，V28 的同步触发器必须已删除，
+-- 否则清空操作会同步到 users 的旧列。
+DO $$
+DECLARE
+    pending TEXT;
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_trigger WHERE tgname = 'sync_key_material_users') THEN
+        RAISE EXCEPTION '收缩迁移 V28_1 尚未执行，请先启用 classpath:db/contract/v28';
+    END IF;
+
+    SELECT string_agg(table_name, ', ') INTO pending
+    FROM binary_migration_targets
+    WHERE backfilled_at IS NULL OR mismatched_rows > 0;
+    IF pending IS NOT NULL THEN
+        RAISE EXCEPTION 'bytea 影子列回填未完成或存在校验不一致的行: %', pending;
+    END IF;
+END $$;
+
+-- 新写入的行都已满足约束，校验已有数据（只持有 SHARE UPDATE EXCLUSIVE 锁，不阻塞读写）
+ALTER TABLE user_vaults VALIDATE CONSTRAINT chk_user_vaults_encrypted_data;
+ALTER TABLE user_private_keys VALIDATE CONSTRAINT chk_user_private_keys_encrypted_private_key;
+ALTER TABLE user_key_material VALIDATE CONSTRAINT chk_user_key_material_private_key_encrypted;
+
+UPDATE binary_migration_targets SET cutover_at = CURRENT_TIMESTAMP WHERE cutover_at IS NULL;
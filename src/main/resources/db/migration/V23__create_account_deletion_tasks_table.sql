@@ -0,0 +1,30 @@
+-- 创建账户删除任务表
+-- 账户删除改为分阶段、分批执行，任务进度持久化以支持中断后继续
+CREATE TABLE IF NOT EXISTS account_deletion_tasks (
+    task_id VARCHAR(36) PRIMARY KEY,
+    user_id VARCHAR(36) NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    phase VARCHAR(30) NOT NULL DEFAULT 'REVOKE_SHARES',
+    revoked_shares INT NOT NULL DEFAULT 0,
+    deleted_shares INT NOT NULL DEFAULT 0,
+    deleted_friend_records INT NOT NULL DEFAULT 0,
+    notified_users INT NOT NULL DEFAULT 0,
+    attempts INT NOT NULL DEFAULT 0,
+    last_error VARCHAR(500),
+    lock_version BIGINT NOT NULL DEFAULT 0,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    completed_at TIMESTAMP,
+
+    CONSTRAINT chk_account_deletion_tasks_status CHECK (
+        status IN ('PENDING', 'RUNNING', 'COMPLETED', 'FAILED')
+    )
+);
+
+-- 不加外键：用户记录在最后阶段删除，任务记录需保留以便查询进度
+CREATE INDEX IF NOT EXISTS idx_account_deletion_tasks_user_id ON account_deletion_tasks(user_id);
+CREATE INDEX IF NOT EXISTS idx_account_deletion_tasks_status ON account_deletion_tasks(status);
+
+COMMENT ON TABLE account_deletion_tasks IS '账户删除任务表，记录分批删除进度';
+COMMENT ON COLUMN account_deletion_tasks.phase IS '当前阶段: REVOKE_SHARES, DELETE_SHARES, DELETE_FRIENDSHIPS, DELETE_VAULT, DELETE_USER, DONE';
+COMMENT ON COLUMN account_deletion_tasks.attempts IS '连续失败次数';
@@ -0,0 +1,85 @@
+-- 创建用户设备表
+-- 替代 users.devices JSON 列：每台设备一行，登录时不再重写整行 users 记录
+CREATE TABLE IF NOT EXISTS user_devices (
+    id VARCHAR(36) PRIMARY KEY,
+    user_id VARCHAR(36) NOT NULL,
+    device_id VARCHAR(255) NOT NULL,
+    device_name VARCHAR(255),
+    device_type VARCHAR(50),
+    os_version VARCHAR(100),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    last_active_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+
+    CONSTRAINT fk_user_devices_user FOREIGN KEY (user_id) REFERENCES users(user_id) ON DELETE CASCADE,
+    CONSTRAINT uk_user_devices_user_device UNIQUE (user_id, device_id)
+);
+
+-- 设备数量上限淘汰按 (user_id, last_active_at) 查找最久未活跃的设备
+CREATE INDEX IF NOT EXISTS idx_user_devices_user_last_active ON user_devices(user_id, last_active_at);
+
+-- 解析旧 JSON 中的时间字段，兼容 Jackson 的几种序列化格式：
+-- ISO 字符串、[年,月,日,时,分,秒,纳秒] 数组、epoch 秒或毫秒数值；
+-- 格式不符或数值越界时回退到当前时间，避免个别脏数据使整个迁移失败
+CREATE FUNCTION pg_temp.parse_device_time(v jsonb) RETURNS timestamp AS $$
+BEGIN
+    IF v IS NULL THEN
+        RETURN CURRENT_TIMESTAMP;
+    END IF;
+    CASE jsonb_typeof(v)
+        WHEN 'string' THEN
+            IF v #>> '{}' ~ '^\d{4}-\d{2}-\d{2}([T ]\d{2}:\d{2}(:\d{2}(\.\d{1,9})?)?)?$' THEN
+                RETURN (v #>> '{}')::timestamp;
+            END IF;
+        WHEN 'number' THEN
+            -- 超过 10^11 视为毫秒（对应 5138 年之后的秒数不可能出现）
+            IF (v #>> '{}')::numeric >= 100000000000 THEN
+                RETURN to_timestamp((v #>> '{}')::numeric / 1000) AT TIME ZONE current_setting('TimeZone');
+            END IF;
+            RETURN to_timestamp((v #>> '{}')::numeric) AT TIME ZONE current_setting('TimeZone');
+        WHEN 'array' THEN
+            IF jsonb_array_length(v) >= 5 THEN
+                RETURN make_timestamp((v->>0)::int, (v->>1)::int, (v->>2)::int, (v->>3)::int, (v->>4)::int,
+                        COALESCE((v->>5)::double precision, 0) + COALESCE((v->>6)::double precision, 0) / 1e9);
+            END IF;
+        ELSE
+            NULL;
+    END CASE;
+    RETURN CURRENT_TIMESTAMP;
+EXCEPTION WHEN others THEN
+    RETURN CURRENT_TIMESTAMP;
+END;
+$$ LANGUAGE plpgsql;
+
+-- 无法解析的 devices JSON 视为没有设备
+CREATE FUNCTION pg_temp.parse_devices(v text) RETURNS jsonb AS $$
+BEGIN
+    RETURN v::jsonb;
+EXCEPTION WHEN others THEN
+    RETURN '[]'::jsonb;
+END;
+$$ LANGUAGE plpgsql;
+
+-- 迁移现有 JSON 数据
+INSERT INTO user_devices (id, user_id, device_id, device_name, device_type, os_version, created_at, last_active_at)
+SELECT md5(u.user_id || ':' || (d->>'deviceId')),
+       u.user_id,
+       d->>'deviceId',
+       d->>'deviceName',
+       COALESCE(d->>'deviceType', 'unknown'),
+       d->>'osVersion',
+       pg_temp.parse_device_time(d->'createdAt'),
+       pg_temp.parse_device_time(d->'lastActiveAt')
+FROM users u
+CROSS JOIN LATERAL jsonb_array_elements(pg_temp.parse_devices(u.devices)) AS d
+WHERE u.devices IS NOT NULL
+  AND u.devices LIKE '[%'
+  AND jsonb_typeof(d) = 'object'
+  AND d->>'deviceId' IS NOT NULL
+ON CONFLICT (user_id, device_id) DO NOTHING;
+
+DROP FUNCTION pg_temp.parse_device_time(jsonb);
+DROP FUNCTION pg_temp.parse_devices(text);
+
+COMMENT ON TABLE user_devices IS '用户登录设备表';
+COMMENT ON COLUMN user_devices.last_active_at IS '最后活跃时间（由活跃时间追踪器批量写入，可能滞后一个刷新周期）';
+COMMENT ON COLUMN users.devices IS '已废弃：设备信息已迁移到 user_devices 表';
@@ -0,0 +1,21 @@
+-- 创建 JWT 签名密钥表
+-- 启用密钥轮换时保存各节点共享的签名密钥；私钥使用密钥加密密钥（KEK）以 AES-GCM 加密存储
+CREATE TABLE IF NOT EXISTS jwt_signing_keys (
+    kid VARCHAR(64) PRIMARY KEY,
+    algorithm VARCHAR(10) NOT NULL,
+    public_key TEXT NOT NULL,
+    private_key_encrypted TEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    activates_at TIMESTAMP NOT NULL,
+    retires_at TIMESTAMP,
+    expires_at TIMESTAMP,
+
+    CONSTRAINT chk_jwt_signing_keys_algorithm CHECK (algorithm IN ('RS256', 'ES256', 'EdDSA'))
+);
+
+CREATE INDEX IF NOT EXISTS idx_jwt_signing_keys_activates_at ON jwt_signing_keys(activates_at);
+
+COMMENT ON TABLE jwt_signing_keys IS 'JWT 签名密钥表（密钥轮换）';
+COMMENT ON COLUMN jwt_signing_keys.activates_at IS '开始用于签名的时间，早于此时间仅发布公钥供验证';
+COMMENT ON COLUMN jwt_signing_keys.retires_at IS '停止用于签名的时间，之后仅用于验证';
+COMMENT ON COLUMN jwt_signing_keys.expires_at IS '停止用于验证的时间（退役时间 + 最长令牌有效期），之后删除';
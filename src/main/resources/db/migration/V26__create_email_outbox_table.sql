@@ -0,0 +1,32 @@
+-- 创建邮件发件箱表
+-- 注册/重发验证邮件时只写入发件箱，由后台工作线程批量发送并在失败时退避重试
+CREATE TABLE IF NOT EXISTS email_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    email_type VARCHAR(30) NOT NULL,
+    recipient VARCHAR(255) NOT NULL,
+    link_url VARCHAR(1000) NOT NULL,
+    verification_token VARCHAR(255),
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    locked_until TIMESTAMP,
+    last_error VARCHAR(500),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    sent_at TIMESTAMP,
+
+    CONSTRAINT chk_email_outbox_status CHECK (
+        status IN ('PENDING', 'SENDING', 'SENT', 'FAILED')
+    ),
+    CONSTRAINT chk_email_outbox_type CHECK (
+        email_type IN ('VERIFICATION', 'PASSWORD_RESET')
+    )
+);
+
+-- 只索引待发送/发送中的记录，已发送记录不影响领取查询
+CREATE INDEX IF NOT EXISTS idx_email_outbox_due ON email_outbox(next_attempt_at)
+    WHERE status IN ('PENDING', 'SENDING');
+CREATE INDEX IF NOT EXISTS idx_email_outbox_status_created ON email_outbox(status, created_at);
+
+COMMENT ON TABLE email_outbox IS '邮件发件箱，异步发送队列';
+COMMENT ON COLUMN email_outbox.status IS '状态: PENDING, SENDING, SENT, FAILED（重试耗尽）';
+COMMENT ON COLUMN email_outbox.locked_until IS '发送中记录的租约到期时间，进程崩溃后到期可被重新领取';
@@ -0,0 +1,163 @@
+-- 将 verification_events 和 email_verification_history 改为按月范围分区的表
+-- 过期数据按分区整体 DROP/DETACH，不再执行大批量 DELETE（避免 WAL 膨胀、索引抖动和 autovacuum 风暴）
+-- 分区命名: <父表>_pYYYYMM，由 AuditPartitionService 定时预建和清理
+
+-- ============================================================
+-- 分区创建函数（应用和迁移脚本共用）
+-- 使用事务级咨询锁，多实例同时预建时不会冲突
+-- ============================================================
+CREATE OR REPLACE FUNCTION create_monthly_partition(p_parent TEXT, p_month DATE)
+RETURNS BOOLEAN AS $$
+DECLARE
+    v_start DATE := date_trunc('month', p_month)::DATE;
+    v_end DATE := (date_trunc('month', p_month) + INTERVAL '1 month')::DATE;
+    v_name TEXT := p_parent || '_p' || to_char(date_trunc('month', p_month), 'YYYYMM');
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('partition:' || p_parent));
+    IF to_regclass(v_name) IS NOT NULL THEN
+        RETURN FALSE;
+    END IF;
+    EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                   v_name, p_parent, v_start, v_end);
+    RETURN TRUE;
+END;
+$$ LANGUAGE plpgsql;
+
+COMMENT ON FUNCTION create_monthly_partition(TEXT, DATE) IS '为按月分区的表创建指定月份的分区，已存在时返回 false';
+
+-- ============================================================
+-- verification_events
+-- ============================================================
+ALTER TABLE verification_events RENAME TO verification_events_legacy;
+ALTER TABLE verification_events_legacy RENAME CONSTRAINT verification_events_pkey TO verification_events_legacy_pkey;
+ALTER SEQUENCE verification_events_id_seq OWNED BY NONE;
+
+CREATE TABLE verification_events (
+    id BIGINT NOT NULL DEFAULT nextval('verification_events_id_seq'),
+    user_id VARCHAR(36),
+    email VARCHAR(255) NOT NULL,
+    event_type VARCHAR(50) NOT NULL,
+    verification_token VARCHAR(255),
+    ip_address VARCHAR(45),
+    user_agent TEXT,
+    success BOOLEAN NOT NULL DEFAULT FALSE,
+    failure_reason VARCHAR(255),
+    event_timestamp TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    metadata TEXT,
+    -- 分区表的主键必须包含分区键
+    PRIMARY KEY (id, event_timestamp)
+) PARTITION BY RANGE (event_timestamp);
+
+ALTER SEQUENCE verification_events_id_seq OWNED BY verification_events.id;
+
+-- ============================================================
+-- email_verification_history
+-- ============================================================
+ALTER TABLE email_verification_history RENAME TO email_verification_history_legacy;
+ALTER TABLE email_verification_history_legacy RENAME CONSTRAINT email_verification_history_pkey TO email_verification_history_legacy_pkey;
+ALTER SEQUENCE email_verification_history_id_seq OWNED BY NONE;
+
+CREATE TABLE email_verification_history (
+    id BIGINT NOT NULL DEFAULT nextval('email_verification_history_id_seq'),
+    user_id VARCHAR(36),
+    email VARCHAR(255) NOT NULL,
+    verification_code VARCHAR(10),
+    verification_token VARCHAR(255),
+    request_type VARCHAR(20) NOT NULL,
+    ip_address VARCHAR(45),
+    device_fingerprint VARCHAR(255),
+    sent_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    verified_at TIMESTAMP,
+    is_used BOOLEAN NOT NULL DEFAULT FALSE,
+    expires_at TIMESTAMP NOT NULL,
+    delivery_status VARCHAR(50),
+    provider VARCHAR(100),
+    PRIMARY KEY (id, sent_at)
+) PARTITION BY RANGE (sent_at);
+
+ALTER SEQUENCE email_verification_history_id_seq OWNED BY email_verification_history.id;
+
+-- ============================================================
+-- 创建覆盖已有数据到未来3个月的分区
+-- ============================================================
+DO $$
+DECLARE
+    v_month DATE;
+BEGIN
+    v_month := date_trunc('month', LEAST(
+        COALESCE((SELECT MIN(event_timestamp) FROM verification_events_legacy), CURRENT_TIMESTAMP),
+        COALESCE((SELECT MIN(sent_at) FROM email_verification_history_legacy), CURRENT_TIMESTAMP)))::DATE;
+    WHILE v_month <= (date_trunc('month', CURRENT_DATE) + INTERVAL '3 months')::DATE LOOP
+        PERFORM create_monthly_partition('verification_events', v_month);
+        PERFORM create_monthly_partition('email_verification_history', v_month);
+        v_month := (v_month + INTERVAL '1 month')::DATE;
+    END LOOP;
+END $$;
+
+-- 迁移已有数据
+INSERT INTO verification_events
+SELECT id, user_id, email, event_type, verification_token, ip_address, user_agent,
+       success, failure_reason, event_timestamp, metadata
+FROM verification_events_legacy;
+
+INSERT INTO email_verification_history
+SELECT id, user_id, email, verification_code, verification_token, request_type, ip_address,
+       device_fingerprint, sent_at, verified_at, is_used, expires_at, delivery_status, provider
+FROM email_verification_history_legacy;
+
+DROP TABLE verification_events_legacy;
+DROP TABLE email_verification_history_legacy;
+
+-- ============================================================
+-- 外键和索引（在父表上定义，自动应用到所有分区）
+-- 只保留仓库查询实际使用的索引
+-- ============================================================
+ALTER TABLE verification_events
+    ADD CONSTRAINT fk_verification_events_user
+        FOREIGN KEY (user_id) REFERENCES users(user_id) ON DELETE CASCADE;
+
+ALTER TABLE email_verification_history
+    ADD CONSTRAINT fk_verification_history_user
+        FOREIGN KEY (user_id) REFERENCES users(user_id) ON DELETE CASCADE;
+
+-- 按用户查询事件、统计时间范围内的事件数
+CREATE INDEX idx_verification_events_user_timestamp ON verification_events(user_id, event_timestamp DESC);
+-- 按邮箱和事件类型统计重试次数（前缀也覆盖按邮箱查询）
+CREATE INDEX idx_verification_events_email_type_timestamp ON verification_events(email, event_type, event_timestamp);
+-- 按验证令牌查询事件
+CREATE INDEX idx_verification_events_token ON verification_events(verification_token) WHERE verification_token IS NOT NULL;
+
+-- 按用户查询验证历史
+CREATE INDEX idx_email_verification_history_user_sent ON email_verification_history(user_id, sent_at DESC);
+-- 按邮箱查询历史、统计发送次数、查询最近一次发送
+CREATE INDEX idx_email_verification_history_email_sent ON email_verification_history(email, sent_at DESC);
+-- 按验证令牌查询未使用记录、标记已使用、回写投递状态
+CREATE INDEX idx_email_verification_history_token ON email_verification_history(verification_token) WHERE verification_token IS NOT NULL;
+
+-- 添加表和字段注释
+COMMENT ON TABLE verification_events IS '邮箱验证事件追踪表,记录所有验证相关操作 (按 event_timestamp 月分区)';
+COMMENT ON COLUMN verification_events.user_id IS '用户ID (外键关联users表)';
+COMMENT ON COLUMN verification_events.email IS '用户邮箱地址';
+COMMENT ON COLUMN verification_events.event_type IS '事件类型: TOKEN_GENERATED, TOKEN_VERIFIED, TOKEN_EXPIRED, EMAIL_SENT, EMAIL_FAILED, RESEND_LIMIT_EXCEEDED, PAGE_VISIT, DEEP_LINK_CLICK, VERIFICATION_SUCCESS, VERIFICATION_FAILED';
+COMMENT ON COLUMN verification_events.verification_token IS '验证令牌 (用于关联特定验证流程)';
+COMMENT ON COLUMN verification_events.ip_address IS '客户端IP地址';
+COMMENT ON COLUMN verification_events.user_agent IS '客户端User-Agent';
+COMMENT ON COLUMN verification_events.success IS '操作是否成功';
+COMMENT ON COLUMN verification_events.failure_reason IS '失败原因 (当success=false时)';
+COMMENT ON COLUMN verification_events.event_timestamp IS '事件发生时间戳 (分区键)';
+COMMENT ON COLUMN verification_events.metadata IS '额外元数据 (JSON格式)';
+
+COMMENT ON TABLE email_verification_history IS '邮箱验证历史记录表,追踪验证码/令牌的完整生命周期 (按 sent_at 月分区)';
+COMMENT ON COLUMN email_verification_history.user_id IS '用户ID (外键关联users表)';
+COMMENT ON COLUMN email_verification_history.email IS '接收验证的邮箱地址';
+COMMENT ON COLUMN email_verification_history.verification_code IS '6位数字验证码 (可选)';
+COMMENT ON COLUMN email_verification_history.verification_token IS '验证令牌 (可选)';
+COMMENT ON COLUMN email_verification_history.request_type IS '请求类型: REGISTRATION, PASSWORD_RESET, EMAIL_CHANGE, RESEND';
+COMMENT ON COLUMN email_verification_history.ip_address IS '请求来源IP地址';
+COMMENT ON COLUMN email_verification_history.device_fingerprint IS '设备指纹 (用于识别设备)';
+COMMENT ON COLUMN email_verification_history.sent_at IS '验证发送时间 (分区键)';
+COMMENT ON COLUMN email_verification_history.verified_at IS '验证完成时间';
+COMMENT ON COLUMN email_verification_history.is_used IS '验证码是否已使用';
+COMMENT ON COLUMN email_verification_history.expires_at IS '验证过期时间';
+COMMENT ON COLUMN email_verification_history.delivery_status IS '邮件投递状态: SENT, DELIVERED, FAILED, BOUNCED, OPENED';
+COMMENT ON COLUMN email_verification_history.provider IS '邮件服务提供商 (如: aliyun)';
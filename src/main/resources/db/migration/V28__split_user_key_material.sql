@@ -0,0 +1,102 @@
+-- 拆分 users 表的大字段（扩展阶段）
+-- 公钥、加密私钥和密码验证器移到 user_key_material 表，按需单独加载；
+-- 按显示名称、邮箱查找用户的热点查询不再读取这些 TEXT 列。
+--
+-- 滚动发布期间新旧版本实例同时运行：旧版本仍读写 users 上的列，新版本只读写 user_key_material。
+-- 本迁移保留 users 上的旧列，并用触发器双向同步两边的数据；
+-- 所有实例升级后再执行收缩迁移 db/contract/v28/V28_1（删除旧列、devices 列和同步触发器）。
+CREATE TABLE IF NOT EXISTS user_key_material (
+    user_id VARCHAR(36) PRIMARY KEY,
+    public_key TEXT,
+    private_key_encrypted TEXT,
+    private_key_iv VARCHAR(24),
+    password_verifier TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT fk_user_key_material_user FOREIGN KEY (user_id) REFERENCES users(user_id) ON DELETE CASCADE
+);
+
+CREATE TRIGGER update_user_key_material_updated_at
+    BEFORE UPDATE ON user_key_material
+    FOR EACH ROW
+    EXECUTE FUNCTION update_updated_at_column();
+
+-- 迁移现有数据（尚未完成注册的用户没有密钥材料，不创建记录）
+INSERT INTO user_key_material (user_id, public_key, password_verifier)
+SELECT user_id, public_key, password_verifier
+FROM users
+WHERE public_key IS NOT NULL OR password_verifier IS NOT NULL
+ON CONFLICT (user_id) DO NOTHING;
+
+-- 加密私钥列不是由迁移脚本创建的，不存在时补齐，使同步触发器可以统一引用
+ALTER TABLE users
+    ADD COLUMN IF NOT EXISTS private_key_encrypted TEXT,
+    ADD COLUMN IF NOT EXISTS private_key_iv VARCHAR(24);
+
+INSERT INTO user_key_material (user_id, private_key_encrypted, private_key_iv)
+SELECT user_id, private_key_encrypted, private_key_iv
+FROM users
+WHERE private_key_encrypted IS NOT NULL
+ON CONFLICT (user_id) DO UPDATE
+    SET private_key_encrypted = EXCLUDED.private_key_encrypted,
+        private_key_iv = EXCLUDED.private_key_iv;
+
+-- 旧版本实例写入 users 时同步到 user_key_material
+-- pg_trigger_depth() > 1 表示由另一方向的同步触发，不再回写，避免循环
+CREATE OR REPLACE FUNCTION sync_users_to_key_material()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF pg_trigger_depth() > 1 THEN
+        RETURN NULL;
+    END IF;
+    INSERT INTO user_key_material (user_id, public_key, private_key_encrypted, private_key_iv, password_verifier)
+    VALUES (NEW.user_id, NEW.public_key, NEW.private_key_encrypted, NEW.private_key_iv, NEW.password_verifier)
+    ON CONFLICT (user_id) DO UPDATE
+        SET public_key = EXCLUDED.public_key,
+            private_key_encrypted = EXCLUDED.private_key_encrypted,
+            private_key_iv = EXCLUDED.private_key_iv,
+            password_verifier = EXCLUDED.password_verifier;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER sync_users_key_material_insert
+    AFTER INSERT ON users
+    FOR EACH ROW
+    WHEN (NEW.public_key IS NOT NULL OR NEW.private_key_encrypted IS NOT NULL OR NEW.password_verifier IS NOT NULL)
+    EXECUTE FUNCTION sync_users_to_key_material();
+
+-- 旧版本按全列更新 users，只在这些列的值变化时同步
+CREATE TRIGGER sync_users_key_material_update
+    AFTER UPDATE ON users
+    FOR EACH ROW
+    WHEN (OLD.public_key IS DISTINCT FROM NEW.public_key
+          OR OLD.private_key_encrypted IS DISTINCT FROM NEW.private_key_encrypted
+          OR OLD.private_key_iv IS DISTINCT FROM NEW.private_key_iv
+          OR OLD.password_verifier IS DISTINCT FROM NEW.password_verifier)
+    EXECUTE FUNCTION sync_users_to_key_material();
+
+-- 新版本实例写入 user_key_material 时回写 users，旧版本实例仍能读到最新值
+CREATE OR REPLACE FUNCTION sync_key_material_to_users()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF pg_trigger_depth() > 1 THEN
+        RETURN NULL;
+    END IF;
+    UPDATE users
+    SET public_key = NEW.public_key,
+        private_key_encrypted = NEW.private_key_encrypted,
+        private_key_iv = NEW.private_key_iv,
+        password_verifier = NEW.password_verifier
+    WHERE user_id = NEW.user_id;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER sync_key_material_users
+    AFTER INSERT OR UPDATE OF public_key, private_key_encrypted, private_key_iv, password_verifier
+    ON user_key_material
+    FOR EACH ROW
+    EXECUTE FUNCTION sync_key_material_to_users();
+
+COMMENT ON TABLE user_key_material IS '用户密钥材料（公钥、加密私钥、密码验证器），与 users 一对一';
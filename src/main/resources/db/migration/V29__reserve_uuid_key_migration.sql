@@ -0,0 +1,6 @@
+-- 预留版本：主键和外键切换到原生 uuid 类型
+-- 新主键已由 UuidV7 按时间顺序生成（VARCHAR(36) 上同样有插入局部性），列类型暂不切换：
+-- Hibernate 结构校验不接受 String 属性映射到 uuid 列，varchar 参数也不能直接与 uuid 列比较，
+-- 主键、外键、实体映射和原生查询必须同时切换，新旧版本实例不能共存，作为单独的停机切换进行，不在线维护影子列。
+-- 保留此版本号使迁移序列连续，本迁移不做任何修改。
+SELECT 1;
@@ -0,0 +1,95 @@
+-- 加密数据从 Base64 TEXT 切换到 bytea 存储：第一阶段（扩展）
+-- 为 Base64 编码的大字段添加 <列名>_bytes 影子列，应用层优先读取二进制列、未转换时回退到文本列（双读），
+-- API 仍返回 Base64。已有数据由维护任务 binary-backfill 分批转换并校验（BinaryBackfillService），不在迁移中整表重写。
+-- 全部转换完成且校验无误后，由收缩迁移 db/contract/v30/V30_1 标记切换（cutover_at），此后 AUTO 写入模式只写二进制列，
+-- 维护任务 binary-text-clear 分批清空已转换行的文本列（text_cleared_at）；文本列在移除实体映射的后续版本中删除。
+--
+-- contact_shares.encrypted_data 不是 Base64 数据（是 key=value 序列化的字段映射），不在本次迁移范围内
+
+-- 标准 Base64 文本解码为 bytea，其他值返回 NULL
+-- 只接受重新编码后与原文本完全一致的值（去掉 encode 每 76 字符插入的换行），保证转换后 API 返回的 Base64 与客户端上传的一致；
+-- 先用正则排除非法字符和填充，decode 不会抛出异常，批量回填时不需要为每行建立子事务
+CREATE OR REPLACE FUNCTION base64_or_null(value TEXT) RETURNS BYTEA AS $$
+    SELECT CASE
+        WHEN value ~ '^[A-Za-z0-9+/]*={0,2}$' AND length(value) % 4 = 0 THEN
+            CASE WHEN translate(encode(decode(value, 'base64'), 'base64'), E'\n', '') = value
+                 THEN decode(value, 'base64')
+            END
+    END;
+$$ LANGUAGE sql IMMUTABLE;
+
+-- 迁移目标登记表：回填任务按此表逐表处理，backfilled_at 非空表示已有数据转换完成
+-- converted_rows / unconvertible_rows / mismatched_rows 为本轮回填的转换、无法转换（保留文本）和校验不一致（已清空二进制列）的行数
+-- cutover_at 为切换到只写二进制列的时间，text_cleared_at 为已转换行的文本列清空完成的时间
+CREATE TABLE IF NOT EXISTS binary_migration_targets (
+    table_name VARCHAR(63) PRIMARY KEY,
+    key_column VARCHAR(63) NOT NULL,
+    data_columns TEXT[] NOT NULL,
+    converted_rows BIGINT NOT NULL DEFAULT 0,
+    unconvertible_rows BIGINT NOT NULL DEFAULT 0,
+    mismatched_rows BIGINT NOT NULL DEFAULT 0,
+    backfilled_at TIMESTAMP,
+    cutover_at TIMESTAMP,
+    text_cleared_at TIMESTAMP
+);
+
+-- 添加影子列（可空、无默认值，只修改元数据）和同步触发器，并登记迁移目标
+-- 文本列改为可空（BINARY 写入模式下不再写文本），以 NOT VALID 约束保证新写入的行至少有一列有值，不扫描已有数据
+-- 触发器只在二进制列为空、或文本被修改而二进制列未随之修改时（滚动发布期间旧版本实例的写入）由文本列重新计算
+CREATE OR REPLACE FUNCTION add_binary_shadow_columns(p_table TEXT, p_key TEXT, p_columns TEXT[]) RETURNS VOID AS $$
+DECLARE
+    col TEXT;
+    body TEXT := '';
+BEGIN
+    IF to_regclass(p_table) IS NULL THEN
+        RAISE NOTICE '表 % 不存在，跳过', p_table;
+        RETURN;
+    END IF;
+
+    FOREACH col IN ARRAY p_columns LOOP
+        EXECUTE format('ALTER TABLE %I ADD COLUMN IF NOT EXISTS %I BYTEA', p_table, col || '_bytes');
+        EXECUTE format('ALTER TABLE %I ALTER COLUMN %I DROP NOT NULL', p_table, col);
+        body := body || format(
+            'IF NEW.%1$I IS NOT NULL AND (NEW.%2$I IS NULL OR (TG_OP = ''UPDATE'' AND NEW.%1$I IS DISTINCT FROM OLD.%1$I '
+            'AND NEW.%2$I IS NOT DISTINCT FROM OLD.%2$I)) THEN NEW.%2$I := base64_or_null(NEW.%1$I); END IF; ',
+            col, col || '_bytes');
+    END LOOP;
+
+    -- 每张表生成独立的触发器函数，只在需要时解码，不序列化整行
+    EXECUTE format('CREATE OR REPLACE FUNCTION %I() RETURNS TRIGGER AS $f$ BEGIN %s RETURN NEW; END; $f$ LANGUAGE plpgsql',
+                   'sync_bytes_' || p_table, body);
+    EXECUTE format('DROP TRIGGER IF EXISTS %I ON %I', 'sync_bytes_' || p_table, p_table);
+    EXECUTE format('CREATE TRIGGER %I BEFORE INSERT OR UPDATE OF %s ON %I FOR EACH ROW EXECUTE FUNCTION %I()',
+                   'sync_bytes_' || p_table,
+                   (SELECT string_agg(quote_ident(c), ', ') FROM unnest(p_columns) AS c),
+                   p_table,
+                   'sync_bytes_' || p_table);
+
+    INSERT INTO binary_migration_targets (table_name, key_column, data_columns)
+    VALUES (p_table, p_key, p_columns)
+    ON CONFLICT (table_name) DO UPDATE
+        SET key_column = EXCLUDED.key_column, data_columns = EXCLUDED.data_columns,
+            converted_rows = 0, unconvertible_rows = 0, mismatched_rows = 0, backfilled_at = NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+SELECT add_binary_shadow_columns('user_vaults', 'vault_id', ARRAY['encrypted_data']);
+SELECT add_binary_shadow_columns('user_private_keys', 'user_id', ARRAY['encrypted_private_key']);
+SELECT add_binary_shadow_columns('user_key_material', 'user_id', ARRAY['private_key_encrypted']);
+
+-- user_vaults 和 user_private_keys 的数据列原为 NOT NULL：新写入的行至少保留一种形式
+ALTER TABLE user_vaults
+    ADD CONSTRAINT chk_user_vaults_encrypted_data
+    CHECK (encrypted_data IS NOT NULL OR encrypted_data_bytes IS NOT NULL) NOT VALID;
+ALTER TABLE user_private_keys
+    ADD CONSTRAINT chk_user_private_keys_encrypted_private_key
+    CHECK (encrypted_private_key IS NOT NULL OR encrypted_private_key_bytes IS NOT NULL) NOT VALID;
+-- user_key_material.private_key_encrypted 本身可空（只有公钥或密码验证器的记录），但有 IV 的行必须保留私钥的一种形式
+ALTER TABLE user_key_material
+    ADD CONSTRAINT chk_user_key_material_private_key_encrypted
+    CHECK (private_key_iv IS NULL OR private_key_encrypted IS NOT NULL OR private_key_encrypted_bytes IS NOT NULL) NOT VALID;
+
+COMMENT ON TABLE binary_migration_targets IS 'Base64 文本列切换到 bytea 的迁移目标及回填、校验进度';
+COMMENT ON COLUMN user_vaults.encrypted_data_bytes IS '加密的密码库数据（二进制），API 层仍以 Base64 返回';
+COMMENT ON COLUMN user_private_keys.encrypted_private_key_bytes IS '加密私钥（二进制），API 层仍以 Base64 返回';
+COMMENT ON COLUMN user_key_material.private_key_encrypted_bytes IS '加密的 RSA 私钥（二进制）';
@@ -0,0 +1,12 @@
+-- 用户令牌纪元表：撤销用户全部令牌时记录纪元（毫秒），签发时间不晚于纪元的令牌视为已撤销
+-- 作为撤销状态的持久化来源，Redis 中的纪元只是缓存，键被淘汰或清空后从本表恢复。
+-- 不引用 users 表：账户删除完成后纪元仍需保留到此前签发的令牌全部过期
+CREATE TABLE IF NOT EXISTS user_token_epochs (
+    user_id VARCHAR(36) PRIMARY KEY,
+    epoch_ms BIGINT NOT NULL,
+    revoke_reason VARCHAR(50),
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+COMMENT ON TABLE user_token_epochs IS '用户令牌纪元（撤销用户全部令牌）';
+COMMENT ON COLUMN user_token_epochs.epoch_ms IS '纪元时间（Unix 毫秒），签发时间不晚于该值的令牌已撤销';
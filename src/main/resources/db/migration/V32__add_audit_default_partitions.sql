@@ -0,0 +1,49 @@
+-- 审计表默认分区
+-- 未来月份的分区未能按时预建时，新写入的行落入 <父表>_default，不再因没有匹配分区而插入失败。
+-- create_monthly_partition 在创建分区前把默认分区中属于该月的行移入新分区
+-- （默认分区中存在该范围的行时 PostgreSQL 拒绝创建分区）。
+-- 默认分区中的行数由 audit.partition.default.rows 指标暴露，正常情况下应为 0
+
+CREATE OR REPLACE FUNCTION create_monthly_partition(p_parent TEXT, p_month DATE)
+RETURNS BOOLEAN AS $$
+DECLARE
+    v_start DATE := date_trunc('month', p_month)::DATE;
+    v_end DATE := (date_trunc('month', p_month) + INTERVAL '1 month')::DATE;
+    v_name TEXT := p_parent || '_p' || to_char(date_trunc('month', p_month), 'YYYYMM');
+    v_default TEXT := p_parent || '_default';
+    v_key TEXT;
+    v_moved BIGINT := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('partition:' || p_parent));
+    IF to_regclass(v_name) IS NOT NULL THEN
+        RETURN FALSE;
+    END IF;
+
+    IF to_regclass(v_default) IS NOT NULL THEN
+        -- 分区键列名，如 RANGE (event_timestamp)
+        v_key := substring(pg_get_partkeydef(p_parent::regclass) FROM '\((.*)\)');
+        EXECUTE format('CREATE TEMP TABLE partition_move ON COMMIT DROP AS '
+                       'WITH moved AS (DELETE FROM %I WHERE %I >= %L AND %I < %L RETURNING *) SELECT * FROM moved',
+                       v_default, v_key, v_start, v_key, v_end);
+        GET DIAGNOSTICS v_moved = ROW_COUNT;
+    END IF;
+
+    EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                   v_name, p_parent, v_start, v_end);
+
+    IF v_moved > 0 THEN
+        EXECUTE format('INSERT INTO %I SELECT * FROM partition_move', p_parent);
+        RAISE NOTICE '已将默认分区 % 中的 % 行移入 %', v_default, v_moved, v_name;
+    END IF;
+    IF to_regclass('pg_temp.partition_move') IS NOT NULL THEN
+        DROP TABLE pg_temp.partition_move;
+    END IF;
+    RETURN TRUE;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TABLE IF NOT EXISTS verification_events_default PARTITION OF verification_events DEFAULT;
+CREATE TABLE IF NOT EXISTS email_verification_history_default PARTITION OF email_verification_history DEFAULT;
+
+COMMENT ON TABLE verification_events_default IS '验证事件默认分区：月分区未预建时的兜底，正常应为空';
+COMMENT ON TABLE email_verification_history_default IS '验证历史默认分区：月分区未预建时的兜底，正常应为空';
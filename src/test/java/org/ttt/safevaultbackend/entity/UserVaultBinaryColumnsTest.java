@@ -0,0 +1,61 @@
+package org.ttt.safevaultbackend.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 密码库二进制列双读/写入测试
+ */
+class UserVaultBinaryColumnsTest {
+
+    private static final String DATA = Base64.getEncoder().encodeToString(new byte[]{1, 2, 3, 4, 5});
+
+    @Test
+    void dualMode_KeepsTextAndFillsBytes() {
+        UserVault vault = UserVault.builder().encryptedData(DATA).build();
+
+        vault.syncBinaryColumns(true);
+
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5}, vault.getEncryptedDataBytes());
+        assertEquals(DATA, vault.getEncryptedData());
+    }
+
+    @Test
+    void binaryMode_ReadsBackSameBase64WithoutText() {
+        UserVault vault = UserVault.builder().encryptedData(DATA).build();
+
+        vault.syncBinaryColumns(false);
+
+        assertNotNull(vault.getEncryptedDataBytes());
+        assertEquals(DATA, vault.getEncryptedData());
+    }
+
+    @Test
+    void nonCanonicalBase64_StaysAsText() {
+        // 缺少填充和末尾非零填充位都能被解码器接受，但重新编码后与原文不同
+        for (String value : new String[]{"AQI", "AQJ=", "not base64!"}) {
+            UserVault vault = UserVault.builder().encryptedData(value).build();
+
+            vault.syncBinaryColumns(false);
+
+            assertNull(vault.getEncryptedDataBytes());
+            assertEquals(value, vault.getEncryptedData());
+        }
+    }
+
+    @Test
+    void setter_RecomputesBytesOnNextWrite() {
+        UserVault vault = UserVault.builder().encryptedData(DATA).build();
+        vault.syncBinaryColumns(false);
+
+        String updated = Base64.getEncoder().encodeToString(new byte[]{9, 8, 7});
+        vault.setEncryptedData(updated);
+        assertEquals(updated, vault.getEncryptedData());
+
+        vault.syncBinaryColumns(false);
+        assertArrayEquals(new byte[]{9, 8, 7}, vault.getEncryptedDataBytes());
+    }
+}
@@ -42,7 +42,9 @@ class RegistrationFlowIntegrationTest {
             .build();
 
         EmailRegistrationResponse registerResponse = authService.registerWithEmail(registerRequest);
-        assertTrue(registerResponse.getEmailSent());
+        // 验证邮件经发件箱异步发送，响应时仅写入发件箱
+        assertFalse(registerResponse.isEmailSent());
+        assertEquals("QUEUED", registerResponse.getEmailStatus());
         assertEquals("integration-test@example.com", registerResponse.getEmail());
 
         // 注意: 实际验证需要从 Redis 获取 token，这里测试完整流程需要模拟
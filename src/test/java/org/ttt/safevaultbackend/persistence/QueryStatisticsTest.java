@@ -0,0 +1,78 @@
+package org.ttt.safevaultbackend.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.ttt.safevaultbackend.exception.QueryBudgetExceededException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 查询统计范围测试
+ */
+class QueryStatisticsTest {
+
+    @AfterEach
+    void tearDown() {
+        while (QueryStatistics.current() != null) {
+            QueryStatistics.current().close();
+        }
+    }
+
+    @Test
+    void nestedScopes_BothCountStatements() {
+        QueryStatistics.Scope outer = QueryStatistics.open("outer");
+        QueryStatistics.statementStarted();
+
+        QueryStatistics.Scope inner = QueryStatistics.open("inner");
+        QueryStatistics.statementStarted();
+        QueryStatistics.statementFinished(1_000_000L);
+        QueryStatistics.rowsLoaded(3);
+        inner.close();
+
+        QueryStatistics.statementStarted();
+        outer.close();
+
+        assertEquals(1, inner.getStatements());
+        assertEquals(3, inner.getRows());
+        assertEquals(3, outer.getStatements());
+        assertEquals(3, outer.getRows());
+        assertEquals(1, outer.getJdbcTime().toMillis());
+        assertNull(QueryStatistics.current());
+    }
+
+    @Test
+    void exceedBudget_WarnMode_MarksExceeded() {
+        QueryStatistics.Scope scope = QueryStatistics.open("FriendController.getFriendList", 2, false);
+        QueryStatistics.statementStarted();
+        QueryStatistics.statementStarted();
+        assertFalse(scope.isExceeded());
+
+        QueryStatistics.statementStarted();
+        scope.close();
+
+        assertTrue(scope.isExceeded());
+        assertEquals(3, scope.getStatements());
+    }
+
+    @Test
+    void exceedBudget_FailMode_ThrowsOnExtraStatement() {
+        QueryStatistics.Scope scope = QueryStatistics.open("FriendController.getFriendList", 1, true);
+        QueryStatistics.statementStarted();
+
+        QueryBudgetExceededException ex = assertThrows(QueryBudgetExceededException.class,
+                QueryStatistics::statementStarted);
+        assertEquals("FriendController.getFriendList", ex.getScope());
+        assertEquals(1, ex.getMaxStatements());
+        scope.close();
+    }
+
+    @Test
+    void noOpenScope_RecordingIsIgnored() {
+        assertDoesNotThrow(() -> {
+            QueryStatistics.statementStarted();
+            QueryStatistics.statementFinished(10L);
+            QueryStatistics.rowsLoaded(1);
+        });
+        assertNull(QueryStatistics.current());
+    }
+}
@@ -6,14 +6,20 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.ttt.safevaultbackend.dto.request.CompleteRegistrationRequest;
 import org.ttt.safevaultbackend.dto.request.VerifyEmailRequest;
 import org.ttt.safevaultbackend.dto.response.CompleteRegistrationResponse;
 import org.ttt.safevaultbackend.dto.response.VerifyEmailResponse;
 import org.ttt.safevaultbackend.dto.PendingUser;
 import org.ttt.safevaultbackend.entity.User;
+import org.ttt.safevaultbackend.entity.UserKeyMaterial;
 import org.ttt.safevaultbackend.exception.BusinessException;
 import org.ttt.safevaultbackend.exception.ResourceNotFoundException;
+import org.ttt.safevaultbackend.repository.UserKeyMaterialRepository;
+import org.ttt.safevaultbackend.repository.UserPrivateKeyRepository;
 import org.ttt.safevaultbackend.repository.UserRepository;
 import org.ttt.safevaultbackend.security.JwtTokenProvider;
 
@@ -32,18 +38,30 @@ class AuthServiceRegistrationTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private UserKeyMaterialRepository userKeyMaterialRepository;
+
+    @Mock
+    private UserPrivateKeyRepository userPrivateKeyRepository;
+
     @Mock
     private JwtTokenProvider tokenProvider;
 
     @Mock
     private PendingUserService pendingUserService;
 
+    @Mock
+    private UserExistenceFilter userExistenceFilter;
+
     @Mock
     private VerificationEventService verificationEventService;
 
     @Mock
     private EmailVerificationHistoryService verificationHistoryService;
 
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
     @InjectMocks
     private AuthService authService;
 
@@ -56,6 +74,9 @@ class AuthServiceRegistrationTest {
         org.springframework.test.util.ReflectionTestUtils.setField(
             authService, "tokenExpirationMinutes", 10
         );
+        // 事务模板直接执行回调
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+            invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
     }
 
     @Test
@@ -72,21 +93,21 @@ class AuthServiceRegistrationTest {
             .build();
 
         when(pendingUserService.getPendingUserByToken(token)).thenReturn(pendingUser);
-        when(userRepository.existsByEmail(anyString())).thenReturn(false);
-        when(userRepository.existsByUsername(anyString())).thenReturn(false);
-        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(userRepository.existsByEmail("test@example.com")).thenReturn(false);
+        when(userRepository.existsByUsername("testuser")).thenReturn(false);
+        when(userRepository.saveAndFlush(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         // Act
         VerifyEmailResponse response = authService.verifyEmail(new VerifyEmailRequest(token));
 
         // Assert
-        assertTrue(response.getSuccess());
+        assertTrue(response.isSuccess());
         assertEquals("邮箱验证成功，请设置主密码", response.getMessage());
         assertEquals("test@example.com", response.getEmail());
         assertEquals("testuser", response.getUsername());
 
         // 验证用户创建时设置了正确的状态
-        verify(userRepository).save(argThat(user ->
+        verify(userRepository).saveAndFlush(argThat(user ->
             "EMAIL_VERIFIED".equals(user.getRegistrationStatus()) &&
             user.getVerifiedAt() != null &&
             user.getEmailVerified()
@@ -94,6 +115,63 @@ class AuthServiceRegistrationTest {
 
         verify(pendingUserService).deletePendingUser("test@example.com");
         verify(verificationEventService).recordTokenVerified(anyString(), eq("test@example.com"), eq(token), isNull());
+        verify(userExistenceFilter).add("test@example.com", "testuser");
+        // 并发注册检查直接查询数据库，不信任过滤器
+        verify(userExistenceFilter, never()).existsByEmail(anyString());
+        verify(userExistenceFilter, never()).existsByUsername(anyString());
+    }
+
+    @Test
+    void verifyEmail_WhenEmailRegisteredMeanwhile_ShouldReturnFailure() {
+        // Arrange
+        String token = "valid-token";
+        PendingUser pendingUser = PendingUser.builder()
+            .email("test@example.com")
+            .username("testuser")
+            .verificationToken(token)
+            .tokenExpiresAt(LocalDateTime.now().plusMinutes(10))
+            .createdAt(LocalDateTime.now())
+            .build();
+
+        when(pendingUserService.getPendingUserByToken(token)).thenReturn(pendingUser);
+        when(userRepository.existsByEmail("test@example.com")).thenReturn(true);
+
+        // Act
+        VerifyEmailResponse response = authService.verifyEmail(new VerifyEmailRequest(token));
+
+        // Assert
+        assertFalse(response.isSuccess());
+        assertEquals("该邮箱已被注册", response.getMessage());
+        verify(pendingUserService).deletePendingUser("test@example.com");
+        verify(userRepository, never()).saveAndFlush(any(User.class));
+    }
+
+    @Test
+    void verifyEmail_WhenUniqueConstraintViolated_ShouldReturnFailure() {
+        // Arrange
+        String token = "valid-token";
+        PendingUser pendingUser = PendingUser.builder()
+            .email("test@example.com")
+            .username("testuser")
+            .displayName("testuser")
+            .verificationToken(token)
+            .tokenExpiresAt(LocalDateTime.now().plusMinutes(10))
+            .createdAt(LocalDateTime.now())
+            .build();
+
+        when(pendingUserService.getPendingUserByToken(token)).thenReturn(pendingUser);
+        // 检查之后、插入之前被其他请求注册
+        when(userRepository.saveAndFlush(any(User.class)))
+            .thenThrow(new DataIntegrityViolationException("duplicate key value violates unique constraint"));
+
+        // Act
+        VerifyEmailResponse response = authService.verifyEmail(new VerifyEmailRequest(token));
+
+        // Assert
+        assertFalse(response.isSuccess());
+        assertEquals("该邮箱或用户名已被注册", response.getMessage());
+        verify(userExistenceFilter, never()).add(anyString(), anyString());
+        verify(verificationEventService, never()).recordTokenVerified(anyString(), anyString(), anyString(), any());
     }
 
     @Test
@@ -114,10 +192,10 @@ class AuthServiceRegistrationTest {
         VerifyEmailResponse response = authService.verifyEmail(new VerifyEmailRequest(token));
 
         // Assert
-        assertFalse(response.getSuccess());
+        assertFalse(response.isSuccess());
         assertEquals("验证令牌已过期，请重新注册", response.getMessage());
         verify(pendingUserService).deletePendingUser("test@example.com");
-        verify(userRepository, never()).save(any(User.class));
+        verify(userRepository, never()).saveAndFlush(any(User.class));
     }
 
     @Test
@@ -162,8 +240,12 @@ class AuthServiceRegistrationTest {
 
         verify(userRepository).save(argThat(savedUser ->
             "ACTIVE".equals(savedUser.getRegistrationStatus()) &&
-            savedUser.getRegistrationCompletedAt() != null &&
-            "verifier".equals(savedUser.getPasswordVerifier())
+            savedUser.getRegistrationCompletedAt() != null
+        ));
+        verify(userKeyMaterialRepository).save(argThat(keyMaterial ->
+            user.getUserId().equals(keyMaterial.getUserId()) &&
+            "verifier".equals(keyMaterial.getPasswordVerifier()) &&
+            "publicKey".equals(keyMaterial.getPublicKey())
         ));
     }
 
@@ -176,6 +258,7 @@ class AuthServiceRegistrationTest {
             .userId(UUID.randomUUID().toString())
             .email(email)
             .username("testuser")
+            .emailVerified(true)
             .registrationStatus("ACTIVE") // 状态不是 EMAIL_VERIFIED
             .verifiedAt(LocalDateTime.now())
             .build();
@@ -205,6 +288,7 @@ class AuthServiceRegistrationTest {
             .userId(userId)
             .email(email)
             .username("testuser")
+            .emailVerified(true)
             .registrationStatus("EMAIL_VERIFIED")
             .verifiedAt(LocalDateTime.now().minusMinutes(10)) // 10分钟前验证，已超时（默认5分钟）
             .build();
@@ -238,9 +322,9 @@ class AuthServiceRegistrationTest {
             .userId(UUID.randomUUID().toString())
             .email(email)
             .username("testuser")
-            .registrationStatus("ACTIVE")
+            .emailVerified(true)
+            .registrationStatus("EMAIL_VERIFIED")
             .verifiedAt(LocalDateTime.now().minusMinutes(2))
-            .passwordVerifier("existingVerifier") // 已设置密码验证器
             .build();
 
         CompleteRegistrationRequest request = CompleteRegistrationRequest.builder()
@@ -249,6 +333,9 @@ class AuthServiceRegistrationTest {
             .build();
 
         when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
+        // 已设置密码验证器
+        when(userKeyMaterialRepository.findById(user.getUserId())).thenReturn(Optional.of(
+            UserKeyMaterial.builder().userId(user.getUserId()).passwordVerifier("existingVerifier").build()));
 
         // Act & Assert
         BusinessException exception = assertThrows(BusinessException.class,
@@ -280,6 +367,7 @@ class AuthServiceRegistrationTest {
         User user = User.builder()
             .userId(UUID.randomUUID().toString())
             .email(email)
+            .emailVerified(true)
             .username("correctuser") // 用户名不匹配
             .registrationStatus("EMAIL_VERIFIED")
             .verifiedAt(LocalDateTime.now().minusMinutes(2))
@@ -28,6 +28,9 @@ class RegistrationCleanupServiceTest {
     @Mock
     private VerificationEventService verificationEventService;
 
+    @Mock
+    private UserCacheService userCacheService;
+
     @InjectMocks
     private RegistrationCleanupService registrationCleanupService;
 
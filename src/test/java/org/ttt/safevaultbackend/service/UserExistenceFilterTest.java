@@ -0,0 +1,203 @@
+package org.ttt.safevaultbackend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.ttt.safevaultbackend.config.UserExistenceFilterProperties;
+import org.ttt.safevaultbackend.repository.UserRepository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 用户存在性过滤器测试：检查、提交后写入、写入失败时失效、分批重建
+ */
+@ExtendWith(MockitoExtension.class)
+class UserExistenceFilterTest {
+
+    private static final String EMAIL_KEY = "bloom:user:email";
+    private static final String USERNAME_KEY = "bloom:user:username";
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private UserRepository userRepository;
+
+    private UserExistenceFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        UserExistenceFilterProperties properties = new UserExistenceFilterProperties();
+        properties.setExpectedInsertions(1000);
+        filter = new UserExistenceFilter(redisTemplate, userRepository, properties, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void existsByEmail_WhenFilterSaysAbsent_ShouldSkipDatabase() {
+        stubScript("GETBIT", 0L);
+
+        assertFalse(filter.existsByEmail("new@example.com"));
+        verify(userRepository, never()).existsByEmail(anyString());
+    }
+
+    @Test
+    void existsByEmail_WhenFilterSaysPresent_ShouldConfirmWithDatabase() {
+        stubScript("GETBIT", 1L);
+        when(userRepository.existsByEmail("maybe@example.com")).thenReturn(false);
+
+        assertFalse(filter.existsByEmail("maybe@example.com"));
+        verify(userRepository).existsByEmail("maybe@example.com");
+    }
+
+    @Test
+    void existsByEmail_WhenFilterNotBuilt_ShouldFallBackToDatabase() {
+        stubScript("GETBIT", -1L);
+        when(userRepository.existsByEmail("user@example.com")).thenReturn(true);
+
+        assertTrue(filter.existsByEmail("user@example.com"));
+    }
+
+    @Test
+    void add_InsideTransaction_ShouldWriteOnlyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        filter.add("user@example.com", "user");
+        verifyNoInteractions(redisTemplate);
+
+        stubScript("SETBIT", 1L);
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        // 同时写入正式位图和重建中的临时位图
+        verify(redisTemplate).execute(argThat(script -> script.getScriptAsString().contains("SETBIT")),
+                eq(List.of(EMAIL_KEY, EMAIL_KEY + ":build")), any(Object[].class));
+        verify(redisTemplate).execute(argThat(script -> script.getScriptAsString().contains("SETBIT")),
+                eq(List.of(USERNAME_KEY, USERNAME_KEY + ":build")), any(Object[].class));
+    }
+
+    @Test
+    void add_InsideTransaction_ShouldNotWriteOnRollback() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        filter.add("user@example.com", "user");
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        verifyNoInteractions(redisTemplate);
+    }
+
+    @Test
+    void add_WhenRedisFails_ShouldInvalidateFilter() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenThrow(new IllegalStateException("redis down"));
+
+        filter.add("user@example.com", "user");
+
+        verify(redisTemplate).delete(List.of(EMAIL_KEY, USERNAME_KEY));
+    }
+
+    @Test
+    void add_WhenInvalidateAlsoFails_ShouldBypassFilterUntilDeleted() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenAnswer(invocation -> {
+            String script = invocation.<RedisScript<?>>getArgument(0).getScriptAsString();
+            if (script.contains("SETBIT")) {
+                throw new IllegalStateException("redis down");
+            }
+            // 缺少新用户的位图对该邮箱判定为不存在
+            return 0L;
+        });
+        when(redisTemplate.delete(anyCollection()))
+                .thenThrow(new IllegalStateException("redis down"))
+                .thenThrow(new IllegalStateException("redis down"))
+                .thenReturn(2L);
+        when(userRepository.existsByEmail("user@example.com")).thenReturn(true);
+
+        filter.add("user@example.com", "user");
+
+        // 删除仍然失败：不信任过滤器，直接查询数据库
+        assertTrue(filter.existsByEmail("user@example.com"));
+        verify(userRepository).existsByEmail("user@example.com");
+
+        // 删除成功后恢复检查过滤器
+        assertFalse(filter.existsByEmail("user@example.com"));
+        verify(userRepository, times(1)).existsByEmail("user@example.com");
+        verify(redisTemplate, times(3)).delete(anyCollection());
+    }
+
+    @Test
+    void rebuild_ShouldScanInBatchesAndSwapOnLastBatch() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(userRepository.findIdentitiesAfter(eq(""), any(Pageable.class))).thenReturn(List.of(
+                new Object[]{"id-1", "a@example.com", "a"},
+                new Object[]{"id-2", "b@example.com", "b"}));
+        when(userRepository.findIdentitiesAfter(eq("id-2"), any(Pageable.class))).thenReturn(List.<Object[]>of(
+                new Object[]{"id-3", "c@example.com", "c"}));
+        stubScript("RENAME", 1L);
+
+        MaintenanceJob.Chunk first = filter.rebuild(null, 2);
+
+        assertEquals(2, first.rows());
+        assertEquals("id-2", first.checkpoint());
+        assertFalse(first.finished());
+        verify(redisTemplate).delete(List.of(EMAIL_KEY + ":build", USERNAME_KEY + ":build"));
+        verify(valueOperations, times(2)).setBit(anyString(), anyLong(), eq(false));
+        verify(redisTemplate, never()).execute(argThat(script -> script.getScriptAsString().contains("RENAME")),
+                anyList(), any(Object[].class));
+
+        MaintenanceJob.Chunk last = filter.rebuild(first.checkpoint(), 2);
+
+        assertEquals(1, last.rows());
+        assertTrue(last.finished());
+        verify(redisTemplate).execute(argThat(script -> script.getScriptAsString().contains("RENAME")),
+                eq(List.of(EMAIL_KEY, EMAIL_KEY + ":build", USERNAME_KEY, USERNAME_KEY + ":build")),
+                any(Object[].class));
+    }
+
+    @Test
+    void rebuild_WhenBuildKeysLost_ShouldFinishWithoutSwapping() {
+        when(userRepository.findIdentitiesAfter(eq("id-9"), any(Pageable.class))).thenReturn(List.of());
+        stubScript("RENAME", 0L);
+
+        MaintenanceJob.Chunk chunk = filter.rebuild("id-9", 100);
+
+        assertTrue(chunk.finished());
+        assertEquals(0, chunk.rows());
+    }
+
+    /**
+     * 按脚本内容返回结果，其他脚本返回 1
+     */
+    private void stubScript(String marker, Long result) {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenAnswer(invocation ->
+                invocation.<RedisScript<?>>getArgument(0).getScriptAsString().contains(marker) ? result : 1L);
+    }
+}
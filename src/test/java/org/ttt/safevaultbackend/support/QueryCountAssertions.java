@@ -0,0 +1,54 @@
+package org.ttt.safevaultbackend.support;
+
+import org.junit.jupiter.api.function.ThrowingSupplier;
+import org.ttt.safevaultbackend.persistence.QueryStatistics;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * 查询数断言
+ * 在统计范围内执行一次控制器（或服务）调用，断言其执行的 SQL 语句数不超过上限：
+ *
+ * <pre>
+ * List&lt;FriendDto&gt; friends = QueryCountAssertions.assertMaxQueries(3,
+ *         () -&gt; friendController.getFriendList(userId));
+ * </pre>
+ *
+ * 只统计调用线程上的语句；被测调用需要运行在 Hibernate 会话中（@SpringBootTest）。
+ */
+public final class QueryCountAssertions {
+
+    private QueryCountAssertions() {
+    }
+
+    /**
+     * 断言调用执行的 SQL 语句数不超过 maxStatements
+     *
+     * @return 调用的返回值
+     */
+    public static <T> T assertMaxQueries(int maxStatements, ThrowingSupplier<T> call) {
+        QueryStatistics.Scope scope = QueryStatistics.open("assertMaxQueries");
+        T result;
+        try {
+            result = call.get();
+        } catch (Throwable e) {
+            scope.close();
+            return fail("被测调用抛出异常: " + e, e);
+        }
+        scope.close();
+        assertTrue(scope.getStatements() <= maxStatements,
+                () -> String.format("SQL 语句数超出上限: 期望最多 %d 条，实际 %s", maxStatements, scope));
+        return result;
+    }
+
+    /**
+     * 断言调用执行的 SQL 语句数不超过 maxStatements（无返回值）
+     */
+    public static void assertMaxQueries(int maxStatements, Runnable call) {
+        assertMaxQueries(maxStatements, () -> {
+            call.run();
+            return null;
+        });
+    }
+}